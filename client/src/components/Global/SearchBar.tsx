@@ -1,6 +1,7 @@
 import React, { useCallback, useEffect, useRef, useState } from "react";
 import { book } from "../../interfaces/BookInterface";
-import { getBooks } from "../../services/userBookSearch";
+import { suggestion } from "../../interfaces/SuggestionInterface";
+import { getBooks, getSuggestions } from "../../services/userBookSearch";
 import { SearchRow } from "./SearchRow";
 import { useNavigate } from "react-router-dom";
 import '../../styles/search-bar.css';
@@ -9,6 +10,7 @@ export const SearchBar: React.FC = () => {
     // states
     const [search, setSearch] = useState('');
     const [searchResults, setSearchResults] = useState<Array<book> | null>(null);
+    const [suggestions, setSuggestions] = useState<Array<suggestion> | null>(null);
     const [error, setError] = useState<boolean>(false);
     const [isFetching, setIsFetching] = useState<boolean>(false);
     const [isNavigating, setIsNavigating] = useState<boolean>(false);
@@ -16,6 +18,7 @@ export const SearchBar: React.FC = () => {
 
     // refs
     const abortControllerRef = useRef<AbortController | null>(null);
+    const suggestAbortControllerRef = useRef<AbortController | null>(null);
 
     // callbacks
     const fetchBooks = useCallback(async (query: string, signal?: AbortSignal) => {
@@ -39,20 +42,43 @@ export const SearchBar: React.FC = () => {
         }
     }, []);
     
+    const fetchSuggestions = useCallback(async (prefix: string, signal?: AbortSignal) => {
+        try {
+            const currentSuggestions: Array<suggestion> = await getSuggestions(prefix, 8, signal);
+            if (!signal?.aborted) {
+                setSuggestions(currentSuggestions);
+            }
+        } catch (error: any) {
+            // suggestions are best effort, the full search still works without them
+            if (error.name !== 'AbortError') {
+                setSuggestions(null);
+            }
+        }
+    }, []);
+
     // effects
+    // only suggestions are fetched while typing, the full search runs on submit or when a suggestion is picked
     useEffect(() => {
         if (search) {
-            abortControllerRef.current?.abort();
-            abortControllerRef.current = new AbortController();
-            fetchBooks(search, abortControllerRef.current.signal);
+            suggestAbortControllerRef.current?.abort();
+            suggestAbortControllerRef.current = new AbortController();
+            fetchSuggestions(search, suggestAbortControllerRef.current.signal);
         } else {
+            abortControllerRef.current?.abort();
+            setSuggestions(null);
             setSearchResults(null);
             setIsFetching(false);
         }
+        return () => {
+            suggestAbortControllerRef.current?.abort();
+        }
+    }, [search, fetchSuggestions]);
+
+    useEffect(() => {
         return () => {
             abortControllerRef.current?.abort();
         }
-    }, [search, fetchBooks]);
+    }, []);
 
     useEffect(() => {
         if (isNavigating) {
@@ -62,11 +88,36 @@ export const SearchBar: React.FC = () => {
     }, [isNavigating]);
 
     // functions
+    const submitSearch = (query: string) => {
+        if (!query.trim()) {
+            return;
+        }
+        suggestAbortControllerRef.current?.abort();
+        setSuggestions(null);
+        abortControllerRef.current?.abort();
+        abortControllerRef.current = new AbortController();
+        fetchBooks(query, abortControllerRef.current.signal);
+    }
+
     const handleSearchInput = (event: React.ChangeEvent<HTMLInputElement>) => {
         setSearch(event.target.value);
+        abortControllerRef.current?.abort();
+        setSearchResults(null);
+        setIsFetching(false);
         error && setError(false);
     }
 
+    const handleKeyDown = (event: React.KeyboardEvent<HTMLInputElement>) => {
+        if (event.key === 'Enter') {
+            submitSearch(search);
+        }
+    }
+
+    const handleSuggestionClick = (selected: suggestion) => {
+        setSearch(selected.text);
+        submitSearch(selected.text);
+    }
+
     const customNavigate = (path: string, options: any) => {
         setIsNavigating(true);
         navigate(path, options);
@@ -75,8 +126,8 @@ export const SearchBar: React.FC = () => {
     return (
         <>
             <div className="search-bar">
-                <input className="search-input" type="text" placeholder="title, author, ISBN" value={search} onChange={handleSearchInput} />
-                <svg className="search-bar-icon" width='10' height='10' viewBox="0 0 50 50" fill="black" xmlns="http://www.w3.org/2000/svg" >
+                <input className="search-input" type="text" placeholder="title, author, ISBN" value={search} onChange={handleSearchInput} onKeyDown={handleKeyDown} />
+                <svg className="search-bar-icon" onClick={() => submitSearch(search)} width='10' height='10' viewBox="0 0 50 50" fill="black" xmlns="http://www.w3.org/2000/svg" >
                     <path d="M 21 3 C 11.621094 3 4 10.621094 4 20 C 4 29.378906 11.621094 37 21 37 C 24.710938 37 28.140625 35.804688 30.9375 33.78125 L 44.09375 46.90625 L 46.90625 44.09375 L 33.90625 31.0625 C 36.460938 28.085938 38 24.222656 38 20 C 38 10.621094 30.378906 3 21 3 Z M 21 5 C 29.296875 5 36 11.703125 36 20 C 36 28.296875 29.296875 35 21 35 C 12.703125 35 6 28.296875 6 20 C 6 11.703125 12.703125 5 21 5 Z" />
                 </svg>
             </div>
@@ -88,6 +139,15 @@ export const SearchBar: React.FC = () => {
                             <SearchRow key={book.id} book={book} customNavigate={customNavigate} />
                         )}
                     </div>
+                : suggestions && suggestions.length > 0 ?
+                    <div className="search-results-container">
+                        {suggestions.map(current =>
+                            <div key={`${current.type}-${current.text}`} className="suggestion-row" onClick={() => handleSuggestionClick(current)}>
+                                <p className="suggestion-text">{current.text}</p>
+                                {current.type === 'author' && <p className="suggestion-type">author</p>}
+                            </div>
+                        )}
+                    </div>
                 : ''  
             }
             {error && <div className="no-results-row">No search results found.</div>}
@@ -0,0 +1,4 @@
+export interface suggestion {
+    text: string
+    type: 'title' | 'author' | 'search'
+}
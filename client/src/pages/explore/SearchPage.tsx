@@ -2,7 +2,7 @@ import React, { useEffect, useMemo, useRef, useState, useCallback } from "react"
 import '../../styles/search-page.css';
 import { Genre } from "../../components/Search-Page/Genre";
 import { fetchDefaultBooks } from "../../services/defaultBookSearch";
-import { initializeCaching, getCachedBooks, updateCache } from "../../services/caching";
+import { initializeCaching, getCachedBooks } from "../../services/caching";
 import { book } from "../../interfaces/BookInterface";
 import { LoadingIcon } from "../../components/Global/LoadingIcon";
 import { SearchBar } from "../../components/Global/SearchBar";
@@ -20,6 +20,7 @@ export const SearchPage: React.FC = () => {
     const [paginationLoading, setPaginationLoading] = useState<string>('');
     const [cacheInitialized, setCacheInitialized] = useState<boolean>(false);
     const [error, setError] = useState<boolean>();
+    const cursors = useRef<Map<string, string>>(new Map());   // position of the user in the cached books of each genre
 
     // use effects
     useEffect(() => {
@@ -79,7 +80,8 @@ export const SearchPage: React.FC = () => {
                 await initializeCaching(9);
                 setCacheInitialized(true);
             }
-            const newBooks: Array<book> = await getCachedBooks(genreName, 9);
+            const { cachedBooks: newBooks, nextCursor } = await getCachedBooks(genreName, 9, cursors.current.get(genreName));
+            cursors.current.set(genreName, nextCursor);
             
             setBooks(prevBooks => {
                 const updatedBooks = new Map(prevBooks);
@@ -87,8 +89,7 @@ export const SearchPage: React.FC = () => {
                 updatedBooks.set(genreName, [...existingBooks, ...newBooks]);
                 return updatedBooks;
             });
-            
-            await updateCache(genreName, 9);
+            // the server refills the genre in the background once it runs low
         } catch (error) {
             console.error(`Failed to fetch paginated books for ${genreName} genre.`, error);
         } finally {
@@ -17,16 +17,19 @@ export const initializeCaching = async (limit: number) => {
     }
 }
 
-// retrieves a specified number of cached books for a specific genre which the user requested
-export const getCachedBooks = async (genreName: string, limit: number) => {
+// retrieves the next page of cached books for a specific genre which the user requested
+// the cursor returned with a page is passed back to get the page after it
+export const getCachedBooks = async (genreName: string, limit: number, cursor?: string) => {
     try {
-        const response = await fetch(`${BASE_URL}/api/books/cache/${genreName}?limit=${limit}`);
+        const cursorParam: string = cursor ? `&cursor=${encodeURIComponent(cursor)}` : '';
+        const response = await fetch(`${BASE_URL}/api/books/cache/${genreName}?limit=${limit}${cursorParam}`);
         if (!response.ok) {
             throw new Error(`Response from backend failed when retrieving cached books for ${genreName} genre`);
         }
         const data = await response.json();
         const cachedBooks: Array<book> = data.cachedBooks;
-        return cachedBooks;
+        const nextCursor: string = data.nextCursor;
+        return { cachedBooks, nextCursor };
     }
     catch (error: any) {
         throw error;
@@ -1,10 +1,11 @@
 // File handles fetching a book by either title, author, ISBN 
 import { BASE_URL } from "../global-variables/BaseUrl";
 import { book } from "../interfaces/BookInterface";
+import { suggestion } from "../interfaces/SuggestionInterface";
 
 export const getBooks = async (search: string, limit: number, signal?: AbortSignal) => {
     try {
-        const response = await fetch(`${BASE_URL}/api/books?search=${search}&limit=${limit}`, { signal });
+        const response = await fetch(`${BASE_URL}/api/books?search=${encodeURIComponent(search)}&limit=${limit}`, { signal });
         if (!response.ok) {
             throw new Error(`Failed to fetch books from the backend for search: ${search}`);
         }
@@ -18,3 +19,21 @@ export const getBooks = async (search: string, limit: number, signal?: AbortSign
         throw error;
     }
 }
+
+
+// typeahead suggestions are served from memory by the backend, so they can be requested on every keystroke
+export const getSuggestions = async (prefix: string, limit: number, signal?: AbortSignal) => {
+    try {
+        const response = await fetch(`${BASE_URL}/api/books/suggest?prefix=${encodeURIComponent(prefix)}&limit=${limit}`, { signal });
+        if (!response.ok) {
+            throw new Error(`Failed to fetch suggestions from the backend for prefix: ${prefix}`);
+        }
+
+        const data = await response.json();
+        const suggestions: Array<suggestion> = data.suggestions;
+        return suggestions;
+    }
+    catch (error: any) {
+        throw error;
+    }
+}
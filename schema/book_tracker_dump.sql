@@ -80,6 +80,57 @@ CREATE TABLE public.users (
 
 ALTER TABLE public.users OWNER TO postgres;
 
+--
+-- Name: books; Type: TABLE; Schema: public; Owner: postgres
+--
+
+CREATE TABLE public.books (
+    id character varying(255) NOT NULL,
+    title text,
+    authors text[],
+    publisher text,
+    description text,
+    page_count integer DEFAULT 0,
+    categories text[],
+    image_url text,
+    language character varying(35),
+    updated_at timestamp without time zone DEFAULT CURRENT_TIMESTAMP
+);
+
+
+ALTER TABLE public.books OWNER TO postgres;
+
+--
+-- Name: similar_titles; Type: TABLE; Schema: public; Owner: postgres
+--
+
+CREATE TABLE public.similar_titles (
+    cache_key text NOT NULL,
+    titles text[],
+    fetched_at timestamp without time zone DEFAULT CURRENT_TIMESTAMP
+);
+
+
+ALTER TABLE public.similar_titles OWNER TO postgres;
+
+--
+-- Name: genre_cache_pages; Type: TABLE; Schema: public; Owner: postgres
+--
+
+CREATE TABLE public.genre_cache_pages (
+    genre text NOT NULL,
+    generation bigint NOT NULL,
+    first_position integer NOT NULL,
+    book_count integer NOT NULL,
+    first_offset integer NOT NULL,
+    next_offset integer NOT NULL,
+    books bytea NOT NULL,
+    created_at timestamp without time zone DEFAULT CURRENT_TIMESTAMP
+);
+
+
+ALTER TABLE public.genre_cache_pages OWNER TO postgres;
+
 --
 -- TOC entry 4640 (class 2604 OID 24762)
 -- Name: otp_verifications id; Type: DEFAULT; Schema: public; Owner: postgres
@@ -162,6 +213,30 @@ ALTER TABLE ONLY public.users
     ADD CONSTRAINT users_pkey PRIMARY KEY (username);
 
 
+--
+-- Name: books books_pkey; Type: CONSTRAINT; Schema: public; Owner: postgres
+--
+
+ALTER TABLE ONLY public.books
+    ADD CONSTRAINT books_pkey PRIMARY KEY (id);
+
+
+--
+-- Name: similar_titles similar_titles_pkey; Type: CONSTRAINT; Schema: public; Owner: postgres
+--
+
+ALTER TABLE ONLY public.similar_titles
+    ADD CONSTRAINT similar_titles_pkey PRIMARY KEY (cache_key);
+
+
+--
+-- Name: genre_cache_pages genre_cache_pages_pkey; Type: CONSTRAINT; Schema: public; Owner: postgres
+--
+
+ALTER TABLE ONLY public.genre_cache_pages
+    ADD CONSTRAINT genre_cache_pages_pkey PRIMARY KEY (genre, generation, first_position);
+
+
 -- Completed on 2024-09-29 12:05:57
 
 --
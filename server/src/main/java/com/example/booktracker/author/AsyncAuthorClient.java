@@ -0,0 +1,19 @@
+package com.example.booktracker.author;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking lookup of author details, implemented by the blocking {@link AuthorApiClient} on the Wikipedia executor
+ * and by the {@link ReactiveAuthorApiClient} on the Wikipedia WebClient ({@code upstream.client=reactive}).
+ */
+public interface AsyncAuthorClient {
+
+    /**
+     * Fetches the details of an author from Wikipedia without blocking the caller.
+     *
+     * @param authorName The name of the author to search for.
+     * @return A future completing with an {@link AuthorDTO}, or exceptionally with the exceptions documented on
+     *         {@link AuthorApiClient#fetchDetails(String)}.
+     */
+    CompletableFuture<AuthorDTO> fetchDetailsAsync(String authorName);
+}
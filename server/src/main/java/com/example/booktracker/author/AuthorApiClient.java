@@ -5,27 +5,43 @@ import com.example.booktracker.book.exception.BookNotFoundException;
 import com.example.booktracker.book.exception.CustomAuthenticationException;
 import com.example.booktracker.book.exception.CustomBadRequestException;
 import com.example.booktracker.book.exception.ExternalServiceException;
+import com.example.booktracker.upstream.StaleFallback;
+import com.example.booktracker.upstream.UpstreamExecutor;
+import com.example.booktracker.upstream.UpstreamThrottledException;
+import com.example.booktracker.upstream.UpstreamUnavailableException;
 import com.fasterxml.jackson.databind.JsonNode;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.ParameterizedTypeReference;
-import org.springframework.http.HttpStatus;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpStatusCode;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestClient;
 import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.util.UriBuilder;
 
-import java.util.List;
-import java.util.Map;
+import java.net.URI;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
 
 @Service
-public class AuthorApiClient {
+public class AuthorApiClient implements AsyncAuthorClient {
 
     private final RestClient restClient;
+    private final StaleFallback wikipediaFallback;      // last known good author details, served while Wikipedia is unavailable
+    private final UpstreamExecutor wikipediaExecutor;   // runs the blocking lookups made asynchronously
 
     @Autowired
-    public AuthorApiClient(RestClient.Builder restClientBuilder) {
-        this.restClient = restClientBuilder.baseUrl("https://en.wikipedia.org/w/api.php").build();
+    public AuthorApiClient(RestClient.Builder restClientBuilder,
+                           @Qualifier("wikipediaRequestFactory") ClientHttpRequestFactory wikipediaRequestFactory,
+                           @Qualifier("wikipediaFallback") StaleFallback wikipediaFallback,
+                           @Qualifier("wikipediaExecutor") UpstreamExecutor wikipediaExecutor) {
+        this.wikipediaFallback = wikipediaFallback;
+        this.wikipediaExecutor = wikipediaExecutor;
+        this.restClient = restClientBuilder.clone()
+                .baseUrl("https://en.wikipedia.org/w/api.php")
+                .requestFactory(wikipediaRequestFactory)
+                .build();
     }
 
 
@@ -39,99 +55,175 @@ public class AuthorApiClient {
      * @throws AuthorNotFoundException If no results are found for the given author.
      * @throws CustomBadRequestException If there is an issue with the API request parameters.
      * @throws CustomAuthenticationException If the request is unauthorized or unauthenticated.
-     * @throws ExternalServiceException If an external service (Wikipedia) returns a server-side error.
+     * @throws ExternalServiceException If an external service (Wikipedia) returns a server-side error and no
+     *                                  last known good details of the author are available.
      * @throws RuntimeException If an unexpected error occurs during the process.
      */
     public AuthorDTO fetchDetails(String authorName) {
+        return wikipediaFallback.call(cacheKey(authorName), () -> lookUpDetails(authorName));
+    }
+
+
+    /**
+     * Fetches the details of an author like {@link #fetchDetails(String)}, but on the Wikipedia executor.
+     *
+     * @param authorName The name of the author to search for.
+     * @return A future completing with the {@link AuthorDTO}, or exceptionally with the exceptions of {@link #fetchDetails(String)}.
+     */
+    @Override
+    public CompletableFuture<AuthorDTO> fetchDetailsAsync(String authorName) {
+        return CompletableFuture.supplyAsync(() -> fetchDetails(authorName), wikipediaExecutor);
+    }
+
+    private AuthorDTO lookUpDetails(String authorName) {
         try {
             // get the Wikipedia page title
             JsonNode titleResponse = restClient.get()
-                    .uri(uriBuilder -> uriBuilder
-                            .queryParam("action", "query")
-                            .queryParam("list", "search")
-                            .queryParam("srsearch", authorName)
-                            .queryParam("format", "json")
-                            .build())
+                    .uri(uriBuilder -> titleQuery(uriBuilder, authorName))
                     .retrieve()
                     .body(JsonNode.class);
 
-            if (titleResponse == null || !titleResponse.has("query")) {
-                throw new AuthorNotFoundException("No results could be found for the author with the name: " + authorName);
-            }
-
-            JsonNode searchResults = titleResponse.get("query").get("search");
-            if (searchResults.isEmpty()) {
-                throw new AuthorNotFoundException("No results could be found for the author with the name: " + authorName);
-            }
-
-            String pageTitle = searchResults.get(0).get("title").asText();
+            String pageTitle = pageTitle(titleResponse, authorName);
 
             // fetching the introduction and image
             JsonNode extractResponse = restClient.get()
-                    .uri(uriBuilder -> uriBuilder
-                            .queryParam("action", "query")
-                            .queryParam("prop", "extracts|pageimages")
-                            .queryParam("exintro", "true")
-                            .queryParam("explaintext", "true")
-                            .queryParam("titles", pageTitle)
-                            .queryParam("pithumbsize", "500")
-                            .queryParam("format", "json")
-                            .build())
+                    .uri(uriBuilder -> extractQuery(uriBuilder, pageTitle))
                     .retrieve()
                     .body(JsonNode.class);
 
-            if (extractResponse == null || !extractResponse.has("query") || !extractResponse.get("query").has("pages")) {
-                throw new AuthorNotFoundException("No results could be found for the author with the name: " + authorName);
-            }
+            return toAuthorDTO(extractResponse, authorName);
+        }
+        catch (AuthorNotFoundException exception) {
+            throw exception;
+        }
+        catch (RestClientResponseException exception) {
+            throw apiException(exception.getStatusCode(), authorName);
+        }
+        catch (ResourceAccessException exception) {
+            throw transportException(exception.getCause(), authorName);
+        }
+        catch (Exception e) {
+            // Handle other exceptions
+            throw new RuntimeException("Unexpected error occurred while fetching author details for the author: " + authorName + ". " + e.getMessage());
+        }
+    }
 
-            JsonNode pages = extractResponse.get("query").get("pages");
-            JsonNode pageData = pages.elements().next();
+    static String cacheKey(String authorName) {
+        return "author:" + authorName.trim().toLowerCase(Locale.ROOT);
+    }
 
-            if (pageData == null) {
-                throw new AuthorNotFoundException("No page data found for the author with the name: " + authorName);
-            }
+    static URI titleQuery(UriBuilder uriBuilder, String authorName) {
+        return uriBuilder
+                .queryParam("action", "query")
+                .queryParam("list", "search")
+                .queryParam("srsearch", authorName)
+                .queryParam("format", "json")
+                .build();
+    }
 
-            String description = pageData.has("extract") ? pageData.get("extract").asText() : "No description available.";
+    static URI extractQuery(UriBuilder uriBuilder, String pageTitle) {
+        return uriBuilder
+                .queryParam("action", "query")
+                .queryParam("prop", "extracts|pageimages")
+                .queryParam("exintro", "true")
+                .queryParam("explaintext", "true")
+                .queryParam("titles", pageTitle)
+                .queryParam("pithumbsize", "500")
+                .queryParam("format", "json")
+                .build();
+    }
 
-            String imageUrl = null;
-            if (pageData.has("thumbnail") && pageData.get("thumbnail").has("source")) {
-                imageUrl = pageData.get("thumbnail").get("source").asText();
-            }
+    /**
+     * Reads the title of the best matching Wikipedia page from the response of the search query.
+     *
+     * @throws AuthorNotFoundException If the search did not return any page.
+     */
+    static String pageTitle(JsonNode titleResponse, String authorName) {
+        if (titleResponse == null || !titleResponse.has("query")) {
+            throw new AuthorNotFoundException("No results could be found for the author with the name: " + authorName);
+        }
 
-            return new AuthorDTO(description, imageUrl);
+        JsonNode searchResults = titleResponse.get("query").get("search");
+        if (searchResults.isEmpty()) {
+            throw new AuthorNotFoundException("No results could be found for the author with the name: " + authorName);
         }
-        catch (RestClientResponseException exception) {
-            HttpStatusCode statusCode = exception.getStatusCode();
-            // handling client-side errors
-            if (statusCode.is4xxClientError()) {
-                switch (statusCode.value()) {
 
-                    case 400:
-                        throw new CustomBadRequestException("Bad request when fetching author details for the author: " + authorName + ". Check query parameters.");
+        return searchResults.get(0).get("title").asText();
+    }
 
-                    case 401:
-                    case 403:
-                        throw new CustomAuthenticationException("Unathenticated/unathorized request when fetching author details for the author: " + authorName + ". Check validity of API key.");
+    /**
+     * Maps the response of the extract query to an {@link AuthorDTO}.
+     *
+     * @throws AuthorNotFoundException If the response does not contain the page.
+     */
+    static AuthorDTO toAuthorDTO(JsonNode extractResponse, String authorName) {
+        if (extractResponse == null || !extractResponse.has("query") || !extractResponse.get("query").has("pages")) {
+            throw new AuthorNotFoundException("No results could be found for the author with the name: " + authorName);
+        }
 
-                    case 404:
-                        throw new AuthorNotFoundException("No similar books found to the book: " + authorName + ".");
+        JsonNode pages = extractResponse.get("query").get("pages");
+        JsonNode pageData = pages.elements().next();
 
-                    default:
-                        throw new RuntimeException("Client error occurred when fetching author details for the author: " + authorName + ".");
-                }
-            }
+        if (pageData == null) {
+            throw new AuthorNotFoundException("No page data found for the author with the name: " + authorName);
+        }
 
-            // handling server-side errors (external service)
-            else if (statusCode.is5xxServerError()) {
-                throw new ExternalServiceException("External service error occurred when fetching author details for the author: " + authorName + ".");
-            }
-            else {
-                throw new ExternalServiceException("Unexpected error occurred when fetching author details for the author: " + authorName + ".");
+        String description = pageData.has("extract") ? pageData.get("extract").asText() : "No description available.";
+
+        String imageUrl = null;
+        if (pageData.has("thumbnail") && pageData.get("thumbnail").has("source")) {
+            imageUrl = pageData.get("thumbnail").get("source").asText();
+        }
+
+        return new AuthorDTO(description, imageUrl);
+    }
+
+    /**
+     * Maps an error status returned by Wikipedia to the exception thrown to the caller.
+     */
+    static RuntimeException apiException(HttpStatusCode statusCode, String authorName) {
+        // handling client-side errors
+        if (statusCode.is4xxClientError()) {
+            switch (statusCode.value()) {
+
+                case 400:
+                    return new CustomBadRequestException("Bad request when fetching author details for the author: " + authorName + ". Check query parameters.");
+
+                case 401:
+                case 403:
+                    return new CustomAuthenticationException("Unathenticated/unathorized request when fetching author details for the author: " + authorName + ". Check validity of API key.");
+
+                case 404:
+                    return new AuthorNotFoundException("No similar books found to the book: " + authorName + ".");
+
+                case 429:
+                    return new ExternalServiceException("Quota of Wikipedia exceeded when fetching author details for the author: " + authorName + ". Try again later.");
+
+                default:
+                    return new RuntimeException("Client error occurred when fetching author details for the author: " + authorName + ".");
             }
         }
-        catch (Exception e) {
-            // Handle other exceptions
-            throw new RuntimeException("Unexpected error occurred while fetching author details for the author: " + authorName + ". " + e.getMessage());
+
+        // handling server-side errors (external service)
+        else if (statusCode.is5xxServerError()) {
+            return new ExternalServiceException("External service error occurred when fetching author details for the author: " + authorName + ".");
+        }
+        else {
+            return new ExternalServiceException("Unexpected error occurred when fetching author details for the author: " + authorName + ".");
+        }
+    }
+
+    /**
+     * Maps a failure of the Wikipedia transport (connection failures and timeouts, an open circuit or no rate limit
+     * permit) to the exception thrown to the caller.
+     */
+    static ExternalServiceException transportException(Throwable cause, String authorName) {
+        if (cause instanceof UpstreamThrottledException) {
+            return new ExternalServiceException("Quota of Wikipedia reached when fetching author details for the author: " + authorName + ". Try again later.");
+        }
+        if (cause instanceof UpstreamUnavailableException) {
+            return new ExternalServiceException("Wikipedia is currently unavailable when fetching author details for the author: " + authorName + ". Try again later.");
         }
+        return new ExternalServiceException("Wikipedia did not respond in time when fetching author details for the author: " + authorName + ".");
     }
 }
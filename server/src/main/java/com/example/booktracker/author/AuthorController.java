@@ -10,6 +10,7 @@ import org.springframework.web.bind.annotation.RestController;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api")
@@ -26,23 +27,25 @@ public class AuthorController {
      * REST endpoint to retrieve the details of an author by name.
      * This method validates the input and returns the author details as a JSON response.
      *
+     * The request thread is released while the details are fetched.
+     *
      * @param authorName The name of the author provided as a request parameter.
-     * @return A {@link ResponseEntity} containing a map with the key "authorDetails" and the corresponding {@link AuthorDTO}.
+     * @return A future of a {@link ResponseEntity} containing a map with the key "authorDetails" and the corresponding {@link AuthorDTO}.
      * @throws CustomBadRequestException If the authorName parameter is empty or invalid.
      */
     @GetMapping("/authors")
-    public ResponseEntity<Map<String, AuthorDTO>> getDetails(@RequestParam(defaultValue = "") String authorName) {
+    public CompletableFuture<ResponseEntity<Map<String, AuthorDTO>>> getDetails(@RequestParam(defaultValue = "") String authorName) {
 
         // validating authorName parameter
         if (authorName.trim().isEmpty()) {
             throw new CustomBadRequestException("Author name parameter is required.");
         }
 
-        Map<String, AuthorDTO> responseMap = new HashMap<>();
-
-        AuthorDTO authorDTO = authorService.getDetails(authorName);
-        responseMap.put("authorDetails", authorDTO);
+        return authorService.getDetails(authorName).thenApply(authorDTO -> {
+            Map<String, AuthorDTO> responseMap = new HashMap<>();
+            responseMap.put("authorDetails", authorDTO);
 
-        return ResponseEntity.ok(responseMap);
+            return ResponseEntity.ok(responseMap);
+        });
     }
 }
\ No newline at end of file
@@ -2,22 +2,24 @@ package com.example.booktracker.author;
 
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.CompletableFuture;
+
 @Service
 public class AuthorService {
 
-    private final AuthorApiClient authorApiClient;
+    private final AsyncAuthorClient authorClient;
 
-    public AuthorService(AuthorApiClient authorApiClient) {
-        this.authorApiClient = authorApiClient;
+    public AuthorService(AsyncAuthorClient authorClient) {
+        this.authorClient = authorClient;
     }
 
     /**
-     * Retrieves the details of an author by calling the fetchDetails method from the API client.
+     * Retrieves the details of an author by calling the fetchDetailsAsync method from the API client.
      *
      * @param authorName The name of the author to fetch details for.
-     * @return An {@link AuthorDTO} containing the author's description and image URL.
+     * @return A future completing with an {@link AuthorDTO} containing the author's description and image URL.
      */
-    public AuthorDTO getDetails(String authorName) {
-        return authorApiClient.fetchDetails(authorName);
+    public CompletableFuture<AuthorDTO> getDetails(String authorName) {
+        return authorClient.fetchDetailsAsync(authorName);
     }
 }
\ No newline at end of file
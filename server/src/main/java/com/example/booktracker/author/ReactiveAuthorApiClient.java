@@ -0,0 +1,80 @@
+package com.example.booktracker.author;
+
+import com.example.booktracker.author.exception.AuthorNotFoundException;
+import com.example.booktracker.upstream.StaleFallback;
+import com.example.booktracker.upstream.UpstreamExchangeFilter;
+import com.example.booktracker.upstream.UpstreamPriority;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking implementation of {@link AsyncAuthorClient} on the Wikipedia {@link WebClient}, active when
+ * {@code upstream.client=reactive}. Both Wikipedia queries are chained on the event loop, so an author lookup holds no
+ * thread while waiting. Failures map to the same exceptions as in the {@link AuthorApiClient}, and the last known good
+ * details are served while Wikipedia is unavailable.
+ */
+@Service
+@Primary
+@ConditionalOnProperty(name = "upstream.client", havingValue = "reactive")
+public class ReactiveAuthorApiClient implements AsyncAuthorClient {
+
+    private static final JsonNode EMPTY_RESPONSE = MissingNode.getInstance();      // parsed as "author not found"
+
+    private final WebClient wikipediaClient;
+    private final StaleFallback wikipediaFallback;
+
+    @Autowired
+    public ReactiveAuthorApiClient(@Qualifier("wikipediaWebClient") WebClient wikipediaWebClient,
+                                   @Qualifier("wikipediaFallback") StaleFallback wikipediaFallback) {
+        this.wikipediaClient = wikipediaWebClient.mutate()
+                .baseUrl("https://en.wikipedia.org/w/api.php")
+                .build();
+        this.wikipediaFallback = wikipediaFallback;
+    }
+
+
+    @Override
+    public CompletableFuture<AuthorDTO> fetchDetailsAsync(String authorName) {
+        UpstreamPriority priority = UpstreamPriority.current();
+
+        return wikipediaFallback.callAsync(AuthorApiClient.cacheKey(authorName), () -> UpstreamExchangeFilter.decoded(wikipediaClient.get()
+                        .uri(uriBuilder -> AuthorApiClient.titleQuery(uriBuilder, authorName))
+                        .attribute(UpstreamExchangeFilter.PRIORITY_ATTRIBUTE, priority)
+                        .retrieve()
+                        .bodyToMono(JsonNode.class))
+                .defaultIfEmpty(EMPTY_RESPONSE)
+                .map(titleResponse -> AuthorApiClient.pageTitle(titleResponse, authorName))
+                .flatMap(pageTitle -> UpstreamExchangeFilter.decoded(wikipediaClient.get()
+                                .uri(uriBuilder -> AuthorApiClient.extractQuery(uriBuilder, pageTitle))
+                                .attribute(UpstreamExchangeFilter.PRIORITY_ATTRIBUTE, priority)
+                                .retrieve()
+                                .bodyToMono(JsonNode.class))
+                        .defaultIfEmpty(EMPTY_RESPONSE))
+                .map(extractResponse -> AuthorApiClient.toAuthorDTO(extractResponse, authorName))
+                .onErrorMap(exception -> toServiceException(exception, authorName))
+                .toFuture());
+    }
+
+    private Throwable toServiceException(Throwable exception, String authorName) {
+        if (exception instanceof AuthorNotFoundException) {
+            return exception;
+        }
+        if (exception instanceof WebClientResponseException responseException) {
+            return AuthorApiClient.apiException(responseException.getStatusCode(), authorName);
+        }
+        // connection failures, timeouts, open circuit or no rate limit permit
+        Throwable cause = (exception.getCause() != null && !(exception instanceof IOException)) ? exception.getCause() : exception;
+        return AuthorApiClient.transportException(cause, authorName);
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.booktracker.book;
+
+import com.example.booktracker.book.exception.BookNotFoundException;
+import com.example.booktracker.book.exception.ExternalServiceException;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous Google Books lookups used by the fan-outs (similar books and the genre cache set-up).
+ *
+ * Implemented by the blocking {@link BookApiClient}, which runs the calls on the Google Books executor, and by the
+ * non-blocking {@link ReactiveBookApiClient}, which is used instead when {@code upstream.client=reactive}.
+ */
+public interface AsyncBookClient {
+
+    /**
+     * Fetches the best matching book for a title asynchronously.
+     * Concurrent lookups of the same (normalized) title share a single Google Books call.
+     *
+     * @param title The title of the book to look up.
+     * @return A {@link CompletableFuture} completing with the {@link BookDTO} of the best match, or failing with a
+     *         {@link BookNotFoundException} or {@link ExternalServiceException}.
+     */
+    CompletableFuture<BookDTO> fetchBookByTitle(String title);
+
+
+    /**
+     * Fetches a page of books in a given genre asynchronously, as the raw Google Books response.
+     *
+     * @param genre  The genre term used to query for books.
+     * @param limit  The maximum number of books to return.
+     * @param offset The start index of where to start fetching books from.
+     * @return A {@link CompletableFuture} completing with the Google Books response, which contains "items", or
+     *         failing with a {@link BookNotFoundException} or {@link ExternalServiceException}.
+     */
+    CompletableFuture<JsonNode> fetchBooksByGenreAsync(String genre, int limit, int offset);
+}
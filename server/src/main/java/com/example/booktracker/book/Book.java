@@ -0,0 +1,95 @@
+package com.example.booktracker.book;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.annotations.UpdateTimestamp;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Entity
+@Table(name = "books")
+public class Book {
+
+    public Book() {
+    }
+
+    @Id
+    @Column(name = "id")
+    private String id;
+
+    @Column(name = "title", columnDefinition = "text")
+    private String title;
+
+    @JdbcTypeCode(SqlTypes.ARRAY)
+    @Column(name = "authors", columnDefinition = "text[]")
+    private List<String> authors;
+
+    @Column(name = "publisher", columnDefinition = "text")
+    private String publisher;
+
+    @Column(name = "description", columnDefinition = "text")
+    private String description;
+
+    @Column(name = "page_count")
+    private int pageCount;
+
+    @JdbcTypeCode(SqlTypes.ARRAY)
+    @Column(name = "categories", columnDefinition = "text[]")
+    private List<String> categories;
+
+    @Column(name = "image_url", columnDefinition = "text")
+    private String imageUrl;
+
+    @Column(name = "language")
+    private String language;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    public String getId() {
+        return id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public List<String> getAuthors() {
+        return authors;
+    }
+
+    public String getPublisher() {
+        return publisher;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    public List<String> getCategories() {
+        return categories;
+    }
+
+    public String getImageUrl() {
+        return imageUrl;
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public BookDTO toBookDTO() {
+        return new BookDTO(id, title, authors, publisher, description, pageCount, categories, imageUrl, language);
+    }
+}
@@ -1,28 +1,39 @@
 package com.example.booktracker.book;
 
 
-import com.example.booktracker.book.customResponses.SimilarBooksResponse;
 import com.example.booktracker.book.exception.BookNotFoundException;
 import com.example.booktracker.book.exception.CustomAuthenticationException;
 import com.example.booktracker.book.exception.CustomBadRequestException;
 import com.example.booktracker.book.exception.ExternalServiceException;
+import com.example.booktracker.upstream.RequestHedger;
+import com.example.booktracker.upstream.StaleFallback;
+import com.example.booktracker.upstream.UpstreamExecutor;
+import com.example.booktracker.upstream.UpstreamThrottledException;
+import com.example.booktracker.upstream.UpstreamUnavailableException;
 import com.fasterxml.jackson.databind.JsonNode;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestClient;
 import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.util.UriBuilder;
 
+import java.net.URI;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
 
 @Service
-public class BookApiClient {
+public class BookApiClient implements AsyncBookClient {
     private static final String TASTEDIVE_BASE_URL = "https://tastedive.com/api";
-    private static final String GOOGLE_BOOKS_BASE_URL = "https://www.googleapis.com/books/v1";
+    static final String GOOGLE_BOOKS_BASE_URL = "https://www.googleapis.com/books/v1";
+    static final String GOOGLE_BOOK_FIELDS = "id,volumeInfo/title,volumeInfo/authors,volumeInfo/publisher,volumeInfo/publishedDate,volumeInfo/description,volumeInfo/pageCount,volumeInfo/categories,volumeInfo/imageLinks/thumbnail,volumeInfo/language";
+    static final String GOOGLE_BOOKS_FIELDS = "items(" + GOOGLE_BOOK_FIELDS + ")";
 
     @Value("${tastedive.api-key}")
     private String TASTEDIVE_KEY;
@@ -30,51 +41,125 @@ public class BookApiClient {
     @Value("${google.books.api-key}")
     private String GOOGLE_KEY;
 
+    @Value("${google.books.response-mapper:streaming}")
+    private String responseMapper;          // "streaming" decodes responses token by token, "tree" reads them into a JsonNode first
+
     private final RestClient tasteDiveClient;
     private final RestClient googleBooksClient;
+    private final UpstreamExecutor googleBooksExecutor;                         // runs the blocking Google Books calls made asynchronously
+    private final GoogleBooksStreamingMapper streamingMapper;
+    private final BookCatalog bookCatalog;                                      // every fetched book is written through to the catalog
+    private final RequestCoalescer requestCoalescer = new RequestCoalescer();     // shares identical in-flight Google Books calls
+    private final StaleFallback googleBooksFallback;                            // last known good results, served while Google Books is unavailable
+    private final StaleFallback tasteDiveFallback;                              // last known good results, served while TasteDive is unavailable
+    private final RequestHedger googleBooksHedger;                              // re-sends slow volume searches, the first answer wins
 
     @Autowired
-    public BookApiClient(RestClient.Builder restClientBuilder) {
-        this.tasteDiveClient = restClientBuilder
+    public BookApiClient(RestClient.Builder restClientBuilder,
+                         @Qualifier("tasteDiveRequestFactory") ClientHttpRequestFactory tasteDiveRequestFactory,
+                         @Qualifier("googleBooksRequestFactory") ClientHttpRequestFactory googleBooksRequestFactory,
+                         @Qualifier("googleBooksExecutor") UpstreamExecutor googleBooksExecutor,
+                         GoogleBooksStreamingMapper streamingMapper,
+                         BookCatalog bookCatalog,
+                         @Qualifier("googleBooksFallback") StaleFallback googleBooksFallback,
+                         @Qualifier("tasteDiveFallback") StaleFallback tasteDiveFallback,
+                         @Qualifier("googleBooksHedger") RequestHedger googleBooksHedger) {
+        this.googleBooksExecutor = googleBooksExecutor;
+        this.googleBooksHedger = googleBooksHedger;
+        this.googleBooksFallback = googleBooksFallback;
+        this.tasteDiveFallback = tasteDiveFallback;
+        this.streamingMapper = streamingMapper;
+        this.bookCatalog = bookCatalog;
+        this.tasteDiveClient = restClientBuilder.clone()
                 .baseUrl(TASTEDIVE_BASE_URL)
+                .requestFactory(tasteDiveRequestFactory)
                 .build();
 
-        // Create a new builder for the Google Books client
-        this.googleBooksClient = RestClient.builder()
+        // each upstream gets its own copy of the builder so the base URLs and transports don't leak into each other
+        this.googleBooksClient = restClientBuilder.clone()
                 .baseUrl(GOOGLE_BOOKS_BASE_URL)
+                .requestFactory(googleBooksRequestFactory)
                 .build();
     }
 
 
+    /**
+     * Fetches the best matching book for a title asynchronously.
+     * Concurrent lookups of the same (normalized) title share a single Google Books call.
+     *
+     * @param title The title of the book to look up.
+     * @return A {@link CompletableFuture} completing with the {@link BookDTO} of the best match.
+     */
+    @Override
     public CompletableFuture<BookDTO> fetchBookByTitle(String title) {
-        return CompletableFuture.supplyAsync(() -> {
+        String key = RequestCoalescer.key("title", title, 1, 0);
+        return requestCoalescer.executeAsync(key, () -> CompletableFuture.supplyAsync(() -> googleBooksFallback.call(key, () -> {
             try {
-                JsonNode response = googleBooksClient.get()
-                        .uri(uriBuilder -> uriBuilder
-                                .path("/volumes")
-                                .queryParam("q", "intitle:" + title)
-                                .queryParam("maxResults", 1)
-                                .queryParam("fields", "items(id,volumeInfo/title,volumeInfo/authors,volumeInfo/publisher,volumeInfo/publishedDate,volumeInfo/description,volumeInfo/pageCount,volumeInfo/categories,volumeInfo/imageLinks/thumbnail,volumeInfo/language)")
-                                .queryParam("key", GOOGLE_KEY)
-                                .build())
-                        .retrieve()
-                        .body(JsonNode.class);
+                List<BookDTO> books = requestVolumes(uriBuilder -> uriBuilder
+                        .path("/volumes")
+                        .queryParam("q", "intitle:" + title)
+                        .queryParam("maxResults", 1)
+                        .queryParam("fields", GOOGLE_BOOKS_FIELDS)
+                        .queryParam("key", GOOGLE_KEY)
+                        .build());
 
                 // Process the response
-                if (response == null || !response.has("items")) {
+                if (books == null) {
                     throw new BookNotFoundException("No book found with the title: " + title);
                 }
 
-                JsonNode bookItem = response.get("items").get(0);
-                return mapToBookDTO(bookItem); // Convert to BookDTO
+                return books.get(0);
 
             } catch (RestClientResponseException exception) {
                 throw handleApiException(exception, "fetching book with title: " + title);
+            } catch (ResourceAccessException exception) {
+                throw handleTransportException(exception, "fetching book with title: " + title);
             } catch (Exception e) {
                 // Handle other exceptions
                 throw new RuntimeException("Unexpected error occurred while fetching book with title: " + title + ". " + e.getMessage());
             }
-        });
+        }), googleBooksExecutor));
+    }
+
+
+    /**
+     * Fetches a single book by its Google Books volume id.
+     *
+     * @param id The Google Books volume id.
+     * @return The {@link BookDTO} of the volume.
+     *
+     * @throws CustomAuthenticationException If there is an error with the API key.
+     * @throws BookNotFoundException If no volume exists with the given id.
+     * @throws ExternalServiceException If there is an error with the external service or something unexpected happened.
+     */
+    public BookDTO fetchBookById(String id) {
+        String key = RequestCoalescer.key("volume", id, 1, 0);
+        return requestCoalescer.execute(key, () -> googleBooksFallback.call(key, () -> {
+            try {
+                JsonNode response = googleBooksClient.get()
+                        .uri(uriBuilder -> uriBuilder
+                                .path("/volumes/{id}")
+                                .queryParam("fields", GOOGLE_BOOK_FIELDS)
+                                .queryParam("key", GOOGLE_KEY)
+                                .build(id))
+                        .retrieve()
+                        .body(JsonNode.class);
+
+                BookDTO book = (response != null) ? mapToBookDTO(response) : null;
+                if (book == null) {
+                    throw new BookNotFoundException("No book found with the id: " + id + ".");
+                }
+
+                bookCatalog.record(List.of(book));
+                return book;
+            }
+            catch (RestClientResponseException exception) {
+                throw handleApiException(exception, "fetching book with id " + id);
+            }
+            catch (ResourceAccessException exception) {
+                throw handleTransportException(exception, "fetching book with id " + id);
+            }
+        }));
     }
 
 
@@ -95,39 +180,75 @@ public class BookApiClient {
      * @throws ExternalServiceException If there is an error with the external service or something unexpected happened.
      */
     public List<BookDTO> fetchBooks(String search, Integer limit) {
-        // requesting books from Google Books API
-        try {
-            JsonNode response = googleBooksClient.get()
-                    .uri(uriBuilder -> uriBuilder
-                            .path("/volumes")
-                            .queryParam("q", search)
-                            .queryParam("maxResults", limit)
-                            .queryParam("fields", "items(id,volumeInfo/title,volumeInfo/authors,volumeInfo/publisher,volumeInfo/publishedDate,volumeInfo/description,volumeInfo/pageCount,volumeInfo/categories,volumeInfo/imageLinks/thumbnail,volumeInfo/language)")
-                            .queryParam("key", GOOGLE_KEY)
-                            .build())
-                    .retrieve()
-                    .body(JsonNode.class);
-
-            // checking if the response contains books
-            if (response == null || !response.has("items")) {
-                throw new BookNotFoundException("No books found for search: " + search + ".");
-            }
+        return fetchBooks(search, limit, 0);
+    }
 
-            List<BookDTO> books = new ArrayList<>();
-            // mapping each returned book to a BookDTO
-            for (JsonNode bookItem: response.get("items")) {
-                books.add(mapToBookDTO(bookItem));
-            }
 
-            return books;
-        }
-        catch (RestClientResponseException e) {
-            throw handleApiException(e, "fetching books for search " + search);
-        }
-        catch (Exception e) {
-            // Handle other exceptions
-            throw new RuntimeException("Unexpected error occurred while fetching books for search: " + search + ". " + e.getMessage());
-        }
+    /**
+     * Fetches a page of the books matching the provided search term, starting at book number offset+1 (0-based indexing).
+     *
+     * @param search The search term used to query for books. This should be a non-empty string.
+     * @param limit The maximum number of results to return. This should be a positive integer.
+     * @param offset The start index of where to start fetching books from.
+     * @return A list of {@link BookDTO} objects representing the books that match the search term.
+     *
+     * @throws CustomBadRequestException If the search term is empty or the limit is non-positive.
+     * @throws CustomAuthenticationException If there is an error with the API key.
+     * @throws BookNotFoundException If no books are found for the search term.
+     * @throws ExternalServiceException If there is an error with the external service or something unexpected happened.
+     */
+    public List<BookDTO> fetchBooks(String search, Integer limit, int offset) {
+        return fetchBooks(search, limit, offset, BookView.FULL);
+    }
+
+
+    /**
+     * Fetches a page of the books matching the provided search term in the given view. Only the fields of the view are
+     * requested from Google Books, and books fetched in a partial view are not written to the {@link BookCatalog}.
+     *
+     * @param search The search term used to query for books. This should be a non-empty string.
+     * @param limit The maximum number of results to return. This should be a positive integer.
+     * @param offset The start index of where to start fetching books from.
+     * @param view The fields to fetch; the other fields of the returned books are empty.
+     * @return A list of {@link BookDTO} objects representing the books that match the search term.
+     *
+     * @throws CustomBadRequestException If the search term is empty or the limit is non-positive.
+     * @throws CustomAuthenticationException If there is an error with the API key.
+     * @throws BookNotFoundException If no books are found for the search term.
+     * @throws ExternalServiceException If there is an error with the external service or something unexpected happened.
+     */
+    public List<BookDTO> fetchBooks(String search, Integer limit, int offset, BookView view) {
+        String key = RequestCoalescer.key(viewKind("search", view), search, limit, offset);
+        return requestCoalescer.execute(key, () -> googleBooksFallback.call(key, () -> {
+            // requesting books from Google Books API
+            try {
+                List<BookDTO> books = requestVolumes(view, uriBuilder -> uriBuilder
+                        .path("/volumes")
+                        .queryParam("q", search)
+                        .queryParam("maxResults", limit)
+                        .queryParam("startIndex", offset)
+                        .queryParam("fields", view.googleBooksFields())
+                        .queryParam("key", GOOGLE_KEY)
+                        .build());
+
+                // checking if the response contains books
+                if (books == null) {
+                    throw new BookNotFoundException("No books found for search: " + search + ".");
+                }
+
+                return books;
+            }
+            catch (RestClientResponseException e) {
+                throw handleApiException(e, "fetching books for search " + search);
+            }
+            catch (ResourceAccessException exception) {
+                throw handleTransportException(exception, "fetching books for search " + search);
+            }
+            catch (Exception e) {
+                // Handle other exceptions
+                throw new RuntimeException("Unexpected error occurred while fetching books for search: " + search + ". " + e.getMessage());
+            }
+        }));
     }
 
 
@@ -148,39 +269,36 @@ public class BookApiClient {
      * @throws ExternalServiceException If there is an error with the external service or something unexpected happened.
      */
     public List<BookDTO> fetchBooksByGenre(String genre, int limit) {
-        // fetching a 'limit' number of books for a specific genre from the Google Books API
-        try {
-            JsonNode response = googleBooksClient.get()
-                    .uri(uriBuilder -> uriBuilder
-                            .path("/volumes")
-                            .queryParam("q", "subject:" + genre)
-                            .queryParam("maxResults", limit)
-                            .queryParam("fields", "items(id,volumeInfo/title,volumeInfo/authors,volumeInfo/publisher,volumeInfo/publishedDate,volumeInfo/description,volumeInfo/pageCount,volumeInfo/categories,volumeInfo/imageLinks/thumbnail,volumeInfo/language)")
-                            .queryParam("key", GOOGLE_KEY)
-                            .build())
-                    .retrieve()
-                    .body(JsonNode.class);
-
-            // validating if response contains books
-            if (response == null || !response.has("items")) {
-                throw new BookNotFoundException("No books found for genre: " + genre + ".");
-            }
+        String key = RequestCoalescer.key("genre", genre, limit, 0);
+        return requestCoalescer.execute(key, () -> googleBooksFallback.call(key, () -> {
+            // fetching a 'limit' number of books for a specific genre from the Google Books API
+            try {
+                List<BookDTO> books = requestVolumes(uriBuilder -> uriBuilder
+                        .path("/volumes")
+                        .queryParam("q", "subject:" + genre)
+                        .queryParam("maxResults", limit)
+                        .queryParam("fields", GOOGLE_BOOKS_FIELDS)
+                        .queryParam("key", GOOGLE_KEY)
+                        .build());
+
+                // validating if response contains books
+                if (books == null) {
+                    throw new BookNotFoundException("No books found for genre: " + genre + ".");
+                }
 
-            List<BookDTO> books = new ArrayList<>();
-            // mapping the books to BookDTOs
-            for (JsonNode bookItem: response.get("items")) {
-                books.add(mapToBookDTO(bookItem));
+                return books;
             }
-
-            return books;
-        }
-        catch (RestClientResponseException exception) {
-            throw handleApiException(exception, "fetching books for the genre " + genre);
-        }
-        catch (Exception e) {
-            // Handle other exceptions
-            throw new RuntimeException("Unexpected error occurred while fetching books for genre: " + genre + ". " + e.getMessage());
-        }
+            catch (RestClientResponseException exception) {
+                throw handleApiException(exception, "fetching books for the genre " + genre);
+            }
+            catch (ResourceAccessException exception) {
+                throw handleTransportException(exception, "fetching books for the genre " + genre);
+            }
+            catch (Exception e) {
+                // Handle other exceptions
+                throw new RuntimeException("Unexpected error occurred while fetching books for genre: " + genre + ". " + e.getMessage());
+            }
+        }));
     }
 
     /**
@@ -200,37 +318,55 @@ public class BookApiClient {
      * @throws ExternalServiceException If there is an error with the external service or something unexpected happened.
      */
     public List<BookDTO> fetchBooksByGenre(String genre, int limit, int offset) {
-        try {
-            JsonNode response = googleBooksClient.get()
-                    .uri(uriBuilder -> uriBuilder
-                            .path("/volumes")
-                            .queryParam("q", "subject:" + genre)
-                            .queryParam("maxResults", limit)
-                            .queryParam("startIndex", offset)
-                            .queryParam("fields", "items(id,volumeInfo/title,volumeInfo/authors,volumeInfo/publisher,volumeInfo/publishedDate,volumeInfo/description,volumeInfo/pageCount,volumeInfo/categories,volumeInfo/imageLinks/thumbnail,volumeInfo/language)")
-                            .queryParam("key", GOOGLE_KEY)
-                            .build())
-                    .retrieve()
-                    .body(JsonNode.class);
-
-            if (response == null || !response.has("items")) {
-                throw new BookNotFoundException("No books found for genre: " + genre + ".");
-            }
+        return fetchBooksByGenre(genre, limit, offset, BookView.FULL);
+    }
 
-            List<BookDTO> books = new ArrayList<>();
-            for (JsonNode bookItem: response.get("items")) {
-                books.add(mapToBookDTO(bookItem));
-            }
 
-            return books;
-        }
-        catch (RestClientResponseException exception) {
-            throw handleApiException(exception, "fetching books for the genre " + genre);
-        }
-        catch (Exception e) {
-            // Handle other exceptions
-            throw new RuntimeException("Unexpected error occurred while fetching books for genre: " + genre + ". " + e.getMessage());
-        }
+    /**
+     * Fetches a page of the books in a given genre in the given view. Only the fields of the view are requested from
+     * Google Books, and books fetched in a partial view are not written to the {@link BookCatalog}.
+     *
+     * @param genre The genre term used to query for books. This should be a non-empty string.
+     * @param limit The maximum number of books to return. This should be a positive integer.
+     * @param offset The start index of where to start fetching books from.
+     * @param view The fields to fetch; the other fields of the returned books are empty.
+     * @return A list of {@link BookDTO} objects representing the books that match the search term.
+     *
+     * @throws CustomBadRequestException If the query parameters provided to the API were invalid.
+     * @throws CustomAuthenticationException If there is an error with the API key.
+     * @throws BookNotFoundException If no books are found for the genre.
+     * @throws ExternalServiceException If there is an error with the external service or something unexpected happened.
+     */
+    public List<BookDTO> fetchBooksByGenre(String genre, int limit, int offset, BookView view) {
+        String key = RequestCoalescer.key(viewKind("genre", view), genre, limit, offset);
+        return requestCoalescer.execute(key, () -> googleBooksFallback.call(key, () -> {
+            try {
+                List<BookDTO> books = requestVolumes(view, uriBuilder -> uriBuilder
+                        .path("/volumes")
+                        .queryParam("q", "subject:" + genre)
+                        .queryParam("maxResults", limit)
+                        .queryParam("startIndex", offset)
+                        .queryParam("fields", view.googleBooksFields())
+                        .queryParam("key", GOOGLE_KEY)
+                        .build());
+
+                if (books == null) {
+                    throw new BookNotFoundException("No books found for genre: " + genre + ".");
+                }
+
+                return books;
+            }
+            catch (RestClientResponseException exception) {
+                throw handleApiException(exception, "fetching books for the genre " + genre);
+            }
+            catch (ResourceAccessException exception) {
+                throw handleTransportException(exception, "fetching books for the genre " + genre);
+            }
+            catch (Exception e) {
+                // Handle other exceptions
+                throw new RuntimeException("Unexpected error occurred while fetching books for genre: " + genre + ". " + e.getMessage());
+            }
+        }));
     }
 
 
@@ -250,15 +386,16 @@ public class BookApiClient {
      * @throws BookNotFoundException If no books are found for the genre.
      * @throws ExternalServiceException If there is an error with the external service or something unexpected happened.
      */
+    @Override
     public CompletableFuture<JsonNode> fetchBooksByGenreAsync(String genre, int limit, int offset) {
-        return CompletableFuture.supplyAsync(() -> {
+        return requestCoalescer.executeAsync(RequestCoalescer.key("genre-json", genre, limit, offset), () -> CompletableFuture.supplyAsync(() -> {
                     JsonNode response = googleBooksClient.get()
                             .uri(uriBuilder -> uriBuilder
                                     .path("/volumes")
                                     .queryParam("q", "subject:" + genre)
                                     .queryParam("maxResults", limit)
                                     .queryParam("startIndex", offset)
-                                    .queryParam("fields", "items(id,volumeInfo/title,volumeInfo/authors,volumeInfo/publisher,volumeInfo/publishedDate,volumeInfo/description,volumeInfo/pageCount,volumeInfo/categories,volumeInfo/imageLinks/thumbnail,volumeInfo/language)")
+                                    .queryParam("fields", GOOGLE_BOOKS_FIELDS)
                                     .queryParam("key", GOOGLE_KEY)
                                     .build())
                             .retrieve()
@@ -269,108 +406,168 @@ public class BookApiClient {
                     }
 
                     return response;
-                }).exceptionally(ex -> {
-
-                    if (ex.getCause() instanceof RestClientResponseException restEx) {
-                        throw handleApiException(restEx, "fetching books for the genre " + genre);
-                    }
-
-                    throw new ExternalServiceException("Unexpected error occurred when fetching books for genre: " + genre + ".");
-        });
+                }, googleBooksExecutor).exceptionally(exception -> {
+                    throw handleAsyncException(exception, "fetching books for the genre " + genre);
+        }));
     }
 
 
     /**
-     * Fetches similar books from the TasteDive API for a given book title.
-     * It handles both client and server errors gracefully and asynchronously fetches the details of each similar book.
-     * If a book fetch fails, the error is recorded in the returned response.
+     * Fetches the titles of similar books from the TasteDive API for a given book title.
+     * It handles both client and server errors gracefully. Resolving the titles to books is left to the
+     * {@link SimilarBooksResolver}.
      *
      * @param title the title of the book to find similar books for
      * @param type  the type of media (default is "book")
      * @param limit the maximum number of similar books to retrieve
-     * @return a {@link SimilarBooksResponse} containing similar book data and a list of errors
+     * @return the names of the similar books, in the order returned by TasteDive
      * @throws BookNotFoundException if no similar books are found
      * @throws CustomBadRequestException if the request contains invalid parameters
      * @throws CustomAuthenticationException if there is an issue with authentication (e.g., invalid API key)
      * @throws ExternalServiceException if the external service returns a 5xx error or any other unexpected error occurs
      */
-    public SimilarBooksResponse fetchSimilarBooks(String title, String type, int limit) {
-        List<String> bookNames = new ArrayList<>();
-
-        try {
-            JsonNode response = tasteDiveClient.get()
-                    .uri(uriBuilder -> uriBuilder
-                            .path("/similar")
-                            .queryParam("q", "book:" + title)
-                            .queryParam("type", type)
-                            .queryParam("limit", limit)
-                            .queryParam("k", TASTEDIVE_KEY)
-                            .build())
-                    .retrieve()
-                    .body(JsonNode.class);
-
-            if (response == null || !response.has("similar")) {
-                throw new BookNotFoundException("No similar books found for the book: " + title + ".");
-            }
+    public List<String> fetchSimilarTitles(String title, String type, int limit) {
+        return tasteDiveFallback.call(RequestCoalescer.key("similar-" + type, title, limit, 0), () -> {
+            List<String> bookNames = new ArrayList<>();
 
-            JsonNode similarBooksJson = response.get("similar").get("results");
+            try {
+                JsonNode response = tasteDiveClient.get()
+                        .uri(uriBuilder -> uriBuilder
+                                .path("/similar")
+                                .queryParam("q", "book:" + title)
+                                .queryParam("type", type)
+                                .queryParam("limit", limit)
+                                .queryParam("k", TASTEDIVE_KEY)
+                                .build())
+                        .retrieve()
+                        .body(JsonNode.class);
 
-            if (similarBooksJson == null || !similarBooksJson.isArray()) {
-                throw new BookNotFoundException("No similar books found for the book: " + title + ".");
-            }
+                if (response == null || !response.has("similar")) {
+                    throw new BookNotFoundException("No similar books found for the book: " + title + ".");
+                }
+
+                JsonNode similarBooksJson = response.get("similar").get("results");
+
+                if (similarBooksJson == null || !similarBooksJson.isArray()) {
+                    throw new BookNotFoundException("No similar books found for the book: " + title + ".");
+                }
 
-            for (JsonNode bookItem: similarBooksJson) {
-                bookNames.add(getTextOrEmpty(bookItem, "name"));
+                for (JsonNode bookItem: similarBooksJson) {
+                    bookNames.add(getTextOrEmpty(bookItem, "name"));
+                }
             }
+            catch (RestClientResponseException exception) {
+                throw handleApiException(exception, "fetching similar books to the book: " + title);
+            }
+            catch (ResourceAccessException exception) {
+                throw handleTransportException(exception, "fetching similar books to the book: " + title);
+            }
+            catch (Exception e) {
+                // Handle other exceptions
+                throw new RuntimeException("Unexpected error occurred while fetching similar books to book: " + title + ". " + e.getMessage());
+            }
+
+            return bookNames;
+        });
+    }
+
+    /**
+     * Requests a page of volumes from Google Books and maps its items to {@link BookDTO}s.
+     * Depending on the {@code google.books.response-mapper} property, the response is either decoded straight from the
+     * stream by the {@link GoogleBooksStreamingMapper} or read into a {@link JsonNode} tree and mapped with {@link #mapToBookDTO}.
+     * Slow requests are hedged by the {@link RequestHedger} (if enabled), and only the books of the winning attempt are
+     * written through to the {@link BookCatalog}.
+     *
+     * @param view The view the fields of the request select.
+     * @param uriFunction Builds the request URI relative to the Google Books base URL.
+     * @return The mapped books, or {@code null} if the response did not contain any "items".
+     * @throws RestClientResponseException If Google Books responded with an error status.
+     */
+    private List<BookDTO> requestVolumes(Function<UriBuilder, URI> uriFunction) {
+        return requestVolumes(BookView.FULL, uriFunction);
+    }
+
+    private List<BookDTO> requestVolumes(BookView view, Function<UriBuilder, URI> uriFunction) {
+        List<BookDTO> books = googleBooksHedger.call(() -> "streaming".equalsIgnoreCase(responseMapper) ? streamVolumes(uriFunction) : readVolumes(uriFunction));
+        // partial books would overwrite the complete ones in the catalog
+        if (books != null && view == BookView.FULL) {
+            bookCatalog.record(books);
         }
-        catch (RestClientResponseException exception) {
-            throw handleApiException(exception, "fetching similar books to the book: " + title);
-        }
-        catch (Exception e) {
-            // Handle other exceptions
-            throw new RuntimeException("Unexpected error occurred while fetching similar books to book: " + title + ". " + e.getMessage());
+        return books;
+    }
+
+    /**
+     * Keeps the coalesced calls and the last known good results of different views apart.
+     */
+    private static String viewKind(String kind, BookView view) {
+        return (view == BookView.FULL) ? kind : kind + "-" + view.name().toLowerCase(Locale.ROOT);
+    }
+
+    private List<BookDTO> streamVolumes(Function<UriBuilder, URI> uriFunction) {
+        return googleBooksClient.get()
+                .uri(uriFunction)
+                .exchange((request, response) -> {
+                    if (response.getStatusCode().isError()) {
+                        throw new RestClientResponseException("Google Books responded with status " + response.getStatusCode().value(),
+                                response.getStatusCode(), response.getStatusText(), response.getHeaders(), null, null);
+                    }
+                    return streamingMapper.readBooks(response.getBody());
+                });
+    }
+
+    private List<BookDTO> readVolumes(Function<UriBuilder, URI> uriFunction) {
+        JsonNode response = googleBooksClient.get()
+                .uri(uriFunction)
+                .retrieve()
+                .body(JsonNode.class);
+
+        if (response == null || !response.has("items")) {
+            return null;
         }
 
-        // map will contain all possible errors which may be thrown when fetching data of all 20 similar books
-        Map<String, String> errorsMap = new HashMap<>();
-        AtomicInteger errorCounter = new AtomicInteger(1);
-
-        // gathering the async calls for all book names
-        List<CompletableFuture<BookDTO>> bookDTOCalls = bookNames.stream()
-                .map(name -> fetchBookByTitle(name)
-                        .handle((result, exception) -> {
-                            if (exception != null) {
-                                errorsMap.put("error " + errorCounter.getAndIncrement(), "Error while fetching data for the similar book with title: " + title);
-                                return null;
-                            }
-                            return result;
-                        })
-                )
-                .toList();
-
-        // executing all the calls asynchronously at once and waiting for them to finish - this is our 'sync' point
-        CompletableFuture<Void> allFutureBooks = CompletableFuture.allOf(
-                bookDTOCalls.toArray(new CompletableFuture[0])
-        );
-
-        // extracting the actual BookDTOs from the bookDTOCalls once allFutureBooks signals 'complete'
-        List<BookDTO> similarBooks = allFutureBooks.thenApply(v ->
-                bookDTOCalls.stream()
-                        .filter(Objects::nonNull)
-                        .map(CompletableFuture::join)
-                        .collect(Collectors.toList())
-                ).join();
-
-        return new SimilarBooksResponse(errorsMap, similarBooks);
+        List<BookDTO> books = new ArrayList<>();
+        for (JsonNode bookItem: response.get("items")) {
+            books.add(mapToBookDTO(bookItem));
+        }
+        return books;
     }
 
     private RuntimeException handleApiException(RestClientResponseException exception, String context) {
-        HttpStatusCode statusCode = exception.getStatusCode();
+        return apiException(exception.getStatusCode(), context);
+    }
+
+
+    /**
+     * Converts the failure of a call made asynchronously the way the synchronous calls do, after unwrapping it from
+     * the {@link CompletionException}. Failures already reported to the client, such as no books found, are kept.
+     */
+    private RuntimeException handleAsyncException(Throwable exception, String context) {
+        Throwable cause = (exception instanceof CompletionException && exception.getCause() != null) ? exception.getCause() : exception;
+        if (cause instanceof RestClientResponseException responseException) {
+            return handleApiException(responseException, context);
+        }
+        if (cause instanceof ResourceAccessException accessException) {
+            return handleTransportException(accessException, context);
+        }
+        if (cause instanceof BookNotFoundException || cause instanceof ExternalServiceException) {
+            return (RuntimeException) cause;
+        }
+        // timeouts, open circuit or no rate limit permit
+        return transportException(cause, context);
+    }
+
+
+    /**
+     * Converts an error status of Google Books or TasteDive into the exception reported to the client.
+     * Shared with the {@link ReactiveBookApiClient}.
+     */
+    static RuntimeException apiException(HttpStatusCode statusCode, String context) {
         if (statusCode.is4xxClientError()) {
             return switch (statusCode.value()) {
                 case 400 -> new CustomBadRequestException("Bad request when " + context + ". Check query parameters.");
                 case 401, 403 -> new CustomAuthenticationException("Unauthorized request when " + context + ". Check validity of API key.");
                 case 404 -> new BookNotFoundException("No books found when " + context + ".");
+                case 429 -> new ExternalServiceException("Quota of the external service exceeded when " + context + ". Try again later.");
                 default -> new RuntimeException("Client error occurred when " + context + ".");
             };
         } else if (statusCode.is5xxServerError()) {
@@ -381,6 +578,29 @@ public class BookApiClient {
     }
 
 
+    /**
+     * Converts a transport failure (connection refused, connect/read timeout, exceeded exchange deadline, no rate
+     * limit permit in time or open circuit) into an {@link ExternalServiceException}, since the upstream could not be reached in time.
+     */
+    private RuntimeException handleTransportException(ResourceAccessException exception, String context) {
+        return transportException(exception.getCause(), context);
+    }
+
+
+    /**
+     * Converts the cause of a transport failure into an {@link ExternalServiceException}. Shared with the {@link ReactiveBookApiClient}.
+     */
+    static RuntimeException transportException(Throwable cause, String context) {
+        if (cause instanceof UpstreamThrottledException) {
+            return new ExternalServiceException("Quota of the external service reached when " + context + ". Try again later.");
+        }
+        if (cause instanceof UpstreamUnavailableException) {
+            return new ExternalServiceException("External service is currently unavailable when " + context + ". Try again later.");
+        }
+        return new ExternalServiceException("External service did not respond in time when " + context + ".");
+    }
+
+
     /**
      * Maps a given {@link JsonNode} representing a book's details to a {@link BookDTO} object.
      * It extracts relevant fields such as title, authors, publisher, description, page count, categories,
@@ -466,7 +686,7 @@ public class BookApiClient {
      */
     private String getImageUrl(JsonNode volumeInfo) {
         JsonNode imageLinks = volumeInfo.get("imageLinks");
-        return (imageLinks != null) ? getTextOrEmpty(imageLinks, "thumbnail") : "https://via.placeholder.com/150x220?text=No+Cover+Available";
+        return (imageLinks != null) ? getTextOrEmpty(imageLinks, "thumbnail") : GoogleBooksStreamingMapper.PLACEHOLDER_COVER_URL;
     }
 
 
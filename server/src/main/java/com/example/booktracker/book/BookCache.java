@@ -1,118 +1,641 @@
 package com.example.booktracker.book;
 
 
+import com.example.booktracker.book.exception.CustomBadRequestException;
 import com.example.booktracker.book.exception.GenreNotInCacheException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
+import org.springframework.util.unit.DataSize;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 
+/**
+ * In-memory cache of books per genre, shared by every user of the explore page.
+ *
+ * The books of a genre are append-only: reading them does not remove them, so the same books serve any number of
+ * users, and Google Books is only asked for more once somebody pages close to the end of a genre. Every user pages
+ * through a genre with an opaque cursor holding the genre, the generation of its books and a position in them.
+ *
+ * The genres of {@code genre-cache.genres} are always cached; other genres are added and evicted at runtime by the
+ * {@link GenrePromoter}. The books of a genre are bounded by their estimated size in memory
+ * ({@code genre-cache.max-size-per-genre}): once a refill goes over it, the oldest books are dropped, and cursors
+ * pointing at them continue at the oldest book left.
+ *
+ * The genres can be restored from a snapshot (see {@link BookCacheSnapshots}) lazily: a restored genre is only
+ * decoded the first time it is used.
+ *
+ * Books added by {@link #setUpCache(Map)} and {@link #updateCachedBooksByGenre(String, List)} are reported to the
+ * listeners added with {@link #addListener(Consumer)}, which is how the {@link GenreCacheCoordinator} learns which
+ * genres to publish to other instances; it reads the books to publish with {@link #getChangesSince}. Books published
+ * by another instance are added with {@link #applyShared}.
+ *
+ * Every genre is an {@link AtomicReference} to an immutable {@link Shelf}: its books, its generation and the Google
+ * Books offset the next refill starts at. Appends and offset reservations replace the shelf with compare-and-set,
+ * and reads never block.
+ */
 @Repository
 public class BookCache {
 
-    private Map<String, List<BookDTO>> cache = new HashMap<>();         // stores the current books in the cache
-    private Map<String, Integer> genreOffset = new HashMap<>();         // keeps track of the offset for each genre in the cache
-    public BookCache() {
-        // Initialize offsets to 0 for all genres
-        Arrays.asList("nonfiction", "fiction", "thriller", "action", "mystery", "history", "horror", "fantasy")
-                .forEach(genre -> genreOffset.put(genre, 9));
+    private final Map<String, AtomicReference<Shelf>> shelves = new ConcurrentHashMap<>();
+    private final Map<String, PendingRestore> pendingRestores = new ConcurrentHashMap<>();
+    private final List<Consumer<Change>> listeners = new CopyOnWriteArrayList<>();
+    private final Set<String> configuredGenres;
+    private final long maxBytesPerGenre;
+
+    // starts at the time of the start-up, so that cursors handed out before a restart are recognized as stale
+    private final AtomicLong generations = new AtomicLong(System.currentTimeMillis());
+
+    @Autowired
+    public BookCache(@Value("${genre-cache.genres:nonfiction,fiction,thriller,action,mystery,history,horror,fantasy}") List<String> genres,
+                     @Value("${genre-cache.max-size-per-genre:2MB}") DataSize maxSizePerGenre) {
+        this.configuredGenres = new LinkedHashSet<>(genres.stream().map(BookCache::normalize).filter(genre -> !genre.isEmpty()).toList());
+        this.maxBytesPerGenre = maxSizePerGenre.toBytes();
+
+        // Initialize offsets to 9 (the books fetched by the initial setup start there) for the configured genres
+        configuredGenres.forEach(genre -> shelves.put(genre, new AtomicReference<>(Shelf.uncached(9))));
     }
 
 
     /**
-     * Updates the in-memory cache with a new cache map containing books for each genre.
-     * The method replaces the current cache with the provided one and updates the genre offset map,
-     * which tracks the number of books stored for each genre. The offset is incremented by the size
-     * of the books list for each genre in the new cache.
+     * @return The genres of {@code genre-cache.genres}, which are set up by the GET /api/books/cache endpoint and never evicted.
+     */
+    public Set<String> getConfiguredGenres() {
+        return Collections.unmodifiableSet(configuredGenres);
+    }
+
+
+    /**
+     * Caches the books of the given genres, replacing the books they had. Each of them gets a new generation,
+     * so cursors into their previous books start over. Genres missing from the map are left untouched.
+     * The offset of each genre is incremented by the number of books cached for it.
      *
      * @param newCache A map where the key is the genre (String) and the value is a list of books (List<BookDTO>)
-     *                 fetched for that genre. This replaces the current cache.
+     *                 fetched for that genre.
      */
     public void setUpCache(Map<String, List<BookDTO>> newCache) {
-        this.cache = newCache;
-        newCache.forEach((genre, books) -> genreOffset.put(genre, genreOffset.get(genre) + books.size()));
+        newCache.forEach((genre, books) -> {
+            BookDTO[] cached = books.toArray(new BookDTO[0]);
+            long bytes = estimate(cached);
+            long generation = generations.incrementAndGet();
+            pendingRestores.remove(genre);
+            Shelf updated = shelves.computeIfAbsent(genre, ignored -> new AtomicReference<>(Shelf.uncached(0)))
+                    .updateAndGet(current -> withinBudget(new Shelf(cached, generation, current.offset() + cached.length, 0, current.offset(), bytes)));
+            notifyListeners(genre, updated, cached.length);
+        });
     }
 
 
     /**
-     * Fetches the stored cache
+     * Removes a genre that is not configured in {@code genre-cache.genres} from the cache.
      *
-     * @return cache The current in-memory cache for all the genres
+     * @param genre The genre to remove.
+     * @return Whether the genre was removed.
+     */
+    public boolean evict(String genre) {
+        if (configuredGenres.contains(genre)) {
+            return false;
+        }
+        pendingRestores.remove(genre);
+        return shelves.remove(genre) != null;
+    }
+
+
+    /**
+     * Fetches a snapshot of the stored cache
+     *
+     * @return cache The books currently in the in-memory cache for all the cached genres
      */
     public Map<String, List<BookDTO>> getCache() {
+        restoreAllPending();
+        Map<String, List<BookDTO>> cache = new HashMap<>();
+        shelves.forEach((genre, shelf) -> {
+            Shelf current = shelf.get();
+            if (current.isCached()) {
+                cache.put(genre, current.list());
+            }
+        });
         return cache;
     }
 
 
     /**
-     * Fetches genreOffset map
+     * Fetches a snapshot of the genre offsets
      *
-     * @return genreOffset The hashmap containing how many books have been fetched for each genre so far (offset)
+     * @return genreOffset A map containing how many books have been fetched for each genre so far (offset)
      */
     public Map<String, Integer> getGenreOffset() {
+        restoreAllPending();
+        Map<String, Integer> genreOffset = new HashMap<>();
+        shelves.forEach((genre, shelf) -> genreOffset.put(genre, shelf.get().offset()));
         return genreOffset;
     }
 
 
     /**
-     * Retrieves a specified number of books from the cache for a given genre.
-     * If the genre is not present in the cache or if there are no books available for the genre,
-     * it throws a {@link GenreNotInCacheException}. The method returns up to the specified limit
-     * of books from the cache and removes the returned books from the cache afterward.
+     * Fetches a snapshot of how many books are cached per genre, without copying the books or restoring genres
+     *
+     * @return A map containing the number of cached books for each of the cached genres
+     */
+    public Map<String, Integer> getCachedCounts() {
+        Map<String, Integer> counts = new HashMap<>();
+        pendingRestores.forEach((genre, pending) -> counts.put(genre, pending.books()));
+        shelves.forEach((genre, shelf) -> {
+            Shelf current = shelf.get();
+            if (current.isCached()) {
+                counts.put(genre, current.books().length);
+            }
+        });
+        return counts;
+    }
+
+
+    /**
+     * Retrieves the next page of books of a genre for a user paging through it. The books stay in the cache.
+     * If the genre is not present in the cache, it throws a {@link GenreNotInCacheException}.
      *
-     * @param genre The genre (as a String) for which cached books are requested.
-     * @param limit The number of books to return. If the limit is greater than the number of cached books,
-     *              it returns the available number of books.
-     * @return A list of {@link BookDTO} objects, containing the books from the specified genre.
-     * @throws GenreNotInCacheException If the genre does not exist in the cache or if the genre has no cached books.
+     * @param genre  The genre (as a String) for which cached books are requested.
+     * @param cursor The cursor returned with the previous page, or {@code null} for the first page. A cursor into
+     *               books the genre no longer has (after the cache was set up again) starts over at the first page.
+     * @param limit  The number of books to return. If fewer books are left after the cursor, it returns those.
+     * @return The books of the page and the cursor of the next page. The page is empty if the user reached the end of
+     *         the cached books, in which case the cursor stays the same and can be retried after a refill.
+     * @throws GenreNotInCacheException If the genre does not exist in the cache.
+     * @throws CustomBadRequestException If the cursor is not a cursor of the genre.
      */
-    public List<BookDTO> getCachedBooksByGenre(String genre, int limit) {
-        List<BookDTO> books = cache.get(genre);
-        if (books == null) {
+    public Page getPage(String genre, String cursor, int limit) {
+        Shelf current = cachedShelf(genre, genre + " is not an existing genre in the cache").get();
+        if (!current.isCached()) {
             throw new GenreNotInCacheException(genre + " is not an existing genre in the cache");
         }
 
-        int booksToReturn = Math.min(limit, books.size());
-        List<BookDTO> returnBooks = new ArrayList<>(books.subList(books.size() - booksToReturn, books.size()));
+        int index = 0;
+        if (cursor != null && !cursor.isEmpty()) {
+            Cursor decoded = Cursor.decode(genre, cursor);
+            if (decoded.generation() == current.generation()) {
+                // books dropped for the memory budget are skipped
+                index = (int) Math.min(Math.max((long) decoded.position() - current.start(), 0), current.books().length);
+            }
+        }
+        return current.page(genre, index, limit);
+    }
 
-        // Remove the returned books from the cache
-        books.subList(books.size() - booksToReturn, books.size()).clear();
 
-        return returnBooks;
+    /**
+     * Serves a page of the GET /api/books/{genre} endpoint from the cache, if the cache holds every book of the page.
+     * Only genres whose cached books are consecutive Google Books results qualify.
+     *
+     * @param genre  The genre of the page.
+     * @param offset The Google Books offset of the first book of the page.
+     * @param limit  The size of the page.
+     * @return The page, or an empty {@link Optional} if the genre is not cached or the cache does not hold the whole page.
+     */
+    public Optional<Page> findBooks(String genre, int offset, int limit) {
+        restorePending(genre);
+        AtomicReference<Shelf> shelf = shelves.get(genre);
+        Shelf current = (shelf == null) ? null : shelf.get();
+        if (current == null || !current.isCached() || !current.isConsecutive()) {
+            return Optional.empty();
+        }
+
+        long index = (long) offset - current.firstOffset();
+        if (index < 0 || index + limit > current.books().length) {
+            return Optional.empty();
+        }
+        return Optional.of(current.page(genre, (int) index, limit));
     }
 
 
     /**
      * Updates the cache with new books for a given genre. If the genre is not present in the cache,
-     * it throws a {@link GenreNotInCacheException}. The method appends the new books to the existing
-     * list of books for the genre and updates the cache accordingly. It also updates the genre offset
-     * based on the number of new books added.
+     * it throws a {@link GenreNotInCacheException}. The method atomically appends the new books to the existing
+     * books of the genre, which keeps every cursor into the genre valid. The offset is not changed, it has to be
+     * reserved with {@link #reserveOffset(String, int)} before the new books are fetched.
      *
      * @param genre The genre (as a String) for which the cached books should be updated.
      * @param newBooks A list of {@link BookDTO} objects representing the new books to be added to the cache.
+     * @return The books of the genre right after the new books were added.
      * @throws GenreNotInCacheException If the genre does not exist in the cache.
      */
     public List<BookDTO> updateCachedBooksByGenre(String genre, List<BookDTO> newBooks) {
-        List<BookDTO> existingBooks = cache.get(genre);
-        if (existingBooks == null) {
-            throw new GenreNotInCacheException(genre + " is not an existing genre in the cache.");
-        }
-        existingBooks.addAll(newBooks);
-        cache.put(genre, existingBooks);
-        updateOffsetForGenre(genre, newBooks.size());
+        AtomicReference<Shelf> shelf = cachedShelf(genre, genre + " is not an existing genre in the cache.");
+        BookDTO[] added = newBooks.toArray(new BookDTO[0]);
+        long addedBytes = estimate(added);
 
-        return existingBooks;
+        Shelf updated = update(shelf, current -> {
+            if (!current.isCached()) {
+                throw new GenreNotInCacheException(genre + " is not an existing genre in the cache.");
+            }
+            BookDTO[] books = Arrays.copyOf(current.books(), current.books().length + added.length);
+            System.arraycopy(added, 0, books, current.books().length, added.length);
+            return withinBudget(new Shelf(books, current.generation(), current.offset(), current.start(), current.firstOffset(), current.bytes() + addedBytes));
+        });
+        notifyListeners(genre, updated, added.length);
+        return updated.list();
     }
 
     public int getOffsetForGenre(String genre) throws GenreNotInCacheException {
-        Integer offset = genreOffset.get(genre);
-        if (offset == null) {
-            throw new GenreNotInCacheException(genre + " is not an existing genre in the cache.");
+        return cachedShelf(genre, genre + " is not an existing genre in the cache.").get().offset();
+    }
+
+
+    /**
+     * Atomically reserves the next range of Google Books offsets of a genre for a refill, so that concurrent refills
+     * of the same genre never fetch the same books.
+     *
+     * @param genre The genre to refill.
+     * @param count The number of books the refill fetches.
+     * @return The offset the refill starts at.
+     * @throws GenreNotInCacheException If the genre does not exist in the cache.
+     */
+    public int reserveOffset(String genre, int count) {
+        AtomicReference<Shelf> shelf = cachedShelf(genre, genre + " is not an existing genre in the cache.");
+        return update(shelf, current -> current.withOffset(current.offset() + count)).offset() - count;
+    }
+
+
+    /**
+     * Gives back an offset range reserved for a refill that failed, unless a later range was reserved in the meantime.
+     *
+     * @param genre  The genre of the refill.
+     * @param offset The offset returned by {@link #reserveOffset(String, int)}.
+     * @param count  The count passed to {@link #reserveOffset(String, int)}.
+     */
+    public void releaseOffset(String genre, int offset, int count) {
+        AtomicReference<Shelf> shelf = shelves.get(genre);
+        if (shelf != null) {
+            update(shelf, current -> (current.offset() == offset + count) ? current.withOffset(offset) : current);
+        }
+    }
+
+    /**
+     * Registers a listener called with the books added by {@link #setUpCache(Map)} and
+     * {@link #updateCachedBooksByGenre(String, List)}, on the thread that added them. Books added by
+     * {@link #applyShared} or restored from a snapshot are not reported.
+     *
+     * @param listener The listener.
+     */
+    public void addListener(Consumer<Change> listener) {
+        listeners.add(listener);
+    }
+
+
+    /**
+     * @param genre The genre.
+     * @return The generation of the books of the genre and the position after its last book, or an empty
+     *         {@link Optional} if the genre is not cached.
+     */
+    public Optional<End> getEnd(String genre) {
+        restorePending(genre);
+        AtomicReference<Shelf> shelf = shelves.get(genre);
+        Shelf current = (shelf == null) ? null : shelf.get();
+        if (current == null || !current.isCached()) {
+            return Optional.empty();
+        }
+        return Optional.of(new End(current.generation(), current.start() + current.books().length));
+    }
+
+
+    /**
+     * Reports the books a genre holds after an end, including the books of a genre still waiting to be restored from
+     * a snapshot.
+     *
+     * @param genre The genre.
+     * @param since The end the books are reported after. If it is of another generation, or before the first book the
+     *              genre still holds, every book of the genre is reported.
+     * @return The books after the end, or an empty {@link Optional} if the genre is not cached or holds no book after it.
+     */
+    public Optional<Change> getChangesSince(String genre, End since) {
+        restorePending(genre);
+        AtomicReference<Shelf> shelf = shelves.get(genre);
+        Shelf current = (shelf == null) ? null : shelf.get();
+        if (current == null || !current.isCached()) {
+            return Optional.empty();
+        }
+
+        int end = current.start() + current.books().length;
+        int position = (current.generation() == since.generation()) ? Math.max(since.position(), current.start()) : current.start();
+        if (position >= end) {
+            return Optional.empty();
+        }
+        return Optional.of(new Change(genre, current.generation(), position,
+                List.of(Arrays.copyOfRange(current.books(), position - current.start(), current.books().length)),
+                current.firstOffset() + position - current.start(), current.offset(), current.start()));
+    }
+
+
+    /**
+     * Adds books published by another instance to a configured genre. Books of the generation the genre holds are
+     * appended if they start at its end and ignored if it already holds them. Books of another generation, or that
+     * do not follow the books held, replace the books of the genre and take over their generation, so that cursors
+     * handed out by any instance stay valid on every other one.
+     *
+     * @param genre       The configured genre.
+     * @param generation  The generation of the books.
+     * @param position    The position of the first book in the generation.
+     * @param books       The books.
+     * @param firstOffset The Google Books offset of the first book.
+     * @param offset      The Google Books offset the next refill starts at.
+     * @return The number of books added.
+     */
+    public int applyShared(String genre, long generation, int position, List<BookDTO> books, int firstOffset, int offset) {
+        restorePending(genre);
+        AtomicReference<Shelf> shelf = shelves.get(genre);
+        if (!configuredGenres.contains(genre) || shelf == null || books.isEmpty()) {
+            return 0;
+        }
+
+        BookDTO[] shared = books.toArray(new BookDTO[0]);
+        long sharedBytes = estimate(shared);
+        generations.accumulateAndGet(generation, Math::max);
+        Shelf[] previous = new Shelf[1];
+        Shelf updated = update(shelf, current -> {
+            previous[0] = current;
+            if (current.isCached() && current.generation() == generation) {
+                int end = current.start() + current.books().length;
+                if (position < end) {
+                    return current;         // already held
+                }
+                if (position == end) {
+                    BookDTO[] appended = Arrays.copyOf(current.books(), current.books().length + shared.length);
+                    System.arraycopy(shared, 0, appended, current.books().length, shared.length);
+                    return withinBudget(new Shelf(appended, generation, Math.max(current.offset(), offset), current.start(), current.firstOffset(), current.bytes() + sharedBytes));
+                }
+            }
+            return withinBudget(new Shelf(shared, generation, offset, position, firstOffset, sharedBytes));
+        });
+        // books already held leave the shelf as it was
+        return (updated == previous[0]) ? 0 : shared.length;
+    }
+
+    /**
+     * Takes a consistent snapshot of every cached genre, for {@link BookCacheSnapshots}. Genres still waiting to be
+     * restored are not decoded for it, see {@link #getPendingRestores()}.
+     *
+     * @return The books, generation and offsets of each cached genre.
+     */
+    public Map<String, GenreSnapshot> snapshot() {
+        Map<String, GenreSnapshot> snapshot = new HashMap<>();
+        shelves.forEach((genre, shelf) -> {
+            Shelf current = shelf.get();
+            if (current.isCached()) {
+                snapshot.put(genre, new GenreSnapshot(Collections.unmodifiableList(Arrays.asList(current.books())), current.generation(), current.offset(), current.start(), current.firstOffset()));
+            }
+        });
+        return snapshot;
+    }
+
+
+    /**
+     * Registers a genre of a snapshot to be restored the first time it is used. Ignored for genres that are not
+     * configured or already cached.
+     *
+     * @param genre  The genre.
+     * @param books  The number of books of the genre in the snapshot.
+     * @param loader Decodes the genre from the snapshot, or returns {@code null} if it cannot be restored.
+     */
+    public void restoreLazily(String genre, int books, Supplier<GenreSnapshot> loader) {
+        AtomicReference<Shelf> shelf = shelves.get(genre);
+        if (configuredGenres.contains(genre) && shelf != null && !shelf.get().isCached()) {
+            pendingRestores.put(genre, new PendingRestore(books, new FutureTask<>(loader::get)));
         }
-        return offset;
     }
 
-    private void updateOffsetForGenre(String genre, int value) {
-        genreOffset.put(genre, genreOffset.get(genre) + value);
+    /**
+     * @return The genres registered with {@link #restoreLazily} that were not used yet.
+     */
+    public Set<String> getPendingRestores() {
+        return Set.copyOf(pendingRestores.keySet());
+    }
+
+
+    /**
+     * Forgets the genres registered with {@link #restoreLazily} that were not used yet, for instances that read their
+     * genres from another one instead.
+     */
+    public void discardPendingRestores() {
+        pendingRestores.clear();
+    }
+
+    private void restorePending(String genre) {
+        PendingRestore pending = pendingRestores.isEmpty() ? null : pendingRestores.get(genre);
+        if (pending == null) {
+            return;
+        }
+
+        // the first user of the genre decodes it, concurrent users wait for it outside of the map
+        GenreSnapshot restored;
+        try {
+            pending.task().run();
+            restored = pending.task().get();
+        }
+        catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        catch (ExecutionException exception) {
+            restored = null;
+        }
+
+        AtomicReference<Shelf> shelf = shelves.get(genre);
+        if (restored != null && shelf != null) {
+            GenreSnapshot snapshot = restored;
+            BookDTO[] books = snapshot.books().toArray(new BookDTO[0]);
+            generations.accumulateAndGet(snapshot.generation(), Math::max);
+            update(shelf, current -> current.isCached() ? current
+                    : withinBudget(new Shelf(books, snapshot.generation(), snapshot.offset(), snapshot.start(), snapshot.firstOffset(), estimate(books))));
+        }
+        pendingRestores.remove(genre, pending);
+    }
+
+    private void notifyListeners(String genre, Shelf shelf, int added) {
+        if (listeners.isEmpty() || added == 0) {
+            return;
+        }
+        // books dropped for the memory budget right away are not reported
+        int kept = Math.min(added, shelf.books().length);
+        int position = shelf.start() + shelf.books().length - kept;
+        Change change = new Change(genre, shelf.generation(), position,
+                List.of(Arrays.copyOfRange(shelf.books(), shelf.books().length - kept, shelf.books().length)),
+                shelf.firstOffset() + position - shelf.start(), shelf.offset(), shelf.start());
+        listeners.forEach(listener -> listener.accept(change));
+    }
+
+    private void restoreAllPending() {
+        pendingRestores.keySet().forEach(this::restorePending);
+    }
+
+    private AtomicReference<Shelf> cachedShelf(String genre, String message) {
+        restorePending(genre);
+        AtomicReference<Shelf> shelf = shelves.get(genre);
+        if (shelf == null) {
+            throw new GenreNotInCacheException(message);
+        }
+        return shelf;
+    }
+
+    /**
+     * Drops the oldest books of a shelf until it fits in {@code genre-cache.max-size-per-genre}, always keeping the newest one.
+     */
+    private Shelf withinBudget(Shelf shelf) {
+        if (shelf.bytes() <= maxBytesPerGenre) {
+            return shelf;
+        }
+
+        BookDTO[] books = shelf.books();
+        long bytes = shelf.bytes();
+        int dropped = 0;
+        while (bytes > maxBytesPerGenre && dropped < books.length - 1) {
+            bytes -= BookSizeEstimator.estimate(books[dropped]);
+            dropped++;
+        }
+        return new Shelf(Arrays.copyOfRange(books, dropped, books.length), shelf.generation(), shelf.offset(),
+                shelf.start() + dropped, shelf.firstOffset() + dropped, bytes);
+    }
+
+    private static long estimate(BookDTO[] books) {
+        long bytes = 0;
+        for (BookDTO book : books) {
+            bytes += BookSizeEstimator.estimate(book);
+        }
+        return bytes;
+    }
+
+    static String normalize(String genre) {
+        return (genre == null) ? "" : genre.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static Shelf update(AtomicReference<Shelf> shelf, UnaryOperator<Shelf> change) {
+        while (true) {
+            Shelf current = shelf.get();
+            Shelf updated = change.apply(current);
+            if (updated == current || shelf.compareAndSet(current, updated)) {
+                return updated;
+            }
+        }
+    }
+
+    /**
+     * A page of the books of a genre.
+     *
+     * @param books      The books of the page.
+     * @param nextCursor The cursor of the next page.
+     * @param remaining  The number of cached books after the page.
+     */
+    public record Page(List<BookDTO> books, String nextCursor, int remaining) {
+    }
+
+    /**
+     * The content of a genre, as written to and read from a snapshot.
+     *
+     * @param books       The cached books.
+     * @param generation  The generation of the books, which keeps cursors valid across a restore.
+     * @param offset      The Google Books offset the next refill starts at.
+     * @param start       The position of the first book in the generation.
+     * @param firstOffset The Google Books offset of the first book.
+     */
+    public record GenreSnapshot(List<BookDTO> books, long generation, int offset, int start, int firstOffset) {
+    }
+
+    /**
+     * Books added to a genre, as reported to the listeners.
+     *
+     * @param genre       The genre.
+     * @param generation  The generation of the books.
+     * @param position    The position of the first added book in the generation.
+     * @param books       The added books.
+     * @param firstOffset The Google Books offset of the first added book.
+     * @param offset      The Google Books offset the next refill of the genre starts at.
+     * @param start       The position of the first book the genre still holds in the generation.
+     */
+    public record Change(String genre, long generation, int position, List<BookDTO> books, int firstOffset, int offset, int start) {
+    }
+
+    /**
+     * The end of the books of a genre.
+     *
+     * @param generation The generation of the books.
+     * @param position   The position after the last book in the generation.
+     */
+    public record End(long generation, int position) {
+    }
+
+    private record PendingRestore(int books, FutureTask<GenreSnapshot> task) {
+    }
+
+    /**
+     * Immutable books of a genre. {@code books} is never written after the shelf was created, and is {@code null}
+     * for genres that are not cached (yet). {@code start} is the position of the first book in the generation, which
+     * grows as books are dropped for the memory budget, and {@code firstOffset} its Google Books offset.
+     * {@code bytes} is the estimated size of the books.
+     */
+    private record Shelf(BookDTO[] books, long generation, int offset, int start, int firstOffset, long bytes) {
+
+        static Shelf uncached(int offset) {
+            return new Shelf(null, 0, offset, 0, offset, 0);
+        }
+
+        boolean isCached() {
+            return books != null;
+        }
+
+        /**
+         * Whether every refill returned all the books it reserved, which makes the books consecutive Google Books results.
+         */
+        boolean isConsecutive() {
+            return firstOffset + books.length == offset;
+        }
+
+        Shelf withOffset(int newOffset) {
+            return new Shelf(books, generation, newOffset, start, firstOffset, bytes);
+        }
+
+        Page page(String genre, int index, int limit) {
+            int end = (int) Math.min((long) index + limit, books.length);
+            String nextCursor = new Cursor(genre, generation, start + end).encode();
+            return new Page(List.of(Arrays.copyOfRange(books, index, end)), nextCursor, books.length - end);
+        }
+
+        List<BookDTO> list() {
+            return isCached() ? new ArrayList<>(Arrays.asList(books)) : new ArrayList<>();
+        }
     }
 
+    /**
+     * Position of a user in the books of a genre, handed out as URL-safe base64 so clients treat it as opaque.
+     * The genre goes last, since genre names may contain the separator.
+     */
+    private record Cursor(String genre, long generation, int position) {
+
+        String encode() {
+            String cursor = generation + "|" + position + "|" + genre;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String genre, String cursor) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", 3);
+                if (parts.length == 3 && parts[2].equals(genre)) {
+                    int position = Integer.parseInt(parts[1]);
+                    if (position >= 0) {
+                        return new Cursor(genre, Long.parseLong(parts[0]), position);
+                    }
+                }
+            }
+            catch (IllegalArgumentException exception) {
+                // not base64 or not numbers, reported below
+            }
+            throw new CustomBadRequestException("The cursor parameter is not a valid cursor for the " + genre + " genre.");
+        }
+    }
 }
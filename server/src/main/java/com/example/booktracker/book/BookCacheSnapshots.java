@@ -0,0 +1,373 @@
+package com.example.booktracker.book;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Periodic snapshots of the {@link BookCache} to a compact binary file, restored on start so that a restarted instance
+ * serves the books it had without fetching them again.
+ *
+ * <ul>
+ *     <li>Every {@code cache-snapshot.interval} milliseconds and on shutdown the cached genres are written to a
+ *     temporary file, forced to disk and atomically moved over {@code cache-snapshot.path}, so a crash leaves either
+ *     the previous or the new snapshot, never a partial one. An existing snapshot is never replaced by an empty one,
+ *     e.g. on a shutdown before the cache was loaded.</li>
+ *     <li>On start the file is memory-mapped and only its header and directory are read. Each genre is decoded from
+ *     the mapping the first time it is used; genres not used until the next snapshot are copied into it as they are.</li>
+ *     <li>The file starts with a magic number and a format version; files of another version are ignored. The directory
+ *     and the books of every genre carry a CRC32, and a genre whose checksum does not match is not restored.</li>
+ * </ul>
+ *
+ * Layout (big-endian): magic, version, creation time, genre count, directory length, directory CRC32, the directory
+ * (per genre: name, generation, offset, start, first offset, book count, position, length and CRC32 of its books),
+ * then the books of every genre.
+ */
+@Component
+public class BookCacheSnapshots {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BookCacheSnapshots.class);
+
+    static final int MAGIC = 0x42544743;            // "BTGC"
+    static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 4 + 4 + 8;
+
+    private final BookCache bookCache;
+    private final boolean enabled;
+    private final Path path;
+    private final Map<String, Entry> restoredEntries = new ConcurrentHashMap<>();        // genre to its entry in the restored snapshot
+
+    @Autowired
+    public BookCacheSnapshots(BookCache bookCache,
+                              @Value("${cache-snapshot.enabled:true}") boolean enabled,
+                              @Value("${cache-snapshot.path:data/book-cache.snapshot}") Path path) {
+        this.bookCache = bookCache;
+        this.enabled = enabled;
+        this.path = path;
+    }
+
+
+    /**
+     * Restores the last snapshot once the application started, before the genre cache is warmed up and before the
+     * {@link GenreCacheCoordinator} decides whether this instance publishes the restored genres or discards them.
+     */
+    @EventListener(ApplicationStartedEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void restoreOnStart() {
+        if (enabled) {
+            restore();
+        }
+    }
+
+
+    /**
+     * Writes a snapshot of the cache periodically.
+     */
+    @Scheduled(fixedDelayString = "${cache-snapshot.interval:300000}", initialDelayString = "${cache-snapshot.interval:300000}")
+    public void writePeriodically() {
+        if (enabled) {
+            write();
+        }
+    }
+
+
+    /**
+     * Writes a last snapshot when the application shuts down.
+     */
+    @PreDestroy
+    public void writeOnShutdown() {
+        if (enabled) {
+            write();
+        }
+    }
+
+
+    /**
+     * Writes every cached genre to the snapshot file, replacing the previous snapshot atomically.
+     *
+     * @return The number of genres written, or -1 if the snapshot could not be written.
+     */
+    public int write() {
+        // pending genres are taken first: a genre restored in the meantime is then in the snapshot of the cache
+        Set<String> pending = bookCache.getPendingRestores();
+        Map<String, BookCache.GenreSnapshot> cached = bookCache.snapshot();
+        try {
+            List<Entry> entries = new ArrayList<>();
+            for (Map.Entry<String, BookCache.GenreSnapshot> genre : cached.entrySet()) {
+                BookCache.GenreSnapshot snapshot = genre.getValue();
+                byte[] payload = encodeBooks(snapshot.books());
+                entries.add(new Entry(genre.getKey(), snapshot.generation(), snapshot.offset(), snapshot.start(),
+                        snapshot.firstOffset(), snapshot.books().size(), ByteBuffer.wrap(payload), crc(payload)));
+            }
+            // genres nobody used since the last restore are copied from the previous snapshot without decoding them
+            for (String genre : pending) {
+                Entry restored = restoredEntries.get(genre);
+                if (restored != null && !cached.containsKey(genre)) {
+                    entries.add(restored);
+                }
+            }
+
+            if (entries.isEmpty() && Files.exists(path)) {
+                LOGGER.info("Not replacing the book cache snapshot {} with an empty one", path);
+                return 0;
+            }
+
+            ByteArrayOutputStream directoryBytes = new ByteArrayOutputStream();
+            DataOutputStream directory = new DataOutputStream(directoryBytes);
+            ByteArrayOutputStream booksBytes = new ByteArrayOutputStream();
+
+            // the directory is written first, so the position of the books of each genre has to be known beforehand
+            int directoryLength = 0;
+            for (Entry entry : entries) {
+                directoryLength += stringLength(entry.genre()) + 8 + 4 * 4 + 8 + 4 + 8;
+            }
+
+            long position = HEADER_SIZE + directoryLength;
+            for (Entry entry : entries) {
+                writeString(directory, entry.genre());
+                directory.writeLong(entry.generation());
+                directory.writeInt(entry.offset());
+                directory.writeInt(entry.start());
+                directory.writeInt(entry.firstOffset());
+                directory.writeInt(entry.count());
+                directory.writeLong(position);
+                byte[] payload = new byte[entry.payload().remaining()];
+                entry.payload().duplicate().get(payload);
+                directory.writeInt(payload.length);
+                directory.writeLong(entry.crc());
+                booksBytes.write(payload);
+                position += payload.length;
+            }
+
+            byte[] directoryContent = directoryBytes.toByteArray();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                    .putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putLong(System.currentTimeMillis())
+                    .putInt(entries.size())
+                    .putInt(directoryContent.length)
+                    .putLong(crc(directoryContent))
+                    .flip();
+
+            Path directoryPath = path.toAbsolutePath().getParent();
+            Files.createDirectories(directoryPath);
+            Path temporary = Files.createTempFile(directoryPath, path.getFileName().toString(), ".tmp");
+            try {
+                try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                    ByteBuffer[] content = {header, ByteBuffer.wrap(directoryContent), ByteBuffer.wrap(booksBytes.toByteArray())};
+                    while (Arrays.stream(content).anyMatch(ByteBuffer::hasRemaining)) {
+                        channel.write(content);
+                    }
+                    channel.force(true);
+                }
+                Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+            finally {
+                Files.deleteIfExists(temporary);
+            }
+            return entries.size();
+        }
+        catch (IOException exception) {
+            LOGGER.warn("Could not write the book cache snapshot to {}: {}", path, exception.getMessage());
+            return -1;
+        }
+    }
+
+
+    /**
+     * Maps the snapshot file and registers its genres with the {@link BookCache}, which decodes each of them the
+     * first time it is used.
+     *
+     * @return The number of genres in the snapshot, or -1 if there is no usable snapshot.
+     */
+    public int restore() {
+        MappedByteBuffer mapping;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        catch (NoSuchFileException exception) {
+            return -1;
+        }
+        catch (IOException exception) {
+            LOGGER.warn("Could not read the book cache snapshot {}: {}", path, exception.getMessage());
+            return -1;
+        }
+
+        try {
+            ByteBuffer header = mapping.duplicate();
+            if (header.getInt() != MAGIC) {
+                LOGGER.warn("Ignoring {}: not a book cache snapshot", path);
+                return -1;
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                LOGGER.warn("Ignoring the book cache snapshot {}: format version {} instead of {}", path, version, VERSION);
+                return -1;
+            }
+            header.getLong();
+            int genres = header.getInt();
+            int directoryLength = header.getInt();
+            long directoryCrc = header.getLong();
+
+            ByteBuffer directory = mapping.slice(HEADER_SIZE, directoryLength);
+            if (crc(directory.duplicate()) != directoryCrc) {
+                LOGGER.warn("Ignoring the book cache snapshot {}: its directory is corrupt", path);
+                return -1;
+            }
+
+            for (int i = 0; i < genres; i++) {
+                String genre = readString(directory);
+                long generation = directory.getLong();
+                int offset = directory.getInt();
+                int start = directory.getInt();
+                int firstOffset = directory.getInt();
+                int count = directory.getInt();
+                long position = directory.getLong();
+                int length = directory.getInt();
+                long crc = directory.getLong();
+
+                if (position < 0 || length < 0 || position + length > mapping.capacity()) {
+                    throw new IndexOutOfBoundsException(genre);
+                }
+
+                restoredEntries.put(genre, new Entry(genre, generation, offset, start, firstOffset, count, mapping.slice((int) position, length), crc));
+                bookCache.restoreLazily(genre, count, () -> {
+                    ByteBuffer books = mapping.slice((int) position, length);
+                    if (crc(books.duplicate()) != crc) {
+                        LOGGER.warn("Not restoring the {} genre from the book cache snapshot: its books are corrupt", genre);
+                        return null;
+                    }
+                    return new BookCache.GenreSnapshot(decodeBooks(books, count), generation, offset, start, firstOffset);
+                });
+            }
+            return genres;
+        }
+        catch (BufferUnderflowException | IndexOutOfBoundsException exception) {
+            LOGGER.warn("Ignoring the book cache snapshot {}: it is truncated", path);
+            return -1;
+        }
+    }
+
+    /**
+     * Encodes books in the format of the snapshot, also used for the pages shared by the {@link GenreCacheCoordinator}.
+     */
+    static byte[] encodeBooks(List<BookDTO> books) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        for (BookDTO book : books) {
+            writeString(output, book.getId());
+            writeString(output, book.getTitle());
+            writeStrings(output, book.getAuthors());
+            writeString(output, book.getPublisher());
+            writeString(output, book.getDescription());
+            output.writeInt(book.getPageCount());
+            writeStrings(output, book.getCategories());
+            writeString(output, book.getImageUrl());
+            writeString(output, book.getLanguage());
+        }
+        return bytes.toByteArray();
+    }
+
+    static List<BookDTO> decodeBooks(ByteBuffer input, int count) {
+        List<BookDTO> books = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            books.add(new BookDTO(readString(input), readString(input), readStrings(input), readString(input),
+                    readString(input), input.getInt(), readStrings(input), readString(input), readString(input)));
+        }
+        return books;
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static int stringLength(String value) {
+        return 4 + value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static void writeStrings(DataOutputStream output, List<String> values) throws IOException {
+        if (values == null) {
+            output.writeInt(-1);
+            return;
+        }
+        output.writeInt(values.size());
+        for (String value : values) {
+            writeString(output, value);
+        }
+    }
+
+    private static String readString(ByteBuffer input) {
+        int length = input.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        input.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static List<String> readStrings(ByteBuffer input) {
+        int size = input.getInt();
+        if (size < 0) {
+            return null;
+        }
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(readString(input));
+        }
+        return values;
+    }
+
+    private static long crc(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return crc.getValue();
+    }
+
+    private static long crc(ByteBuffer bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return crc.getValue();
+    }
+
+    /**
+     * A genre in the directory of a snapshot, with its encoded books (in memory, or in the mapping of a restored snapshot).
+     */
+    private record Entry(String genre, long generation, int offset, int start, int firstOffset, int count, ByteBuffer payload, long crc) {
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.booktracker.book;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Persistent catalog of every book fetched from Google Books, stored in the {@code books} table and keyed by volume id.
+ *
+ * Books are recorded write-behind: {@link #record(Collection)} only queues them, and a scheduled task upserts the queued
+ * books in batches so that upstream responses are never slowed down by the database. Reads by id go to the table,
+ * which turns repeated lookups of the same volume into a local indexed read that survives restarts.
+ * Recorded books are also added to the {@link BookSearchIndex} right away.
+ */
+@Service
+public class BookCatalog {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BookCatalog.class);
+
+    private static final String UPSERT_SQL = """
+            INSERT INTO books (id, title, authors, publisher, description, page_count, categories, image_url, language, updated_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP)
+            ON CONFLICT (id) DO UPDATE SET
+                title = EXCLUDED.title,
+                authors = EXCLUDED.authors,
+                publisher = EXCLUDED.publisher,
+                description = EXCLUDED.description,
+                page_count = EXCLUDED.page_count,
+                categories = EXCLUDED.categories,
+                image_url = EXCLUDED.image_url,
+                language = EXCLUDED.language,
+                updated_at = CURRENT_TIMESTAMP
+            """;
+
+    private final BookRepository bookRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final BookSearchIndex bookSearchIndex;
+    private final BlockingQueue<BookDTO> pendingWrites;
+
+    @Value("${book-catalog.batch-size:200}")
+    private int batchSize;
+
+    @Autowired
+    public BookCatalog(BookRepository bookRepository, JdbcTemplate jdbcTemplate, BookSearchIndex bookSearchIndex,
+                       @Value("${book-catalog.queue-capacity:10000}") int queueCapacity) {
+        this.bookRepository = bookRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.bookSearchIndex = bookSearchIndex;
+        this.pendingWrites = new LinkedBlockingQueue<>(queueCapacity);
+    }
+
+
+    /**
+     * Queues books fetched from an upstream to be upserted into the catalog, and indexes them for local search.
+     * Books without an id are ignored. If the queue is full the books are dropped, since the catalog is only an
+     * optimization and the next fetch of the same books will record them again.
+     *
+     * @param books The books to record.
+     */
+    public void record(Collection<BookDTO> books) {
+        for (BookDTO book : books) {
+            if (book != null && book.getId() != null && !book.getId().isEmpty()) {
+                pendingWrites.offer(book);
+            }
+        }
+        bookSearchIndex.index(books);
+    }
+
+
+    /**
+     * Looks up a book in the catalog by its Google Books volume id.
+     *
+     * @param id The volume id.
+     * @return An {@link Optional} containing the book if it was found, or an empty {@link Optional} if it is not
+     *         in the catalog or the catalog could not be read.
+     */
+    public Optional<BookDTO> findById(String id) {
+        try {
+            return bookRepository.findById(id).map(Book::toBookDTO);
+        }
+        catch (DataAccessException exception) {
+            LOGGER.warn("Could not read book {} from the catalog: {}", id, exception.getMessage());
+            return Optional.empty();
+        }
+    }
+
+
+    /**
+     * Upserts the queued books into the {@code books} table in batches of {@code book-catalog.batch-size}.
+     * Runs every {@code book-catalog.flush-interval} milliseconds and once more on shutdown.
+     */
+    @Scheduled(fixedDelayString = "${book-catalog.flush-interval:2000}")
+    @PreDestroy
+    public void flush() {
+        List<BookDTO> batch = new ArrayList<>(batchSize);
+        while (pendingWrites.drainTo(batch, batchSize) > 0) {
+            // the same volume can be queued several times, only the latest copy is written
+            Map<String, BookDTO> latest = new LinkedHashMap<>();
+            batch.forEach(book -> latest.put(book.getId(), book));
+
+            try {
+                upsert(new ArrayList<>(latest.values()));
+            }
+            catch (DataAccessException exception) {
+                LOGGER.warn("Could not write {} books to the catalog: {}", latest.size(), exception.getMessage());
+            }
+            batch.clear();
+        }
+    }
+
+    private void upsert(List<BookDTO> books) {
+        jdbcTemplate.batchUpdate(UPSERT_SQL, books, books.size(), (PreparedStatement statement, BookDTO book) -> {
+            Connection connection = statement.getConnection();
+            statement.setString(1, book.getId());
+            statement.setString(2, book.getTitle());
+            statement.setArray(3, textArray(connection, book.getAuthors()));
+            statement.setString(4, book.getPublisher());
+            statement.setString(5, book.getDescription());
+            statement.setInt(6, book.getPageCount());
+            statement.setArray(7, textArray(connection, book.getCategories()));
+            statement.setString(8, book.getImageUrl());
+            statement.setString(9, book.getLanguage());
+        });
+    }
+
+    private Array textArray(Connection connection, List<String> values) throws SQLException {
+        return connection.createArrayOf("text", (values == null) ? new String[0] : values.toArray(new String[0]));
+    }
+}
@@ -6,11 +6,17 @@ import com.example.booktracker.book.exception.BookNotFoundException;
 import com.example.booktracker.book.exception.ExternalServiceException;
 import com.example.booktracker.book.exception.GenreNotInCacheException;
 import com.example.booktracker.book.exception.CustomBadRequestException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -29,20 +35,68 @@ public class BookController {
      *
      * @param search The search term is what the user inputted in the search bar of the application
      * @param limit  The limit is the number provided by the client service for specifying the number of books needed to be returned back to the user
-     * @return  A ResponseEntity with the body of type Map<String, List<BookDTO>> that contains a 'books' fields with books as its value
+     * @param offset The index of the first book to return, for paging through the results
+     * @param view   "full" for complete books, or "summary" for only their id, title, authors and imageUrl
+     * @return  A ResponseEntity with the body of type Map<String, List<?>> that contains a 'books' fields with books (or their summaries) as its value
      */
     @GetMapping
-    public ResponseEntity<Map<String, List<BookDTO>>> getBooks(@RequestParam(defaultValue = "") String search, @RequestParam(defaultValue = "5") int limit) {
+    public ResponseEntity<Map<String, List<?>>> getBooks(@RequestParam(defaultValue = "") String search, @RequestParam(defaultValue = "5") int limit,
+                                                         @RequestParam(defaultValue = "0") int offset, @RequestParam(defaultValue = "full") String view) {
 
-        // error handling for a request with a missing/invalid search or limit parameters
-        if (search.isEmpty() || limit <= 0) {
-            throw new CustomBadRequestException("Invalid or missing search or limit parameters provided.");
+        // error handling for a request with a missing/invalid search, limit or offset parameters
+        if (search.isEmpty() || limit <= 0 || offset < 0) {
+            throw new CustomBadRequestException("Invalid or missing search, limit or offset parameters provided.");
         }
 
-        List<BookDTO> books =  bookService.getBooks(search, limit);
+        BookView bookView = BookView.parse(view);
+        List<BookDTO> books =  bookService.getBooks(search, limit, offset, bookView);
 
-        Map<String, List<BookDTO>> responseObject = new HashMap<>();        // successfull response object
-        responseObject.put("books", books);
+        Map<String, List<?>> responseObject = new HashMap<>();        // successfull response object
+        responseObject.put("books", bookView.project(books));
+
+        return ResponseEntity.ok(responseObject);
+    }
+
+    /**
+     * Endpoint for typeahead suggestions while a user types in the search bar.
+     * Suggestions are served from memory, so this endpoint can be called on every keystroke; the full search
+     * is only requested once the user submits the search or picks a suggestion.
+     *
+     * @param prefix The text the user typed so far
+     * @param limit  The maximum number of suggestions to return, at most 10
+     * @return  A ResponseEntity with the body of type Map<String, List<Suggestion>> that contains a 'suggestions' field with the suggestions as its value
+     */
+    @GetMapping("/suggest")
+    public ResponseEntity<Map<String, List<BookSuggester.Suggestion>>> suggest(@RequestParam(defaultValue = "") String prefix, @RequestParam(defaultValue = "10") int limit) {
+
+        // validating the limit parameter
+        if (limit <= 0) {
+            throw new CustomBadRequestException("The limit parameter must be a positive integer value.");
+        }
+
+        Map<String, List<BookSuggester.Suggestion>> responseObject = new HashMap<>();
+        responseObject.put("suggestions", bookService.suggest(prefix, limit));
+
+        return ResponseEntity.ok(responseObject);
+    }
+
+    /**
+     * Endpoint for retrieving a single book by its Google Books volume id.
+     * Books that were fetched before are served from the persistent catalog.
+     *
+     * @param id The Google Books volume id of the book
+     * @return  A ResponseEntity with the body of type Map<String, BookDTO> that contains a 'book' field with the requested book as its value
+     */
+    @GetMapping("/volumes/{id}")
+    public ResponseEntity<Map<String, BookDTO>> getBookById(@PathVariable String id) {
+
+        // validating the id parameter
+        if (id.trim().isEmpty()) {
+            throw new CustomBadRequestException("The id parameter is required.");
+        }
+
+        Map<String, BookDTO> responseObject = new HashMap<>();
+        responseObject.put("book", bookService.getBookById(id));
 
         return ResponseEntity.ok(responseObject);
     }
@@ -52,22 +106,29 @@ public class BookController {
      *
      * @param genre The genre which the client is requesting books for
      * @param limit The number of books that should be sent back to the client for the requested genre
-     * @return  A ResponseEntity with the body of type Map<String, List<BookDTO>> that contains a 'books' fields with books from the specified genre as its value
+     * @param offset The index of the first book to return, for paging through the genre
+     * @param view   "full" for complete books, or "summary" for only their id, title, authors and imageUrl
+     * @return  A ResponseEntity with the body of type Map<String, List<?>> that contains a 'books' fields with books (or their summaries) from the specified genre as its value
      */
     @GetMapping("/{genre}")
-    public ResponseEntity<Map<String, List<BookDTO>>> getBooksByGenre(@PathVariable String genre, @RequestParam(defaultValue = "9") int limit) {
+    public ResponseEntity<Map<String, List<?>>> getBooksByGenre(@PathVariable String genre, @RequestParam(defaultValue = "9") int limit,
+                                                                @RequestParam(defaultValue = "0") int offset, @RequestParam(defaultValue = "full") String view) {
 
         // validating limit if it was entered by client
         if (limit <= 0) {
             throw new CustomBadRequestException("The limit parameter must be a positive integer value.");
         }
+        if (offset < 0) {
+            throw new CustomBadRequestException("The offset parameter must not be negative.");
+        }
 
         // delegate call to BookService to fetch books for the genre
-        List<BookDTO> books = bookService.getBooksByGenre(genre, limit);
+        BookView bookView = BookView.parse(view);
+        List<BookDTO> books = bookService.getBooksByGenre(genre, limit, offset, bookView);
 
         // if books were found
-        Map<String, List<BookDTO>> responseObject = new HashMap<>();
-        responseObject.put("books", books);
+        Map<String, List<?>> responseObject = new HashMap<>();
+        responseObject.put("books", bookView.project(books));
 
         return ResponseEntity.ok(responseObject);
     }
@@ -100,31 +161,40 @@ public class BookController {
 
 
     /**
-     * Endpoint for retrieving cached books by genre. This method retrieves a list of books from the server-side
-     * in-memory cache based on the specified genre and limit. If the genre is not found in the cache or the limit
-     * is invalid, an appropriate exception is thrown by the service layer.
+     * Endpoint for paging through the cached books of a genre. This method retrieves the next page of books from the
+     * server-side in-memory cache, which is shared by every user, based on the specified genre, cursor and limit.
+     * If the genre is not found in the cache or the limit or cursor is invalid, an appropriate exception is thrown
+     * by the service layer.
      *
-     * <p>The response body contains a map with a single key "cachedBooks" which maps to the list of books for the
-     * specified genre. If no books are available for the given genre or limit, the list may be empty.</p>
+     * <p>The response body contains a map with the key "cachedBooks", which maps to the books of the page, and the key
+     * "nextCursor", which maps to the opaque cursor of the next page. If the user reached the end of the cached books,
+     * the list is empty and the cursor can be retried once the genre was refilled in the background.</p>
      *
-     * @param genre The genre of books to retrieve from the cache.
-     * @param limit The maximum number of books to return. Default value is 9 if not specified.
+     * @param genre  The genre of books to retrieve from the cache.
+     * @param limit  The maximum number of books to return. Default value is 9 if not specified.
+     * @param cursor The "nextCursor" of the previous page, omitted for the first page.
+     * @param view   "full" for complete books, or "summary" for only their id, title, authors and imageUrl.
      * @return A {@link ResponseEntity} containing a {@link Map} with the key "cachedBooks" and a list of {@link BookDTO}
-     *         objects representing the books retrieved from the cache. The HTTP status code is set to {@link HttpStatus#OK}.
+     *         (or {@link BookSummaryDTO}) objects representing the books retrieved from the cache, and the key "nextCursor".
+     *         The HTTP status code is set to {@link HttpStatus#OK}.
      * @throws GenreNotInCacheException If the specified genre is not present in the cache.
-     * @throws CustomBadRequestException If the limit parameter is less than or equal to 0.
+     * @throws CustomBadRequestException If the limit parameter is less than or equal to 0, the cursor is invalid, or the view is unknown.
      */
     @GetMapping("/cache/{genre}")
-    public ResponseEntity<Map<String, List<BookDTO>>> getCachedBooksByGenre(@PathVariable String genre, @RequestParam(defaultValue = "9") int limit) {
+    public ResponseEntity<Map<String, Object>> getCachedBooksByGenre(@PathVariable String genre, @RequestParam(defaultValue = "9") int limit,
+                                                                     @RequestParam(required = false) String cursor,
+                                                                     @RequestParam(defaultValue = "full") String view) {
 
         // validating limit if it was entered by client
         if (limit <= 0) {
             throw new CustomBadRequestException("The limit parameter must be a positive integer value.");
         }
 
-        List<BookDTO> cachedBooks = bookService.getCachedBooksByGenre(genre, limit);
-        Map<String, List<BookDTO>> cachedBooksResponseMap = new HashMap<>();
-        cachedBooksResponseMap.put("cachedBooks", cachedBooks);
+        BookView bookView = BookView.parse(view);
+        BookCache.Page page = bookService.getCachedBooksByGenre(genre, cursor, limit);
+        Map<String, Object> cachedBooksResponseMap = new HashMap<>();
+        cachedBooksResponseMap.put("cachedBooks", bookView.project(page.books()));
+        cachedBooksResponseMap.put("nextCursor", page.nextCursor());
         return new ResponseEntity<>(cachedBooksResponseMap, HttpStatus.OK);
     }
 
@@ -174,4 +244,69 @@ public class BookController {
         return ResponseEntity.ok(similarBooksResult);
     }
 
+
+    /**
+     * Streaming variant of the similar books endpoint. Every similar book is sent as soon as it resolves instead of
+     * once all of them did, followed by a trailer with the errors and the titles still pending at the deadline.
+     *
+     * <p>With {@code Accept: text/event-stream} the books are sent as Server-Sent Events named "book" and the trailer
+     * as an event named "complete". Otherwise the response is NDJSON: one {@code {"book": ...}} line per book and a
+     * final {@code {"errors": ..., "pending": ...}} line.</p>
+     *
+     * @param title  The title of the book to find similar books for
+     * @param type   The type of media
+     * @param limit  The maximum number of similar books
+     * @param accept The Accept header of the request, deciding between SSE and NDJSON
+     * @return A {@link ResponseEntity} with the emitter the books are streamed through
+     * @throws CustomBadRequestException If the limit parameter is less than or equal to 0.
+     * @throws BookNotFoundException If no similar books are found for the title (before streaming starts).
+     */
+    @GetMapping("/similar/stream")
+    public ResponseEntity<ResponseBodyEmitter> streamSimilarBooks(@RequestParam String title, @RequestParam(defaultValue = "book") String type,
+                                                                  @RequestParam(defaultValue = "20") int limit,
+                                                                  @RequestHeader(value = HttpHeaders.ACCEPT, defaultValue = "") String accept) {
+
+        // validating limit if it was entered by client
+        if (limit <= 0) {
+            throw new CustomBadRequestException("The limit parameter must be a positive integer value.");
+        }
+
+        boolean serverSentEvents = accept.contains(MediaType.TEXT_EVENT_STREAM_VALUE);
+        long timeout = bookService.getSimilarBooksDeadline().plusSeconds(5).toMillis();
+        ResponseBodyEmitter emitter = serverSentEvents ? new SseEmitter(timeout) : new ResponseBodyEmitter(timeout);
+
+        bookService.streamSimilarBooks(title, type, limit, book -> send(emitter, serverSentEvents, "book", Map.of("book", book)))
+                .whenComplete((similarBooks, exception) -> {
+                    if (exception != null) {
+                        emitter.completeWithError(exception);
+                        return;
+                    }
+
+                    Map<String, Object> trailer = new LinkedHashMap<>();
+                    trailer.put("errors", similarBooks.getErrors());
+                    trailer.put("pending", similarBooks.getPending());
+                    send(emitter, serverSentEvents, "complete", trailer);
+                    emitter.complete();
+                });
+
+        MediaType contentType = serverSentEvents ? MediaType.TEXT_EVENT_STREAM : MediaType.APPLICATION_NDJSON;
+        return ResponseEntity.ok().contentType(contentType).body(emitter);
+    }
+
+    private void send(ResponseBodyEmitter emitter, boolean serverSentEvents, String eventName, Object data) {
+        try {
+            if (serverSentEvents) {
+                ((SseEmitter) emitter).send(SseEmitter.event().name(eventName).data(data, MediaType.APPLICATION_JSON));
+            }
+            else {
+                emitter.send(data, MediaType.APPLICATION_JSON);
+                emitter.send("\n", MediaType.TEXT_PLAIN);
+            }
+        }
+        catch (IOException | IllegalStateException exception) {
+            // the client went away or the emitter already timed out, the remaining books are dropped
+            emitter.completeWithError(exception);
+        }
+    }
+
 }
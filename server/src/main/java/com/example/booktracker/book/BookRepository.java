@@ -0,0 +1,12 @@
+package com.example.booktracker.book;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Read access to the persistent book catalog (the {@code books} table).
+ * Writes go through {@link BookCatalog}, which upserts books in batches.
+ */
+@Repository
+public interface BookRepository extends JpaRepository<Book, String> {
+}
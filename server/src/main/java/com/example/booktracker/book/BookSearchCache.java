@@ -0,0 +1,155 @@
+package com.example.booktracker.book;
+
+import com.example.booktracker.book.exception.BookNotFoundException;
+import com.example.booktracker.book.exception.ExternalServiceException;
+import com.example.booktracker.upstream.StaleFallback;
+import com.example.booktracker.upstream.UpstreamExecutor;
+import com.example.booktracker.upstream.UpstreamPriority;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+
+/**
+ * In-process cache of search results for the GET /api/books endpoint, keyed by the normalized search term, limit, offset and view.
+ *
+ * <ul>
+ *     <li>Entries are bounded by their estimated size in memory ({@code search-cache.max-size}), not by their count,
+ *     and are evicted with Caffeine's W-TinyLFU policy so that the few hundred hot queries stay resident.</li>
+ *     <li>Every entry expires {@code search-cache.ttl} after it was written.</li>
+ *     <li>Once an entry is older than {@code search-cache.refresh-after}, the next read still returns it immediately
+ *     and triggers a background reload (stale-while-revalidate), so hot queries never wait on Google Books after the first fill.
+ *     Reloads run in the background lane of the Google Books rate limiter, without the request that triggered them.</li>
+ * </ul>
+ *
+ * Failed lookups (including searches with no results) are not cached. Results served from the last known good data
+ * of an unavailable Google Books (see {@link StaleFallback}) are returned but not cached either, and a reload answered
+ * that way leaves the entry to expire when it would have.
+ */
+@Component
+public class BookSearchCache {
+
+    private final BookApiClient bookApiClient;
+    private final LoadingCache<SearchKey, List<BookDTO>> cache;
+
+    @Autowired
+    public BookSearchCache(BookApiClient bookApiClient,
+                           @Qualifier("googleBooksExecutor") UpstreamExecutor googleBooksExecutor,
+                           MeterRegistry meterRegistry,
+                           @Value("${search-cache.max-size:32MB}") DataSize maxSize,
+                           @Value("${search-cache.ttl:30m}") Duration timeToLive,
+                           @Value("${search-cache.refresh-after:2m}") Duration refreshAfter) {
+        this(bookApiClient, googleBooksExecutor.detached(), meterRegistry, maxSize, timeToLive, refreshAfter, Ticker.systemTicker());
+    }
+
+    BookSearchCache(BookApiClient bookApiClient, Executor reloadExecutor, MeterRegistry meterRegistry,
+                    DataSize maxSize, Duration timeToLive, Duration refreshAfter, Ticker ticker) {
+        this.bookApiClient = bookApiClient;
+        long timeToLiveNanos = timeToLive.toNanos();
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .weigher((SearchKey key, List<BookDTO> books) -> (int) Math.min(Integer.MAX_VALUE, BookSizeEstimator.estimate(books)))
+                .expireAfter(new Expiry<SearchKey, List<BookDTO>>() {
+                    @Override
+                    public long expireAfterCreate(SearchKey key, List<BookDTO> books, long currentTime) {
+                        return StaleFallback.isStale(books) ? 0 : timeToLiveNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(SearchKey key, List<BookDTO> books, long currentTime, long currentDuration) {
+                        return StaleFallback.isStale(books) ? currentDuration : timeToLiveNanos;
+                    }
+
+                    @Override
+                    public long expireAfterRead(SearchKey key, List<BookDTO> books, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .refreshAfterWrite(refreshAfter)
+                .executor(reloadExecutor)
+                .ticker(ticker)
+                .recordStats()
+                .build(new CacheLoader<>() {
+                    @Override
+                    public List<BookDTO> load(SearchKey key) {
+                        return bookApiClient.fetchBooks(key.query(), key.limit(), key.offset(), key.view());
+                    }
+
+                    @Override
+                    public List<BookDTO> reload(SearchKey key, List<BookDTO> oldBooks) {
+                        // nobody waits on a refresh, so it runs in the background lane of the rate limiter
+                        return UpstreamPriority.BACKGROUND.call(() -> load(key));
+                    }
+                });
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "book-search");
+    }
+
+
+    /**
+     * Returns a page of the books matching a search, loading it from Google Books if it is not cached yet.
+     *
+     * @param search The search term, normalized to build the key but sent to Google Books as given.
+     * @param limit  The maximum number of books to return.
+     * @param offset The index of the first book of the page.
+     * @param view   The fields to fetch.
+     * @return A list of {@link BookDTO} objects matching the search. The list is shared and must not be modified.
+     * @throws BookNotFoundException If no books are found for the search term.
+     * @throws ExternalServiceException If there is an error with the external service.
+     */
+    public List<BookDTO> get(String search, int limit, int offset, BookView view) {
+        return cache.get(new SearchKey(RequestCoalescer.normalize(search), search, limit, offset, view));
+    }
+
+
+    /**
+     * Loads a page of the books matching a search from Google Books outside of the cache, and caches it once it arrived.
+     * Meant for prefetches: a request for the same page meanwhile does not wait behind this call, but makes its own.
+     *
+     * @param search The search term, sent to Google Books as given.
+     * @param limit  The maximum number of books to return.
+     * @param offset The index of the first book of the page.
+     * @param view   The fields to fetch.
+     * @return A list of {@link BookDTO} objects matching the search.
+     * @throws BookNotFoundException If no books are found for the search term.
+     * @throws ExternalServiceException If there is an error with the external service.
+     */
+    public List<BookDTO> fetch(String search, int limit, int offset, BookView view) {
+        List<BookDTO> books = bookApiClient.fetchBooks(search, limit, offset, view);
+        if (!StaleFallback.isStale(books)) {
+            cache.put(new SearchKey(RequestCoalescer.normalize(search), search, limit, offset, view), books);
+        }
+        return books;
+    }
+
+    /**
+     * Key of a cached page, identified by the normalized search. The query the entry was first loaded with is kept
+     * (but not compared) so that loads and refreshes send it to Google Books as the user typed it.
+     */
+    private record SearchKey(String search, String query, int limit, int offset, BookView view) {
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof SearchKey key && search.equals(key.search) && limit == key.limit
+                    && offset == key.offset && view == key.view;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(search, limit, offset, view);
+        }
+    }
+}
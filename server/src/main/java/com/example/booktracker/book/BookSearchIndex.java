@@ -0,0 +1,268 @@
+package com.example.booktracker.book;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * In-memory inverted index over the titles, authors, categories and publishers of every book in the {@link BookCatalog}.
+ *
+ * <ul>
+ *     <li>Text is folded to lower case without accents and split into words; a few very common words are dropped.</li>
+ *     <li>Every query word matches the indexed words it is a prefix of, exact matches scoring twice as much.
+ *     A book has to match every query word. Matches are weighted by field (title, then authors, categories and
+ *     publisher) and by how rare the matched word is, and books are returned by descending score.</li>
+ *     <li>Books are indexed as the catalog records them, and the persisted catalog is loaded in the background on
+ *     startup ({@code search-index.load-on-startup}). At most {@code search-index.max-books} books are indexed.</li>
+ * </ul>
+ *
+ * Reads never block: the postings are concurrent maps, and only writers are serialized.
+ */
+@Component
+public class BookSearchIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BookSearchIndex.class);
+
+    private static final Set<String> STOP_WORDS = Set.of("a", "an", "and", "the", "of", "in", "on", "to", "for", "by", "with");
+    private static final float TITLE_WEIGHT = 3f;
+    private static final float AUTHOR_WEIGHT = 2f;
+    private static final float CATEGORY_WEIGHT = 1.5f;
+    private static final float PUBLISHER_WEIGHT = 1f;
+    private static final float PREFIX_MATCH_FACTOR = 0.5f;
+    private static final int MIN_PREFIX_LENGTH = 2;                 // shorter query words only match exactly
+    private static final int LOAD_PAGE_SIZE = 500;
+
+    private final BookRepository bookRepository;
+    private final int maxBooks;
+    private final double localFirstMinRecall;
+    private final boolean loadOnStartup;
+
+    private final Map<String, BookDTO> books = new ConcurrentHashMap<>();                                           // by volume id
+    private final Map<String, Map<String, Float>> termsByBook = new ConcurrentHashMap<>();                          // volume id to its words
+    private final ConcurrentSkipListMap<String, Map<String, Float>> postings = new ConcurrentSkipListMap<>();       // word to volume ids
+    private final Object writeLock = new Object();
+
+    private final Counter servedLocally;
+    private final Counter sentUpstream;
+
+    @Autowired
+    public BookSearchIndex(BookRepository bookRepository,
+                           MeterRegistry meterRegistry,
+                           @Value("${search-index.max-books:200000}") int maxBooks,
+                           @Value("${search-index.load-on-startup:true}") boolean loadOnStartup,
+                           @Value("${book-search.local-first.min-recall:1.0}") double localFirstMinRecall) {
+        this.bookRepository = bookRepository;
+        this.maxBooks = maxBooks;
+        this.loadOnStartup = loadOnStartup;
+        this.localFirstMinRecall = localFirstMinRecall;
+
+        Gauge.builder("book.search-index.books", books, Map::size)
+                .description("Books in the local search index")
+                .register(meterRegistry);
+        this.servedLocally = Counter.builder("book.search.local-first")
+                .tag("outcome", "local")
+                .register(meterRegistry);
+        this.sentUpstream = Counter.builder("book.search.local-first")
+                .tag("outcome", "upstream")
+                .register(meterRegistry);
+    }
+
+
+    /**
+     * Adds books to the index, replacing the indexed words of books that were indexed before.
+     * Books without an id are ignored, and new books are ignored once the index holds {@code search-index.max-books}.
+     *
+     * @param newBooks The books to index.
+     */
+    public void index(Collection<BookDTO> newBooks) {
+        for (BookDTO book : newBooks) {
+            if (book == null || book.getId() == null || book.getId().isEmpty()) {
+                continue;
+            }
+
+            String id = book.getId();
+            Map<String, Float> terms = termWeights(book);
+
+            synchronized (writeLock) {
+                if (!books.containsKey(id) && books.size() >= maxBooks) {
+                    continue;
+                }
+
+                books.put(id, book);
+                Map<String, Float> previousTerms = termsByBook.put(id, terms);
+                if (previousTerms != null) {
+                    previousTerms.keySet().stream()
+                            .filter(term -> !terms.containsKey(term))
+                            .forEach(term -> postings.computeIfPresent(term, (ignored, ids) -> {
+                                ids.remove(id);
+                                return ids.isEmpty() ? null : ids;
+                            }));
+                }
+                terms.forEach((term, weight) -> postings.computeIfAbsent(term, ignored -> new ConcurrentHashMap<>()).put(id, weight));
+            }
+        }
+    }
+
+
+    /**
+     * Searches the index.
+     *
+     * @param query  The search term.
+     * @param limit  The maximum number of books to return.
+     * @param offset The number of best ranked books to skip.
+     * @return The matching books, best match first. Empty if nothing matches or the query has no searchable words.
+     */
+    public List<BookDTO> search(String query, int limit, int offset) {
+        List<String> queryTerms = tokenize(query).stream().distinct().toList();
+        if (queryTerms.isEmpty()) {
+            return List.of();
+        }
+
+        int indexedBooks = Math.max(1, books.size());
+        Map<String, Float> scores = null;
+
+        for (String queryTerm : queryTerms) {
+            Map<String, Float> termScores = new HashMap<>();
+            Map<String, Map<String, Float>> matches = (queryTerm.length() < MIN_PREFIX_LENGTH)
+                    ? singleTerm(queryTerm)
+                    : postings.subMap(queryTerm, true, queryTerm + Character.MAX_VALUE, false);
+
+            matches.forEach((term, ids) -> {
+                float factor = term.equals(queryTerm) ? 1f : PREFIX_MATCH_FACTOR;
+                float rarity = (float) Math.log(1 + (double) indexedBooks / ids.size());
+                ids.forEach((id, weight) -> termScores.merge(id, weight * factor * rarity, Math::max));
+            });
+
+            // every query word has to match
+            if (scores == null) {
+                scores = termScores;
+            }
+            else {
+                scores.keySet().retainAll(termScores.keySet());
+                scores.replaceAll((id, score) -> score + termScores.get(id));
+            }
+            if (scores.isEmpty()) {
+                return List.of();
+            }
+        }
+
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<String, Float>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .skip(offset)
+                .limit(limit)
+                .map(entry -> books.get(entry.getKey()))
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+
+    /**
+     * Serves a page of a search from the index if the index recalls enough books for it, for the local-first search mode.
+     *
+     * @param query  The search term.
+     * @param limit  The size of the page.
+     * @param offset The index of the first book of the page.
+     * @return The page if the index matched at least {@code book-search.local-first.min-recall} of {@code limit} books
+     *         for it, or an empty {@link Optional} if the search should go to Google Books.
+     */
+    public Optional<List<BookDTO>> findLocally(String query, int limit, int offset) {
+        List<BookDTO> page = search(query, limit, offset);
+        if (!page.isEmpty() && page.size() >= Math.ceil(limit * localFirstMinRecall)) {
+            servedLocally.increment();
+            return Optional.of(page);
+        }
+
+        sentUpstream.increment();
+        return Optional.empty();
+    }
+
+    public int size() {
+        return books.size();
+    }
+
+    public Collection<BookDTO> getBooks() {
+        return Collections.unmodifiableCollection(books.values());
+    }
+
+    /**
+     * Loads the persisted catalog into the index in the background once the application started.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadCatalog() {
+        if (loadOnStartup) {
+            Thread.ofVirtual().name("book-search-index-loader").start(this::loadPersistedBooks);
+        }
+    }
+
+    void loadPersistedBooks() {
+        try {
+            Page<Book> page = bookRepository.findAll(PageRequest.of(0, LOAD_PAGE_SIZE, Sort.by("id")));
+            while (true) {
+                index(page.map(Book::toBookDTO).getContent());
+                if (!page.hasNext() || books.size() >= maxBooks) {
+                    break;
+                }
+                page = bookRepository.findAll(page.nextPageable());
+            }
+            LOGGER.info("Indexed {} books of the catalog for local search", books.size());
+        }
+        catch (DataAccessException exception) {
+            LOGGER.warn("Could not load the catalog into the search index: {}", exception.getMessage());
+        }
+    }
+
+    private Map<String, Map<String, Float>> singleTerm(String term) {
+        Map<String, Float> ids = postings.get(term);
+        return (ids == null) ? Map.of() : Map.of(term, ids);
+    }
+
+    private static Map<String, Float> termWeights(BookDTO book) {
+        Map<String, Float> terms = new HashMap<>();
+        addTerms(terms, book.getTitle(), TITLE_WEIGHT);
+        if (book.getAuthors() != null) {
+            book.getAuthors().forEach(author -> addTerms(terms, author, AUTHOR_WEIGHT));
+        }
+        if (book.getCategories() != null) {
+            book.getCategories().forEach(category -> addTerms(terms, category, CATEGORY_WEIGHT));
+        }
+        addTerms(terms, book.getPublisher(), PUBLISHER_WEIGHT);
+        return terms;
+    }
+
+    private static void addTerms(Map<String, Float> terms, String text, float weight) {
+        tokenize(text).forEach(term -> terms.merge(term, weight, Math::max));
+    }
+
+    /**
+     * Splits text into lower case words without accents, dropping very common words.
+     */
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+
+        String folded = Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase(Locale.ROOT);
+
+        return Arrays.stream(folded.split("[^\\p{L}\\p{N}]+"))
+                .filter(term -> !term.isEmpty() && !STOP_WORDS.contains(term))
+                .toList();
+    }
+}
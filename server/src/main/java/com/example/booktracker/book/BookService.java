@@ -7,34 +7,71 @@ import com.example.booktracker.book.exception.BookNotFoundException;
 import com.example.booktracker.book.exception.CustomAuthenticationException;
 import com.example.booktracker.book.exception.CustomBadRequestException;
 import com.example.booktracker.book.exception.ExternalServiceException;
+import com.example.booktracker.upstream.UpstreamPriority;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
 public class BookService {
 
     private final BookApiClient bookApiClient;
+    private final AsyncBookClient asyncBookClient;                  // the reactive client when upstream.client=reactive
     private final BookCache bookCache;
+    private final BookSearchCache bookSearchCache;
+    private final BookCatalog bookCatalog;
+    private final SimilarBooksResolver similarBooksResolver;
+    private final SimilarTitlesCache similarTitlesCache;
+    private final PagePrefetcher pagePrefetcher;
+    private final BookSearchIndex bookSearchIndex;
+    private final BookSuggester bookSuggester;
+    private final GenreCacheRefiller genreCacheRefiller;
+    private final GenrePromoter genrePromoter;
+    private final GenreCacheCoordinator genreCacheCoordinator;
+
+    @Value("${book-search.mode:upstream}")
+    private String searchMode;
 
     @Autowired
-    public BookService(BookApiClient bookApiClient, BookCache bookCache, ObjectMapper objectMapper) {
+    public BookService(BookApiClient bookApiClient, AsyncBookClient asyncBookClient, BookCache bookCache, BookSearchCache bookSearchCache, BookCatalog bookCatalog,
+                       SimilarBooksResolver similarBooksResolver, SimilarTitlesCache similarTitlesCache, PagePrefetcher pagePrefetcher,
+                       BookSearchIndex bookSearchIndex, BookSuggester bookSuggester, GenreCacheRefiller genreCacheRefiller, GenrePromoter genrePromoter,
+                       GenreCacheCoordinator genreCacheCoordinator, ObjectMapper objectMapper) {
         this.bookApiClient = bookApiClient;
+        this.asyncBookClient = asyncBookClient;
         this.bookCache = bookCache;
+        this.bookSearchCache = bookSearchCache;
+        this.bookCatalog = bookCatalog;
+        this.similarBooksResolver = similarBooksResolver;
+        this.similarTitlesCache = similarTitlesCache;
+        this.pagePrefetcher = pagePrefetcher;
+        this.bookSearchIndex = bookSearchIndex;
+        this.bookSuggester = bookSuggester;
+        this.genreCacheRefiller = genreCacheRefiller;
+        this.genrePromoter = genrePromoter;
+        this.genreCacheCoordinator = genreCacheCoordinator;
     }
 
     /**
      * Acts as an intermediary method for the GET /api/books endpoint
-     * Delegates the request to fetch a specific number of books from an external API to the BookApiClient
+     * Serves the search from the {@link BookSearchCache}, which delegates to the BookApiClient on a miss
+     * The next page is prefetched in the background by the {@link PagePrefetcher}
+     * In the local-first mode ({@code book-search.mode=local-first}) the page is served from the {@link BookSearchIndex}
+     * instead if it finds enough books for it
      * It receives the fetched books and sends them back to the controller
      *
      * @param search The search term provided by the GET /api/books endpoint
      * @param limit  The limit term provided by the GET /api/books endpoint
+     * @param offset The offset term provided by the GET /api/books endpoint
+     * @param view   The view term provided by the GET /api/books endpoint; books fetched for a partial view only have its fields
      * @return A list of {@link BookDTO} objects representing the books that match the search term.
      *
      * @throws CustomBadRequestException If the search term is empty or the limit is non-positive.
@@ -42,8 +79,53 @@ public class BookService {
      * @throws BookNotFoundException If no books are found for the search term.
      * @throws ExternalServiceException If there is an error with the external service or something unexpected happened.
      */
-    public List<BookDTO> getBooks(String search, int limit) {
-        return bookApiClient.fetchBooks(search, limit);
+    public List<BookDTO> getBooks(String search, int limit, int offset, BookView view) {
+        List<BookDTO> books = null;
+        if ("local-first".equalsIgnoreCase(searchMode)) {
+            books = bookSearchIndex.findLocally(search, limit, offset).orElse(null);
+        }
+        if (books == null) {
+            // prefetches bypass the loader of the search cache, a request giving up on one does not wait on it there
+            books = pagePrefetcher.getPage("search", view, search, limit, offset,
+                    pageOffset -> bookSearchCache.get(search, limit, pageOffset, view),
+                    pageOffset -> bookSearchCache.fetch(search, limit, pageOffset, view));
+        }
+
+        // searches that find nothing are never suggested
+        if (!books.isEmpty()) {
+            bookSuggester.recordQuery(search);
+        }
+        return books;
+    }
+
+
+    /**
+     * Acts as an intermediary method for the GET /api/books/suggest endpoint
+     * Serves the suggestions from the in-memory index of the {@link BookSuggester}, a sorted array of word prefixes ranked
+     * with a range-minimum tree, without calling Google Books
+     *
+     * @param prefix The text typed so far, provided by the GET /api/books/suggest endpoint
+     * @param limit  The limit term provided by the GET /api/books/suggest endpoint
+     * @return The titles, authors and searches with a word starting with the prefix, most popular first.
+     */
+    public List<BookSuggester.Suggestion> suggest(String prefix, int limit) {
+        return bookSuggester.suggest(prefix, limit);
+    }
+
+
+    /**
+     * Acts as an intermediary method for the GET /api/books/volumes/{id} endpoint
+     * Reads the book from the persistent catalog first and only asks the BookApiClient for it if it has never been fetched before
+     *
+     * @param id The Google Books volume id provided by the GET /api/books/volumes/{id} endpoint
+     * @return The {@link BookDTO} with the given id.
+     *
+     * @throws BookNotFoundException If no book exists with the given id.
+     * @throws ExternalServiceException If there is an error with the external service or something unexpected happened.
+     */
+    public BookDTO getBookById(String id) {
+        return bookCatalog.findById(id)
+                .orElseGet(() -> bookApiClient.fetchBookById(id));
     }
 
 
@@ -52,8 +134,14 @@ public class BookService {
      * Delegates the request to fetch a specific number of books from an external API to the BookApiClient
      * It receives the fetched books and sends them back to the controller
      *
+     * The next page is prefetched in the background by the {@link PagePrefetcher}
+     * Pages of genres in the {@link BookCache} are served from it when it holds them; genres requested often enough
+     * are added to it by the {@link GenrePromoter}
+     *
      * @param genre The genre term provided by the GET /api/books/{genre} endpoint
      * @param limit  The limit term provided by the GET /api/books/{genre} endpoint
+     * @param offset The offset term provided by the GET /api/books/{genre} endpoint
+     * @param view   The view term provided by the GET /api/books/{genre} endpoint; books fetched for a partial view only have its fields
      * @return A list of {@link BookDTO} objects representing the books retrieved for the requested genre.
      *
      * @throws CustomBadRequestException If the genre or limit parameters are invalid or missing.
@@ -61,8 +149,17 @@ public class BookService {
      * @throws BookNotFoundException If no books are found for the genre term.
      * @throws ExternalServiceException If there is an error with the external service or something unexpected happened.
      */
-    public List<BookDTO> getBooksByGenre(String genre, int limit) {
-        return bookApiClient.fetchBooksByGenre(genre, limit);
+    public List<BookDTO> getBooksByGenre(String genre, int limit, int offset, BookView view) {
+        String cachedGenre = BookCache.normalize(genre);
+        genrePromoter.recordRequest(cachedGenre);
+
+        Optional<BookCache.Page> cachedPage = bookCache.findBooks(cachedGenre, offset, limit);
+        if (cachedPage.isPresent()) {
+            genreCacheRefiller.refillIfLow(cachedGenre, cachedPage.get().remaining());
+            return cachedPage.get().books();
+        }
+
+        return pagePrefetcher.getPage("genre", view, genre, limit, offset, pageOffset -> bookApiClient.fetchBooksByGenre(genre, limit, pageOffset, view));
     }
 
 
@@ -70,6 +167,8 @@ public class BookService {
      * Acts as an intermediary method for the GET /api/books/cache endpoint
      * Delegates the request to fetch a specific number of books from an external API to the BookApiClient
      * It receives the fetched books and sends them back to the controller
+     * Genres that are already cached are not fetched again, their first books are sent back instead
+     * On an instance following the leader of the genre caches, genres are read from the leader and never fetched
      *
      * @param limit  The limit term provided by the GET /api/books/{genre} endpoint
      *
@@ -84,13 +183,32 @@ public class BookService {
         Map<String, List<String>> errors = new HashMap<>();     // potential errors when fetching books for different genres
         errors.put("errors", new ArrayList<>());
 
-        String[] genres = {"nonfiction", "fiction", "thriller", "action", "mystery", "history", "horror", "fantasy"};          // genres to fetch books for
+        // an instance following the leader of the genre caches reads the genres it misses from it instead of fetching them
+        if (!genreCacheCoordinator.isLeader()) {
+            bookCache.getConfiguredGenres().stream()
+                    .filter(genre -> !bookCache.getCachedCounts().containsKey(genre))
+                    .forEach(genreCacheCoordinator::catchUp);
+        }
+
+        // the cached books are shared by every user, only the configured genres that are not cached yet are fetched
+        Set<String> cachedGenres = new HashSet<>(bookCache.getCachedCounts().keySet());
+        cachedGenres.retainAll(bookCache.getConfiguredGenres());
+        String[] genres = bookCache.getConfiguredGenres().stream()
+                .filter(genre -> !cachedGenres.contains(genre))
+                .filter(genre -> {
+                    if (genreCacheCoordinator.isFollowing(genre)) {
+                        errors.get("errors").add(genre + " is not loaded by the leading instance yet.");
+                        return false;
+                    }
+                    return true;
+                })
+                .toArray(String[]::new);          // genres to fetch books for
 
-        // Create a map of genre to future, where each future fetches books asynchronously
+        // Create a map of genre to future, where each future fetches books asynchronously in the background lane
         Map<String, CompletableFuture<JsonNode>> futureMap = Arrays.stream(genres)
                 .collect(Collectors.toMap(
                         genre -> genre,
-                        genre -> bookApiClient.fetchBooksByGenreAsync(genre, limit,  limit)
+                        genre -> UpstreamPriority.BACKGROUND.call(() -> asyncBookClient.fetchBooksByGenreAsync(genre, limit, bookCache.getOffsetForGenre(genre)))
                                 .exceptionally(ex -> {
                                     errors.get("errors").add(ex.getMessage());
                                     return null;
@@ -122,6 +240,7 @@ public class BookService {
                         for (JsonNode bookItem : bookItems) {
                             books.add(bookApiClient.mapToBookDTO(bookItem));
                         }
+                        bookCatalog.record(books);
                         cache.put(genre, books);
                     }
                 } catch (Exception e) {
@@ -131,24 +250,32 @@ public class BookService {
         }).join();
 
         bookCache.setUpCache(cache);
+        cachedGenres.forEach(genre -> cache.put(genre, bookCache.getPage(genre, null, limit).books()));
 
         return new CacheResponse(cache, errors);
 
     }
 
     /**
-     * Retrieves a list of books from the cache based on the specified genre and limit. This method delegates the
-     * request to the {@link BookCache} to fetch books for the given genre. If the genre is not present in the cache
-     * or if an error occurs during retrieval, an appropriate exception will be thrown by the {@link BookCache}.
-     *
-     * @param genre The genre of books to retrieve from the cache. Must be a valid genre that exists in the cache.
-     * @param limit The maximum number of books to return. If the limit exceeds the number of books available for
-     *              the genre, only the available books will be returned.
-     * @return A {@link List} of {@link BookDTO} objects representing the books retrieved from the cache.
+     * Retrieves the next page of books of a genre from the cache for a user paging through it. This method delegates
+     * the request to the {@link BookCache}, whose books are shared by every user and stay in the cache. If the genre
+     * is not present in the cache or the cursor is invalid, an appropriate exception will be thrown by the {@link BookCache}.
+     * If the user paged close to the end of the genre, the {@link GenreCacheRefiller} refills it in the background.
+     *
+     * @param genre  The genre of books to retrieve from the cache. Must be a valid genre that exists in the cache.
+     * @param cursor The cursor returned with the previous page of the genre, or {@code null} for the first page.
+     * @param limit  The maximum number of books to return. If the limit exceeds the number of books left after the
+     *               cursor, only the available books will be returned.
+     * @return A {@link BookCache.Page} with the books retrieved from the cache and the cursor of the next page.
      * @throws GenreNotInCacheException If the specified genre is not present in the cache.
+     * @throws CustomBadRequestException If the cursor is not a cursor of the genre.
      */
-    public List<BookDTO> getCachedBooksByGenre(String genre, int limit) {
-        return bookCache.getCachedBooksByGenre(genre, limit);     // possible exception thrown if genre not in cache
+    public BookCache.Page getCachedBooksByGenre(String genre, String cursor, int limit) {
+        String cachedGenre = BookCache.normalize(genre);
+        BookCache.Page page = bookCache.getPage(cachedGenre, cursor, limit);     // possible exception thrown if genre not in cache
+        genrePromoter.recordRead(cachedGenre);
+        genreCacheRefiller.refillIfLow(cachedGenre, page.remaining());
+        return page;
     }
 
 
@@ -156,6 +283,7 @@ public class BookService {
      * Updates the cache with new books for the specified genre.
      * This method fetches books from the external API based on the given genre and limit, then updates the cache.
      * It returns the updated list of books for the genre.
+     * Genres are refilled in the background once they run low, so this is only needed to force a refill.
      *
      * @param genre The genre for which the cache should be updated.
      * @param limit The number of books to be fetched and added to the cache.
@@ -167,24 +295,52 @@ public class BookService {
      * @throws ExternalServiceException If there is an error with the external service.
      */
     public List<BookDTO> updateCachedBooksByGenre(String genre, int limit) {
-        int currentOffset = bookCache.getOffsetForGenre(genre);
-
-        List<BookDTO> newBooksToCache = bookApiClient.fetchBooksByGenre(genre, limit, currentOffset);
-        return bookCache.updateCachedBooksByGenre(genre, newBooksToCache);
+        // joins the background refill of the genre if one is in flight
+        return genreCacheRefiller.refillNow(BookCache.normalize(genre), limit);
     }
 
 
     /**
      * Fetches similar books for the provided title by calling an external API.
-     * This method uses the type and limit parameters to filter the results.
+     * This method uses the type and limit parameters to filter the results. The similar titles returned by TasteDive
+     * are cached by the {@link SimilarTitlesCache} and resolved to books by the {@link SimilarBooksResolver},
+     * which bounds the concurrency and the response time.
      *
      * @param title the title of the book to find similar books for
      * @param type  the type of media (default is "book")
      * @param limit the maximum number of similar books to retrieve
-     * @return a {@link SimilarBooksResponse} containing similar book data and errors
+     * @return a {@link SimilarBooksResponse} containing similar book data, errors and the titles still pending at the deadline
      */
     public SimilarBooksResponse getSimilarBooks(String title, String type, int limit) {
-        return bookApiClient.fetchSimilarBooks(title, type, limit);
+        List<String> similarTitles = similarTitlesCache.get(title, type, limit);
+        return similarBooksResolver.resolve(similarTitles);
+    }
+
+
+    /**
+     * Streaming variant of {@link #getSimilarBooks(String, String, int)}: the similar titles are fetched right away,
+     * then every book is handed to the callback as soon as it resolves.
+     *
+     * @param title  the title of the book to find similar books for
+     * @param type   the type of media (default is "book")
+     * @param limit  the maximum number of similar books to retrieve
+     * @param onBook called with every similar book as soon as it resolves
+     * @return a future completing with a {@link SimilarBooksResponse} once every book resolved or the deadline passed
+     *
+     * @throws BookNotFoundException If no similar books are found for the title.
+     * @throws ExternalServiceException If there is an error with the external service.
+     */
+    public CompletableFuture<SimilarBooksResponse> streamSimilarBooks(String title, String type, int limit, Consumer<BookDTO> onBook) {
+        List<String> similarTitles = similarTitlesCache.get(title, type, limit);
+        return similarBooksResolver.resolveAsync(similarTitles, onBook);
+    }
+
+
+    /**
+     * @return The longest time a similar books request takes before it answers with whatever resolved.
+     */
+    public Duration getSimilarBooksDeadline() {
+        return similarBooksResolver.getDeadline();
     }
 
 }
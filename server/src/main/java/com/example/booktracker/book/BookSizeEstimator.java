@@ -0,0 +1,73 @@
+package com.example.booktracker.book;
+
+import java.util.List;
+
+/**
+ * Estimates how much heap a {@link BookDTO} occupies so that in-memory caches can be bounded by memory
+ * rather than by number of entries. The estimate assumes compact (Latin-1) strings are not available and
+ * counts two bytes per character plus the usual object headers, which slightly overestimates on purpose.
+ */
+public final class BookSizeEstimator {
+
+    private static final int OBJECT_OVERHEAD = 16;
+    private static final int REFERENCE_SIZE = 8;
+    private static final int STRING_OVERHEAD = 40;          // String object plus its backing array header
+    private static final int LIST_OVERHEAD = 40;
+
+    private BookSizeEstimator() {
+    }
+
+
+    /**
+     * Estimates the retained size of a single book in bytes.
+     *
+     * @param book The book to estimate, may be {@code null}.
+     * @return The estimated size in bytes.
+     */
+    public static long estimate(BookDTO book) {
+        if (book == null) {
+            return REFERENCE_SIZE;
+        }
+
+        return OBJECT_OVERHEAD + 9L * REFERENCE_SIZE
+                + estimate(book.getId())
+                + estimate(book.getTitle())
+                + estimateStrings(book.getAuthors())
+                + estimate(book.getPublisher())
+                + estimate(book.getDescription())
+                + estimateStrings(book.getCategories())
+                + estimate(book.getImageUrl())
+                + estimate(book.getLanguage());
+    }
+
+
+    /**
+     * Estimates the retained size of a list of books in bytes.
+     *
+     * @param books The books to estimate.
+     * @return The estimated size in bytes.
+     */
+    public static long estimate(List<BookDTO> books) {
+        long size = LIST_OVERHEAD;
+        for (BookDTO book : books) {
+            size += REFERENCE_SIZE + estimate(book);
+        }
+        return size;
+    }
+
+    private static long estimateStrings(List<String> values) {
+        if (values == null) {
+            return 0;
+        }
+
+        long size = LIST_OVERHEAD;
+        for (String value : values) {
+            size += REFERENCE_SIZE + estimate(value);
+        }
+        return size;
+    }
+
+    private static long estimate(String value) {
+        return (value == null) ? 0 : STRING_OVERHEAD + 2L * value.length();
+    }
+}
@@ -0,0 +1,387 @@
+package com.example.booktracker.book;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Typeahead suggestions for the GET /api/books/suggest endpoint, served from an immutable sorted array of word prefixes.
+ *
+ * <ul>
+ *     <li>The index holds the titles and authors of the books in the {@link BookSearchIndex} and the most popular searches.
+ *     It is rebuilt every {@code suggest.rebuild-interval} milliseconds on a thread of its own and swapped in once
+ *     built, so lookups never wait on a rebuild and rebuilds never hold up other scheduled tasks.</li>
+ *     <li>Every suggestion can be found by the start of any of its first {@value #MAX_WORDS} words, ignoring case and
+ *     accents.</li>
+ *     <li>Searches are only suggested once they found books {@code suggest.min-query-count} times, so a single user
+ *     cannot put arbitrary text into the suggestions of everybody.</li>
+ *     <li>Suggestions are ranked by popularity: how often they were searched for, and for authors how many of their books
+ *     are known. A lookup binary searches the range of keys starting with the prefix and picks its best suggestions
+ *     with a range-minimum tree, without walking the whole range.</li>
+ * </ul>
+ */
+@Component
+public class BookSuggester {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BookSuggester.class);
+
+    static final int TOP_K = 10;
+    static final int MAX_WORDS = 6;                                 // later words of long titles are not indexed
+    private static final int MAX_KEY_LENGTH = 64;                   // longer keys are only found by their start
+    private static final long QUERY_WEIGHT = 10;                    // a search counts as much as ten books of an author
+
+    private final BookSearchIndex bookSearchIndex;
+    private final int maxSuggestions;
+    private final long minQueryCount;
+    private final Cache<String, LongAdder> queryCounts;             // normalized search term to times it found books
+
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("book-suggester-rebuild").daemon(true).factory());
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    private volatile Index index = Index.EMPTY;
+
+    @Autowired
+    public BookSuggester(BookSearchIndex bookSearchIndex,
+                         @Value("${suggest.max-entries:100000}") int maxSuggestions,
+                         @Value("${suggest.max-tracked-queries:10000}") long maxTrackedQueries,
+                         @Value("${suggest.min-query-count:3}") long minQueryCount) {
+        this.bookSearchIndex = bookSearchIndex;
+        this.maxSuggestions = maxSuggestions;
+        this.minQueryCount = Math.max(1, minQueryCount);
+        this.queryCounts = Caffeine.newBuilder()
+                .maximumSize(maxTrackedQueries)
+                .build();
+    }
+
+
+    /**
+     * Returns the best suggestions for what the user typed so far.
+     *
+     * @param prefix The text typed so far.
+     * @param limit  The maximum number of suggestions, at most {@value #TOP_K}.
+     * @return The suggestions whose text has a word starting with the prefix, most popular first.
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        return index.lookup(fold(prefix), Math.min(limit, TOP_K));
+    }
+
+
+    /**
+     * Counts a search that found books towards the popularity of its term. Terms counted
+     * {@code suggest.min-query-count} times are suggested after the next rebuild.
+     *
+     * @param search The search term a user submitted.
+     */
+    public void recordQuery(String search) {
+        String key = fold(search);
+        if (!key.isEmpty()) {
+            queryCounts.get(key, ignored -> new LongAdder()).increment();
+        }
+    }
+
+
+    /**
+     * Starts a rebuild of the index in the background, unless one is still running.
+     */
+    @Scheduled(fixedDelayString = "${suggest.rebuild-interval:60000}")
+    public void rebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            rebuildExecutor.execute(() -> {
+                try {
+                    rebuildNow();
+                }
+                catch (RuntimeException exception) {
+                    LOGGER.warn("Could not rebuild the suggestions: {}", exception.getMessage());
+                }
+                finally {
+                    rebuilding.set(false);
+                }
+            });
+        }
+        catch (RejectedExecutionException exception) {
+            rebuilding.set(false);
+        }
+    }
+
+
+    /**
+     * Rebuilds the index from the indexed books and the searches counted so far on the calling thread, and swaps it in.
+     */
+    void rebuildNow() {
+        Map<String, Candidate> candidates = new HashMap<>();
+        Map<String, Long> searches = new HashMap<>();
+        queryCounts.asMap().forEach((query, count) -> {
+            long sum = count.sum();
+            if (sum >= minQueryCount) {
+                searches.put(query, sum);
+            }
+        });
+
+        for (BookDTO book : bookSearchIndex.getBooks()) {
+            addCandidate(candidates, book.getTitle(), "title", 1);
+            if (book.getAuthors() != null) {
+                book.getAuthors().forEach(author -> addCandidate(candidates, author, "author", 1));
+            }
+        }
+        searches.forEach((query, count) -> addCandidate(candidates, query, "search", 0));
+        candidates.forEach((key, candidate) -> candidate.score += QUERY_WEIGHT * searches.getOrDefault(key, 0L));
+
+        List<Candidate> ranked = candidates.values().stream()
+                .sorted(Comparator.comparingLong((Candidate candidate) -> candidate.score).reversed()
+                        .thenComparing(candidate -> candidate.key))
+                .limit(maxSuggestions)
+                .toList();
+
+        index = Index.build(ranked);
+    }
+
+
+    @PreDestroy
+    public void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    /**
+     * @return The number of keys of the current index, which bounds the cost of its rebuild.
+     */
+    int size() {
+        return index.size();
+    }
+
+    private static void addCandidate(Map<String, Candidate> candidates, String text, String type, long score) {
+        String key = fold(text);
+        if (key.isEmpty()) {
+            return;
+        }
+        // titles and authors keep their own spelling over a search for the same text
+        Candidate candidate = candidates.computeIfAbsent(key, ignored -> new Candidate(key, text.trim(), type));
+        if ("search".equals(candidate.type) && !"search".equals(type)) {
+            candidate.text = text.trim();
+            candidate.type = type;
+        }
+        candidate.score += score;
+    }
+
+    /**
+     * Folds text to lower case without accents, with every run of other characters than letters and digits replaced
+     * by a single space.
+     */
+    static String fold(String text) {
+        if (text == null) {
+            return "";
+        }
+        String folded = Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase(Locale.ROOT)
+                .replaceAll("[^\\p{L}\\p{N}]+", " ")
+                .trim();
+        return (folded.length() > MAX_KEY_LENGTH) ? folded.substring(0, MAX_KEY_LENGTH) : folded;
+    }
+
+    public record Suggestion(String text, String type) {
+    }
+
+    private static final class Candidate {
+
+        private final String key;
+        private String text;
+        private String type;
+        private long score;
+
+        Candidate(String key, String text, String type) {
+            this.key = key;
+            this.text = text;
+            this.type = type;
+        }
+    }
+
+    /**
+     * Immutable index of suggestions. Suggestion {@code i} is the {@code i}-th most popular one. Every key is the end
+     * of the folded text of a suggestion, starting at one of its words, and is stored as the suggestion and the start
+     * of the key in its text, sorted by key. {@code tree} is a range-minimum tree over the suggestions of the keys.
+     */
+    private static final class Index {
+
+        static final Index EMPTY = new Index(new String[0], new Suggestion[0], new int[0], new int[0]);
+
+        private final String[] texts;               // folded text of each suggestion
+        private final Suggestion[] suggestions;
+        private final int[] suggestionOfKey;
+        private final int[] startOfKey;
+        private final int[] tree;                   // position of the best suggestion in each node, leaves at [n, 2n)
+
+        private Index(String[] texts, Suggestion[] suggestions, int[] suggestionOfKey, int[] startOfKey) {
+            this.texts = texts;
+            this.suggestions = suggestions;
+            this.suggestionOfKey = suggestionOfKey;
+            this.startOfKey = startOfKey;
+
+            int n = suggestionOfKey.length;
+            this.tree = new int[2 * n];
+            for (int i = 0; i < n; i++) {
+                tree[n + i] = i;
+            }
+            for (int i = n - 1; i > 0; i--) {
+                tree[i] = better(tree[2 * i], tree[2 * i + 1]);
+            }
+        }
+
+        /**
+         * Builds an index from candidates ranked best first.
+         */
+        static Index build(List<Candidate> ranked) {
+            String[] texts = new String[ranked.size()];
+            Suggestion[] suggestions = new Suggestion[ranked.size()];
+            List<long[]> keys = new ArrayList<>();
+            int count = 0;
+
+            for (int s = 0; s < ranked.size(); s++) {
+                Candidate candidate = ranked.get(s);
+                texts[s] = candidate.key;
+                suggestions[s] = new Suggestion(candidate.text, candidate.type);
+
+                int words = 0;
+                for (int start = 0; start < candidate.key.length() && words < MAX_WORDS; start++) {
+                    if (start == 0 || candidate.key.charAt(start - 1) == ' ') {
+                        keys.add(new long[]{s, start});
+                        words++;
+                        count++;
+                    }
+                }
+            }
+
+            keys.sort((first, second) -> compareKeys(texts, first, second));
+            int[] suggestionOfKey = new int[count];
+            int[] startOfKey = new int[count];
+            for (int i = 0; i < count; i++) {
+                suggestionOfKey[i] = (int) keys.get(i)[0];
+                startOfKey[i] = (int) keys.get(i)[1];
+            }
+            return new Index(texts, suggestions, suggestionOfKey, startOfKey);
+        }
+
+        int size() {
+            return suggestionOfKey.length;
+        }
+
+        List<Suggestion> lookup(String prefix, int limit) {
+            if (prefix.isEmpty() || limit <= 0 || suggestionOfKey.length == 0) {
+                return List.of();
+            }
+
+            int from = bound(prefix, false);
+            int to = bound(prefix, true);
+            if (from >= to) {
+                return List.of();
+            }
+
+            // best first: the best key of a range, then the best ones of the ranges on both of its sides
+            PriorityQueue<int[]> ranges = new PriorityQueue<>(Comparator.comparingInt((int[] range) -> suggestionOfKey[range[0]]));
+            ranges.add(new int[]{best(from, to), from, to});
+            List<Suggestion> result = new ArrayList<>(limit);
+            Set<Integer> seen = new HashSet<>();
+            while (!ranges.isEmpty() && result.size() < limit) {
+                int[] range = ranges.poll();
+                int position = range[0];
+                // the same suggestion can be found through two of its words
+                if (seen.add(suggestionOfKey[position])) {
+                    result.add(suggestions[suggestionOfKey[position]]);
+                }
+                if (range[1] < position) {
+                    ranges.add(new int[]{best(range[1], position), range[1], position});
+                }
+                if (position + 1 < range[2]) {
+                    ranges.add(new int[]{best(position + 1, range[2]), position + 1, range[2]});
+                }
+            }
+            return result;
+        }
+
+        /**
+         * @return The first key not before the prefix, or with {@code after} the first key after every key starting with it.
+         */
+        private int bound(String prefix, boolean after) {
+            int low = 0;
+            int high = suggestionOfKey.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                int comparison = comparePrefix(texts[suggestionOfKey[middle]], startOfKey[middle], prefix);
+                if (comparison < 0 || (after && comparison == 0)) {
+                    low = middle + 1;
+                }
+                else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * @return The position of the best key in [from, to).
+         */
+        private int best(int from, int to) {
+            int n = suggestionOfKey.length;
+            int result = from;
+            for (int low = from + n, high = to + n; low < high; low >>= 1, high >>= 1) {
+                if ((low & 1) == 1) {
+                    result = better(result, tree[low++]);
+                }
+                if ((high & 1) == 1) {
+                    result = better(result, tree[--high]);
+                }
+            }
+            return result;
+        }
+
+        private int better(int first, int second) {
+            return (suggestionOfKey[second] < suggestionOfKey[first]) ? second : first;
+        }
+
+        /**
+         * Compares the key starting at {@code start} of {@code text}, cut to the length of the prefix, with the prefix.
+         */
+        private static int comparePrefix(String text, int start, String prefix) {
+            int length = Math.min(text.length() - start, prefix.length());
+            for (int i = 0; i < length; i++) {
+                int difference = text.charAt(start + i) - prefix.charAt(i);
+                if (difference != 0) {
+                    return difference;
+                }
+            }
+            return (length == prefix.length()) ? 0 : -1;
+        }
+
+        private static int compareKeys(String[] texts, long[] first, long[] second) {
+            String firstText = texts[(int) first[0]];
+            String secondText = texts[(int) second[0]];
+            int firstStart = (int) first[1];
+            int secondStart = (int) second[1];
+            int length = Math.min(firstText.length() - firstStart, secondText.length() - secondStart);
+            for (int i = 0; i < length; i++) {
+                int difference = firstText.charAt(firstStart + i) - secondText.charAt(secondStart + i);
+                if (difference != 0) {
+                    return difference;
+                }
+            }
+            return (firstText.length() - firstStart) - (secondText.length() - secondStart);
+        }
+    }
+}
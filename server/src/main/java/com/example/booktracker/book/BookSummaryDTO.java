@@ -0,0 +1,42 @@
+package com.example.booktracker.book;
+
+import java.util.List;
+
+/**
+ * Lightweight projection of a {@link BookDTO} for list views ({@code view=summary}), which only show the cover,
+ * title and authors of a book.
+ */
+public class BookSummaryDTO {
+
+    private final String id;
+    private final String title;
+    private final List<String> authors;
+    private final String imageUrl;
+
+    public BookSummaryDTO(String id, String title, List<String> authors, String imageUrl) {
+        this.id = id;
+        this.title = title;
+        this.authors = authors;
+        this.imageUrl = imageUrl;
+    }
+
+    public static BookSummaryDTO of(BookDTO book) {
+        return new BookSummaryDTO(book.getId(), book.getTitle(), book.getAuthors(), book.getImageUrl());
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public List<String> getAuthors() {
+        return authors;
+    }
+
+    public String getImageUrl() {
+        return imageUrl;
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.booktracker.book;
+
+import com.example.booktracker.book.exception.CustomBadRequestException;
+
+import java.util.List;
+
+/**
+ * The projections the list endpoints can return books in, selected with their {@code view} parameter.
+ * Every projection asks Google Books for just the fields it returns.
+ */
+public enum BookView {
+
+    FULL(BookApiClient.GOOGLE_BOOKS_FIELDS),
+    SUMMARY("items(id,volumeInfo/title,volumeInfo/authors,volumeInfo/imageLinks/thumbnail)");
+
+    private final String googleBooksFields;
+
+    BookView(String googleBooksFields) {
+        this.googleBooksFields = googleBooksFields;
+    }
+
+    /**
+     * @return The value of the Google Books {@code fields} parameter selecting the fields of this projection.
+     */
+    public String googleBooksFields() {
+        return googleBooksFields;
+    }
+
+    /**
+     * Projects books fetched in this view to their response objects.
+     *
+     * @param books The books.
+     * @return The books themselves for {@link #FULL}, or their {@link BookSummaryDTO}s for {@link #SUMMARY}.
+     */
+    public List<?> project(List<BookDTO> books) {
+        return (this == SUMMARY) ? books.stream().map(BookSummaryDTO::of).toList() : books;
+    }
+
+    /**
+     * Reads the {@code view} parameter of a list endpoint.
+     *
+     * @param view "full" or "summary", in any case.
+     * @return The matching view.
+     * @throws CustomBadRequestException If the view is unknown.
+     */
+    public static BookView parse(String view) {
+        for (BookView candidate : values()) {
+            if (candidate.name().equalsIgnoreCase(view.trim())) {
+                return candidate;
+            }
+        }
+        throw new CustomBadRequestException("The view parameter must be either 'full' or 'summary'.");
+    }
+}
@@ -0,0 +1,476 @@
+package com.example.booktracker.book;
+
+import jakarta.annotation.PreDestroy;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the genre caches of the instances sharing a Postgres database coherent, so that Google Books is asked for the
+ * books of the configured genres by one instance, whatever the number of instances.
+ *
+ * <ul>
+ *     <li>The instance holding the advisory lock {@code genre-cache.coordination.lock-key} is the leader. It warms up
+ *     and refills the configured genres like a single instance, and publishes the books it adds to the
+ *     {@code genre_cache_pages} table with a NOTIFY on the {@code genre_cache} channel. Publishing runs on a thread
+ *     of its own, which publishes the books of a genre in position order, whatever thread added them. On becoming
+ *     the leader, an instance publishes every configured genre it holds, including genres restored from a snapshot.</li>
+ *     <li>The other instances never fetch the configured genres. They LISTEN on {@code genre_cache} and read the
+ *     pages they miss from the table, taking over the generation of the leader, so a cursor handed out by one instance
+ *     is valid on every other one. Once their users page close to the end of a genre, they ask the leader for a
+ *     refill with a NOTIFY on {@code genre_cache_requests}. They ignore the genres of their own snapshot.</li>
+ *     <li>The lock and the LISTEN are held by a connection of their own. When the leader stops, Postgres releases its
+ *     lock and the first instance trying to take it (every {@code genre-cache.coordination.poll-interval}) leads.</li>
+ * </ul>
+ *
+ * An instance that cannot reach the database fetches its genres itself, as it does without coordination. Genres
+ * promoted by the {@link GenrePromoter} are not shared, every instance promotes and refills its own.
+ */
+@Component
+public class GenreCacheCoordinator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GenreCacheCoordinator.class);
+
+    static final String PAGES_CHANNEL = "genre_cache";
+    static final String REQUESTS_CHANNEL = "genre_cache_requests";
+
+    private static final String CREATE_TABLE_SQL = """
+            CREATE TABLE IF NOT EXISTS genre_cache_pages (
+                genre text NOT NULL,
+                generation bigint NOT NULL,
+                first_position integer NOT NULL,
+                book_count integer NOT NULL,
+                first_offset integer NOT NULL,
+                next_offset integer NOT NULL,
+                books bytea NOT NULL,
+                created_at timestamp without time zone DEFAULT CURRENT_TIMESTAMP,
+                CONSTRAINT genre_cache_pages_pkey PRIMARY KEY (genre, generation, first_position)
+            )
+            """;
+
+    // pages of older generations, and pages the leader dropped for the memory budget, are of no use to anyone
+    private static final String DELETE_STALE_SQL = """
+            DELETE FROM genre_cache_pages
+            WHERE genre = ? AND (generation <> ? OR first_position + book_count <= ?)
+            """;
+
+    private static final String PUBLISH_SQL = """
+            WITH inserted AS (
+                INSERT INTO genre_cache_pages (genre, generation, first_position, book_count, first_offset, next_offset, books)
+                VALUES (?, ?, ?, ?, ?, ?, ?)
+                ON CONFLICT DO NOTHING
+                RETURNING genre
+            )
+            SELECT pg_notify('genre_cache', genre) FROM inserted
+            """;
+
+    private static final String MISSING_PAGES_SQL = """
+            SELECT generation, first_position, book_count, first_offset, next_offset, books
+            FROM genre_cache_pages
+            WHERE genre = ?
+              AND generation = (SELECT max(generation) FROM genre_cache_pages WHERE genre = ?)
+              AND (generation <> ? OR first_position + book_count > ?)
+            ORDER BY first_position
+            """;
+
+    private static final String PUBLISHED_END_SQL = """
+            SELECT max(first_position + book_count)
+            FROM genre_cache_pages
+            WHERE genre = ? AND generation = ?
+            """;
+
+    private final BookCache bookCache;
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSource dataSource;
+    private final boolean enabled;
+    private final long lockKey;
+    private final long pollIntervalMillis;
+    private final long requestIntervalNanos;
+    private final Executor publisher;
+
+    private final List<Consumer<String>> refillHandlers = new CopyOnWriteArrayList<>();
+    private final Map<String, RefillRequest> refillRequests = new ConcurrentHashMap<>();     // genre to the last refill asked of the leader
+    private final Set<String> dirtyGenres = ConcurrentHashMap.newKeySet();                    // genres waiting to be published
+    private final Map<String, BookCache.End> published = new ConcurrentHashMap<>();          // genre to the end of its published books
+
+    private volatile Connection connection;         // holds the lock and the LISTEN, used by the coordination thread
+    private volatile boolean leader;
+    private volatile boolean running;
+
+    @Autowired
+    public GenreCacheCoordinator(BookCache bookCache,
+                                 JdbcTemplate jdbcTemplate,
+                                 DataSource dataSource,
+                                 @Value("${genre-cache.coordination.enabled:true}") boolean enabled,
+                                 @Value("${genre-cache.coordination.lock-key:7142380563}") long lockKey,
+                                 @Value("${genre-cache.coordination.poll-interval:5000}") long pollIntervalMillis,
+                                 @Value("${genre-cache.coordination.request-interval:30s}") Duration requestInterval) {
+        this(bookCache, jdbcTemplate, dataSource, enabled, lockKey, pollIntervalMillis, requestInterval,
+                Executors.newSingleThreadExecutor(Thread.ofVirtual().name("genre-cache-publisher").factory()));
+    }
+
+    GenreCacheCoordinator(BookCache bookCache, JdbcTemplate jdbcTemplate, DataSource dataSource, boolean enabled,
+                          long lockKey, long pollIntervalMillis, Duration requestInterval, Executor publisher) {
+        this.bookCache = bookCache;
+        this.jdbcTemplate = jdbcTemplate;
+        this.dataSource = dataSource;
+        this.enabled = enabled;
+        this.lockKey = lockKey;
+        this.pollIntervalMillis = Math.max(1, pollIntervalMillis);
+        this.requestIntervalNanos = requestInterval.toNanos();
+        this.publisher = publisher;
+
+        if (enabled) {
+            // the listener runs on the thread adding the books, which never waits on the database
+            bookCache.addListener(change -> markDirty(change.genre()));
+        }
+    }
+
+
+    /**
+     * Connects to the database and takes part in the election of the leader once the application started, so that
+     * the warm-up of the genre cache knows whether to fetch the genres or to read them from the leader.
+     */
+    @EventListener(ApplicationStartedEvent.class)
+    public void start() {
+        if (enabled && !running) {
+            running = true;
+            connect();
+            Thread.ofVirtual().name("genre-cache-coordinator").start(this::coordinate);
+        }
+    }
+
+
+    /**
+     * Closes the connection of the coordination, which releases the lock of a leader right away.
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        disconnect();
+        if (publisher instanceof ExecutorService executorService) {
+            executorService.shutdownNow();
+        }
+    }
+
+
+    /**
+     * @return Whether this instance fetches the configured genres from Google Books: it holds the lock, coordination
+     *         is disabled or the database cannot be reached.
+     */
+    public boolean isLeader() {
+        return !enabled || connection == null || leader;
+    }
+
+
+    /**
+     * @param genre The normalized genre.
+     * @return Whether the genre is read from the leader instead of being fetched from Google Books by this instance.
+     */
+    public boolean isFollowing(String genre) {
+        return !isLeader() && bookCache.getConfiguredGenres().contains(genre);
+    }
+
+
+    /**
+     * Registers what the leader does when a follower asks for a refill of a genre.
+     *
+     * @param handler Called with the genre, on the coordination thread.
+     */
+    public void onRefillRequest(Consumer<String> handler) {
+        refillHandlers.add(handler);
+    }
+
+
+    /**
+     * Adds the pages of a genre published by the leader that this instance does not hold yet to the {@link BookCache}.
+     *
+     * @param genre The configured genre.
+     * @return The number of books added.
+     */
+    public int catchUp(String genre) {
+        Optional<BookCache.End> end = bookCache.getEnd(genre);
+        long generation = end.map(BookCache.End::generation).orElse(0L);
+        int position = end.map(BookCache.End::position).orElse(0);
+        try {
+            List<SharedPage> pages = jdbcTemplate.query(MISSING_PAGES_SQL, (resultSet, row) -> new SharedPage(
+                    resultSet.getLong("generation"),
+                    resultSet.getInt("first_position"),
+                    BookCacheSnapshots.decodeBooks(ByteBuffer.wrap(resultSet.getBytes("books")), resultSet.getInt("book_count")),
+                    resultSet.getInt("first_offset"),
+                    resultSet.getInt("next_offset")
+            ), genre, genre, generation, position);
+
+            int added = 0;
+            for (SharedPage page : pages) {
+                added += bookCache.applyShared(genre, page.generation(), page.position(), page.books(), page.firstOffset(), page.offset());
+            }
+            return added;
+        }
+        catch (DataAccessException | BufferUnderflowException exception) {
+            LOGGER.warn("Could not read the shared pages of the {} genre: {}", genre, exception.getMessage());
+            return 0;
+        }
+    }
+
+
+    /**
+     * Asks the leader to refill a genre users of this instance paged close to the end of. The same request is sent at
+     * most once per {@code genre-cache.coordination.request-interval}; the leader ignores requests of followers that
+     * have not caught up with it yet.
+     *
+     * @param genre The configured genre.
+     */
+    public void requestRefill(String genre) {
+        Optional<BookCache.End> end = bookCache.getEnd(genre);
+        if (end.isEmpty()) {
+            return;
+        }
+
+        RefillRequest request = new RefillRequest(end.get(), System.nanoTime());
+        RefillRequest previous = refillRequests.put(genre, request);
+        if (previous != null && previous.end().equals(request.end()) && request.sentAt() - previous.sentAt() < requestIntervalNanos) {
+            refillRequests.put(genre, previous);
+            return;
+        }
+
+        try {
+            String payload = genre + "|" + end.get().generation() + "|" + end.get().position();
+            jdbcTemplate.query("SELECT pg_notify(?, ?)", (RowCallbackHandler) resultSet -> { }, REQUESTS_CHANNEL, payload);
+        }
+        catch (DataAccessException exception) {
+            LOGGER.warn("Could not ask the leader to refill the {} genre: {}", genre, exception.getMessage());
+        }
+    }
+
+    /**
+     * Publishes the books the leader holds of a configured genre after the ones it published last, or after the end
+     * of the published pages of its generation when it did not publish the genre since it leads.
+     * Called on the publishing thread only.
+     */
+    void publish(String genre) {
+        if (!leader || !bookCache.getConfiguredGenres().contains(genre)) {
+            return;
+        }
+        try {
+            BookCache.End since = published.get(genre);
+            if (since == null) {
+                since = publishedEnd(genre);
+            }
+            Optional<BookCache.Change> change = bookCache.getChangesSince(genre, since);
+            if (change.isEmpty()) {
+                return;
+            }
+
+            BookCache.Change books = change.get();
+            jdbcTemplate.update(DELETE_STALE_SQL, genre, books.generation(), books.start());
+            jdbcTemplate.query(PUBLISH_SQL, (RowCallbackHandler) resultSet -> { },
+                    genre, books.generation(), books.position(), books.books().size(),
+                    books.firstOffset(), books.offset(), BookCacheSnapshots.encodeBooks(books.books()));
+            published.put(genre, new BookCache.End(books.generation(), books.position() + books.books().size()));
+        }
+        catch (DataAccessException | IOException exception) {
+            // published with the next books added to the genre
+            LOGGER.warn("Could not publish the books of the {} genre: {}", genre, exception.getMessage());
+        }
+    }
+
+    /**
+     * Handles a notification received by the coordination connection.
+     */
+    void handle(String channel, String payload) {
+        if (PAGES_CHANNEL.equals(channel) && !leader && bookCache.getConfiguredGenres().contains(payload)) {
+            catchUp(payload);
+        }
+        else if (REQUESTS_CHANNEL.equals(channel) && leader) {
+            String[] parts = payload.split("\\|");
+            if (parts.length != 3) {
+                return;
+            }
+            try {
+                String genre = parts[0];
+                long generation = Long.parseLong(parts[1]);
+                int position = Integer.parseInt(parts[2]);
+                // a follower behind the leader catches up instead
+                boolean caughtUp = bookCache.getEnd(genre)
+                        .filter(end -> end.generation() == generation && position >= end.position())
+                        .isPresent();
+                if (caughtUp) {
+                    refillHandlers.forEach(handler -> handler.accept(genre));
+                }
+            }
+            catch (NumberFormatException exception) {
+                LOGGER.warn("Ignoring the refill request {}", payload);
+            }
+        }
+    }
+
+    private void coordinate() {
+        while (running) {
+            try {
+                if (connection == null) {
+                    Thread.sleep(pollIntervalMillis);
+                    connect();
+                    continue;
+                }
+                electLeader();
+                PGNotification[] notifications = connection.unwrap(PGConnection.class).getNotifications((int) pollIntervalMillis);
+                if (notifications != null) {
+                    for (PGNotification notification : notifications) {
+                        handle(notification.getName(), notification.getParameter());
+                    }
+                }
+            }
+            catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            catch (SQLException | RuntimeException exception) {
+                if (running) {
+                    LOGGER.warn("Lost the connection coordinating the genre cache, fetching it as a single instance: {}", exception.getMessage());
+                }
+                disconnect();
+            }
+        }
+    }
+
+    /**
+     * Queues the publication of a genre, unless it is already queued. Never blocks.
+     */
+    private void markDirty(String genre) {
+        if (leader && bookCache.getConfiguredGenres().contains(genre) && dirtyGenres.add(genre)) {
+            try {
+                publisher.execute(() -> {
+                    // books added from now on are published by the next run
+                    dirtyGenres.remove(genre);
+                    publish(genre);
+                });
+            }
+            catch (RejectedExecutionException exception) {
+                dirtyGenres.remove(genre);
+            }
+        }
+    }
+
+    private BookCache.End publishedEnd(String genre) {
+        long generation = bookCache.getEnd(genre).map(BookCache.End::generation).orElse(0L);
+        Integer position = jdbcTemplate.queryForObject(PUBLISHED_END_SQL, Integer.class, genre, generation);
+        return new BookCache.End(generation, (position == null) ? 0 : position);
+    }
+
+    void connect() {
+        try {
+            Connection opened = dataSource.getConnection();
+            try {
+                opened.setAutoCommit(true);
+                try (Statement statement = opened.createStatement()) {
+                    statement.execute(CREATE_TABLE_SQL);
+                    statement.execute("LISTEN " + PAGES_CHANNEL);
+                    statement.execute("LISTEN " + REQUESTS_CHANNEL);
+                }
+            }
+            catch (SQLException exception) {
+                release(opened);
+                throw exception;
+            }
+            connection = opened;
+
+            electLeader();
+            if (!leader) {
+                // the books of the leader replace the ones of the snapshot, so cursors stay valid across instances
+                bookCache.discardPendingRestores();
+                // pages published while this instance was not listening
+                bookCache.getConfiguredGenres().forEach(this::catchUp);
+                LOGGER.info("Following the genre cache of the leading instance");
+            }
+        }
+        catch (SQLException exception) {
+            LOGGER.warn("Could not connect to coordinate the genre cache, fetching it as a single instance: {}", exception.getMessage());
+            disconnect();
+        }
+    }
+
+    void electLeader() throws SQLException {
+        if (leader) {
+            return;
+        }
+        try (PreparedStatement statement = connection.prepareStatement("SELECT pg_try_advisory_lock(?)")) {
+            statement.setLong(1, lockKey);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (resultSet.next() && resultSet.getBoolean(1)) {
+                    // continues the generations of the previous leader, so cursors handed out by it stay valid
+                    bookCache.getConfiguredGenres().forEach(this::catchUp);
+                    leader = true;
+                    // the genres this instance holds may be missing from the table: restored from a snapshot,
+                    // fetched while it could not reach the database, or published by a leader that failed
+                    published.clear();
+                    bookCache.getConfiguredGenres().forEach(this::markDirty);
+                    LOGGER.info("Leading the genre cache of the instances sharing the database");
+                }
+            }
+        }
+    }
+
+    private void disconnect() {
+        leader = false;
+        Connection closed = connection;
+        connection = null;
+        if (closed != null) {
+            release(closed);
+        }
+    }
+
+    private static void release(Connection released) {
+        // the connection goes back to the pool, where the session and its lock would live on
+        try (Statement statement = released.createStatement()) {
+            statement.execute("UNLISTEN *");
+            statement.execute("SELECT pg_advisory_unlock_all()");
+        }
+        catch (SQLException exception) {
+            // a broken connection is not reused by the pool, and its session ends with it
+        }
+        try {
+            released.close();
+        }
+        catch (SQLException exception) {
+            // nothing left to release
+        }
+    }
+
+    private record SharedPage(long generation, int position, List<BookDTO> books, int firstOffset, int offset) {
+    }
+
+    private record RefillRequest(BookCache.End end, long sentAt) {
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.booktracker.book;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Keeps the readiness probe down while the {@link GenreCacheWarmer} has not loaded enough genres, and publishes its
+ * progress on the {@code genrecache} actuator endpoint (GET /actuator/genrecache).
+ *
+ * The indicator is in the readiness group ({@code management.endpoint.health.group.readiness.include}) but not in the
+ * liveness group, so a slow warm-up never restarts the instance through the liveness probe.
+ */
+@Component("genreCache")
+@Endpoint(id = "genrecache")
+public class GenreCacheHealthIndicator implements HealthIndicator {
+
+    private final GenreCacheWarmer genreCacheWarmer;
+
+    @Autowired
+    public GenreCacheHealthIndicator(GenreCacheWarmer genreCacheWarmer) {
+        this.genreCacheWarmer = genreCacheWarmer;
+    }
+
+
+    @Override
+    public Health health() {
+        Map<String, Object> progress = genreCacheWarmer.getProgress();
+        Health.Builder health = genreCacheWarmer.isReady() ? Health.up() : Health.outOfService();
+        return health
+                .withDetail("loaded", progress.get("loaded"))
+                .withDetail("total", progress.get("total"))
+                .build();
+    }
+
+
+    @ReadOperation
+    public Map<String, Object> progress() {
+        return genreCacheWarmer.getProgress();
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.booktracker.book;
+
+import com.example.booktracker.upstream.UpstreamPriority;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Refills the genres of the {@link BookCache} in the background, so that the explore page never waits on Google Books.
+ *
+ * <ul>
+ *     <li>Once a user pages to less than {@code genre-refill.low-water-mark} books before the end of a genre, the next
+ *     {@code genre-refill.batch-size} books are fetched from the offset stored in the cache, on the Google Books
+ *     executor in the background lane of the rate limiter. Since the cached books are shared by every user, refills
+ *     follow how deep users page into a genre, not how many of them there are.</li>
+ *     <li>Refills of a genre are single-flight: a refill requested while another one of the same genre is running
+ *     joins it instead of fetching another page.</li>
+ *     <li>After a failed refill the genre is not refilled automatically for {@code genre-refill.retry-after},
+ *     so an exhausted genre or an unavailable Google Books does not cause a refill on every page. Genres that still
+ *     need a refill are retried every {@code genre-refill.check-interval}.</li>
+ *     <li>When instances coordinate their genre caches (see {@link GenreCacheCoordinator}), only the leader refills
+ *     the configured genres; the other instances ask it for a refill and receive the books it fetched.</li>
+ * </ul>
+ */
+@Component
+public class GenreCacheRefiller {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GenreCacheRefiller.class);
+
+    private final BookCache bookCache;
+    private final BookApiClient bookApiClient;
+    private final GenreCacheCoordinator genreCacheCoordinator;
+    private final Executor executor;
+    private final boolean enabled;
+    private final int lowWaterMark;
+    private final int batchSize;
+    private final long retryAfterNanos;
+
+    private final RequestCoalescer refills = new RequestCoalescer();
+    private final Map<String, Long> failedAt = new ConcurrentHashMap<>();     // genre to when its last refill failed
+    private final Set<String> lowGenres = ConcurrentHashMap.newKeySet();      // genres read close to their end since their last refill
+
+    private final Counter succeeded;
+    private final Counter failed;
+
+    @Autowired
+    public GenreCacheRefiller(BookCache bookCache,
+                              BookApiClient bookApiClient,
+                              GenreCacheCoordinator genreCacheCoordinator,
+                              @Qualifier("googleBooksExecutor") Executor googleBooksExecutor,
+                              MeterRegistry meterRegistry,
+                              @Value("${genre-refill.enabled:true}") boolean enabled,
+                              @Value("${genre-refill.low-water-mark:18}") int lowWaterMark,
+                              @Value("${genre-refill.batch-size:18}") int batchSize,
+                              @Value("${genre-refill.retry-after:5m}") Duration retryAfter) {
+        this.bookCache = bookCache;
+        this.bookApiClient = bookApiClient;
+        this.genreCacheCoordinator = genreCacheCoordinator;
+        this.executor = googleBooksExecutor;
+        this.enabled = enabled;
+        this.lowWaterMark = lowWaterMark;
+        this.batchSize = batchSize;
+        this.retryAfterNanos = retryAfter.toNanos();
+
+        this.succeeded = Counter.builder("book.cache.refills")
+                .tag("outcome", "success")
+                .register(meterRegistry);
+        this.failed = Counter.builder("book.cache.refills")
+                .tag("outcome", "failure")
+                .register(meterRegistry);
+
+        genreCacheCoordinator.onRefillRequest(this::refillRequested);
+    }
+
+
+    /**
+     * Starts a background refill of a genre if a user paged close to the end of its cached books. Never blocks on the refill.
+     *
+     * @param genre     The genre a page was just read from.
+     * @param remaining The number of cached books after that page.
+     */
+    public void refillIfLow(String genre, int remaining) {
+        if (enabled && remaining < lowWaterMark) {
+            lowGenres.add(genre);
+            if (!isBackingOff(genre)) {
+                refill(genre, batchSize);
+            }
+        }
+    }
+
+
+    /**
+     * Refills a genre on behalf of an instance following this one, unless its refills are backing off.
+     *
+     * @param genre The genre users of the other instance paged close to the end of.
+     */
+    void refillRequested(String genre) {
+        if (enabled && !isBackingOff(genre)) {
+            lowGenres.add(genre);
+            refill(genre, batchSize);
+        }
+    }
+
+
+    /**
+     * Retries the refills of the genres users paged close to the end of while their refill was backing off.
+     */
+    @Scheduled(fixedDelayString = "${genre-refill.check-interval:30000}")
+    public void refillLowGenres() {
+        lowGenres.stream()
+                .filter(genre -> !isBackingOff(genre))
+                .forEach(genre -> refill(genre, batchSize));
+    }
+
+
+    /**
+     * Fetches the next books of a genre into the cache, or joins the refill of the genre already in flight.
+     *
+     * @param genre The genre to refill.
+     * @param limit The number of books to fetch, ignored when joining a refill in flight.
+     * @return A future completing with the books of the genre right after the refill added its books. On an instance
+     *         following the leader it completes with the books the genre has when the leader was asked for a refill.
+     */
+    public CompletableFuture<List<BookDTO>> refill(String genre, int limit) {
+        return refills.executeAsync("refill|" + genre, () -> {
+            CompletableFuture<List<BookDTO>> refill = new CompletableFuture<>();
+            try {
+                executor.execute(() -> {
+                    // the refill outlives the request that triggered it
+                    RequestContextHolder.resetRequestAttributes();
+                    try {
+                        if (genreCacheCoordinator.isFollowing(genre)) {
+                            lowGenres.remove(genre);
+                            genreCacheCoordinator.requestRefill(genre);
+                            refill.complete(bookCache.getPage(genre, null, Integer.MAX_VALUE).books());
+                            return;
+                        }
+                        refill.complete(UpstreamPriority.BACKGROUND.call(() -> fetchIntoCache(genre, limit)));
+                    }
+                    catch (RuntimeException exception) {
+                        refill.completeExceptionally(exception);
+                    }
+                });
+            }
+            catch (RejectedExecutionException exception) {
+                refill.completeExceptionally(exception);
+            }
+            return refill;
+        });
+    }
+
+
+    /**
+     * Blocking variant of {@link #refill(String, int)} for callers that need the refilled books.
+     *
+     * @param genre The genre to refill.
+     * @param limit The number of books to fetch, ignored when joining a refill in flight.
+     * @return The books of the genre right after the refill added its books.
+     */
+    public List<BookDTO> refillNow(String genre, int limit) {
+        try {
+            return refill(genre, limit).join();
+        }
+        catch (CompletionException exception) {
+            if (exception.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw exception;
+        }
+    }
+
+    private List<BookDTO> fetchIntoCache(String genre, int limit) {
+        // the offset is reserved up front so that a refill never fetches the books of another one
+        int offset = bookCache.reserveOffset(genre, limit);
+
+        List<BookDTO> books;
+        try {
+            books = bookApiClient.fetchBooksByGenre(genre, limit, offset);
+        }
+        catch (RuntimeException exception) {
+            bookCache.releaseOffset(genre, offset, limit);
+            failedAt.put(genre, System.nanoTime());
+            failed.increment();
+            LOGGER.warn("Could not refill the {} genre from offset {}: {}", genre, offset, exception.getMessage());
+            throw exception;
+        }
+
+        failedAt.remove(genre);
+        lowGenres.remove(genre);
+        succeeded.increment();
+        return bookCache.updateCachedBooksByGenre(genre, books);
+    }
+
+    private boolean isBackingOff(String genre) {
+        Long failure = failedAt.get(genre);
+        return failure != null && System.nanoTime() - failure < retryAfterNanos;
+    }
+}
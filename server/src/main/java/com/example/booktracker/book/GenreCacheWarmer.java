@@ -0,0 +1,254 @@
+package com.example.booktracker.book;
+
+import com.example.booktracker.upstream.UpstreamPriority;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Loads the configured genres of the {@link BookCache} when the application starts, so that no user waits on the
+ * cache set-up and new instances join the load balancer warm.
+ *
+ * <ul>
+ *     <li>The genres are fetched in parallel on the Google Books executor, at most
+ *     {@code genre-cache.warm-up.max-concurrency} at a time, in the background lane of the rate limiter.
+ *     A failed genre is tried up to {@code genre-cache.warm-up.max-attempts} times.</li>
+ *     <li>The progress is published by the {@code genrecache} actuator endpoint, and the instance is not ready
+ *     (see {@link GenreCacheHealthIndicator}) until {@code genre-cache.warm-up.ready-fraction} of the genres are loaded.
+ *     After {@code genre-cache.warm-up.timeout} the instance is ready anyway, so an unavailable Google Books does not
+ *     keep it out of the load balancer forever.</li>
+ *     <li>An instance following the leader of the genre caches (see {@link GenreCacheCoordinator}) fetches nothing:
+ *     it reads the genres the leader published every {@code genre-cache.warm-up.follower-poll-interval} until all
+ *     of them are loaded or the timeout passed.</li>
+ * </ul>
+ */
+@Component
+public class GenreCacheWarmer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GenreCacheWarmer.class);
+
+    public enum State { PENDING, LOADING, LOADED, FAILED }
+
+    private final BookCache bookCache;
+    private final BookApiClient bookApiClient;
+    private final GenreCacheCoordinator genreCacheCoordinator;
+    private final Executor executor;
+    private final boolean enabled;
+    private final int booksPerGenre;
+    private final int maxConcurrency;
+    private final int maxAttempts;
+    private final double readyFraction;
+    private final Duration timeout;
+    private final Duration followerPollInterval;
+
+    private final Map<String, GenreProgress> progress = new ConcurrentHashMap<>();
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+
+    @Autowired
+    public GenreCacheWarmer(BookCache bookCache,
+                            BookApiClient bookApiClient,
+                            GenreCacheCoordinator genreCacheCoordinator,
+                            @Qualifier("googleBooksExecutor") Executor googleBooksExecutor,
+                            @Value("${genre-cache.warm-up.enabled:true}") boolean enabled,
+                            @Value("${genre-cache.warm-up.books-per-genre:18}") int booksPerGenre,
+                            @Value("${genre-cache.warm-up.max-concurrency:4}") int maxConcurrency,
+                            @Value("${genre-cache.warm-up.max-attempts:3}") int maxAttempts,
+                            @Value("${genre-cache.warm-up.ready-fraction:0.75}") double readyFraction,
+                            @Value("${genre-cache.warm-up.timeout:2m}") Duration timeout,
+                            @Value("${genre-cache.warm-up.follower-poll-interval:1s}") Duration followerPollInterval) {
+        this.bookCache = bookCache;
+        this.bookApiClient = bookApiClient;
+        this.genreCacheCoordinator = genreCacheCoordinator;
+        this.executor = googleBooksExecutor;
+        this.enabled = enabled;
+        this.booksPerGenre = booksPerGenre;
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.readyFraction = readyFraction;
+        this.timeout = timeout;
+        this.followerPollInterval = followerPollInterval;
+
+        bookCache.getConfiguredGenres().forEach(genre -> progress.put(genre, new GenreProgress(State.PENDING, 0, 0, null)));
+    }
+
+
+    /**
+     * Starts the warm-up in the background once the application started.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (enabled) {
+            Thread.ofVirtual().name("genre-cache-warm-up").start(this::warmUp);
+        }
+    }
+
+
+    /**
+     * Loads every configured genre that is not cached yet and waits until all of them loaded or failed.
+     */
+    void warmUp() {
+        startedAt = Instant.now();
+        Map<String, Integer> cached = bookCache.getCachedCounts();
+        List<String> genres = bookCache.getConfiguredGenres().stream()
+                .filter(genre -> {
+                    // genres cached before the warm-up (e.g. by a client) need no fetch
+                    if (cached.containsKey(genre)) {
+                        progress.put(genre, new GenreProgress(State.LOADED, cached.get(genre), 0, null));
+                        return false;
+                    }
+                    return true;
+                })
+                .toList();
+
+        if (!genreCacheCoordinator.isLeader()) {
+            follow(genres);
+            return;
+        }
+
+        Semaphore permits = new Semaphore(maxConcurrency);
+        CountDownLatch done = new CountDownLatch(genres.size());
+        try {
+            for (String genre : genres) {
+                permits.acquire();
+                try {
+                    executor.execute(() -> {
+                        try {
+                            UpstreamPriority.BACKGROUND.run(() -> load(genre));
+                        }
+                        finally {
+                            permits.release();
+                            done.countDown();
+                        }
+                    });
+                }
+                catch (RejectedExecutionException exception) {
+                    progress.put(genre, new GenreProgress(State.FAILED, 0, 0, exception.getMessage()));
+                    permits.release();
+                    done.countDown();
+                }
+            }
+            done.await();
+        }
+        catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        finishedAt = Instant.now();
+        LOGGER.info("Warmed up the genre cache in {} ms: {} of {} genres loaded",
+                Duration.between(startedAt, finishedAt).toMillis(), countLoaded(), progress.size());
+    }
+
+    /**
+     * Reads the genres from the leader until all of them are loaded or the warm-up timed out.
+     */
+    private void follow(List<String> genres) {
+        int round = 0;
+        try {
+            while (true) {
+                round++;
+                for (String genre : genres) {
+                    if (progress.get(genre).state() != State.LOADED) {
+                        genreCacheCoordinator.catchUp(genre);
+                        Integer books = bookCache.getCachedCounts().get(genre);
+                        progress.put(genre, (books == null)
+                                ? new GenreProgress(State.LOADING, 0, round, null)
+                                : new GenreProgress(State.LOADED, books, round, null));
+                    }
+                }
+                if (countLoaded() == progress.size() || Instant.now().isAfter(startedAt.plus(timeout))) {
+                    break;
+                }
+                Thread.sleep(followerPollInterval.toMillis());
+            }
+        }
+        catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        finishedAt = Instant.now();
+        LOGGER.info("Warmed up the genre cache from the leading instance in {} ms: {} of {} genres loaded",
+                Duration.between(startedAt, finishedAt).toMillis(), countLoaded(), progress.size());
+    }
+
+    private void load(String genre) {
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            progress.put(genre, new GenreProgress(State.LOADING, 0, attempt, null));
+            try {
+                List<BookDTO> books = bookApiClient.fetchBooksByGenre(genre, booksPerGenre, bookCache.getOffsetForGenre(genre));
+                bookCache.setUpCache(Map.of(genre, books));
+                progress.put(genre, new GenreProgress(State.LOADED, books.size(), attempt, null));
+                return;
+            }
+            catch (RuntimeException exception) {
+                progress.put(genre, new GenreProgress(State.FAILED, 0, attempt, exception.getMessage()));
+                LOGGER.warn("Could not warm up the {} genre (attempt {} of {}): {}", genre, attempt, maxAttempts, exception.getMessage());
+            }
+        }
+    }
+
+
+    /**
+     * @return Whether enough of the configured genres are loaded (or the warm-up timed out) to serve traffic.
+     */
+    public boolean isReady() {
+        if (!enabled || progress.isEmpty()) {
+            return true;
+        }
+        if (startedAt == null) {
+            return false;
+        }
+        return countLoaded() >= Math.ceil(progress.size() * readyFraction)
+                || Instant.now().isAfter(startedAt.plus(timeout));
+    }
+
+
+    /**
+     * @return A snapshot of the warm-up, as published by the {@code genrecache} actuator endpoint.
+     */
+    public Map<String, Object> getProgress() {
+        Map<String, Object> snapshot = new TreeMap<>();
+        snapshot.put("enabled", enabled);
+        snapshot.put("ready", isReady());
+        snapshot.put("loaded", countLoaded());
+        snapshot.put("total", progress.size());
+        snapshot.put("readyFraction", readyFraction);
+        snapshot.put("startedAt", startedAt);
+        snapshot.put("finishedAt", finishedAt);
+        snapshot.put("genres", new TreeMap<>(progress));
+        return snapshot;
+    }
+
+    private long countLoaded() {
+        return progress.values().stream().filter(genre -> genre.state() == State.LOADED).count();
+    }
+
+    /**
+     * Warm-up of one genre.
+     *
+     * @param state    Where the genre is in the warm-up.
+     * @param books    The number of books loaded.
+     * @param attempts The number of fetches started.
+     * @param error    The error of the last failed fetch, if the genre failed.
+     */
+    public record GenreProgress(State state, int books, int attempts, String error) {
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.booktracker.book;
+
+import com.example.booktracker.upstream.UpstreamPriority;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Adds popular genres that are not configured in {@code genre-cache.genres} to the {@link BookCache}, and evicts them
+ * again once nobody reads them.
+ *
+ * <ul>
+ *     <li>Requests to GET /api/books/{genre} are counted per genre in windows of {@code genre-cache.promotion-window}.
+ *     A genre requested {@code genre-cache.promote-after} times within a window is promoted: its first
+ *     {@code genre-refill.batch-size} books are fetched in the background lane of the rate limiter and cached, and its
+ *     pages are served from the cache from then on.</li>
+ *     <li>At most {@code genre-cache.max-promoted} genres are promoted at a time; promoting another one evicts the one
+ *     read least recently. Promoted genres not read for {@code genre-cache.evict-after} are evicted.</li>
+ * </ul>
+ */
+@Component
+public class GenrePromoter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GenrePromoter.class);
+
+    private final BookCache bookCache;
+    private final BookApiClient bookApiClient;
+    private final Executor executor;
+    private final boolean enabled;
+    private final int promoteAfter;
+    private final int maxPromoted;
+    private final int batchSize;
+    private final long evictAfterNanos;
+
+    private final Cache<String, LongAdder> requestCounts;                         // genre to requests in the current window
+    private final Map<String, Long> lastReads = new ConcurrentHashMap<>();         // promoted genre to when it was last read
+    private final Set<String> promoting = ConcurrentHashMap.newKeySet();
+
+    private final Counter promoted;
+    private final Counter evicted;
+
+    @Autowired
+    public GenrePromoter(BookCache bookCache,
+                         BookApiClient bookApiClient,
+                         @Qualifier("googleBooksExecutor") Executor googleBooksExecutor,
+                         MeterRegistry meterRegistry,
+                         @Value("${genre-cache.promotion.enabled:true}") boolean enabled,
+                         @Value("${genre-cache.promote-after:20}") int promoteAfter,
+                         @Value("${genre-cache.promotion-window:10m}") Duration promotionWindow,
+                         @Value("${genre-cache.max-promoted:16}") int maxPromoted,
+                         @Value("${genre-cache.evict-after:1h}") Duration evictAfter,
+                         @Value("${genre-refill.batch-size:18}") int batchSize) {
+        this.bookCache = bookCache;
+        this.bookApiClient = bookApiClient;
+        this.executor = googleBooksExecutor;
+        this.enabled = enabled;
+        this.promoteAfter = promoteAfter;
+        this.maxPromoted = maxPromoted;
+        this.batchSize = batchSize;
+        this.evictAfterNanos = evictAfter.toNanos();
+        this.requestCounts = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(promotionWindow)
+                .build();
+
+        Gauge.builder("book.cache.genres.promoted", lastReads, Map::size)
+                .description("Genres added to the genre cache because of their popularity")
+                .register(meterRegistry);
+        this.promoted = Counter.builder("book.cache.genres.changes")
+                .tag("change", "promoted")
+                .register(meterRegistry);
+        this.evicted = Counter.builder("book.cache.genres.changes")
+                .tag("change", "evicted")
+                .register(meterRegistry);
+    }
+
+
+    /**
+     * Counts a request to the GET /api/books/{genre} endpoint, promoting the genre if it became popular.
+     *
+     * @param genre The normalized genre.
+     */
+    public void recordRequest(String genre) {
+        if (!enabled || genre.isEmpty() || bookCache.getConfiguredGenres().contains(genre)) {
+            return;
+        }
+        if (lastReads.containsKey(genre)) {
+            recordRead(genre);
+            return;
+        }
+
+        LongAdder count = requestCounts.get(genre, ignored -> new LongAdder());
+        count.increment();
+        if (count.sum() >= promoteAfter && promoting.add(genre)) {
+            promote(genre);
+        }
+    }
+
+
+    /**
+     * Keeps a promoted genre from being evicted.
+     *
+     * @param genre The normalized genre that was just read from the cache.
+     */
+    public void recordRead(String genre) {
+        lastReads.computeIfPresent(genre, (ignored, lastRead) -> System.nanoTime());
+    }
+
+
+    /**
+     * Evicts the promoted genres that were not read for {@code genre-cache.evict-after}.
+     */
+    @Scheduled(fixedDelayString = "${genre-cache.eviction-interval:60000}")
+    public void evictColdGenres() {
+        long now = System.nanoTime();
+        lastReads.forEach((genre, lastRead) -> {
+            if (now - lastRead > evictAfterNanos) {
+                evict(genre, lastRead);
+            }
+        });
+    }
+
+    /**
+     * @return The genres currently promoted into the cache.
+     */
+    public Set<String> getPromotedGenres() {
+        return Set.copyOf(lastReads.keySet());
+    }
+
+    private void promote(String genre) {
+        try {
+            executor.execute(() -> {
+                // the promotion outlives the request that triggered it
+                RequestContextHolder.resetRequestAttributes();
+                try {
+                    List<BookDTO> books = UpstreamPriority.BACKGROUND.call(() -> bookApiClient.fetchBooksByGenre(genre, batchSize, 0));
+                    makeRoom();
+                    bookCache.setUpCache(Map.of(genre, books));
+                    lastReads.put(genre, System.nanoTime());
+                    requestCounts.invalidate(genre);
+                    promoted.increment();
+                    LOGGER.info("Promoted the {} genre into the genre cache", genre);
+                }
+                catch (RuntimeException exception) {
+                    // counted again from zero, so a genre without books is not retried on every request
+                    requestCounts.invalidate(genre);
+                    LOGGER.warn("Could not promote the {} genre into the genre cache: {}", genre, exception.getMessage());
+                }
+                finally {
+                    promoting.remove(genre);
+                }
+            });
+        }
+        catch (RejectedExecutionException exception) {
+            promoting.remove(genre);
+        }
+    }
+
+    private void makeRoom() {
+        while (lastReads.size() >= maxPromoted) {
+            Map.Entry<String, Long> coldest = lastReads.entrySet().stream()
+                    .min((first, second) -> Long.compare(first.getValue() - second.getValue(), 0))
+                    .orElse(null);
+            if (coldest == null) {
+                return;
+            }
+            evict(coldest.getKey(), coldest.getValue());
+        }
+    }
+
+    private void evict(String genre, long lastRead) {
+        // a genre read in the meantime stays
+        if (lastReads.remove(genre, lastRead)) {
+            bookCache.evict(genre);
+            evicted.increment();
+            LOGGER.info("Evicted the {} genre from the genre cache", genre);
+        }
+    }
+}
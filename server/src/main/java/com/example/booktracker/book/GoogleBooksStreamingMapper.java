@@ -0,0 +1,191 @@
+package com.example.booktracker.book;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Decodes Google Books volume responses token by token, building {@link BookDTO}s directly from the stream
+ * instead of materializing the whole response as a {@link com.fasterxml.jackson.databind.JsonNode} tree first.
+ *
+ * The defaults for missing fields are the same as the ones applied by {@link BookApiClient#mapToBookDTO}:
+ * absent text fields become empty strings, absent arrays become empty lists, a missing page count becomes 0
+ * and a missing "imageLinks" object becomes the placeholder cover.
+ */
+@Component
+public class GoogleBooksStreamingMapper {
+
+    static final String PLACEHOLDER_COVER_URL = "https://via.placeholder.com/150x220?text=No+Cover+Available";
+
+    private final JsonFactory jsonFactory;
+
+    @Autowired
+    public GoogleBooksStreamingMapper(ObjectMapper objectMapper) {
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+
+    /**
+     * Reads a Google Books "volumes" response and maps every element of its "items" array to a {@link BookDTO}.
+     * Items without a "volumeInfo" field are mapped to {@code null}, as the tree based mapper does.
+     *
+     * @param body The response body stream. It is not closed by this method.
+     * @return The mapped books, or {@code null} if the response has no "items" field.
+     * @throws IOException If the stream cannot be read or does not contain valid JSON.
+     */
+    public List<BookDTO> readBooks(InputStream body) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+
+            List<BookDTO> books = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+
+                if ("items".equals(field) && value == JsonToken.START_ARRAY) {
+                    books = new ArrayList<>();
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        books.add(readBook(parser));
+                    }
+                }
+                else if ("items".equals(field)) {
+                    // present but not an array, the tree mapper would iterate over nothing
+                    parser.skipChildren();
+                    books = new ArrayList<>();
+                }
+                else {
+                    parser.skipChildren();
+                }
+            }
+
+            return books;
+        }
+    }
+
+    private BookDTO readBook(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return null;
+        }
+
+        String bookId = "";
+        BookDTO book = null;
+        boolean hasVolumeInfo = false;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+
+            if ("id".equals(field)) {
+                bookId = readText(parser);
+            }
+            else if ("volumeInfo".equals(field)) {
+                hasVolumeInfo = true;
+                book = readVolumeInfo(parser, bookId);
+            }
+            else {
+                parser.skipChildren();
+            }
+        }
+
+        if (!hasVolumeInfo) {
+            return null;
+        }
+
+        // "id" normally precedes "volumeInfo", but re-create the book if it came afterwards
+        return book.getId().equals(bookId) ? book : new BookDTO(bookId, book.getTitle(), book.getAuthors(), book.getPublisher(),
+                book.getDescription(), book.getPageCount(), book.getCategories(), book.getImageUrl(), book.getLanguage());
+    }
+
+    private BookDTO readVolumeInfo(JsonParser parser, String bookId) throws IOException {
+        String title = "";
+        List<String> authors = Collections.emptyList();
+        String publisher = "";
+        String description = "";
+        int pageCount = 0;
+        List<String> categories = Collections.emptyList();
+        String imageUrl = PLACEHOLDER_COVER_URL;
+        String language = "";
+
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return new BookDTO(bookId, title, authors, publisher, description, pageCount, categories, imageUrl, language);
+        }
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+
+            switch (field) {
+                case "title" -> title = readText(parser);
+                case "authors" -> authors = readTextArray(parser);
+                case "publisher" -> publisher = readText(parser);
+                case "description" -> description = readText(parser);
+                case "pageCount" -> pageCount = (value == JsonToken.VALUE_NUMBER_INT || value == JsonToken.VALUE_NUMBER_FLOAT) ? parser.getValueAsInt(0) : 0;
+                case "categories" -> categories = readTextArray(parser);
+                case "imageLinks" -> imageUrl = readThumbnail(parser);
+                case "language" -> language = readText(parser);
+                default -> parser.skipChildren();
+            }
+        }
+
+        return new BookDTO(bookId, title, authors, publisher, description, pageCount, categories, imageUrl, language);
+    }
+
+    // returns the thumbnail of an "imageLinks" value, or an empty string when the object has none
+    private String readThumbnail(JsonParser parser) throws IOException {
+        String thumbnail = "";
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return thumbnail;
+        }
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if ("thumbnail".equals(field)) {
+                thumbnail = readText(parser);
+            }
+            else {
+                parser.skipChildren();
+            }
+        }
+        return thumbnail;
+    }
+
+    private List<String> readTextArray(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return Collections.emptyList();
+        }
+
+        List<String> values = new ArrayList<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            values.add(readText(parser));
+        }
+        return values;
+    }
+
+    // mirrors JsonNode.asText(): scalars are returned as text, containers as an empty string
+    private String readText(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return "";
+        }
+        return parser.getText();
+    }
+}
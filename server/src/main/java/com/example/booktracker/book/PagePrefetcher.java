@@ -0,0 +1,280 @@
+package com.example.booktracker.book;
+
+import com.example.booktracker.upstream.UpstreamPriority;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.IntFunction;
+
+/**
+ * Predictive prefetch of the next page of paged book lists (searches and genre rows).
+ *
+ * <ul>
+ *     <li>After page N of a query was served in full, page N+1 is loaded on the Google Books executor in the background
+ *     lane of the rate limiter and kept for {@code prefetch.ttl}. If the user asks for it in time it is served without
+ *     waiting on Google Books. A prefetch still in flight is waited for up to {@code prefetch.max-wait}, after which
+ *     the page is loaded directly, since a background call may be queued behind the other background work. That load
+ *     must not wait on the prefetch in turn: searches prefetch past the loader of the {@link BookSearchCache}, and
+ *     calls for genre rows are coalesced per lane only.</li>
+ *     <li>A prefetched page is served at most once. Prefetches and the ones that were used are counted per query
+ *     (kind, view, normalized term and page size) and exported as {@code book.prefetch.issued} and {@code book.prefetch.hits}.</li>
+ *     <li>Once a query has {@code prefetch.min-samples} prefetches and less than {@code prefetch.min-hit-rate} of them
+ *     were used, prefetching is switched off for that query for {@code prefetch.disabled-for}, after which its counts
+ *     start over. Skipped prefetches are counted as {@code book.prefetch.skipped}.</li>
+ * </ul>
+ */
+@Component
+public class PagePrefetcher {
+
+    /** The kinds of paged queries, tagging the meters together with the view of the books. */
+    static final List<String> KINDS = List.of("search", "genre");
+
+    private final Executor executor;
+    private final boolean enabled;
+    private final Duration maxWait;
+    private final int minSamples;
+    private final double minHitRate;
+    private final long disabledForNanos;
+
+    private final Cache<PageKey, CompletableFuture<List<BookDTO>>> prefetchedPages;
+    private final Cache<QueryKey, QueryStats> queryStats;
+
+    private final Map<String, Meters> meters = new HashMap<>();     // by kind tag, complete after construction
+
+    @Autowired
+    public PagePrefetcher(@Qualifier("googleBooksExecutor") Executor googleBooksExecutor,
+                          MeterRegistry meterRegistry,
+                          @Value("${prefetch.enabled:true}") boolean enabled,
+                          @Value("${prefetch.ttl:60s}") Duration timeToLive,
+                          @Value("${prefetch.max-wait:250ms}") Duration maxWait,
+                          @Value("${prefetch.max-entries:1000}") long maxEntries,
+                          @Value("${prefetch.min-samples:10}") int minSamples,
+                          @Value("${prefetch.min-hit-rate:0.2}") double minHitRate,
+                          @Value("${prefetch.disabled-for:30m}") Duration disabledFor) {
+        this.executor = googleBooksExecutor;
+        this.enabled = enabled;
+        this.maxWait = maxWait;
+        this.minSamples = Math.max(1, minSamples);
+        this.minHitRate = minHitRate;
+        this.disabledForNanos = disabledFor.toNanos();
+        this.prefetchedPages = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(timeToLive)
+                .build();
+        this.queryStats = Caffeine.newBuilder()
+                .maximumSize(maxEntries * 10)
+                .expireAfterAccess(disabledFor.plus(timeToLive))
+                .build();
+
+        for (String kind : KINDS) {
+            for (BookView view : BookView.values()) {
+                String tag = kindTag(kind, view);
+                meters.put(tag, new Meters(
+                        counter(meterRegistry, "book.prefetch.issued", tag),
+                        counter(meterRegistry, "book.prefetch.hits", tag),
+                        counter(meterRegistry, "book.prefetch.skipped", tag)));
+            }
+        }
+    }
+
+
+    /**
+     * Returns a page of a paged query, served from a prefetched page if there is one, and prefetches the next page.
+     *
+     * @param kind   The kind of query, one of {@link #KINDS}, so that equal terms of different kinds do not share pages.
+     * @param view   The fields the loader fetches, so that pages of different views are not served for each other.
+     * @param query  The search term or genre, normalized before being used as a key.
+     * @param limit  The size of a page.
+     * @param offset The index of the first book of the requested page.
+     * @param loader Loads the page starting at the given offset, used for the requested page if it was not prefetched
+     *               and for the prefetch of the next one. Must throw for pages that do not exist.
+     * @return The books of the requested page.
+     */
+    public List<BookDTO> getPage(String kind, BookView view, String query, int limit, int offset, IntFunction<List<BookDTO>> loader) {
+        return getPage(kind, view, query, limit, offset, loader, loader);
+    }
+
+
+    /**
+     * Variant of {@link #getPage(String, BookView, String, int, int, IntFunction)} prefetching with a loader of its own.
+     *
+     * @param loader         Loads the requested page if it was not prefetched, or its prefetch was not ready in time.
+     * @param prefetchLoader Loads the next page in the background. Must not hold anything the {@code loader} waits on
+     *                       (such as the load of a cache entry), or a request giving up on the prefetch still waits for it.
+     * @return The books of the requested page.
+     */
+    public List<BookDTO> getPage(String kind, BookView view, String query, int limit, int offset,
+                                 IntFunction<List<BookDTO>> loader, IntFunction<List<BookDTO>> prefetchLoader) {
+        String kindTag = kindTag(kind, view);
+        if (!meters.containsKey(kindTag)) {
+            throw new IllegalArgumentException("Unknown kind of paged query: " + kind);
+        }
+        PageKey key = new PageKey(kindTag, RequestCoalescer.normalize(query), limit, offset);
+
+        List<BookDTO> books = takePrefetched(key);
+        if (books == null) {
+            books = loader.apply(offset);
+        }
+
+        // a short page is the last one, there is nothing to prefetch after it
+        if (enabled && books.size() >= limit) {
+            prefetch(key.next(), prefetchLoader);
+        }
+        return books;
+    }
+
+    private List<BookDTO> takePrefetched(PageKey key) {
+        CompletableFuture<List<BookDTO>> prefetched = prefetchedPages.asMap().remove(key);
+        if (prefetched == null) {
+            return null;
+        }
+
+        try {
+            List<BookDTO> books = prefetched.get(maxWait.toMillis(), TimeUnit.MILLISECONDS);
+            stats(key.query()).hit();
+            meters.get(key.kind()).hits().increment();
+            return books;
+        }
+        catch (TimeoutException exception) {
+            // still waiting in the background lane, the user does not wait behind it
+            return null;
+        }
+        catch (ExecutionException | CancellationException exception) {
+            // a failed prefetch is retried as a regular request, which reports the error if it persists
+            return null;
+        }
+        catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private void prefetch(PageKey key, IntFunction<List<BookDTO>> loader) {
+        QueryStats stats = stats(key.query());
+        if (!stats.allowsPrefetch(System.nanoTime())) {
+            meters.get(key.kind()).skipped().increment();
+            return;
+        }
+
+        CompletableFuture<List<BookDTO>> page = new CompletableFuture<>();
+        if (prefetchedPages.asMap().putIfAbsent(key, page) != null) {
+            return;
+        }
+        stats.issued();
+        meters.get(key.kind()).issued().increment();
+
+        try {
+            executor.execute(() -> {
+                // the prefetch outlives the request that triggered it, and the page may be served to another one
+                RequestContextHolder.resetRequestAttributes();
+                try {
+                    page.complete(UpstreamPriority.BACKGROUND.call(() -> loader.apply(key.offset())));
+                }
+                catch (RuntimeException exception) {
+                    prefetchedPages.asMap().remove(key, page);
+                    page.completeExceptionally(exception);
+                }
+            });
+        }
+        catch (RejectedExecutionException exception) {
+            prefetchedPages.asMap().remove(key, page);
+            page.cancel(false);
+        }
+    }
+
+    private QueryStats stats(QueryKey query) {
+        return queryStats.get(query, ignored -> new QueryStats());
+    }
+
+    private static String kindTag(String kind, BookView view) {
+        return (view == BookView.FULL) ? kind : kind + "-" + view.name().toLowerCase(Locale.ROOT);
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String name, String kind) {
+        return Counter.builder(name)
+                .tag("kind", kind)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Whether prefetching is currently switched off for a query because its prefetched pages were rarely used.
+     */
+    boolean isDisabled(String kind, BookView view, String query, int limit) {
+        QueryStats stats = queryStats.getIfPresent(new QueryKey(kindTag(kind, view), RequestCoalescer.normalize(query), limit));
+        return stats != null && !stats.allowsPrefetch(System.nanoTime());
+    }
+
+    private record Meters(Counter issued, Counter hits, Counter skipped) {
+    }
+
+    private record QueryKey(String kind, String query, int limit) {
+    }
+
+    private record PageKey(String kind, String term, int limit, int offset) {
+
+        QueryKey query() {
+            return new QueryKey(kind, term, limit);
+        }
+
+        PageKey next() {
+            return new PageKey(kind, term, limit, offset + limit);
+        }
+    }
+
+    /**
+     * Prefetches issued for a query and how many of them were used, since the query was last switched back on.
+     */
+    private class QueryStats {
+
+        private int issued;
+        private int hits;
+        private long disabledUntil;
+        private boolean disabled;
+
+        synchronized void issued() {
+            issued++;
+        }
+
+        synchronized void hit() {
+            hits++;
+        }
+
+        synchronized boolean allowsPrefetch(long now) {
+            if (disabled) {
+                if (now - disabledUntil < 0) {
+                    return false;
+                }
+                // give the query another chance
+                disabled = false;
+                issued = 0;
+                hits = 0;
+            }
+
+            if (issued >= minSamples && hits < issued * minHitRate) {
+                disabled = true;
+                disabledUntil = now + disabledForNanos;
+                return false;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.booktracker.book;
+
+import com.example.booktracker.book.exception.BookNotFoundException;
+import com.example.booktracker.book.exception.ExternalServiceException;
+import com.example.booktracker.upstream.StaleFallback;
+import com.example.booktracker.upstream.UpstreamExchangeFilter;
+import com.example.booktracker.upstream.UpstreamPriority;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.springframework.web.util.UriBuilder;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Non-blocking implementation of the {@link AsyncBookClient} lookups, built on the Google Books {@link WebClient}.
+ * Active when {@code upstream.client=reactive}, in which case it is injected wherever an {@link AsyncBookClient} is needed.
+ *
+ * Responses are decoded on the Reactor Netty event loops, so a fan-out of 8 or 20 lookups holds no thread while
+ * waiting on Google Books. Lookups are coalesced, rate limited, guarded by the circuit breaker and backed by the
+ * last known good results exactly like the ones of the {@link BookApiClient}, but are not hedged.
+ */
+@Service
+@Primary
+@ConditionalOnProperty(name = "upstream.client", havingValue = "reactive")
+public class ReactiveBookApiClient implements AsyncBookClient {
+
+    @Value("${google.books.api-key}")
+    private String GOOGLE_KEY;
+
+    private final WebClient googleBooksClient;
+    private final BookApiClient bookApiClient;                                  // maps the volumes to BookDTOs
+    private final BookCatalog bookCatalog;
+    private final StaleFallback googleBooksFallback;
+    private final RequestCoalescer requestCoalescer = new RequestCoalescer();
+
+    @Autowired
+    public ReactiveBookApiClient(@Qualifier("googleBooksWebClient") WebClient googleBooksWebClient,
+                                 BookApiClient bookApiClient,
+                                 BookCatalog bookCatalog,
+                                 @Qualifier("googleBooksFallback") StaleFallback googleBooksFallback) {
+        this.googleBooksClient = googleBooksWebClient.mutate()
+                .baseUrl(BookApiClient.GOOGLE_BOOKS_BASE_URL)
+                .build();
+        this.bookApiClient = bookApiClient;
+        this.bookCatalog = bookCatalog;
+        this.googleBooksFallback = googleBooksFallback;
+    }
+
+
+    @Override
+    public CompletableFuture<BookDTO> fetchBookByTitle(String title) {
+        String key = RequestCoalescer.key("title", title, 1, 0);
+        String context = "fetching book with title: " + title;
+
+        return requestCoalescer.executeAsync(key, () -> googleBooksFallback.callAsync(key, () -> requestVolumes(uriBuilder -> uriBuilder
+                        .path("/volumes")
+                        .queryParam("q", "intitle:" + title)
+                        .queryParam("maxResults", 1)
+                        .queryParam("fields", BookApiClient.GOOGLE_BOOKS_FIELDS)
+                        .queryParam("key", GOOGLE_KEY)
+                        .build(), context)
+                .map(response -> {
+                    BookDTO book = bookApiClient.mapToBookDTO(response.get("items").get(0));
+                    bookCatalog.record(List.of(book));
+                    return book;
+                })
+                .switchIfEmpty(Mono.error(() -> new BookNotFoundException("No book found with the title: " + title)))
+                .toFuture()));
+    }
+
+
+    @Override
+    public CompletableFuture<JsonNode> fetchBooksByGenreAsync(String genre, int limit, int offset) {
+        String key = RequestCoalescer.key("genre-json", genre, limit, offset);
+
+        return requestCoalescer.executeAsync(key, () -> requestVolumes(uriBuilder -> uriBuilder
+                        .path("/volumes")
+                        .queryParam("q", "subject:" + genre)
+                        .queryParam("maxResults", limit)
+                        .queryParam("startIndex", offset)
+                        .queryParam("fields", BookApiClient.GOOGLE_BOOKS_FIELDS)
+                        .queryParam("key", GOOGLE_KEY)
+                        .build(), "fetching books for the genre " + genre)
+                .switchIfEmpty(Mono.error(() -> new BookNotFoundException("No books found for genre: " + genre + ".")))
+                .toFuture());
+    }
+
+    /**
+     * Requests a page of volumes from Google Books in the lane of the calling thread.
+     *
+     * @param uriFunction Builds the request URI relative to the Google Books base URL.
+     * @param context     Describes the request in error messages.
+     * @return A {@link Mono} of the response, empty if the response did not contain any "items", or failing with the
+     *         same exceptions the {@link BookApiClient} throws.
+     */
+    private Mono<JsonNode> requestVolumes(Function<UriBuilder, URI> uriFunction, String context) {
+        return UpstreamExchangeFilter.decoded(googleBooksClient.get()
+                        .uri(uriFunction)
+                        .attribute(UpstreamExchangeFilter.PRIORITY_ATTRIBUTE, UpstreamPriority.current())
+                        .retrieve()
+                        .bodyToMono(JsonNode.class))
+                .filter(response -> response.has("items") && response.get("items").isArray() && !response.get("items").isEmpty())
+                .onErrorMap(exception -> toServiceException(exception, context));
+    }
+
+    private Throwable toServiceException(Throwable exception, String context) {
+        if (exception instanceof WebClientResponseException responseException) {
+            return BookApiClient.apiException(responseException.getStatusCode(), context);
+        }
+        if (exception instanceof BookNotFoundException || exception instanceof ExternalServiceException) {
+            return exception;
+        }
+        // connection failures, timeouts, open circuit or no rate limit permit
+        Throwable cause = (exception.getCause() != null && !(exception instanceof IOException)) ? exception.getCause() : exception;
+        return BookApiClient.transportException(cause, context);
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.booktracker.book;
+
+import com.example.booktracker.book.exception.ExternalServiceException;
+import com.example.booktracker.upstream.UpstreamPriority;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Collapses identical upstream requests that are in flight at the same time into a single call.
+ *
+ * The first caller for a key becomes the leader and performs the call, every other caller arriving while
+ * the leader's call is still running waits on the leader's future and receives the same result or exception.
+ * Once the call completes, the key is released so the next request goes upstream again.
+ *
+ * Calls are only shared within an {@link UpstreamPriority} lane: a user waiting behind a call led by background work
+ * would otherwise wait for a permit in the background lane, behind all the other background calls.
+ *
+ * Followers of a blocking call wait at most {@code maxWait} for the leader, then give up with an
+ * {@link ExternalServiceException} instead of hanging on a call that never returns.
+ */
+public class RequestCoalescer {
+
+    private static final Duration DEFAULT_MAX_WAIT = Duration.ofSeconds(30);
+
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Duration maxWait;
+
+    public RequestCoalescer() {
+        this(DEFAULT_MAX_WAIT);
+    }
+
+    public RequestCoalescer(Duration maxWait) {
+        this.maxWait = maxWait;
+    }
+
+
+    /**
+     * Builds a coalescing key from a request type, a query and its paging parameters.
+     * The query is trimmed, lower-cased and has its whitespace collapsed so that trivially different
+     * spellings of the same search share one upstream call.
+     *
+     * @param type   The kind of request (e.g. "search", "title", "genre") so different endpoints never share a key.
+     * @param query  The raw query term.
+     * @param limit  The number of results requested.
+     * @param offset The start index requested.
+     * @return The normalized key.
+     */
+    public static String key(String type, String query, int limit, int offset) {
+        return type + "|" + normalize(query) + "|" + limit + "|" + offset;
+    }
+
+
+    /**
+     * Normalizes a query term by trimming it, lower-casing it and collapsing runs of whitespace.
+     *
+     * @param query The raw query term.
+     * @return The normalized term, or an empty string if the query is null.
+     */
+    public static String normalize(String query) {
+        if (query == null) {
+            return "";
+        }
+        return query.trim().toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+    }
+
+
+    /**
+     * Executes a blocking call, sharing it with any concurrent caller using the same key.
+     * The leader runs the call on its own thread; followers block until the leader finishes.
+     *
+     * @param key  The coalescing key, usually built with {@link #key(String, String, int, int)}.
+     * @param call The upstream call to perform if no identical call is in flight.
+     * @return The result of the (possibly shared) call.
+     * @throws RuntimeException The exception thrown by the shared call, rethrown to every waiting caller.
+     * @throws ExternalServiceException If this caller followed a call that did not complete within the maximum wait.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Supplier<T> call) {
+        String laneKey = laneKey(key);
+        CompletableFuture<Object> leaderFuture = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(laneKey, leaderFuture);
+
+        // another caller is already fetching this key, wait for its result
+        if (existing != null) {
+            return (T) await(existing);
+        }
+
+        try {
+            T result = call.get();
+            leaderFuture.complete(result);
+            return result;
+        }
+        catch (Throwable exception) {
+            // errors included, or the followers would wait for a result that never comes
+            leaderFuture.completeExceptionally(exception);
+            throw exception;
+        }
+        finally {
+            inFlight.remove(laneKey, leaderFuture);
+        }
+    }
+
+
+    /**
+     * Executes an asynchronous call, sharing the returned future with any concurrent caller using the same key.
+     *
+     * @param key  The coalescing key, usually built with {@link #key(String, String, int, int)}.
+     * @param call Starts the upstream call if no identical call is in flight.
+     * @return A future completing with the result of the (possibly shared) call.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> executeAsync(String key, Supplier<CompletableFuture<T>> call) {
+        String laneKey = laneKey(key);
+        CompletableFuture<Object> leaderFuture = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(laneKey, leaderFuture);
+
+        if (existing != null) {
+            return (CompletableFuture<T>) (CompletableFuture<?>) existing.thenApply(result -> result);
+        }
+
+        try {
+            call.get().whenComplete((result, exception) -> {
+                inFlight.remove(laneKey, leaderFuture);
+                if (exception != null) {
+                    leaderFuture.completeExceptionally(unwrap(exception));
+                }
+                else {
+                    leaderFuture.complete(result);
+                }
+            });
+        }
+        catch (Throwable exception) {
+            inFlight.remove(laneKey, leaderFuture);
+            leaderFuture.completeExceptionally(exception);
+        }
+
+        // followers get a dependent stage so that one of them cancelling does not affect the others
+        return (CompletableFuture<T>) (CompletableFuture<?>) leaderFuture.thenApply(result -> result);
+    }
+
+
+    /**
+     * Returns the number of distinct upstream calls currently in flight.
+     *
+     * @return The number of keys with a call in progress.
+     */
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+
+    private static String laneKey(String key) {
+        return UpstreamPriority.current().name() + "|" + key;
+    }
+
+    private Object await(CompletableFuture<Object> future) {
+        try {
+            return future.get(maxWait.toMillis(), TimeUnit.MILLISECONDS);
+        }
+        catch (ExecutionException exception) {
+            Throwable cause = exception.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new RuntimeException(cause);
+        }
+        catch (TimeoutException exception) {
+            throw new ExternalServiceException("Timed out waiting for an identical upstream request to complete.");
+        }
+        catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for an identical upstream request to complete.");
+        }
+    }
+
+    private Throwable unwrap(Throwable exception) {
+        return (exception instanceof CompletionException && exception.getCause() != null) ? exception.getCause() : exception;
+    }
+}
@@ -0,0 +1,271 @@
+package com.example.booktracker.book;
+
+import com.example.booktracker.book.customResponses.SimilarBooksResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Resolves a list of similar book titles (as returned by TasteDive) to {@link BookDTO}s through Google Books.
+ *
+ * <ul>
+ *     <li>At most {@code similar-books.max-concurrency} title lookups are in flight at once; the next title is
+ *     started as soon as one finishes, without holding a thread while waiting.</li>
+ *     <li>Each lookup fails on its own after {@code similar-books.per-title-timeout}.</li>
+ *     <li>After {@code similar-books.deadline} the response is returned with whatever has resolved so far.
+ *     Titles that were still in flight or never started are reported as pending, failed ones as errors.</li>
+ * </ul>
+ *
+ * {@link #resolveAsync(List, Consumer)} does the same without blocking the caller and hands every book to a callback
+ * as soon as it resolves, which the streaming variant of the endpoint uses.
+ */
+@Component
+public class SimilarBooksResolver {
+
+    private final AsyncBookClient bookClient;
+    private final int maxConcurrency;
+    private final Duration perTitleTimeout;
+    private final Duration deadline;
+
+    @Autowired
+    public SimilarBooksResolver(AsyncBookClient bookClient,
+                                @Value("${similar-books.max-concurrency:6}") int maxConcurrency,
+                                @Value("${similar-books.per-title-timeout:2s}") Duration perTitleTimeout,
+                                @Value("${similar-books.deadline:3s}") Duration deadline) {
+        this.bookClient = bookClient;
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.perTitleTimeout = perTitleTimeout;
+        this.deadline = deadline;
+    }
+
+
+    /**
+     * Resolves the given titles to books, respecting the concurrency cap, the per-title timeout and the overall deadline.
+     *
+     * @param titles The titles of the similar books, in the order they should be returned.
+     * @return A {@link SimilarBooksResponse} containing the resolved books (in the order of the titles), an entry in the
+     *         errors map for every title that failed, and the titles that were still pending when the deadline passed.
+     */
+    public SimilarBooksResponse resolve(List<String> titles) {
+        Resolution resolution = start(titles, book -> { });
+        try {
+            return resolution.result.get();
+        }
+        catch (InterruptedException exception) {
+            // answers with whatever resolved so far
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException exception) {
+            // never completed exceptionally
+        }
+        return resolution.close();
+    }
+
+
+    /**
+     * Resolves the given titles to books without blocking, handing each book to a callback as soon as it resolves.
+     * The callback is never invoked after the returned future completed.
+     *
+     * @param titles The titles of the similar books.
+     * @param onBook Called with every resolved book, in the order they resolve. May be called from several threads,
+     *               but never concurrently, and never while holding a lock, so a slow callback only delays the books
+     *               after it and the completion of the returned future.
+     * @return A future completing, once every title resolved or failed or the deadline passed, with a
+     *         {@link SimilarBooksResponse} like the one of {@link #resolve(List)}.
+     */
+    public CompletableFuture<SimilarBooksResponse> resolveAsync(List<String> titles, Consumer<BookDTO> onBook) {
+        return start(titles, onBook).result;
+    }
+
+    public Duration getDeadline() {
+        return deadline;
+    }
+
+    private Resolution start(List<String> titles, Consumer<BookDTO> onBook) {
+        Resolution resolution = new Resolution(titles, onBook);
+        resolution.start();
+        resolution.allDone
+                .completeOnTimeout(null, deadline.toMillis(), TimeUnit.MILLISECONDS)
+                .thenRun(resolution::close);
+        return resolution;
+    }
+
+    private enum Status { RESOLVED, FAILED }
+
+    private record Outcome(Status status, BookDTO book, String error) {
+    }
+
+    /**
+     * State of a single resolution request. Lookups are started from the completion callback of the previous ones,
+     * so only {@code maxConcurrency} of them are in flight at any time. A lookup that timed out counts as failed
+     * right away, but keeps its slot until the call returns.
+     *
+     * Resolved books are queued under the lock and handed to the callback outside of it, by one thread at a time: every
+     * thread recording a book then tries to send, the one finding nobody sending drains the queue while the others
+     * return. The result completes once closed and drained, so no book is handed over after it.
+     */
+    private class Resolution {
+
+        private final List<String> titles;
+        private final Consumer<BookDTO> onBook;
+        private final AtomicReferenceArray<Outcome> outcomes;
+        private final AtomicInteger nextTitle = new AtomicInteger();
+        private final AtomicInteger remaining;
+        private final AtomicBoolean closed = new AtomicBoolean();          // set once the response is assembled
+        private final Object publishLock = new Object();                    // orders the queued books with closing
+        private final Queue<BookDTO> unsent = new ArrayDeque<>();           // guarded by publishLock
+        private boolean sending;                                            // guarded by publishLock
+        private SimilarBooksResponse response;                              // guarded by publishLock, set on closing
+        private final CompletableFuture<Void> allDone = new CompletableFuture<>();
+        private final CompletableFuture<SimilarBooksResponse> result = new CompletableFuture<>();
+
+        Resolution(List<String> titles, Consumer<BookDTO> onBook) {
+            this.titles = titles;
+            this.onBook = onBook;
+            this.outcomes = new AtomicReferenceArray<>(titles.size());
+            this.remaining = new AtomicInteger(titles.size());
+        }
+
+        void start() {
+            if (titles.isEmpty()) {
+                allDone.complete(null);
+                return;
+            }
+            for (int i = 0; i < Math.min(maxConcurrency, titles.size()); i++) {
+                launchNext();
+            }
+        }
+
+        private void launchNext() {
+            if (closed.get()) {
+                return;
+            }
+
+            int index = nextTitle.getAndIncrement();
+            if (index >= titles.size()) {
+                return;
+            }
+
+            String title = titles.get(index);
+            CompletableFuture<BookDTO> lookup;
+            try {
+                lookup = bookClient.fetchBookByTitle(title);
+            }
+            catch (RuntimeException exception) {
+                lookup = CompletableFuture.failedFuture(exception);
+            }
+
+            // the timeout fails a copy, the slot is only released once the call itself finished
+            lookup.copy()
+                    .orTimeout(perTitleTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                    .whenComplete((book, exception) -> {
+                        if (exception != null || book == null) {
+                            record(index, new Outcome(Status.FAILED, null, "Error while fetching data for the similar book with title: " + title));
+                        }
+                        else {
+                            record(index, new Outcome(Status.RESOLVED, book, null));
+                        }
+
+                        if (remaining.decrementAndGet() == 0) {
+                            allDone.complete(null);
+                        }
+                        send();
+                    });
+            lookup.whenComplete((book, exception) -> launchNext());
+        }
+
+        private void record(int index, Outcome outcome) {
+            // outcomes arriving after the response was assembled stay pending, so every book is either published or pending
+            synchronized (publishLock) {
+                if (closed.get()) {
+                    return;
+                }
+                outcomes.set(index, outcome);
+                if (outcome.status() == Status.RESOLVED) {
+                    unsent.add(outcome.book());
+                }
+            }
+        }
+
+        /**
+         * Hands the queued books to the callback, unless another thread is already doing so, and completes the result
+         * once the resolution is closed and every book it holds was handed over.
+         */
+        private void send() {
+            synchronized (publishLock) {
+                if (sending) {
+                    return;
+                }
+                sending = true;
+            }
+            while (true) {
+                BookDTO book;
+                SimilarBooksResponse closedResponse = null;
+                synchronized (publishLock) {
+                    book = unsent.poll();
+                    if (book == null) {
+                        sending = false;
+                        closedResponse = response;
+                    }
+                }
+                if (book == null) {
+                    if (closedResponse != null) {
+                        result.complete(closedResponse);
+                    }
+                    return;
+                }
+                onBook.accept(book);
+            }
+        }
+
+        SimilarBooksResponse close() {
+            SimilarBooksResponse closedResponse;
+            boolean handedOver;
+            synchronized (publishLock) {
+                closed.set(true);
+                if (response == null) {
+                    response = toResponse();
+                }
+                closedResponse = response;
+                // otherwise the thread sending, or about to send, the queued books completes the result
+                handedOver = !sending && unsent.isEmpty();
+            }
+            if (handedOver) {
+                result.complete(closedResponse);
+            }
+            return closedResponse;
+        }
+
+        SimilarBooksResponse toResponse() {
+            List<BookDTO> books = new ArrayList<>();
+            Map<String, String> errors = new LinkedHashMap<>();
+            List<String> pending = new ArrayList<>();
+            int errorCounter = 1;
+
+            for (int i = 0; i < titles.size(); i++) {
+                Outcome outcome = outcomes.get(i);
+                if (outcome == null) {
+                    pending.add(titles.get(i));
+                }
+                else if (outcome.status() == Status.RESOLVED) {
+                    books.add(outcome.book());
+                }
+                else {
+                    errors.put("error " + errorCounter++, outcome.error());
+                }
+            }
+
+            return new SimilarBooksResponse(errors, books, pending);
+        }
+    }
+}
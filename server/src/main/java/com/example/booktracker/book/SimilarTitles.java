@@ -0,0 +1,45 @@
+package com.example.booktracker.book;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Entity
+@Table(name = "similar_titles")
+public class SimilarTitles {
+
+    public SimilarTitles() {
+    }
+
+    public SimilarTitles(String cacheKey, List<String> titles, LocalDateTime fetchedAt) {
+        this.cacheKey = cacheKey;
+        this.titles = titles;
+        this.fetchedAt = fetchedAt;
+    }
+
+    @Id
+    @Column(name = "cache_key", columnDefinition = "text")
+    private String cacheKey;
+
+    @JdbcTypeCode(SqlTypes.ARRAY)
+    @Column(name = "titles", columnDefinition = "text[]")
+    private List<String> titles;
+
+    @Column(name = "fetched_at")
+    private LocalDateTime fetchedAt;
+
+    public String getCacheKey() {
+        return cacheKey;
+    }
+
+    public List<String> getTitles() {
+        return titles;
+    }
+
+    public LocalDateTime getFetchedAt() {
+        return fetchedAt;
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.booktracker.book;
+
+import com.example.booktracker.book.exception.BookNotFoundException;
+import com.example.booktracker.book.exception.ExternalServiceException;
+import com.example.booktracker.upstream.StaleFallback;
+import com.example.booktracker.upstream.UpstreamExecutor;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Two-level cache of TasteDive similarity results (title to similar titles), keyed by the normalized title, type and limit.
+ *
+ * <ul>
+ *     <li>Results are kept in memory for {@code similar-titles-cache.ttl}, bounded to {@code similar-titles-cache.max-entries}.</li>
+ *     <li>Every result fetched from TasteDive is also stored in the {@code similar_titles} table and served from there
+ *     for {@code similar-titles-cache.persisted-ttl}, so a restart does not send every popular title back to TasteDive.
+ *     A result read from the table is kept in memory for the time it has left at most, so it never outlives the
+ *     persisted time to live.</li>
+ *     <li>Concurrent misses for the same key wait on a single TasteDive call.</li>
+ * </ul>
+ *
+ * Failed lookups are not cached, and neither are results served from the last known good data of an unavailable
+ * TasteDive (see {@link StaleFallback}). If the table cannot be read or written the cache keeps working from memory and TasteDive.
+ */
+@Component
+public class SimilarTitlesCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SimilarTitlesCache.class);
+
+    private final BookApiClient bookApiClient;
+    private final SimilarTitlesRepository similarTitlesRepository;
+    private final AsyncCache<String, Entry> cache;
+    private final Duration timeToLive;
+    private final Duration persistedTimeToLive;
+
+    @Autowired
+    public SimilarTitlesCache(BookApiClient bookApiClient,
+                              SimilarTitlesRepository similarTitlesRepository,
+                              @Qualifier("tasteDiveExecutor") UpstreamExecutor tasteDiveExecutor,
+                              MeterRegistry meterRegistry,
+                              @Value("${similar-titles-cache.max-entries:10000}") long maxEntries,
+                              @Value("${similar-titles-cache.ttl:7d}") Duration timeToLive,
+                              @Value("${similar-titles-cache.persisted-ttl:30d}") Duration persistedTimeToLive) {
+        this(bookApiClient, similarTitlesRepository, tasteDiveExecutor, meterRegistry, maxEntries, timeToLive, persistedTimeToLive, Ticker.systemTicker());
+    }
+
+    SimilarTitlesCache(BookApiClient bookApiClient, SimilarTitlesRepository similarTitlesRepository, Executor executor,
+                       MeterRegistry meterRegistry, long maxEntries, Duration timeToLive, Duration persistedTimeToLive, Ticker ticker) {
+        this.bookApiClient = bookApiClient;
+        this.similarTitlesRepository = similarTitlesRepository;
+        this.timeToLive = timeToLive;
+        this.persistedTimeToLive = persistedTimeToLive;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfter(new Expiry<String, Entry>() {
+                    @Override
+                    public long expireAfterCreate(String key, Entry entry, long currentTime) {
+                        return entry.timeToLive().toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Entry entry, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Entry entry, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .executor(executor)
+                .ticker(ticker)
+                .recordStats()
+                .buildAsync();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache.synchronous(), "similar-titles");
+    }
+
+
+    /**
+     * Returns the titles TasteDive considers similar to the given one, from memory, the {@code similar_titles} table
+     * or TasteDive, in that order.
+     *
+     * @param title The title of the book to find similar titles for.
+     * @param type  The type of media.
+     * @param limit The maximum number of similar titles.
+     * @return The similar titles in TasteDive's order. The list is shared and must not be modified.
+     * @throws BookNotFoundException If TasteDive has no similar titles for the book.
+     * @throws ExternalServiceException If there is an error with the external service.
+     */
+    public List<String> get(String title, String type, int limit) {
+        String key = RequestCoalescer.normalize(title) + "|" + type + "|" + limit;
+        try {
+            // the lookup runs on the TasteDive executor, so a slow call never holds a lock inside the cache
+            return cache.get(key, k -> loadPersisted(k).orElseGet(() -> fetchAndPersist(k, title, type, limit))).join().titles();
+        }
+        catch (CompletionException exception) {
+            if (exception.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw exception;
+        }
+    }
+
+    private Optional<Entry> loadPersisted(String key) {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            return similarTitlesRepository.findById(key)
+                    .filter(similarTitles -> similarTitles.getFetchedAt() != null)
+                    .map(similarTitles -> {
+                        Duration timeLeft = Duration.between(now, similarTitles.getFetchedAt().plus(persistedTimeToLive));
+                        return new Entry(List.copyOf(similarTitles.getTitles()), (timeLeft.compareTo(timeToLive) < 0) ? timeLeft : timeToLive);
+                    })
+                    .filter(entry -> entry.timeToLive().isPositive());
+        }
+        catch (DataAccessException exception) {
+            LOGGER.warn("Could not read similar titles for {} from the database: {}", key, exception.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private Entry fetchAndPersist(String key, String title, String type, int limit) {
+        List<String> fetched = bookApiClient.fetchSimilarTitles(title, type, limit);
+        if (StaleFallback.isStale(fetched)) {
+            return new Entry(fetched, Duration.ZERO);
+        }
+
+        List<String> titles = List.copyOf(fetched);
+        try {
+            similarTitlesRepository.save(new SimilarTitles(key, titles, LocalDateTime.now()));
+        }
+        catch (DataAccessException exception) {
+            LOGGER.warn("Could not write similar titles for {} to the database: {}", key, exception.getMessage());
+        }
+        return new Entry(titles, timeToLive);
+    }
+
+    /**
+     * Similar titles kept in memory, with the time they may stay there.
+     */
+    private record Entry(List<String> titles, Duration timeToLive) {
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.booktracker.book;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Persistent store of TasteDive similarity results (the {@code similar_titles} table), used by {@link SimilarTitlesCache}.
+ */
+@Repository
+public interface SimilarTitlesRepository extends JpaRepository<SimilarTitles, String> {
+}
@@ -2,6 +2,7 @@ package com.example.booktracker.book.customResponses;
 
 import com.example.booktracker.book.BookDTO;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -9,10 +10,16 @@ public class SimilarBooksResponse {
 
     private List<BookDTO> similarBooks;
     private Map<String, String> errors;
+    private List<String> pending;           // titles that had not resolved when the response deadline passed
 
     public SimilarBooksResponse(Map<String, String> errors, List<BookDTO> similarBooks) {
+        this(errors, similarBooks, new ArrayList<>());
+    }
+
+    public SimilarBooksResponse(Map<String, String> errors, List<BookDTO> similarBooks, List<String> pending) {
         this.errors = errors;
         this.similarBooks = similarBooks;
+        this.pending = pending;
     }
 
     public Map<String, String> getErrors() {
@@ -22,4 +29,8 @@ public class SimilarBooksResponse {
     public List<BookDTO> getSimilarBooks() {
         return similarBooks;
     }
+
+    public List<String> getPending() {
+        return pending;
+    }
 }
@@ -15,6 +15,7 @@ public class CorsConfig implements WebMvcConfigurer {
                 .allowedOrigins("http://localhost:3000")  // Restrict to your frontend domain
                 .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
                 .allowedHeaders("*")
+                .exposedHeaders("ETag", "Warning")    // lets the frontend revalidate with If-None-Match and see stale responses
                 .allowCredentials(true)  // Allow credentials (cookies, Authorization headers, etc.)
                 .maxAge(3600);
     }
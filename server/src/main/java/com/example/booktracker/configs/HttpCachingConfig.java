@@ -0,0 +1,83 @@
+package com.example.booktracker.configs;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.CacheControl;
+import org.springframework.web.filter.ShallowEtagHeaderFilter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.mvc.WebContentInterceptor;
+
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * HTTP caching of the book and author endpoints.
+ *
+ * <ul>
+ *     <li>Every GET response gets a weak ETag computed from its body. A request whose {@code If-None-Match} matches it
+ *     is answered with 304 Not Modified and no body. Weak ETags also let Tomcat gzip the response
+ *     ({@code server.compression.*}), which it refuses to do for strong ones.</li>
+ *     <li>{@code Cache-Control} is set per endpoint: lists and similar books may be reused for
+ *     {@code http-cache.book-lists.max-age}, single volumes for {@code http-cache.volumes.max-age}, authors for
+ *     {@code http-cache.authors.max-age} and suggestions for {@code http-cache.suggest.max-age}. The server-side
+ *     genre cache can change at any time, so its reads are always revalidated against the ETag.</li>
+ *     <li>Endpoints that change the server-side cache and the streaming endpoint are neither cached nor buffered
+ *     for an ETag.</li>
+ * </ul>
+ */
+@Configuration
+public class HttpCachingConfig implements WebMvcConfigurer {
+
+    // paths (below the context path) whose responses must not be buffered to compute an ETag
+    private static final Set<String> UNBUFFERED_PATHS = Set.of("/api/books/cache", "/api/books/similar/stream");
+
+    @Value("${http-cache.book-lists.max-age:60s}")
+    private Duration bookListsMaxAge;
+
+    @Value("${http-cache.volumes.max-age:1h}")
+    private Duration volumesMaxAge;
+
+    @Value("${http-cache.authors.max-age:1d}")
+    private Duration authorsMaxAge;
+
+    @Value("${http-cache.suggest.max-age:5m}")
+    private Duration suggestMaxAge;
+
+    @Bean
+    public FilterRegistrationBean<ShallowEtagHeaderFilter> etagFilter() {
+        ShallowEtagHeaderFilter filter = new ShallowEtagHeaderFilter() {
+            @Override
+            protected boolean shouldNotFilter(HttpServletRequest request) {
+                String path = request.getRequestURI().substring(request.getContextPath().length());
+                return UNBUFFERED_PATHS.contains(path) || path.endsWith("/update");
+            }
+        };
+        filter.setWriteWeakETag(true);
+
+        FilterRegistrationBean<ShallowEtagHeaderFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.addUrlPatterns("/api/books", "/api/books/*", "/api/authors");
+        return registration;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(cacheControlInterceptor()).addPathPatterns("/api/books", "/api/books/**", "/api/authors");
+    }
+
+    WebContentInterceptor cacheControlInterceptor() {
+        WebContentInterceptor interceptor = new WebContentInterceptor();
+
+        // the most specific pattern matching a path applies
+        interceptor.addCacheMapping(CacheControl.maxAge(bookListsMaxAge), "/api/books", "/api/books/*", "/api/books/similar");
+        interceptor.addCacheMapping(CacheControl.maxAge(volumesMaxAge), "/api/books/volumes/*");
+        interceptor.addCacheMapping(CacheControl.maxAge(suggestMaxAge), "/api/books/suggest");
+        interceptor.addCacheMapping(CacheControl.maxAge(authorsMaxAge), "/api/authors");
+        interceptor.addCacheMapping(CacheControl.noCache(), "/api/books/cache/*");
+        interceptor.addCacheMapping(CacheControl.noStore(), "/api/books/cache", "/api/books/cache/*/update", "/api/books/similar/stream");
+        return interceptor;
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.booktracker.configs;
+
+import com.example.booktracker.upstream.CircuitBreaker;
+import com.example.booktracker.upstream.CircuitBreakerInterceptor;
+import com.example.booktracker.upstream.RateLimitingInterceptor;
+import com.example.booktracker.upstream.UpstreamExchangeFilter;
+import com.example.booktracker.upstream.UpstreamRateLimiter;
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.InterceptingClientHttpRequestFactory;
+import org.springframework.http.client.ReactorNettyClientRequestFactory;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Shared HTTP transport for the upstream RestClients (Google Books, TasteDive and Wikipedia).
+ *
+ * Every upstream gets its own Reactor Netty {@link ConnectionProvider}, which keeps a pool of kept-alive connections
+ * per remote host, negotiates HTTP/2 over TLS (ALPN) where the server supports it and falls back to HTTP/1.1 otherwise.
+ * TLS sessions are resumed through the shared default SSL context. Pool usage is exported under
+ * {@code reactor.netty.connection.provider.*}, tagged with the upstream's name.
+ *
+ * Timeouts are configured per upstream through the following properties (defaults in parentheses):
+ * <ul>
+ *     <li>{@code upstream.http.<name>.connect-timeout} (2s) - time allowed to open a connection</li>
+ *     <li>{@code upstream.http.<name>.read-timeout} (5s) - time allowed between two reads on an open connection</li>
+ *     <li>{@code upstream.http.<name>.total-timeout} (10s) - deadline for the whole exchange, including the body</li>
+ *     <li>{@code upstream.http.<name>.max-connections} (50) - pooled connections per host</li>
+ * </ul>
+ *
+ * Every request also passes through the upstream's {@link CircuitBreaker} (see {@link UpstreamCircuitBreakerConfig})
+ * and then its {@link UpstreamRateLimiter} (see {@link UpstreamRateLimiterConfig}), so calls rejected by an open
+ * circuit do not use up rate limit permits.
+ *
+ * The same connection pools also back a non-blocking {@link WebClient} per upstream, used by the reactive clients
+ * ({@code upstream.client=reactive}). Its requests go through the same circuit breaker and rate limiter
+ * via an {@link UpstreamExchangeFilter}.
+ */
+@Configuration
+public class HttpTransportConfig {
+
+    private final Environment environment;
+
+    @Autowired
+    public HttpTransportConfig(Environment environment) {
+        this.environment = environment;
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider googleBooksConnectionProvider() {
+        return connectionProvider("google-books");
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider tasteDiveConnectionProvider() {
+        return connectionProvider("tastedive");
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider wikipediaConnectionProvider() {
+        return connectionProvider("wikipedia");
+    }
+
+    @Bean
+    public ClientHttpRequestFactory googleBooksRequestFactory(@Qualifier("googleBooksConnectionProvider") ConnectionProvider connectionProvider,
+                                                              @Qualifier("googleBooksRateLimiter") UpstreamRateLimiter rateLimiter,
+                                                              @Qualifier("googleBooksCircuitBreaker") CircuitBreaker circuitBreaker) {
+        return requestFactory("google-books", connectionProvider, rateLimiter, circuitBreaker);
+    }
+
+    @Bean
+    public ClientHttpRequestFactory tasteDiveRequestFactory(@Qualifier("tasteDiveConnectionProvider") ConnectionProvider connectionProvider,
+                                                            @Qualifier("tasteDiveRateLimiter") UpstreamRateLimiter rateLimiter,
+                                                            @Qualifier("tasteDiveCircuitBreaker") CircuitBreaker circuitBreaker) {
+        return requestFactory("tastedive", connectionProvider, rateLimiter, circuitBreaker);
+    }
+
+    @Bean
+    public ClientHttpRequestFactory wikipediaRequestFactory(@Qualifier("wikipediaConnectionProvider") ConnectionProvider connectionProvider,
+                                                            @Qualifier("wikipediaRateLimiter") UpstreamRateLimiter rateLimiter,
+                                                            @Qualifier("wikipediaCircuitBreaker") CircuitBreaker circuitBreaker) {
+        return requestFactory("wikipedia", connectionProvider, rateLimiter, circuitBreaker);
+    }
+
+    @Bean
+    public WebClient googleBooksWebClient(WebClient.Builder webClientBuilder,
+                                          @Qualifier("googleBooksConnectionProvider") ConnectionProvider connectionProvider,
+                                          @Qualifier("googleBooksRateLimiter") UpstreamRateLimiter rateLimiter,
+                                          @Qualifier("googleBooksCircuitBreaker") CircuitBreaker circuitBreaker) {
+        return webClient("google-books", webClientBuilder, connectionProvider, rateLimiter, circuitBreaker);
+    }
+
+    @Bean
+    public WebClient wikipediaWebClient(WebClient.Builder webClientBuilder,
+                                        @Qualifier("wikipediaConnectionProvider") ConnectionProvider connectionProvider,
+                                        @Qualifier("wikipediaRateLimiter") UpstreamRateLimiter rateLimiter,
+                                        @Qualifier("wikipediaCircuitBreaker") CircuitBreaker circuitBreaker) {
+        return webClient("wikipedia", webClientBuilder, connectionProvider, rateLimiter, circuitBreaker);
+    }
+
+
+    private HttpClient httpClient(String upstream, ConnectionProvider connectionProvider) {
+        return HttpClient.create(connectionProvider)
+                .protocol(HttpProtocol.H2, HttpProtocol.HTTP11)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) duration(upstream, "connect-timeout", Duration.ofSeconds(2)).toMillis())
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .compress(true);
+    }
+
+    private ConnectionProvider connectionProvider(String upstream) {
+        return ConnectionProvider.builder(upstream)
+                .maxConnections(environment.getProperty("upstream.http." + upstream + ".max-connections", Integer.class, 50))
+                .pendingAcquireTimeout(duration(upstream, "connect-timeout", Duration.ofSeconds(2)))
+                .maxIdleTime(Duration.ofSeconds(30))
+                .maxLifeTime(Duration.ofMinutes(5))
+                .evictInBackground(Duration.ofSeconds(30))
+                .metrics(true)
+                .build();
+    }
+
+    private ClientHttpRequestFactory requestFactory(String upstream, ConnectionProvider connectionProvider,
+                                                    UpstreamRateLimiter rateLimiter, CircuitBreaker circuitBreaker) {
+        ReactorNettyClientRequestFactory requestFactory = new ReactorNettyClientRequestFactory(httpClient(upstream, connectionProvider));
+        requestFactory.setConnectTimeout(duration(upstream, "connect-timeout", Duration.ofSeconds(2)));
+        requestFactory.setReadTimeout(duration(upstream, "read-timeout", Duration.ofSeconds(5)));
+        requestFactory.setExchangeTimeout(duration(upstream, "total-timeout", Duration.ofSeconds(10)));
+        return new InterceptingClientHttpRequestFactory(requestFactory,
+                List.of(new CircuitBreakerInterceptor(circuitBreaker), new RateLimitingInterceptor(rateLimiter)));
+    }
+
+    private WebClient webClient(String upstream, WebClient.Builder webClientBuilder, ConnectionProvider connectionProvider,
+                                UpstreamRateLimiter rateLimiter, CircuitBreaker circuitBreaker) {
+        HttpClient httpClient = httpClient(upstream, connectionProvider)
+                .responseTimeout(duration(upstream, "read-timeout", Duration.ofSeconds(5)));
+
+        return webClientBuilder.clone()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .filter(new UpstreamExchangeFilter(circuitBreaker, rateLimiter))
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(4 * 1024 * 1024))
+                .build();
+    }
+
+    private Duration duration(String upstream, String setting, Duration defaultValue) {
+        return environment.getProperty("upstream.http." + upstream + "." + setting, Duration.class, defaultValue);
+    }
+}
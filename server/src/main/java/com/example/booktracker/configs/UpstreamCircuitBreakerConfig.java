@@ -0,0 +1,85 @@
+package com.example.booktracker.configs;
+
+import com.example.booktracker.upstream.CircuitBreaker;
+import com.example.booktracker.upstream.StaleFallback;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+
+/**
+ * Creates one {@link CircuitBreaker} and one {@link StaleFallback} per external service. The circuit breakers are
+ * applied to every request of the upstream's transport by {@link HttpTransportConfig}, the fallbacks are used by the
+ * clients around their calls.
+ *
+ * Each circuit breaker is configured through the following properties (defaults in parentheses):
+ * <ul>
+ *     <li>{@code upstream.circuit.<name>.window-size} (20) - number of recent calls the failure rate is computed over</li>
+ *     <li>{@code upstream.circuit.<name>.minimum-calls} (10) - calls needed in the window before the circuit can open</li>
+ *     <li>{@code upstream.circuit.<name>.failure-rate-threshold} (0.5) - share of failed calls that opens the circuit</li>
+ *     <li>{@code upstream.circuit.<name>.open-duration} (30s) - time calls fail fast before trial calls are let through</li>
+ *     <li>{@code upstream.circuit.<name>.half-open-calls} (3) - trial calls that must succeed to close the circuit</li>
+ * </ul>
+ *
+ * The fallbacks keep up to {@code upstream.fallback.max-entries} (5000) results per upstream for {@code upstream.fallback.max-age} (24h).
+ */
+@Configuration
+public class UpstreamCircuitBreakerConfig {
+
+    private final Environment environment;
+
+    @Autowired
+    public UpstreamCircuitBreakerConfig(Environment environment) {
+        this.environment = environment;
+    }
+
+    @Bean
+    public CircuitBreaker googleBooksCircuitBreaker(MeterRegistry meterRegistry) {
+        return circuitBreaker("google-books", meterRegistry);
+    }
+
+    @Bean
+    public CircuitBreaker tasteDiveCircuitBreaker(MeterRegistry meterRegistry) {
+        return circuitBreaker("tastedive", meterRegistry);
+    }
+
+    @Bean
+    public CircuitBreaker wikipediaCircuitBreaker(MeterRegistry meterRegistry) {
+        return circuitBreaker("wikipedia", meterRegistry);
+    }
+
+    @Bean
+    public StaleFallback googleBooksFallback() {
+        return staleFallback("google-books");
+    }
+
+    @Bean
+    public StaleFallback tasteDiveFallback() {
+        return staleFallback("tastedive");
+    }
+
+    @Bean
+    public StaleFallback wikipediaFallback() {
+        return staleFallback("wikipedia");
+    }
+
+    private CircuitBreaker circuitBreaker(String upstream, MeterRegistry meterRegistry) {
+        String prefix = "upstream.circuit." + upstream + ".";
+        return new CircuitBreaker(upstream,
+                environment.getProperty(prefix + "window-size", Integer.class, 20),
+                environment.getProperty(prefix + "minimum-calls", Integer.class, 10),
+                environment.getProperty(prefix + "failure-rate-threshold", Double.class, 0.5),
+                environment.getProperty(prefix + "open-duration", Duration.class, Duration.ofSeconds(30)),
+                environment.getProperty(prefix + "half-open-calls", Integer.class, 3),
+                meterRegistry);
+    }
+
+    private StaleFallback staleFallback(String upstream) {
+        return new StaleFallback(upstream,
+                environment.getProperty("upstream.fallback.max-entries", Long.class, 5000L),
+                environment.getProperty("upstream.fallback.max-age", Duration.class, Duration.ofHours(24)));
+    }
+}
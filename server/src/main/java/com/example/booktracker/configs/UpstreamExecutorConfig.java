@@ -0,0 +1,50 @@
+package com.example.booktracker.configs;
+
+import com.example.booktracker.upstream.UpstreamExecutor;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates one {@link UpstreamExecutor} per external service so that blocking HTTP calls never run on the
+ * shared ForkJoinPool common pool and a slow upstream cannot starve the others.
+ *
+ * By default each executor starts a new virtual thread per task, which lets as many calls wait on the network
+ * as there are requests. Setting {@code upstream.executor.type=platform} switches to a fixed pool of platform
+ * threads of size {@code upstream.executor.platform-pool-size} per upstream instead.
+ */
+@Configuration
+public class UpstreamExecutorConfig {
+
+    @Value("${upstream.executor.type:virtual}")
+    private String executorType;
+
+    @Value("${upstream.executor.platform-pool-size:32}")
+    private int platformPoolSize;
+
+    @Bean
+    public UpstreamExecutor googleBooksExecutor(MeterRegistry meterRegistry) {
+        return new UpstreamExecutor("google-books", createDelegate("google-books"), meterRegistry);
+    }
+
+    @Bean
+    public UpstreamExecutor tasteDiveExecutor(MeterRegistry meterRegistry) {
+        return new UpstreamExecutor("tastedive", createDelegate("tastedive"), meterRegistry);
+    }
+
+    @Bean
+    public UpstreamExecutor wikipediaExecutor(MeterRegistry meterRegistry) {
+        return new UpstreamExecutor("wikipedia", createDelegate("wikipedia"), meterRegistry);
+    }
+
+    private ExecutorService createDelegate(String upstream) {
+        if ("platform".equalsIgnoreCase(executorType)) {
+            return Executors.newFixedThreadPool(platformPoolSize, Thread.ofPlatform().name(upstream + "-", 0).daemon(true).factory());
+        }
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(upstream + "-", 0).factory());
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.booktracker.configs;
+
+import com.example.booktracker.upstream.RequestHedger;
+import com.example.booktracker.upstream.UpstreamExecutor;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates the {@link RequestHedger} used for the idempotent Google Books lookups (search, genre and title).
+ *
+ * Hedging is off unless {@code google.books.hedging.enabled=true}. The hedge delay is the
+ * {@code google.books.hedging.percentile} (0.95) of recent latencies, at least {@code google.books.hedging.min-delay}
+ * (100ms), and at most {@code google.books.hedging.max-fraction} (0.05) of the calls are hedged.
+ *
+ * The attempts run on an executor of their own, always on virtual threads: the hedged calls are made from tasks of
+ * the {@code googleBooksExecutor}, which would wait on attempts queued behind themselves once its fixed pool
+ * ({@code upstream.executor.type=platform}) is busy.
+ */
+@Configuration
+public class UpstreamHedgingConfig {
+
+    @Value("${google.books.hedging.enabled:false}")
+    private boolean enabled;
+
+    @Value("${google.books.hedging.percentile:0.95}")
+    private double percentile;
+
+    @Value("${google.books.hedging.min-delay:100ms}")
+    private Duration minDelay;
+
+    @Value("${google.books.hedging.max-fraction:0.05}")
+    private double maxFraction;
+
+    @Bean
+    public UpstreamExecutor googleBooksHedgeExecutor(MeterRegistry meterRegistry) {
+        return new UpstreamExecutor("google-books-hedges", Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("google-books-hedge-", 0).factory()), meterRegistry);
+    }
+
+    @Bean
+    public RequestHedger googleBooksHedger(@Qualifier("googleBooksHedgeExecutor") UpstreamExecutor googleBooksHedgeExecutor, MeterRegistry meterRegistry) {
+        return new RequestHedger("google-books", googleBooksHedgeExecutor, enabled, percentile, minDelay, maxFraction, meterRegistry);
+    }
+}
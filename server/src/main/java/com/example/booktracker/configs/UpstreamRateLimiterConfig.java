@@ -0,0 +1,62 @@
+package com.example.booktracker.configs;
+
+import com.example.booktracker.upstream.UpstreamRateLimiter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+
+/**
+ * Creates one {@link UpstreamRateLimiter} per external service. The limiters are applied to every request of the
+ * upstream's transport by {@link HttpTransportConfig}.
+ *
+ * Each limiter is configured through the following properties (defaults in parentheses):
+ * <ul>
+ *     <li>{@code upstream.ratelimit.<name>.permits-per-second} - sustained rate allowed by the upstream's quota</li>
+ *     <li>{@code upstream.ratelimit.<name>.burst} - permits that can be used at once after a quiet period</li>
+ *     <li>{@code upstream.ratelimit.<name>.background-reserve} (half the burst) - permits background calls must leave to interactive ones</li>
+ *     <li>{@code upstream.ratelimit.<name>.interactive-max-wait} (2s) - longest wait for a permit when a user is waiting</li>
+ *     <li>{@code upstream.ratelimit.<name>.background-max-wait} (30s) - longest wait for a permit for background work</li>
+ * </ul>
+ */
+@Configuration
+public class UpstreamRateLimiterConfig {
+
+    private final Environment environment;
+
+    @Autowired
+    public UpstreamRateLimiterConfig(Environment environment) {
+        this.environment = environment;
+    }
+
+    @Bean
+    public UpstreamRateLimiter googleBooksRateLimiter(MeterRegistry meterRegistry) {
+        return rateLimiter("google-books", 10, 20, meterRegistry);
+    }
+
+    @Bean
+    public UpstreamRateLimiter tasteDiveRateLimiter(MeterRegistry meterRegistry) {
+        return rateLimiter("tastedive", 2, 5, meterRegistry);
+    }
+
+    @Bean
+    public UpstreamRateLimiter wikipediaRateLimiter(MeterRegistry meterRegistry) {
+        return rateLimiter("wikipedia", 20, 40, meterRegistry);
+    }
+
+    private UpstreamRateLimiter rateLimiter(String upstream, double defaultPermitsPerSecond, int defaultBurst, MeterRegistry meterRegistry) {
+        String prefix = "upstream.ratelimit." + upstream + ".";
+        int burst = environment.getProperty(prefix + "burst", Integer.class, defaultBurst);
+
+        return new UpstreamRateLimiter(upstream,
+                environment.getProperty(prefix + "permits-per-second", Double.class, defaultPermitsPerSecond),
+                burst,
+                environment.getProperty(prefix + "background-reserve", Double.class, burst / 2.0),
+                environment.getProperty(prefix + "interactive-max-wait", Duration.class, Duration.ofSeconds(2)),
+                environment.getProperty(prefix + "background-max-wait", Duration.class, Duration.ofSeconds(30)),
+                meterRegistry);
+    }
+}
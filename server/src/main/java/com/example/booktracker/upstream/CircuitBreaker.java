@@ -0,0 +1,189 @@
+package com.example.booktracker.upstream;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+
+/**
+ * Circuit breaker guarding the calls made to a single upstream service.
+ *
+ * <ul>
+ *     <li>{@link State#CLOSED}: calls go through and their outcomes are recorded in a sliding window of the last
+ *     {@code windowSize} calls. Once the window holds at least {@code minimumCalls} outcomes and the share of failures
+ *     reaches {@code failureRateThreshold}, the circuit opens.</li>
+ *     <li>{@link State#OPEN}: calls are rejected immediately, without touching the network, for {@code openDuration}.</li>
+ *     <li>{@link State#HALF_OPEN}: up to {@code halfOpenCalls} trial calls go through. If they all succeed the circuit
+ *     closes again with an empty window, the first failure opens it again.</li>
+ * </ul>
+ *
+ * The state, rejected calls and transitions to open are exported under {@code upstream.circuit.*}, tagged with the upstream's name.
+ */
+public class CircuitBreaker {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    public enum State { CLOSED, HALF_OPEN, OPEN }
+
+    private final String upstream;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openDurationNanos;
+    private final int halfOpenCalls;
+
+    // all guarded by this
+    private final boolean[] window;         // true for a failed call
+    private int windowNext;
+    private int windowCalls;
+    private int windowFailures;
+    private State state = State.CLOSED;
+    private long openedAtNanos;
+    private int halfOpenInFlight;
+    private int halfOpenSuccesses;
+
+    private final Counter rejectedCalls;
+    private final Counter openings;
+
+    public CircuitBreaker(String upstream, int windowSize, int minimumCalls, double failureRateThreshold,
+                          Duration openDuration, int halfOpenCalls, MeterRegistry meterRegistry) {
+        this.upstream = upstream;
+        this.window = new boolean[Math.max(1, windowSize)];
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, window.length));
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDurationNanos = openDuration.toNanos();
+        this.halfOpenCalls = Math.max(1, halfOpenCalls);
+
+        Gauge.builder("upstream.circuit.state", this, breaker -> breaker.getState().ordinal())
+                .description("State of the upstream's circuit breaker (0 closed, 1 half-open, 2 open)")
+                .tag("upstream", upstream)
+                .register(meterRegistry);
+        this.rejectedCalls = Counter.builder("upstream.circuit.rejected")
+                .description("Upstream calls rejected because the circuit was open")
+                .tag("upstream", upstream)
+                .register(meterRegistry);
+        this.openings = Counter.builder("upstream.circuit.opened")
+                .description("Times the upstream's circuit opened")
+                .tag("upstream", upstream)
+                .register(meterRegistry);
+    }
+
+
+    /**
+     * Asks for permission to make a call. Every permitted call must be followed by exactly one of
+     * {@link #onSuccess()}, {@link #onFailure()} or {@link #onIgnored()}.
+     *
+     * @return {@code true} if the call may go through, {@code false} if it must fail fast.
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAtNanos < openDurationNanos) {
+                rejectedCalls.increment();
+                return false;
+            }
+            transitionTo(State.HALF_OPEN);
+        }
+
+        if (state == State.HALF_OPEN) {
+            if (halfOpenInFlight >= halfOpenCalls) {
+                rejectedCalls.increment();
+                return false;
+            }
+            halfOpenInFlight++;
+        }
+        return true;
+    }
+
+
+    /**
+     * Records a permitted call that succeeded.
+     */
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            halfOpenInFlight = Math.max(0, halfOpenInFlight - 1);
+            if (++halfOpenSuccesses >= halfOpenCalls) {
+                transitionTo(State.CLOSED);
+            }
+        }
+        else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+
+    /**
+     * Records a permitted call that failed (transport error, timeout or 5xx response).
+     */
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            transitionTo(State.OPEN);
+        }
+        else if (state == State.CLOSED) {
+            record(true);
+        }
+    }
+
+
+    /**
+     * Releases a permitted call whose outcome says nothing about the upstream's health (for example a call that was
+     * never sent because it got no rate limit permit).
+     */
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN) {
+            halfOpenInFlight = Math.max(0, halfOpenInFlight - 1);
+        }
+    }
+
+    public String getUpstream() {
+        return upstream;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    private void record(boolean failure) {
+        if (windowCalls == window.length) {
+            // the oldest outcome leaves the window
+            if (window[windowNext]) {
+                windowFailures--;
+            }
+        }
+        else {
+            windowCalls++;
+        }
+
+        window[windowNext] = failure;
+        if (failure) {
+            windowFailures++;
+        }
+        windowNext = (windowNext + 1) % window.length;
+
+        if (windowCalls >= minimumCalls && (double) windowFailures / windowCalls >= failureRateThreshold) {
+            transitionTo(State.OPEN);
+        }
+    }
+
+    private void transitionTo(State newState) {
+        LOGGER.warn("Circuit of {} went from {} to {}", upstream, state, newState);
+        state = newState;
+
+        switch (newState) {
+            case OPEN -> {
+                openedAtNanos = System.nanoTime();
+                openings.increment();
+            }
+            case HALF_OPEN -> {
+                halfOpenInFlight = 0;
+                halfOpenSuccesses = 0;
+            }
+            case CLOSED -> {
+                windowNext = 0;
+                windowCalls = 0;
+                windowFailures = 0;
+            }
+        }
+    }
+}
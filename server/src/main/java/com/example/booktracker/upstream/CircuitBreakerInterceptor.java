@@ -0,0 +1,178 @@
+package com.example.booktracker.upstream;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Passes every request to an upstream through its {@link CircuitBreaker}. While the circuit is open requests fail
+ * immediately with an {@link UpstreamUnavailableException} instead of waiting on a dead dependency.
+ *
+ * Transport errors (including timeouts) and 5xx responses count as failures. Other responses are only counted once
+ * their body was read, so a body that stops arriving halfway (a read timeout while streaming it) is a failure too.
+ * Requests rejected by the rate limiter
+ * further down the chain were never sent and requests cancelled by the caller say nothing about the upstream, so
+ * neither is counted.
+ */
+public class CircuitBreakerInterceptor implements ClientHttpRequestInterceptor {
+
+    private final CircuitBreaker circuitBreaker;
+
+    public CircuitBreakerInterceptor(CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        if (!circuitBreaker.tryAcquire()) {
+            throw new UpstreamUnavailableException("Circuit of " + circuitBreaker.getUpstream() + " is open, the call was not made.");
+        }
+
+        ClientHttpResponse response;
+        try {
+            response = execution.execute(request, body);
+        }
+        catch (UpstreamThrottledException exception) {
+            circuitBreaker.onIgnored();
+            throw exception;
+        }
+        catch (IOException | RuntimeException exception) {
+            if (isCancelled(exception)) {
+                // the call was cancelled by the caller (for example the losing attempt of a hedged call)
+                circuitBreaker.onIgnored();
+            }
+            else {
+                circuitBreaker.onFailure();
+            }
+            throw exception;
+        }
+
+        if (response.getStatusCode().is5xxServerError()) {
+            circuitBreaker.onFailure();
+            return response;
+        }
+        return new OutcomeRecordingResponse(response);
+    }
+
+    private static boolean isCancelled(Exception exception) {
+        return Thread.currentThread().isInterrupted() || causedByInterrupt(exception);
+    }
+
+    private static boolean causedByInterrupt(Throwable exception) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            boolean interruptedIo = cause instanceof InterruptedIOException && !(cause instanceof SocketTimeoutException);
+            if (cause instanceof InterruptedException || interruptedIo) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Records the outcome of a call once its body was read: a failure if reading it failed, a success once the
+     * response is closed otherwise.
+     */
+    private final class OutcomeRecordingResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse response;
+        private final AtomicBoolean recorded = new AtomicBoolean();
+        private InputStream body;
+
+        OutcomeRecordingResponse(ClientHttpResponse response) {
+            this.response = response;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return response.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return response.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return response.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            if (body == null) {
+                body = new FilterInputStream(readBody()) {
+                    @Override
+                    public int read() throws IOException {
+                        try {
+                            return super.read();
+                        }
+                        catch (IOException exception) {
+                            throw failed(exception);
+                        }
+                    }
+
+                    @Override
+                    public int read(byte[] bytes, int offset, int length) throws IOException {
+                        try {
+                            return super.read(bytes, offset, length);
+                        }
+                        catch (IOException exception) {
+                            throw failed(exception);
+                        }
+                    }
+
+                    @Override
+                    public long skip(long count) throws IOException {
+                        try {
+                            return super.skip(count);
+                        }
+                        catch (IOException exception) {
+                            throw failed(exception);
+                        }
+                    }
+                };
+            }
+            return body;
+        }
+
+        @Override
+        public void close() {
+            try {
+                response.close();
+            }
+            finally {
+                record(circuitBreaker::onSuccess);
+            }
+        }
+
+        private InputStream readBody() throws IOException {
+            try {
+                return response.getBody();
+            }
+            catch (IOException exception) {
+                throw failed(exception);
+            }
+        }
+
+        private IOException failed(IOException exception) {
+            record(isCancelled(exception) ? circuitBreaker::onIgnored : circuitBreaker::onFailure);
+            return exception;
+        }
+
+        private void record(Runnable outcome) {
+            if (recorded.compareAndSet(false, true)) {
+                outcome.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.booktracker.upstream;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Passes every request to an upstream through its {@link UpstreamRateLimiter}, in the lane of the calling thread
+ * (see {@link UpstreamPriority}). When the upstream answers 429 anyway, the limiter is paused for the time given in the
+ * {@code Retry-After} header (one second if there is none) before the response is handed back to the client.
+ */
+public class RateLimitingInterceptor implements ClientHttpRequestInterceptor {
+
+    private static final Duration DEFAULT_RETRY_AFTER = Duration.ofSeconds(1);
+    private static final Duration MAX_RETRY_AFTER = Duration.ofMinutes(1);
+
+    private final UpstreamRateLimiter rateLimiter;
+
+    public RateLimitingInterceptor(UpstreamRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        rateLimiter.acquire(UpstreamPriority.current());
+
+        ClientHttpResponse response = execution.execute(request, body);
+        if (response.getStatusCode().isSameCodeAs(HttpStatus.TOO_MANY_REQUESTS)) {
+            rateLimiter.pause(retryAfter(response.getHeaders()));
+        }
+        return response;
+    }
+
+    private Duration retryAfter(HttpHeaders headers) {
+        String retryAfter = headers.getFirst(HttpHeaders.RETRY_AFTER);
+        if (retryAfter == null) {
+            return DEFAULT_RETRY_AFTER;
+        }
+        try {
+            Duration duration = Duration.ofSeconds(Long.parseLong(retryAfter.trim()));
+            return (duration.compareTo(MAX_RETRY_AFTER) > 0) ? MAX_RETRY_AFTER : duration;
+        }
+        catch (NumberFormatException exception) {
+            // an HTTP date instead of a number of seconds
+            return DEFAULT_RETRY_AFTER;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.booktracker.upstream;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Hedges idempotent calls to a single upstream to cut its tail latency.
+ *
+ * A call is started on the hedger's executor. If it has not answered after the hedge delay, an identical second call
+ * is started, and whichever answers first wins while the other one is cancelled (its thread is interrupted, which
+ * aborts the HTTP exchange). A failed attempt does not win while the other one is still running.
+ *
+ * <ul>
+ *     <li>The hedge delay is the {@code percentile} of the latencies of the last {@value #SAMPLES} completed attempts,
+ *     but never less than {@code minDelay}. No call is hedged until {@value #MIN_SAMPLES} latencies are known.</li>
+ *     <li>Hedges are capped at {@code maxHedgeFraction} of the calls: every call earns that fraction of a hedge,
+ *     and a hedge is only sent when a whole one has been earned.</li>
+ *     <li>Hedges go through the same transport as the first attempt, so they count against the upstream's rate limit
+ *     and circuit breaker.</li>
+ * </ul>
+ *
+ * The calling thread waits for the attempts, so the executor must not be one the callers run on when it can run out of
+ * threads (a fixed pool): the attempts would queue behind the callers waiting for them.
+ *
+ * Sent and winning hedges and the current delay are exported under {@code upstream.hedge.*}, tagged with the upstream's name.
+ */
+public class RequestHedger {
+
+    private static final int SAMPLES = 256;
+    private static final int MIN_SAMPLES = 32;
+    private static final int RECOMPUTE_EVERY = 32;      // the delay is recomputed after this many new latencies
+    private static final double MAX_HEDGE_CREDITS = 10;
+
+    private final ExecutorService executor;
+    private final boolean enabled;
+    private final double percentile;
+    private final long minDelayNanos;
+    private final double maxHedgeFraction;
+
+    // all guarded by this
+    private final long[] latencies = new long[SAMPLES];
+    private int latencyNext;
+    private int latencyCount;
+    private int sinceRecompute;
+    private long hedgeDelayNanos = Long.MAX_VALUE;
+    private double hedgeCredits;
+
+    private final Counter hedgesSent;
+    private final Counter hedgesWon;
+
+    public RequestHedger(String upstream, ExecutorService executor, boolean enabled, double percentile,
+                         Duration minDelay, double maxHedgeFraction, MeterRegistry meterRegistry) {
+        this.executor = executor;
+        this.enabled = enabled;
+        this.percentile = Math.min(1, Math.max(0, percentile));
+        this.minDelayNanos = minDelay.toNanos();
+        this.maxHedgeFraction = Math.max(0, maxHedgeFraction);
+
+        this.hedgesSent = Counter.builder("upstream.hedge.sent")
+                .description("Hedged second attempts sent to the upstream")
+                .tag("upstream", upstream)
+                .register(meterRegistry);
+        this.hedgesWon = Counter.builder("upstream.hedge.won")
+                .description("Hedged second attempts that answered before the first one")
+                .tag("upstream", upstream)
+                .register(meterRegistry);
+        Gauge.builder("upstream.hedge.delay", this, hedger -> hedger.getHedgeDelay().toMillis())
+                .description("Current delay in milliseconds after which a call is hedged")
+                .tag("upstream", upstream)
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+    }
+
+
+    /**
+     * Makes an idempotent call, hedging it if it is slow. When hedging is disabled the call runs on the current thread.
+     *
+     * @param attempt One attempt of the call. May be invoked twice, concurrently.
+     * @return The result of the first attempt that succeeded.
+     * @throws RuntimeException The exception of the attempt that failed last, if no attempt succeeded.
+     */
+    public <T> T call(Supplier<T> attempt) {
+        if (!enabled) {
+            return attempt.get();
+        }
+
+        earnHedgeCredit();
+        ExecutorCompletionService<T> completionService = new ExecutorCompletionService<>(executor);
+        Future<T> first = completionService.submit(() -> timed(attempt));
+        Future<T> hedge = null;
+        try {
+            Future<T> done = completionService.poll(currentDelayNanos(), TimeUnit.NANOSECONDS);
+            if (done == null && takeHedgeCredit()) {
+                hedgesSent.increment();
+                hedge = completionService.submit(() -> timed(attempt));
+            }
+            if (done == null) {
+                done = completionService.take();
+            }
+
+            try {
+                T result = done.get();
+                if (done == hedge) {
+                    hedgesWon.increment();
+                }
+                return result;
+            }
+            catch (ExecutionException exception) {
+                if (hedge == null) {
+                    throw exception;
+                }
+                // one attempt failed, the outcome of the other one decides
+                return completionService.take().get();
+            }
+        }
+        catch (ExecutionException exception) {
+            throw rethrow(exception.getCause());
+        }
+        catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for the upstream.");
+        }
+        finally {
+            first.cancel(true);
+            if (hedge != null) {
+                hedge.cancel(true);
+            }
+        }
+    }
+
+    public Duration getHedgeDelay() {
+        long delay = currentDelayNanos();
+        return (delay == Long.MAX_VALUE) ? Duration.ZERO : Duration.ofNanos(delay);
+    }
+
+    private <T> T timed(Supplier<T> attempt) {
+        long start = System.nanoTime();
+        T result = attempt.get();
+        recordLatency(System.nanoTime() - start);
+        return result;
+    }
+
+    private synchronized long currentDelayNanos() {
+        return hedgeDelayNanos;
+    }
+
+    private synchronized void earnHedgeCredit() {
+        hedgeCredits = Math.min(MAX_HEDGE_CREDITS, hedgeCredits + maxHedgeFraction);
+    }
+
+    private synchronized boolean takeHedgeCredit() {
+        if (hedgeCredits >= 1) {
+            hedgeCredits -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    private synchronized void recordLatency(long latencyNanos) {
+        latencies[latencyNext] = latencyNanos;
+        latencyNext = (latencyNext + 1) % SAMPLES;
+        latencyCount = Math.min(SAMPLES, latencyCount + 1);
+
+        sinceRecompute++;
+        if (latencyCount >= MIN_SAMPLES && (hedgeDelayNanos == Long.MAX_VALUE || sinceRecompute >= RECOMPUTE_EVERY)) {
+            sinceRecompute = 0;
+            long[] sorted = Arrays.copyOf(latencies, latencyCount);
+            Arrays.sort(sorted);
+            int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1);
+            hedgeDelayNanos = Math.max(minDelayNanos, sorted[Math.max(0, index)]);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable cause) {
+        if (cause instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+        }
+        if (cause instanceof Error error) {
+            throw error;
+        }
+        return new IllegalStateException(cause);
+    }
+}
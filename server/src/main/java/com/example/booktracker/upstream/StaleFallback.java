@@ -0,0 +1,123 @@
+package com.example.booktracker.upstream;
+
+import com.example.booktracker.book.exception.ExternalServiceException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Last known good responses of a single upstream, served when the upstream is unavailable.
+ *
+ * Every successful call made through {@link #call(String, Supplier)} stores its result under the given key. When a
+ * later call for the same key fails with an {@link ExternalServiceException} (5xx response, timeout, open circuit or
+ * exhausted rate limit) the stored result is returned instead and the current request is marked as stale through
+ * {@link StaleResponses}. Entries are bounded to {@code maxEntries} and dropped {@code maxAge} after they were stored.
+ *
+ * Results served in place of a failed call are remembered (by identity), so that caches in front of the upstream can
+ * tell them apart with {@link #isStale(Object)} and do not keep them as if they were fresh: every failure would
+ * otherwise extend the life of stale data by another time to live.
+ */
+public class StaleFallback {
+
+    private static final Cache<Object, Boolean> SERVED_STALE = Caffeine.newBuilder().weakKeys().build();
+
+    private final String upstream;
+    private final Cache<String, Object> lastKnownGood;
+
+    public StaleFallback(String upstream, long maxEntries, Duration maxAge) {
+        this.upstream = upstream;
+        this.lastKnownGood = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(maxAge)
+                .build();
+    }
+
+
+    /**
+     * Makes a call to the upstream, falling back to the last known good result for the key if the upstream is unavailable.
+     *
+     * @param key  Identifies the request, calls with the same key must return the same kind of result.
+     * @param call The call to the upstream.
+     * @return The result of the call, or the last known good result if the call failed with an {@link ExternalServiceException}.
+     * @throws ExternalServiceException If the call failed and there is no last known good result for the key.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T call(String key, Supplier<T> call) {
+        try {
+            T result = call.get();
+            if (result != null) {
+                lastKnownGood.put(key, result);
+            }
+            return result;
+        }
+        catch (ExternalServiceException exception) {
+            Object stale = lastKnownGood.getIfPresent(key);
+            if (stale == null) {
+                throw exception;
+            }
+
+            SERVED_STALE.put(stale, true);
+            StaleResponses.markStale(upstream);
+            return (T) stale;
+        }
+    }
+
+    /**
+     * Asynchronous variant of {@link #call(String, Supplier)}.
+     *
+     * @param key  Identifies the request, calls with the same key must return the same kind of result.
+     * @param call Starts the call to the upstream.
+     * @return A future completing with the result of the call, or the last known good result if the call failed with
+     *         an {@link ExternalServiceException}.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> callAsync(String key, Supplier<CompletableFuture<T>> call) {
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();     // the future may complete on another thread
+
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        }
+        catch (RuntimeException exception) {
+            future = CompletableFuture.failedFuture(exception);
+        }
+
+        return future.handle((result, exception) -> {
+            if (exception == null) {
+                if (result != null) {
+                    lastKnownGood.put(key, result);
+                }
+                return CompletableFuture.completedFuture(result);
+            }
+
+            Throwable cause = (exception instanceof CompletionException && exception.getCause() != null) ? exception.getCause() : exception;
+            Object stale = (cause instanceof ExternalServiceException) ? lastKnownGood.getIfPresent(key) : null;
+            if (stale == null) {
+                return CompletableFuture.<T>failedFuture(cause);
+            }
+
+            SERVED_STALE.put(stale, true);
+            StaleResponses.markStale(requestAttributes, upstream);
+            return CompletableFuture.completedFuture((T) stale);
+        }).thenCompose(result -> result);
+    }
+
+    /**
+     * @param result A result returned by a {@link StaleFallback}.
+     * @return Whether the result is a last known good result served because a call failed, which must not be cached
+     *         as a fresh result.
+     */
+    public static boolean isStale(Object result) {
+        return result != null && SERVED_STALE.getIfPresent(result) != null;
+    }
+
+    public String getUpstream() {
+        return upstream;
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.booktracker.upstream;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * Adds a {@code Warning: 110 <upstream> "Response is Stale"} header, one per upstream, to every response that was
+ * (partly) served from the last known good data of an upstream (see {@link StaleFallback}), so clients can tell
+ * a degraded answer from a fresh one.
+ */
+@ControllerAdvice
+public class StaleResponseAdvice implements ResponseBodyAdvice<Object> {
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        if (request instanceof ServletServerHttpRequest servletRequest) {
+            RequestAttributes attributes = new ServletRequestAttributes(servletRequest.getServletRequest());
+            for (String upstream : StaleResponses.staleUpstreams(attributes)) {
+                response.getHeaders().add(HttpHeaders.WARNING, "110 " + upstream + " \"Response is Stale\"");
+            }
+        }
+        return body;
+    }
+}
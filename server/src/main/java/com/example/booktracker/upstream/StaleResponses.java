@@ -0,0 +1,62 @@
+package com.example.booktracker.upstream;
+
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Marks the current HTTP request as answered (partly) from stale upstream data, so that
+ * {@link StaleResponseAdvice} can flag the response. Does nothing outside of a request, for example in background work.
+ *
+ * The {@link UpstreamExecutor} carries the request over to its tasks, so marking also works from asynchronous calls.
+ */
+public final class StaleResponses {
+
+    static final String STALE_UPSTREAMS_ATTRIBUTE = StaleResponses.class.getName() + ".upstreams";
+
+    private StaleResponses() {
+    }
+
+
+    /**
+     * Records that data of the given upstream served to the current request is stale.
+     *
+     * @param upstream The name of the upstream whose last known good data was served.
+     */
+    public static void markStale(String upstream) {
+        markStale(RequestContextHolder.getRequestAttributes(), upstream);
+    }
+
+
+    /**
+     * Records that data of the given upstream served to a request is stale, for callers that are not running on a
+     * thread bound to the request (for example reactive pipelines) and captured its attributes beforehand.
+     *
+     * @param attributes The attributes of the request, or {@code null} if there is no request.
+     * @param upstream   The name of the upstream whose last known good data was served.
+     */
+    public static void markStale(RequestAttributes attributes, String upstream) {
+        if (attributes == null) {
+            return;
+        }
+
+        try {
+            synchronized (StaleResponses.class) {
+                Set<String> upstreams = staleUpstreams(attributes);
+                upstreams.add(upstream);
+                attributes.setAttribute(STALE_UPSTREAMS_ATTRIBUTE, upstreams, RequestAttributes.SCOPE_REQUEST);
+            }
+        }
+        catch (IllegalStateException exception) {
+            // the request already completed, nobody will read the mark
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static Set<String> staleUpstreams(RequestAttributes attributes) {
+        Object upstreams = attributes.getAttribute(STALE_UPSTREAMS_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        return (upstreams instanceof Set<?>) ? (Set<String>) upstreams : new LinkedHashSet<>();
+    }
+}
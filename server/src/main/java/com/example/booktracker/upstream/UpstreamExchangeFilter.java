@@ -0,0 +1,191 @@
+package com.example.booktracker.upstream;
+
+import org.springframework.core.codec.DecodingException;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Reactive counterpart of {@link CircuitBreakerInterceptor} and {@link RateLimitingInterceptor} for WebClient:
+ * every exchange asks the upstream's {@link CircuitBreaker} for permission, then waits (on a timer) for a permit of
+ * its {@link UpstreamRateLimiter}, and reports its outcome back to both.
+ *
+ * Like in the {@link CircuitBreakerInterceptor}, transport errors and 5xx responses count as failures, while other
+ * responses are only counted once their body was read. Pipelines wrapped in {@link #decoded(Mono)} are counted once
+ * their body was decoded instead, so a body that cannot be decoded is a failure too.
+ *
+ * Since reactive pipelines do not run on the thread that built them, the lane of a request is read from the
+ * {@link #PRIORITY_ATTRIBUTE} request attribute instead of {@link UpstreamPriority#current()}.
+ */
+public class UpstreamExchangeFilter implements ExchangeFilterFunction {
+
+    public static final String PRIORITY_ATTRIBUTE = UpstreamExchangeFilter.class.getName() + ".priority";
+
+    private static final Duration DEFAULT_RETRY_AFTER = Duration.ofSeconds(1);
+
+    private final CircuitBreaker circuitBreaker;
+    private final UpstreamRateLimiter rateLimiter;
+
+    public UpstreamExchangeFilter(CircuitBreaker circuitBreaker, UpstreamRateLimiter rateLimiter) {
+        this.circuitBreaker = circuitBreaker;
+        this.rateLimiter = rateLimiter;
+    }
+
+
+    /**
+     * Reports the outcome of the exchange made by the given pipeline once its body was decoded, rather than read.
+     *
+     * @param body The decoded body of a single exchange, for example the result of {@code retrieve().bodyToMono(...)}.
+     * @return The same body, reporting a failure to the circuit breaker if it could not be decoded.
+     */
+    public static <T> Mono<T> decoded(Mono<T> body) {
+        return Mono.defer(() -> {
+            DecodedBody decodedBody = new DecodedBody();
+            return body
+                    .doOnSuccess(result -> decodedBody.report(null))
+                    .doOnError(decodedBody::report)
+                    .doOnCancel(decodedBody::cancel)
+                    .contextWrite(Context.of(DecodedBody.class, decodedBody));
+        });
+    }
+
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        UpstreamPriority priority = request.attribute(PRIORITY_ATTRIBUTE)
+                .map(UpstreamPriority.class::cast)
+                .orElse(UpstreamPriority.INTERACTIVE);
+
+        return Mono.deferContextual(context -> {
+            if (!circuitBreaker.tryAcquire()) {
+                return Mono.error(new UpstreamUnavailableException("Circuit of " + circuitBreaker.getUpstream() + " is open, the call was not made."));
+            }
+
+            Outcome outcome = new Outcome(circuitBreaker);
+            AtomicBoolean responded = new AtomicBoolean();
+            return rateLimiter.acquireReactive(priority)
+                    .then(next.exchange(request))
+                    .map(response -> {
+                        responded.set(true);
+                        if (response.statusCode().isSameCodeAs(HttpStatus.TOO_MANY_REQUESTS)) {
+                            rateLimiter.pause(retryAfter(response));
+                        }
+                        if (response.statusCode().is5xxServerError()) {
+                            outcome.failure();
+                            return response;
+                        }
+                        AtomicBoolean read = new AtomicBoolean();
+                        return response.mutate()
+                                .body(body -> body
+                                        .doOnComplete(() -> {
+                                            read.set(true);
+                                            context.<DecodedBody>getOrEmpty(DecodedBody.class)
+                                                    .ifPresentOrElse(decodedBody -> decodedBody.await(outcome), outcome::success);
+                                        })
+                                        .doOnError(exception -> outcome.failure())
+                                        .doOnCancel(() -> {
+                                            // a decoder failing on the complete body cancels it as well
+                                            if (!read.get()) {
+                                                outcome.ignored();
+                                            }
+                                        }))
+                                .build();
+                    })
+                    .doOnError(exception -> {
+                        if (exception instanceof UpstreamThrottledException) {
+                            outcome.ignored();
+                        }
+                        else {
+                            outcome.failure();
+                        }
+                    })
+                    .doOnCancel(() -> {
+                        // cancelled by the subscriber before the upstream answered, says nothing about the upstream
+                        if (!responded.get()) {
+                            outcome.ignored();
+                        }
+                    });
+        });
+    }
+
+    private Duration retryAfter(ClientResponse response) {
+        String retryAfter = response.headers().asHttpHeaders().getFirst("Retry-After");
+        try {
+            return (retryAfter == null) ? DEFAULT_RETRY_AFTER : Duration.ofSeconds(Math.min(60, Long.parseLong(retryAfter.trim())));
+        }
+        catch (NumberFormatException exception) {
+            return DEFAULT_RETRY_AFTER;
+        }
+    }
+
+    /**
+     * Outcome of a single exchange, reported to the circuit breaker once.
+     */
+    private static final class Outcome {
+
+        private final CircuitBreaker circuitBreaker;
+        private final AtomicBoolean reported = new AtomicBoolean();
+
+        Outcome(CircuitBreaker circuitBreaker) {
+            this.circuitBreaker = circuitBreaker;
+        }
+
+        void success() {
+            if (reported.compareAndSet(false, true)) {
+                circuitBreaker.onSuccess();
+            }
+        }
+
+        void failure() {
+            if (reported.compareAndSet(false, true)) {
+                circuitBreaker.onFailure();
+            }
+        }
+
+        void ignored() {
+            if (reported.compareAndSet(false, true)) {
+                circuitBreaker.onIgnored();
+            }
+        }
+    }
+
+    /**
+     * Links a pipeline wrapped in {@link #decoded(Mono)} with the outcome of its exchange, which it reports once the
+     * body that was read completely is decoded.
+     */
+    private static final class DecodedBody {
+
+        private volatile Outcome outcome;           // set once the body was read
+
+        void await(Outcome outcome) {
+            this.outcome = outcome;
+        }
+
+        void report(Throwable exception) {
+            Outcome read = outcome;
+            if (read == null) {
+                return;                             // failed before the body was read, the filter reported it
+            }
+            if (exception instanceof DecodingException) {
+                read.failure();
+            }
+            else {
+                read.success();
+            }
+        }
+
+        void cancel() {
+            Outcome read = outcome;
+            if (read != null) {
+                read.ignored();
+            }
+        }
+    }
+}
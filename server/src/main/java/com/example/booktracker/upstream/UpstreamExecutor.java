@@ -0,0 +1,131 @@
+package com.example.booktracker.upstream;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executor dedicated to the blocking calls made against a single upstream service (Google Books, TasteDive, Wikipedia).
+ *
+ * It wraps the executor that actually runs the tasks (virtual threads by default) and keeps track of how many tasks
+ * are waiting to start, how many are currently running and how many have completed. These numbers are exported as
+ * gauges tagged with the upstream's name so that saturation of one upstream is visible on its own.
+ * Tasks run in the {@link UpstreamPriority} lane and with the HTTP request (if any) of the thread that submitted them,
+ * unless they are submitted through {@link #detached()}.
+ */
+public class UpstreamExecutor extends AbstractExecutorService {
+
+    private final String upstream;
+    private final ExecutorService delegate;
+
+    private final AtomicInteger queuedTasks = new AtomicInteger();      // submitted but not yet started
+    private final AtomicInteger activeTasks = new AtomicInteger();      // currently running
+    private final AtomicLong completedTasks = new AtomicLong();         // finished, successfully or not
+
+    public UpstreamExecutor(String upstream, ExecutorService delegate, MeterRegistry meterRegistry) {
+        this.upstream = upstream;
+        this.delegate = delegate;
+
+        Gauge.builder("upstream.executor.queued", queuedTasks, AtomicInteger::get)
+                .description("Upstream tasks waiting to start")
+                .tag("upstream", upstream)
+                .register(meterRegistry);
+        Gauge.builder("upstream.executor.active", activeTasks, AtomicInteger::get)
+                .description("Upstream tasks currently running")
+                .tag("upstream", upstream)
+                .register(meterRegistry);
+        Gauge.builder("upstream.executor.completed", completedTasks, AtomicLong::get)
+                .description("Upstream tasks completed since startup")
+                .tag("upstream", upstream)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        execute(task, RequestContextHolder.getRequestAttributes());
+    }
+
+
+    /**
+     * @return An executor running tasks on this one without the HTTP request of the submitting thread, for work that
+     *         outlives the request, like the background refreshes of a cache. Such tasks never mark a request stale.
+     */
+    public Executor detached() {
+        return task -> execute(task, null);
+    }
+
+    private void execute(Runnable task, RequestAttributes requestAttributes) {
+        UpstreamPriority priority = UpstreamPriority.current();
+        queuedTasks.incrementAndGet();
+        try {
+            delegate.execute(() -> {
+                queuedTasks.decrementAndGet();
+                activeTasks.incrementAndGet();
+                RequestContextHolder.setRequestAttributes(requestAttributes);
+                try {
+                    priority.run(task);
+                }
+                finally {
+                    RequestContextHolder.resetRequestAttributes();
+                    activeTasks.decrementAndGet();
+                    completedTasks.incrementAndGet();
+                }
+            });
+        }
+        catch (RuntimeException exception) {
+            // the task was rejected and will never run
+            queuedTasks.decrementAndGet();
+            throw exception;
+        }
+    }
+
+    public String getUpstream() {
+        return upstream;
+    }
+
+    public int getQueuedTasks() {
+        return queuedTasks.get();
+    }
+
+    public int getActiveTasks() {
+        return activeTasks.get();
+    }
+
+    public long getCompletedTasks() {
+        return completedTasks.get();
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+}
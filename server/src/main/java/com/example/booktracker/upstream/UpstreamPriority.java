@@ -0,0 +1,61 @@
+package com.example.booktracker.upstream;
+
+import java.util.function.Supplier;
+
+/**
+ * Priority lane of an upstream call, used by the {@link UpstreamRateLimiter} to decide who gets the remaining quota.
+ *
+ * The lane is bound to the current thread: calls default to {@link #INTERACTIVE}, and work that no user is waiting for
+ * (cache set-up and refills, background refreshes) runs inside {@link #call(Supplier)} on {@link #BACKGROUND}.
+ * The {@link UpstreamExecutor} carries the lane of the submitting thread over to the task, so asynchronous calls keep it.
+ */
+public enum UpstreamPriority {
+
+    /** A user is waiting on the call. Served first and allowed to use the whole bucket. */
+    INTERACTIVE,
+
+    /** Nobody is waiting on the call. Served only when no interactive call is waiting and the reserve is left untouched. */
+    BACKGROUND;
+
+    private static final ThreadLocal<UpstreamPriority> CURRENT = ThreadLocal.withInitial(() -> INTERACTIVE);
+
+
+    /**
+     * @return The lane of the upstream calls made by the current thread.
+     */
+    public static UpstreamPriority current() {
+        return CURRENT.get();
+    }
+
+
+    /**
+     * Runs a task with every upstream call it makes on the current thread (or submits to an {@link UpstreamExecutor})
+     * assigned to this lane, then restores the previous lane.
+     *
+     * @param task The task to run.
+     * @return The result of the task.
+     */
+    public <T> T call(Supplier<T> task) {
+        UpstreamPriority previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return task.get();
+        }
+        finally {
+            CURRENT.set(previous);
+        }
+    }
+
+
+    /**
+     * Runnable variant of {@link #call(Supplier)}.
+     *
+     * @param task The task to run.
+     */
+    public void run(Runnable task) {
+        call(() -> {
+            task.run();
+            return null;
+        });
+    }
+}
@@ -0,0 +1,241 @@
+package com.example.booktracker.upstream;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Token bucket limiting the calls made to a single upstream service so that its quota is never exceeded.
+ *
+ * <ul>
+ *     <li>The bucket holds up to {@code burst} permits and refills at {@code permitsPerSecond}.</li>
+ *     <li>{@link UpstreamPriority#INTERACTIVE} calls may take any permit. {@link UpstreamPriority#BACKGROUND} calls
+ *     must leave {@code backgroundReserve} permits in the bucket and do not get any while an interactive call is waiting,
+ *     so background work backs off instead of eating the budget of user-facing requests.</li>
+ *     <li>Each lane waits at most its configured time for a permit. An interactive call gives up as soon as it is
+ *     clear that it would wait longer, a background call polls until its time is up.</li>
+ *     <li>When the upstream answers 429 anyway, {@link #pause(Duration)} empties the bucket for the given time.</li>
+ * </ul>
+ *
+ * Waits, rejections, 429 responses and the current number of permits are exported under {@code upstream.ratelimit.*},
+ * tagged with the upstream's name and, where it applies, the lane.
+ */
+public class UpstreamRateLimiter {
+
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);      // waiting calls re-check the bucket at least this often
+
+    private final String upstream;
+    private final double permitsPerSecond;
+    private final double burst;
+    private final double backgroundReserve;
+    private final Map<UpstreamPriority, Long> maxWaitNanos = new EnumMap<>(UpstreamPriority.class);
+
+    private final Object lock = new Object();
+    private double permits;                 // guarded by lock
+    private long lastRefillNanos;           // guarded by lock
+    private long pausedUntilNanos;          // guarded by lock, set after a 429 response
+
+    private final AtomicInteger waitingInteractive = new AtomicInteger();
+
+    private final Map<UpstreamPriority, Timer> waitTimers = new EnumMap<>(UpstreamPriority.class);
+    private final Map<UpstreamPriority, Counter> rejections = new EnumMap<>(UpstreamPriority.class);
+    private final Counter throttledResponses;
+
+    public UpstreamRateLimiter(String upstream, double permitsPerSecond, int burst, double backgroundReserve,
+                               Duration interactiveMaxWait, Duration backgroundMaxWait, MeterRegistry meterRegistry) {
+        this.upstream = upstream;
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = Math.max(1, burst);
+        this.backgroundReserve = Math.min(this.burst - 1, Math.max(0, backgroundReserve));
+        this.permits = this.burst;
+        this.lastRefillNanos = System.nanoTime();
+        this.pausedUntilNanos = this.lastRefillNanos;
+        this.maxWaitNanos.put(UpstreamPriority.INTERACTIVE, interactiveMaxWait.toNanos());
+        this.maxWaitNanos.put(UpstreamPriority.BACKGROUND, backgroundMaxWait.toNanos());
+
+        for (UpstreamPriority priority : UpstreamPriority.values()) {
+            String lane = priority.name().toLowerCase(Locale.ROOT);
+            waitTimers.put(priority, Timer.builder("upstream.ratelimit.wait")
+                    .description("Time spent waiting for an upstream permit")
+                    .tags("upstream", upstream, "lane", lane)
+                    .register(meterRegistry));
+            rejections.put(priority, Counter.builder("upstream.ratelimit.rejected")
+                    .description("Upstream calls given up after waiting too long for a permit")
+                    .tags("upstream", upstream, "lane", lane)
+                    .register(meterRegistry));
+        }
+        this.throttledResponses = Counter.builder("upstream.ratelimit.throttled")
+                .description("429 responses received from the upstream")
+                .tag("upstream", upstream)
+                .register(meterRegistry);
+        Gauge.builder("upstream.ratelimit.permits", this, UpstreamRateLimiter::availablePermits)
+                .description("Permits currently available in the upstream's bucket")
+                .tag("upstream", upstream)
+                .register(meterRegistry);
+    }
+
+
+    /**
+     * Takes a permit for a call in the given lane, waiting for one if needed.
+     *
+     * @param priority The lane of the call.
+     * @throws UpstreamThrottledException If no permit could be taken within the lane's maximum wait, or the thread was interrupted.
+     */
+    public void acquire(UpstreamPriority priority) throws UpstreamThrottledException {
+        long start = System.nanoTime();
+        long wait = reserve(priority);
+        if (wait == 0) {
+            waitTimers.get(priority).record(0, TimeUnit.NANOSECONDS);
+            return;
+        }
+
+        long deadline = start + maxWaitNanos.get(priority);
+        if (priority == UpstreamPriority.INTERACTIVE) {
+            waitingInteractive.incrementAndGet();
+        }
+        try {
+            while (wait > 0) {
+                long now = System.nanoTime();
+                if (now >= deadline || (priority == UpstreamPriority.INTERACTIVE && now + wait > deadline)) {
+                    rejections.get(priority).increment();
+                    throw new UpstreamThrottledException("Rate limit of " + upstream + " reached, no permit available for a " + priority.name().toLowerCase(Locale.ROOT) + " call.");
+                }
+
+                LockSupport.parkNanos(Math.min(wait, Math.min(deadline - now, MAX_PARK_NANOS)));
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new UpstreamThrottledException("Interrupted while waiting for a permit of " + upstream + ".");
+                }
+                wait = reserve(priority);
+            }
+            waitTimers.get(priority).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        finally {
+            if (priority == UpstreamPriority.INTERACTIVE) {
+                waitingInteractive.decrementAndGet();
+            }
+        }
+    }
+
+
+    /**
+     * Non-blocking variant of {@link #acquire(UpstreamPriority)} for reactive pipelines: waits for a permit on timers
+     * instead of parking a thread.
+     *
+     * @param priority The lane of the call.
+     * @return A {@link Mono} completing empty once a permit was taken, or failing with an {@link UpstreamThrottledException}
+     *         if none could be taken within the lane's maximum wait.
+     */
+    public Mono<Void> acquireReactive(UpstreamPriority priority) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            long wait = reserve(priority);
+            if (wait == 0) {
+                waitTimers.get(priority).record(0, TimeUnit.NANOSECONDS);
+                return Mono.empty();
+            }
+
+            if (priority == UpstreamPriority.INTERACTIVE) {
+                waitingInteractive.incrementAndGet();
+            }
+            return awaitPermit(priority, start, start + maxWaitNanos.get(priority), wait)
+                    .doFinally(signal -> {
+                        if (priority == UpstreamPriority.INTERACTIVE) {
+                            waitingInteractive.decrementAndGet();
+                        }
+                    });
+        });
+    }
+
+    private Mono<Void> awaitPermit(UpstreamPriority priority, long start, long deadline, long wait) {
+        long now = System.nanoTime();
+        if (now >= deadline || (priority == UpstreamPriority.INTERACTIVE && now + wait > deadline)) {
+            rejections.get(priority).increment();
+            return Mono.error(new UpstreamThrottledException("Rate limit of " + upstream + " reached, no permit available for a " + priority.name().toLowerCase(Locale.ROOT) + " call."));
+        }
+
+        return Mono.delay(Duration.ofNanos(Math.min(wait, Math.min(deadline - now, MAX_PARK_NANOS))))
+                .then(Mono.defer(() -> {
+                    long nextWait = reserve(priority);
+                    if (nextWait == 0) {
+                        waitTimers.get(priority).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        return Mono.empty();
+                    }
+                    return awaitPermit(priority, start, deadline, nextWait);
+                }));
+    }
+
+
+    /**
+     * Takes a permit for a call in the given lane if one is available right now, without waiting.
+     * Meant for callers that schedule their own retry (for example reactive pipelines) instead of blocking.
+     *
+     * @param priority The lane of the call.
+     * @return {@code 0} if a permit was taken, otherwise the number of nanoseconds after which trying again may succeed.
+     */
+    public long reserve(UpstreamPriority priority) {
+        synchronized (lock) {
+            long now = System.nanoTime();
+            refill(now);
+
+            if (now < pausedUntilNanos) {
+                return pausedUntilNanos - now;
+            }
+
+            double floor = 0;
+            if (priority == UpstreamPriority.BACKGROUND) {
+                // background calls never take the reserve, and take nothing at all while a user is waiting
+                floor = (waitingInteractive.get() > 0) ? burst : backgroundReserve;
+            }
+
+            if (permits >= floor + 1) {
+                permits -= 1;
+                return 0;
+            }
+            return Math.max(1, (long) Math.ceil((floor + 1 - permits) / permitsPerSecond * 1_000_000_000L));
+        }
+    }
+
+
+    /**
+     * Stops handing out permits for the given time and empties the bucket, after the upstream answered 429.
+     *
+     * @param retryAfter How long the upstream asked to wait.
+     */
+    public void pause(Duration retryAfter) {
+        throttledResponses.increment();
+        synchronized (lock) {
+            long now = System.nanoTime();
+            refill(now);
+            pausedUntilNanos = Math.max(pausedUntilNanos, now + retryAfter.toNanos());
+            permits = 0;
+        }
+    }
+
+    public String getUpstream() {
+        return upstream;
+    }
+
+    public double availablePermits() {
+        synchronized (lock) {
+            refill(System.nanoTime());
+            return permits;
+        }
+    }
+
+    private void refill(long now) {
+        if (now > lastRefillNanos) {
+            permits = Math.min(burst, permits + (now - lastRefillNanos) * permitsPerSecond / 1_000_000_000L);
+            lastRefillNanos = now;
+        }
+    }
+}
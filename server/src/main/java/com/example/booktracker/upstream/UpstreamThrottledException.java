@@ -0,0 +1,15 @@
+package com.example.booktracker.upstream;
+
+import java.io.IOException;
+
+/**
+ * Thrown by the {@link RateLimitingInterceptor} when a call could not get a permit from the upstream's
+ * {@link UpstreamRateLimiter} within its lane's maximum wait. Being an {@link IOException}, it reaches the clients
+ * wrapped in a {@link org.springframework.web.client.ResourceAccessException}, like any other transport failure.
+ */
+public class UpstreamThrottledException extends IOException {
+
+    public UpstreamThrottledException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.booktracker.upstream;
+
+import java.io.IOException;
+
+/**
+ * Thrown by the {@link CircuitBreakerInterceptor} when a call is rejected because the upstream's {@link CircuitBreaker}
+ * is open. Being an {@link IOException}, it reaches the clients wrapped in a
+ * {@link org.springframework.web.client.ResourceAccessException}, like any other transport failure.
+ */
+public class UpstreamUnavailableException extends IOException {
+
+    public UpstreamUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.booktracker.author;
+
+import com.example.booktracker.author.exception.AuthorNotFoundException;
+import com.example.booktracker.upstream.CircuitBreaker;
+import com.example.booktracker.upstream.MockUpstream;
+import com.example.booktracker.upstream.StaleFallback;
+import com.example.booktracker.upstream.UpstreamRateLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReactiveAuthorApiClientTests {
+
+	private static final String SEARCH = "{\"query\": {\"search\": [{\"title\": \"Frank Herbert\"}]}}";
+	private static final String EXTRACT = "{\"query\": {\"pages\": {\"1\": {\"extract\": \"Author of Dune.\", \"thumbnail\": {\"source\": \"https://img.test/herbert.jpg\"}}}}}";
+
+	private final MockUpstream upstream = new MockUpstream();
+
+	// a single failure opens the circuit
+	private final CircuitBreaker breaker = new CircuitBreaker("wikipedia", 1, 1, 1, Duration.ofMinutes(1), 1, new SimpleMeterRegistry());
+
+	private final ReactiveAuthorApiClient client = new ReactiveAuthorApiClient(
+			upstream.webClient(breaker, new UpstreamRateLimiter("wikipedia", 1000, 10, 0, Duration.ofMillis(50), Duration.ofMillis(50), new SimpleMeterRegistry())),
+			new StaleFallback("wikipedia", 10, Duration.ofHours(1)));
+
+	ReactiveAuthorApiClientTests() throws Exception {
+	}
+
+	@AfterEach
+	void stop() {
+		upstream.close();
+	}
+
+	@Test
+	void detailsAreReadFromThePageFoundBySearching() throws Exception {
+		upstream.enqueue(200, SEARCH).enqueue(200, EXTRACT);
+
+		AuthorDTO author = client.fetchDetailsAsync("Frank Herbert").get(5, TimeUnit.SECONDS);
+
+		assertEquals("Author of Dune.", author.getDescription());
+		assertEquals("https://img.test/herbert.jpg", author.getImageUrl());
+		assertEquals(2, upstream.requests().size());
+		assertTrue(upstream.requests().get(1).getQuery().contains("titles=Frank Herbert"));
+	}
+
+	@Test
+	void authorWithoutSearchResultsIsNotFound() {
+		upstream.enqueue(200, "{\"query\": {\"search\": []}}");
+
+		ExecutionException failure = assertThrows(ExecutionException.class, () -> client.fetchDetailsAsync("Nobody").get(5, TimeUnit.SECONDS));
+		assertInstanceOf(AuthorNotFoundException.class, failure.getCause());
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+	}
+
+	@Test
+	void undecodableResponseOpensTheCircuitAndTheLastKnownDetailsAreServed() throws Exception {
+		upstream.enqueue(200, SEARCH).enqueue(200, EXTRACT).enqueue(200, "{\"query\": {");
+
+		AuthorDTO fresh = client.fetchDetailsAsync("Frank Herbert").get(5, TimeUnit.SECONDS);
+		AuthorDTO stale = client.fetchDetailsAsync("frank herbert").get(5, TimeUnit.SECONDS);
+
+		assertSame(fresh, stale);
+		assertTrue(StaleFallback.isStale(stale));
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+		// while the circuit is open Wikipedia is not called at all
+		assertSame(fresh, client.fetchDetailsAsync("Frank Herbert").get(5, TimeUnit.SECONDS));
+		assertEquals(3, upstream.requests().size());
+	}
+}
@@ -0,0 +1,70 @@
+package com.example.booktracker.book;
+
+import com.example.booktracker.book.exception.BookNotFoundException;
+import com.example.booktracker.book.exception.CustomBadRequestException;
+import com.example.booktracker.book.exception.ExternalServiceException;
+import com.example.booktracker.upstream.MockUpstream;
+import com.example.booktracker.upstream.RequestHedger;
+import com.example.booktracker.upstream.StaleFallback;
+import com.example.booktracker.upstream.UpstreamExecutor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestClient;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookApiClientTests {
+
+	private final MockUpstream upstream = new MockUpstream();
+
+	private final BookApiClient bookApiClient = new BookApiClient(RestClient.builder(), upstream.requestFactory(), upstream.requestFactory(),
+			new UpstreamExecutor("test", Executors.newSingleThreadExecutor(), new SimpleMeterRegistry()), new GoogleBooksStreamingMapper(new ObjectMapper()), null,
+			new StaleFallback("test", 1, Duration.ofMinutes(1)), new StaleFallback("test", 1, Duration.ofMinutes(1)),
+			new RequestHedger("test", Executors.newSingleThreadExecutor(), false, 0.95, Duration.ZERO, 0, new SimpleMeterRegistry()));
+
+	BookApiClientTests() throws Exception {
+	}
+
+	@AfterEach
+	void stop() {
+		upstream.close();
+	}
+
+	private static Throwable failure(CompletableFuture<?> call) {
+		return assertThrows(ExecutionException.class, () -> call.get(5, TimeUnit.SECONDS)).getCause();
+	}
+
+	@Test
+	void genreWithoutBooksIsNotFound() {
+		upstream.enqueue(200, "{}");
+
+		assertInstanceOf(BookNotFoundException.class, failure(bookApiClient.fetchBooksByGenreAsync("fantasy", 5, 0)));
+	}
+
+	@Test
+	void errorStatusesOfGenreRowsAreReportedLikeTheSynchronousCalls() {
+		upstream.enqueue(400, "{}").enqueue(503, "{}");
+
+		assertInstanceOf(CustomBadRequestException.class, failure(bookApiClient.fetchBooksByGenreAsync("fantasy", 5, 0)));
+		Throwable unavailable = failure(bookApiClient.fetchBooksByGenreAsync("fantasy", 5, 5));
+		assertInstanceOf(ExternalServiceException.class, unavailable);
+		assertEquals("External service error occurred when fetching books for the genre fantasy.", unavailable.getMessage());
+	}
+
+	@Test
+	void unreachableUpstreamIsAnExternalServiceFailure() {
+		upstream.close();
+
+		Throwable unreachable = failure(bookApiClient.fetchBooksByGenreAsync("fantasy", 5, 0));
+		assertInstanceOf(ExternalServiceException.class, unreachable);
+		assertEquals("External service did not respond in time when fetching books for the genre fantasy.", unreachable.getMessage());
+	}
+}
@@ -0,0 +1,201 @@
+package com.example.booktracker.book;
+
+import com.example.booktracker.book.exception.GenreNotInCacheException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookCacheSnapshotsTests {
+
+	private static final List<String> GENRES = List.of("nonfiction", "fiction", "thriller", "action", "mystery", "history", "horror", "fantasy");
+
+	@TempDir
+	Path directory;
+
+	private static BookCache bookCache() {
+		return new BookCache(GENRES, DataSize.ofGigabytes(1));
+	}
+
+	private static List<BookDTO> books(int from, int count) {
+		return IntStream.range(from, from + count)
+				.mapToObj(i -> new BookDTO("id" + i, "Book " + i, List.of("Author " + i), "Publisher", "A description of book " + i + " ·",
+						100 + i, List.of("Fiction"), "http://books.example/" + i + ".jpg", "en"))
+				.toList();
+	}
+
+	@Test
+	void restoredGenresKeepTheirBooksOffsetsAndCursors() {
+		Path path = directory.resolve("book-cache.snapshot");
+		BookCache original = bookCache();
+		original.setUpCache(Map.of("fantasy", books(0, 20), "horror", books(100, 5)));
+		original.reserveOffset("fantasy", 9);
+		String cursor = original.getPage("fantasy", null, 7).nextCursor();
+		assertEquals(2, new BookCacheSnapshots(original, true, path).write());
+
+		BookCache restored = bookCache();
+		assertEquals(2, new BookCacheSnapshots(restored, true, path).restore());
+
+		// the genres count as cached before they are decoded
+		assertEquals(Map.of("fantasy", 20, "horror", 5), restored.getCachedCounts());
+		BookDTO book = restored.getPage("fantasy", cursor, 1).books().get(0);
+		assertEquals("id7", book.getId());
+		assertEquals(List.of("Author 7"), book.getAuthors());
+		assertEquals(107, book.getPageCount());
+		assertEquals("A description of book 7 ·", book.getDescription());
+		assertEquals(original.getGenreOffset(), restored.getGenreOffset());
+	}
+
+	@Test
+	void corruptGenresAndOtherVersionsAreNotRestored() throws Exception {
+		Path path = directory.resolve("book-cache.snapshot");
+		BookCache original = bookCache();
+		original.setUpCache(Map.of("fantasy", books(0, 20)));
+		new BookCacheSnapshots(original, true, path).write();
+
+		// a flipped byte in the books of the genre
+		try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+			file.seek(file.length() - 10);
+			int value = file.read();
+			file.seek(file.length() - 10);
+			file.write(value ^ 0xFF);
+		}
+		BookCache corrupt = bookCache();
+		assertEquals(1, new BookCacheSnapshots(corrupt, true, path).restore());
+		assertThrows(GenreNotInCacheException.class, () -> corrupt.getPage("fantasy", null, 9));
+
+		// another format version
+		try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+			file.seek(4);
+			file.writeInt(BookCacheSnapshots.VERSION + 1);
+		}
+		assertEquals(-1, new BookCacheSnapshots(bookCache(), true, path).restore());
+		assertEquals(-1, new BookCacheSnapshots(bookCache(), true, directory.resolve("missing")).restore());
+	}
+
+	@Test
+	void emptyCacheNeverReplacesASnapshot() throws Exception {
+		Path path = directory.resolve("book-cache.snapshot");
+
+		// without a snapshot an empty one is written, and restores nothing
+		assertEquals(0, new BookCacheSnapshots(bookCache(), true, path).write());
+		assertTrue(Files.size(path) > 0);
+		assertEquals(0, new BookCacheSnapshots(bookCache(), true, path).restore());
+
+		BookCache original = bookCache();
+		original.setUpCache(Map.of("fantasy", books(0, 20)));
+		assertEquals(1, new BookCacheSnapshots(original, true, path).write());
+		long size = Files.size(path);
+
+		// e.g. a shutdown before the warm-up
+		assertEquals(0, new BookCacheSnapshots(bookCache(), true, path).write());
+		assertEquals(size, Files.size(path));
+		BookCache restored = bookCache();
+		assertEquals(1, new BookCacheSnapshots(restored, true, path).restore());
+		assertEquals(20, restored.getPage("fantasy", null, 100).books().size());
+	}
+
+	@Test
+	void genresNotUsedSinceTheRestoreAreCopiedWithoutDecoding() {
+		Path path = directory.resolve("book-cache.snapshot");
+		BookCache original = bookCache();
+		original.setUpCache(Map.of("fantasy", books(0, 20), "horror", books(100, 5)));
+		new BookCacheSnapshots(original, true, path).write();
+
+		BookCache restored = bookCache();
+		BookCacheSnapshots snapshots = new BookCacheSnapshots(restored, true, path);
+		snapshots.restore();
+		restored.getPage("horror", null, 1);
+		restored.updateCachedBooksByGenre("horror", books(105, 2));
+		assertEquals(2, snapshots.write());
+		assertEquals(Set.of("fantasy"), restored.getPendingRestores());
+
+		BookCache again = bookCache();
+		assertEquals(2, new BookCacheSnapshots(again, true, path).restore());
+		assertEquals(original.getPage("fantasy", null, 100).books().get(19).getId(), again.getPage("fantasy", null, 100).books().get(19).getId());
+		assertEquals(7, again.getPage("horror", null, 100).books().size());
+	}
+
+	@Test
+	void concurrentFirstUsesOfAGenreDecodeItOnce() throws Exception {
+		BookCache bookCache = bookCache();
+		AtomicInteger decodes = new AtomicInteger();
+		CountDownLatch decoding = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		bookCache.restoreLazily("fantasy", 3, () -> {
+			decodes.incrementAndGet();
+			decoding.countDown();
+			try {
+				release.await();
+			}
+			catch (InterruptedException exception) {
+				Thread.currentThread().interrupt();
+			}
+			return new BookCache.GenreSnapshot(books(0, 3), 42, 3, 0, 0);
+		});
+
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		Future<Integer> first = executor.submit(() -> bookCache.getPage("fantasy", null, 10).books().size());
+		assertTrue(decoding.await(5, TimeUnit.SECONDS));
+		Future<Integer> second = executor.submit(() -> bookCache.getPage("fantasy", null, 10).books().size());
+		// other genres are not held up by the decoding
+		bookCache.setUpCache(Map.of("horror", books(100, 2)));
+		assertEquals(2, bookCache.getPage("horror", null, 10).books().size());
+		release.countDown();
+
+		assertEquals(3, first.get(5, TimeUnit.SECONDS));
+		assertEquals(3, second.get(5, TimeUnit.SECONDS));
+		assertEquals(1, decodes.get());
+		executor.shutdown();
+	}
+
+	/**
+	 * Time to write a snapshot, to map it and read its directory on start, to serve the first page of a genre and to
+	 * decode every genre, by number of cached books.
+	 * Run with {@code mvn test -Dtest=BookCacheSnapshotsTests -Dbenchmark=true}.
+	 */
+	@Test
+	@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+	void restoreBenchmark() throws Exception {
+		for (int size : new int[]{1_000, 10_000, 100_000, 400_000}) {
+			Path path = directory.resolve("benchmark-" + size + ".snapshot");
+			BookCache original = bookCache();
+			Map<String, List<BookDTO>> cache = new HashMap<>();
+			GENRES.forEach(genre -> cache.put(genre, books(0, size / GENRES.size())));
+			original.setUpCache(cache);
+
+			long started = System.nanoTime();
+			new BookCacheSnapshots(original, true, path).write();
+			long written = System.nanoTime();
+
+			BookCache restored = bookCache();
+			new BookCacheSnapshots(restored, true, path).restore();
+			long mapped = System.nanoTime();
+			restored.getPage("fantasy", null, 9);
+			long firstPage = System.nanoTime();
+			restored.getCache();
+			long decoded = System.nanoTime();
+
+			System.out.printf("BookCacheSnapshots: %,d books, %,d KB: write %.1f ms, restore %.2f ms, first page %.1f ms, all genres %.1f ms%n",
+					size, Files.size(path) / 1024, (written - started) / 1e6, (mapped - written) / 1e6,
+					(firstPage - mapped) / 1e6, (decoded - firstPage) / 1e6);
+		}
+	}
+}
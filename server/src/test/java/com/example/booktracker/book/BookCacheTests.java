@@ -0,0 +1,244 @@
+package com.example.booktracker.book;
+
+import com.example.booktracker.book.exception.CustomBadRequestException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.util.unit.DataSize;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookCacheTests {
+
+	private static BookCache bookCache() {
+		return new BookCache(List.of("nonfiction", "fiction", "thriller", "action", "mystery", "history", "horror", "fantasy"), DataSize.ofMegabytes(2));
+	}
+
+	private static List<BookDTO> books(int from, int count) {
+		return IntStream.range(from, from + count)
+				.mapToObj(i -> new BookDTO("id" + i, "Book " + i, List.of(), "", "", 0, List.of(), "", "en"))
+				.toList();
+	}
+
+	@Test
+	void pagesAreSharedByEveryCursor() {
+		BookCache bookCache = bookCache();
+		bookCache.setUpCache(Map.of("fantasy", books(0, 10)));
+
+		BookCache.Page first = bookCache.getPage("fantasy", null, 4);
+		BookCache.Page second = bookCache.getPage("fantasy", first.nextCursor(), 4);
+		BookCache.Page otherUser = bookCache.getPage("fantasy", null, 4);
+
+		assertEquals("id0", first.books().get(0).getId());
+		assertEquals("id4", second.books().get(0).getId());
+		assertEquals(2, second.remaining());
+		assertEquals(first.books(), otherUser.books());
+
+		// the end of the genre keeps its cursor until the genre is refilled
+		BookCache.Page last = bookCache.getPage("fantasy", second.nextCursor(), 4);
+		BookCache.Page end = bookCache.getPage("fantasy", last.nextCursor(), 4);
+		assertTrue(end.books().isEmpty());
+		bookCache.updateCachedBooksByGenre("fantasy", books(10, 3));
+		assertEquals("id10", bookCache.getPage("fantasy", end.nextCursor(), 4).books().get(0).getId());
+	}
+
+	@Test
+	void cursorsOfAnotherGenreOrGenerationAreNotFollowed() {
+		BookCache bookCache = bookCache();
+		bookCache.setUpCache(Map.of("fantasy", books(0, 10), "horror", books(100, 10)));
+		String cursor = bookCache.getPage("fantasy", null, 4).nextCursor();
+
+		assertThrows(CustomBadRequestException.class, () -> bookCache.getPage("horror", cursor, 4));
+		assertThrows(CustomBadRequestException.class, () -> bookCache.getPage("fantasy", "not a cursor", 4));
+
+		// books cached again start over
+		bookCache.setUpCache(Map.of("fantasy", books(200, 10)));
+		assertEquals("id200", bookCache.getPage("fantasy", cursor, 4).books().get(0).getId());
+	}
+
+	@Test
+	void cursorsOfGenresContainingTheSeparatorAreFollowed() {
+		BookCache bookCache = bookCache();
+		bookCache.setUpCache(Map.of("science|fiction", books(0, 10), "science", books(100, 10)));
+		String cursor = bookCache.getPage("science|fiction", null, 4).nextCursor();
+
+		assertEquals("id4", bookCache.getPage("science|fiction", cursor, 4).books().get(0).getId());
+		assertThrows(CustomBadRequestException.class, () -> bookCache.getPage("science", cursor, 4));
+	}
+
+	@Test
+	void oldestBooksAreDroppedOverTheMemoryBudget() {
+		// books of the same size
+		long bookSize = BookSizeEstimator.estimate(books(10, 1).get(0));
+		BookCache bookCache = new BookCache(List.of("fantasy"), DataSize.ofBytes(bookSize * 10));
+		bookCache.setUpCache(Map.of("fantasy", books(10, 8)));
+		String cursor = bookCache.getPage("fantasy", null, 2).nextCursor();
+
+		bookCache.updateCachedBooksByGenre("fantasy", books(18, 4));
+
+		assertEquals(10, bookCache.getCachedCounts().get("fantasy"));
+		// the cursor pointed at a dropped book and continues at the oldest one left
+		assertEquals("id12", bookCache.getPage("fantasy", cursor, 2).books().get(0).getId());
+		bookCache.updateCachedBooksByGenre("fantasy", books(22, 2));
+		assertEquals("id14", bookCache.getPage("fantasy", cursor, 2).books().get(0).getId());
+	}
+
+	@Test
+	void genrePagesAreServedFromConsecutiveCachedBooks() {
+		BookCache bookCache = bookCache();
+		bookCache.setUpCache(Map.of("poetry", books(0, 18)));
+
+		assertEquals("id9", bookCache.findBooks("poetry", 9, 9).orElseThrow().books().get(0).getId());
+		assertTrue(bookCache.findBooks("poetry", 10, 9).isEmpty());
+
+		// a refill that came back short leaves a gap in the Google Books offsets
+		int offset = bookCache.reserveOffset("poetry", 9);
+		bookCache.updateCachedBooksByGenre("poetry", books(offset, 5));
+		assertTrue(bookCache.findBooks("poetry", 0, 9).isEmpty());
+
+		assertTrue(bookCache.evict("poetry"));
+		assertFalse(bookCache.evict("fantasy"));
+	}
+
+	@Test
+	void concurrentReadersSeeEveryAppendedBookOnce() throws Exception {
+		BookCache bookCache = bookCache();
+		bookCache.setUpCache(Map.of("fantasy", books(0, 100)));
+
+		int appenders = 4;
+		int appendsPerThread = 200;
+		ExecutorService executor = Executors.newFixedThreadPool(appenders * 2);
+		CountDownLatch start = new CountDownLatch(1);
+		AtomicInteger nextId = new AtomicInteger(100);
+		List<Future<?>> appends = new ArrayList<>();
+		List<Future<List<BookDTO>>> readers = new ArrayList<>();
+
+		for (int t = 0; t < appenders; t++) {
+			appends.add(executor.submit(() -> {
+				start.await();
+				for (int i = 0; i < appendsPerThread; i++) {
+					bookCache.updateCachedBooksByGenre("fantasy", books(nextId.getAndAdd(3), 3));
+				}
+				return null;
+			}));
+			readers.add(executor.submit(() -> {
+				start.await();
+				List<BookDTO> read = new ArrayList<>();
+				String cursor = null;
+				while (read.size() < 100 + appenders * appendsPerThread * 3) {
+					BookCache.Page page = bookCache.getPage("fantasy", cursor, 7);
+					read.addAll(page.books());
+					cursor = page.nextCursor();
+				}
+				return read;
+			}));
+		}
+		start.countDown();
+		for (Future<?> append : appends) {
+			append.get(30, TimeUnit.SECONDS);
+		}
+
+		List<BookDTO> cached = bookCache.getCache().get("fantasy");
+		assertEquals(100 + appenders * appendsPerThread * 3, new HashSet<>(cached).size());
+		for (Future<List<BookDTO>> reader : readers) {
+			assertEquals(cached, reader.get(30, TimeUnit.SECONDS));
+		}
+		executor.shutdown();
+	}
+
+	@Test
+	void concurrentRefillsReserveDistinctOffsets() throws Exception {
+		BookCache bookCache = bookCache();
+		int initialOffset = bookCache.getOffsetForGenre("horror");
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+
+		List<Future<Integer>> reservations = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			reservations.add(executor.submit(() -> bookCache.reserveOffset("horror", 9)));
+		}
+		Set<Integer> offsets = new HashSet<>();
+		for (Future<Integer> reservation : reservations) {
+			assertTrue(offsets.add(reservation.get()));
+		}
+		executor.shutdown();
+
+		assertEquals(initialOffset + 900, bookCache.getOffsetForGenre("horror"));
+
+		// only the latest reservation can be given back
+		int last = bookCache.reserveOffset("horror", 9);
+		bookCache.releaseOffset("horror", initialOffset, 9);
+		assertEquals(last + 9, bookCache.getOffsetForGenre("horror"));
+		bookCache.releaseOffset("horror", last, 9);
+		assertEquals(last, bookCache.getOffsetForGenre("horror"));
+	}
+
+	@Test
+	void sharedBooksFollowTheLeaderAndKeepItsCursorsValid() {
+		BookCache leader = bookCache();
+		BookCache follower = bookCache();
+		List<BookCache.Change> changes = new ArrayList<>();
+		leader.addListener(changes::add);
+
+		leader.setUpCache(Map.of("fantasy", books(10, 9)));
+		leader.updateCachedBooksByGenre("fantasy", books(19, 9));
+		follower.setUpCache(Map.of("fantasy", books(50, 9)));
+		changes.forEach(change -> follower.applyShared(change.genre(), change.generation(), change.position(), change.books(), change.firstOffset(), change.offset()));
+
+		// the books of the follower are replaced by the ones of the leader, with their generation
+		assertEquals(leader.getEnd("fantasy"), follower.getEnd("fantasy"));
+		String cursor = leader.getPage("fantasy", null, 12).nextCursor();
+		assertEquals("id22", follower.getPage("fantasy", cursor, 3).books().get(0).getId());
+		assertEquals(leader.getOffsetForGenre("fantasy"), follower.getOffsetForGenre("fantasy"));
+
+		// books already held are not added again, and books are not reported back by the follower
+		BookCache.Change last = changes.get(1);
+		assertEquals(0, follower.applyShared("fantasy", last.generation(), last.position(), last.books(), last.firstOffset(), last.offset()));
+		assertEquals(18, follower.getCachedCounts().get("fantasy"));
+		assertEquals(0, follower.applyShared("poetry", last.generation(), 0, last.books(), 0, 9));
+	}
+
+	/**
+	 * Throughput of paging with occasional appends on two genres, for 1 to 2x the available cores.
+	 * Run with {@code mvn test -Dtest=BookCacheTests -Dbenchmark=true}.
+	 */
+	@Test
+	@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+	void throughputBenchmark() throws Exception {
+		int cores = Runtime.getRuntime().availableProcessors();
+		for (int threads = 1; threads <= Math.max(8, cores * 2); threads *= 2) {
+			BookCache bookCache = bookCache();
+			bookCache.setUpCache(Map.of("fantasy", books(0, 1000), "horror", books(0, 1000)));
+			List<BookDTO> batch = books(0, 9);
+			LongAdder operations = new LongAdder();
+			ExecutorService executor = Executors.newFixedThreadPool(threads);
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+
+			for (int t = 0; t < threads; t++) {
+				String genre = (t % 2 == 0) ? "fantasy" : "horror";
+				executor.execute(() -> {
+					String cursor = null;
+					int i = 0;
+					while (System.nanoTime() < deadline) {
+						// mostly reads, with the occasional refill
+						if (i++ % 100 == 0) {
+							bookCache.updateCachedBooksByGenre(genre, batch);
+						}
+						else {
+							cursor = bookCache.getPage(genre, cursor, 9).nextCursor();
+						}
+						operations.increment();
+					}
+				});
+			}
+			executor.shutdown();
+			assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+			System.out.printf("BookCache: %d threads (%d cores): %,d ops/s%n", threads, cores, operations.sum() / 2);
+		}
+	}
+}
@@ -0,0 +1,144 @@
+package com.example.booktracker.book;
+
+import com.example.booktracker.book.exception.BookNotFoundException;
+import com.example.booktracker.book.exception.ExternalServiceException;
+import com.example.booktracker.upstream.StaleFallback;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class BookSearchCacheTests {
+
+	private final AtomicLong now = new AtomicLong();
+
+	private static List<BookDTO> books(String... ids) {
+		return List.of(ids).stream()
+				.map(id -> new BookDTO(id, "Book " + id, List.of(), "", "", 0, List.of(), "", "en"))
+				.toList();
+	}
+
+	private BookSearchCache cache(BookApiClient bookApiClient) {
+		return new BookSearchCache(bookApiClient, Runnable::run, new SimpleMeterRegistry(), DataSize.ofMegabytes(1),
+				Duration.ofMinutes(30), Duration.ofMinutes(2), now::get);
+	}
+
+	private void advance(Duration duration) {
+		now.addAndGet(duration.toNanos());
+	}
+
+	/**
+	 * A result served by a {@link StaleFallback} after the upstream failed.
+	 */
+	private static List<BookDTO> stale(List<BookDTO> books) {
+		StaleFallback fallback = new StaleFallback("test", 10, Duration.ofHours(1));
+		fallback.call("key", () -> books);
+		return fallback.call("key", () -> {
+			throw new ExternalServiceException("down");
+		});
+	}
+
+	@Test
+	void spellingsOfTheSameSearchShareAnEntryAndTheQueryIsSentAsTyped() {
+		BookApiClient bookApiClient = mock(BookApiClient.class);
+		List<BookDTO> books = books("1");
+		when(bookApiClient.fetchBooks(anyString(), anyInt(), anyInt(), any())).thenReturn(books);
+		BookSearchCache cache = cache(bookApiClient);
+
+		assertSame(books, cache.get(" Dune  Messiah", 10, 0, BookView.FULL));
+		assertSame(books, cache.get("dune messiah", 10, 0, BookView.FULL));
+
+		verify(bookApiClient).fetchBooks(" Dune  Messiah", 10, 0, BookView.FULL);
+		verifyNoMoreInteractions(bookApiClient);
+	}
+
+	@Test
+	void otherPagesAndViewsAreMisses() {
+		BookApiClient bookApiClient = mock(BookApiClient.class);
+		when(bookApiClient.fetchBooks(anyString(), anyInt(), anyInt(), any())).thenReturn(books("1"));
+		BookSearchCache cache = cache(bookApiClient);
+
+		cache.get("dune", 10, 0, BookView.FULL);
+		cache.get("dune", 10, 0, BookView.FULL);
+		cache.get("dune", 20, 0, BookView.FULL);
+		cache.get("dune", 10, 10, BookView.FULL);
+		cache.get("dune", 10, 0, BookView.SUMMARY);
+
+		verify(bookApiClient, times(4)).fetchBooks(anyString(), anyInt(), anyInt(), any());
+	}
+
+	@Test
+	void failedSearchesAreNotCached() {
+		BookApiClient bookApiClient = mock(BookApiClient.class);
+		when(bookApiClient.fetchBooks(anyString(), anyInt(), anyInt(), any())).thenThrow(new BookNotFoundException("none"));
+		BookSearchCache cache = cache(bookApiClient);
+
+		assertThrows(BookNotFoundException.class, () -> cache.get("zzzz", 10, 0, BookView.FULL));
+		assertThrows(BookNotFoundException.class, () -> cache.get("zzzz", 10, 0, BookView.FULL));
+
+		verify(bookApiClient, times(2)).fetchBooks(anyString(), anyInt(), anyInt(), any());
+	}
+
+	@Test
+	void entriesAreRefreshedAndExpire() {
+		BookApiClient bookApiClient = mock(BookApiClient.class);
+		List<BookDTO> first = books("1");
+		List<BookDTO> second = books("2");
+		List<BookDTO> third = books("3");
+		when(bookApiClient.fetchBooks(anyString(), anyInt(), anyInt(), any())).thenReturn(first, second, third);
+		BookSearchCache cache = cache(bookApiClient);
+
+		assertSame(first, cache.get("dune", 10, 0, BookView.FULL));
+		advance(Duration.ofMinutes(1));
+		assertSame(first, cache.get("dune", 10, 0, BookView.FULL));
+
+		// past refresh-after the entry is reloaded, here on the calling thread
+		advance(Duration.ofMinutes(2));
+		assertSame(second, cache.get("dune", 10, 0, BookView.FULL));
+
+		// an entry nobody reads expires instead
+		advance(Duration.ofMinutes(31));
+		assertSame(third, cache.get("dune", 10, 0, BookView.FULL));
+		verify(bookApiClient, times(3)).fetchBooks(anyString(), anyInt(), anyInt(), any());
+	}
+
+	@Test
+	void staleResultsAreReturnedButNotCached() {
+		BookApiClient bookApiClient = mock(BookApiClient.class);
+		List<BookDTO> stale = stale(books("1"));
+		when(bookApiClient.fetchBooks(anyString(), anyInt(), anyInt(), any())).thenReturn(stale);
+		BookSearchCache cache = cache(bookApiClient);
+
+		assertSame(stale, cache.get("dune", 10, 0, BookView.FULL));
+		assertSame(stale, cache.get("dune", 10, 0, BookView.FULL));
+
+		verify(bookApiClient, times(2)).fetchBooks(anyString(), anyInt(), anyInt(), any());
+	}
+
+	@Test
+	void staleRefreshDoesNotExtendTheEntry() {
+		BookApiClient bookApiClient = mock(BookApiClient.class);
+		List<BookDTO> fresh = books("1");
+		List<BookDTO> stale = stale(books("2"));
+		when(bookApiClient.fetchBooks(anyString(), anyInt(), anyInt(), any())).thenReturn(fresh, stale, fresh);
+		BookSearchCache cache = cache(bookApiClient);
+
+		assertSame(fresh, cache.get("dune", 10, 0, BookView.FULL));
+		advance(Duration.ofMinutes(3));
+		// the refresh runs on the calling thread here, and is answered from the fallback
+		assertSame(stale, cache.get("dune", 10, 0, BookView.FULL));
+		assertSame(stale, cache.get("dune", 10, 0, BookView.FULL));
+
+		// the entry expires 30 minutes after the fresh result was written, not after the stale one
+		advance(Duration.ofMinutes(28));
+		assertSame(fresh, cache.get("dune", 10, 0, BookView.FULL));
+		verify(bookApiClient, times(3)).fetchBooks(anyString(), anyInt(), anyInt(), any());
+	}
+}
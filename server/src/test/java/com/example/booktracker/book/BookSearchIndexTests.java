@@ -0,0 +1,61 @@
+package com.example.booktracker.book;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookSearchIndexTests {
+
+	private static BookSearchIndex index() {
+		return new BookSearchIndex(null, new SimpleMeterRegistry(), 1000, false, 1.0);
+	}
+
+	private static BookDTO book(String id, String title, String author, String publisher, String category) {
+		return new BookDTO(id, title, List.of(author), publisher, "", 0, List.of(category), "", "en");
+	}
+
+	private static List<String> ids(List<BookDTO> books) {
+		return books.stream().map(BookDTO::getId).toList();
+	}
+
+	@Test
+	void titleMatchesRankAboveOtherFieldsAndPrefixesMatch() {
+		BookSearchIndex index = index();
+		index.index(List.of(
+				book("1", "Dune", "Frank Herbert", "Chilton", "Fiction"),
+				book("2", "Children of Dune", "Frank Herbert", "Putnam", "Fiction"),
+				book("3", "The Dunes of Cape Cod", "Henry Beston", "Dune Press", "Nature"),
+				book("4", "Foundation", "Isaac Asimov", "Gnome", "Fiction")));
+
+		assertEquals(List.of("1", "2", "3"), ids(index.search("dune", 10, 0)));
+		assertEquals(List.of("1", "2"), ids(index.search("herb dune", 10, 0)));
+		assertEquals(List.of("4"), ids(index.search("Asímov", 10, 0)));
+		assertTrue(index.search("the of", 10, 0).isEmpty());
+	}
+
+	@Test
+	void reindexingABookReplacesItsWords() {
+		BookSearchIndex index = index();
+		index.index(List.of(book("1", "Working Title", "Anon", "", "")));
+		index.index(List.of(book("1", "Final Title", "Anon", "", "")));
+
+		assertTrue(index.search("working", 10, 0).isEmpty());
+		assertEquals(List.of("1"), ids(index.search("final", 10, 0)));
+		assertEquals(1, index.size());
+	}
+
+	@Test
+	void localFirstOnlyServesPagesTheIndexCanFill() {
+		BookSearchIndex index = index();
+		index.index(List.of(
+				book("1", "Dune", "Frank Herbert", "", ""),
+				book("2", "Dune Messiah", "Frank Herbert", "", "")));
+
+		assertEquals(List.of("1", "2"), ids(index.findLocally("dune", 2, 0).orElseThrow()));
+		assertTrue(index.findLocally("dune", 5, 0).isEmpty());
+		assertTrue(index.findLocally("dune", 2, 2).isEmpty());
+	}
+}
@@ -0,0 +1,175 @@
+package com.example.booktracker.book;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookSuggesterTests {
+
+	private static BookDTO book(String id, String title, String author) {
+		return new BookDTO(id, title, List.of(author), "", "", 0, List.of(), "", "en");
+	}
+
+	private static BookSearchIndex index() {
+		return new BookSearchIndex(null, new SimpleMeterRegistry(), 200_000, false, 1.0);
+	}
+
+	private static List<String> texts(List<BookSuggester.Suggestion> suggestions) {
+		return suggestions.stream().map(BookSuggester.Suggestion::text).toList();
+	}
+
+	@Test
+	void suggestionsMatchTheStartOfAnyWordAndArePopularFirst() {
+		BookSearchIndex index = index();
+		index.index(List.of(
+				book("1", "Dune", "Frank Herbert"),
+				book("2", "Children of Dune", "Frank Herbert"),
+				book("3", "Dandelion Wine", "Ray Bradbury")));
+		BookSuggester suggester = new BookSuggester(index, 1000, 1000, 1);
+
+		suggester.recordQuery("Children of Dune");
+		suggester.recordQuery("children  of dune");
+		suggester.recordQuery("dunkirk");
+		suggester.rebuildNow();
+
+		assertEquals(List.of("Children of Dune", "dunkirk", "Dune"), texts(suggester.suggest("Dun", 10)));
+		assertEquals("title", suggester.suggest("dun", 1).get(0).type());
+		assertEquals(List.of("Frank Herbert"), texts(suggester.suggest("herb", 10)));
+		assertEquals(List.of("Frank Herbert"), texts(suggester.suggest("FRANK H", 10)));
+		assertEquals(List.of("Children of Dune"), texts(suggester.suggest("children of dune", 10)));
+		assertTrue(suggester.suggest("dunes", 10).isEmpty());
+		assertTrue(suggester.suggest("zz", 10).isEmpty());
+		assertTrue(suggester.suggest("", 10).isEmpty());
+	}
+
+	@Test
+	void searchesAreOnlySuggestedOnceTheyReachTheCountFloor() {
+		BookSuggester suggester = new BookSuggester(index(), 1000, 1000, 3);
+
+		suggester.recordQuery("my phone number 555 0100");
+		suggester.recordQuery("dunkirk");
+		suggester.recordQuery("Dunkirk");
+		suggester.rebuildNow();
+		assertTrue(suggester.suggest("my", 10).isEmpty());
+		assertTrue(suggester.suggest("dunk", 10).isEmpty());
+
+		suggester.recordQuery("dunkirk!");
+		suggester.rebuildNow();
+		assertEquals(List.of("dunkirk"), texts(suggester.suggest("dunk", 10)));
+	}
+
+	@Test
+	void rebuildIndexesAtMostTheFirstWordsOfEverySuggestion() {
+		BookSearchIndex index = index();
+		String longTitle = IntStream.range(0, 40).mapToObj(i -> "word" + i).collect(Collectors.joining(" "));
+		index.index(IntStream.range(0, 2_000)
+				.mapToObj(i -> book("id" + i, i + " " + longTitle, "Author " + i))
+				.toList());
+		BookSuggester suggester = new BookSuggester(index, 100_000, 1000, 1);
+
+		suggester.rebuildNow();
+
+		// titles: MAX_WORDS keys each, authors: two words each
+		assertEquals(2_000 * BookSuggester.MAX_WORDS + 2_000 * 2, suggester.size());
+		assertEquals(10, suggester.suggest("word4 word5 word6", 10).size());
+		assertTrue(suggester.suggest("word5", 10).isEmpty());
+	}
+
+	@Test
+	void scheduledRebuildRunsInTheBackground() throws Exception {
+		BookSearchIndex index = index();
+		index.index(List.of(book("1", "Dune", "Frank Herbert")));
+		BookSuggester suggester = new BookSuggester(index, 1000, 1000, 1);
+
+		suggester.rebuild();
+
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (suggester.suggest("dune", 10).isEmpty() && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(List.of("Dune"), texts(suggester.suggest("dune", 10)));
+		suggester.shutdown();
+	}
+
+	@Test
+	void lookupsDuringRebuildsSeeEitherTheOldOrTheNewIndex() throws Exception {
+		BookSearchIndex index = index();
+		index.index(IntStream.range(0, 5_000).mapToObj(i -> book("a" + i, "Alpha " + i, "Ann " + i)).toList());
+		BookSuggester suggester = new BookSuggester(index, 100_000, 1000, 1);
+		suggester.rebuildNow();
+
+		AtomicBoolean running = new AtomicBoolean(true);
+		ExecutorService readers = Executors.newFixedThreadPool(4);
+		List<Future<Integer>> lookups = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			lookups.add(readers.submit(() -> {
+				int count = 0;
+				while (running.get()) {
+					List<BookSuggester.Suggestion> suggestions = suggester.suggest("alpha", 10);
+					// the books of the index only grow, so every index holds ten of them
+					assertEquals(10, suggestions.size());
+					assertTrue(suggestions.stream().allMatch(suggestion -> suggestion.text().startsWith("Alpha")));
+					count++;
+				}
+				return count;
+			}));
+		}
+
+		for (int i = 0; i < 10; i++) {
+			index.index(IntStream.range(0, 500).mapToObj(j -> book("b" + j, "Beta " + j, "Bob " + j)).toList());
+			suggester.rebuildNow();
+		}
+		running.set(false);
+		readers.shutdown();
+		for (Future<Integer> lookup : lookups) {
+			assertTrue(lookup.get(10, TimeUnit.SECONDS) > 0);
+		}
+		assertEquals(10, suggester.suggest("beta", 10).size());
+	}
+
+	/**
+	 * Rebuild time, index size and lookup latency with 100k indexed books.
+	 * Run with {@code mvn test -Dtest=BookSuggesterTests -Dbenchmark=true}.
+	 */
+	@Test
+	@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+	void rebuildBenchmark() {
+		BookSearchIndex index = index();
+		index.index(IntStream.range(0, 100_000)
+				.mapToObj(i -> book("id" + i, "The Chronicles of Volume " + i + " and Other Stories of the North", "Author Name " + (i % 20_000)))
+				.toList());
+		BookSuggester suggester = new BookSuggester(index, 100_000, 1000, 1);
+
+		for (int run = 0; run < 3; run++) {
+			System.gc();
+			long before = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+			long start = System.nanoTime();
+			suggester.rebuildNow();
+			long elapsed = System.nanoTime() - start;
+			System.gc();
+			long after = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+			System.out.printf("BookSuggester: rebuild of %,d keys in %,d ms, about %,d MB retained%n",
+					suggester.size(), TimeUnit.NANOSECONDS.toMillis(elapsed), Math.max(0, after - before) >> 20);
+		}
+
+		String[] prefixes = {"t", "the", "chron", "volume 12", "author name 1", "north", "of"};
+		int lookups = 200_000;
+		long start = System.nanoTime();
+		for (int i = 0; i < lookups; i++) {
+			suggester.suggest(prefixes[i % prefixes.length], 10);
+		}
+		System.out.printf("BookSuggester: %,d ns per lookup%n", (System.nanoTime() - start) / lookups);
+	}
+}
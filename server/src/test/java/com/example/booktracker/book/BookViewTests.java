@@ -0,0 +1,30 @@
+package com.example.booktracker.book;
+
+import com.example.booktracker.book.exception.CustomBadRequestException;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookViewTests {
+
+	@Test
+	void summaryKeepsOnlyTheListFields() {
+		BookDTO book = new BookDTO("id", "Dune", List.of("Frank Herbert"), "Chilton", "A long description", 412, List.of("Fiction"), "cover", "en");
+
+		List<?> projected = BookView.parse("Summary").project(List.of(book));
+
+		BookSummaryDTO summary = assertInstanceOf(BookSummaryDTO.class, projected.get(0));
+		assertEquals("Dune", summary.getTitle());
+		assertEquals(List.of("Frank Herbert"), summary.getAuthors());
+		assertEquals("cover", summary.getImageUrl());
+		assertSame(book, BookView.parse("full").project(List.of(book)).get(0));
+		assertFalse(BookView.SUMMARY.googleBooksFields().contains("description"));
+	}
+
+	@Test
+	void unknownViewsAreRejected() {
+		assertThrows(CustomBadRequestException.class, () -> BookView.parse("compact"));
+	}
+}
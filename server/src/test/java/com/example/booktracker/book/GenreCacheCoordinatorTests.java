@@ -0,0 +1,476 @@
+package com.example.booktracker.book;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.util.unit.DataSize;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class GenreCacheCoordinatorTests {
+
+	@TempDir
+	Path directory;
+
+	private static BookCache bookCache() {
+		return new BookCache(List.of("fantasy", "horror"), DataSize.ofMegabytes(2));
+	}
+
+	private static List<BookDTO> books(int from, int count) {
+		return IntStream.range(from, from + count)
+				.mapToObj(i -> new BookDTO("id" + i, "Book " + i, List.of("Author " + i), "", "", 0, List.of(), "", "en"))
+				.toList();
+	}
+
+	private static List<String> ids(BookCache bookCache, String genre) {
+		return bookCache.getPage(genre, null, Integer.MAX_VALUE).books().stream().map(BookDTO::getId).toList();
+	}
+
+	private static List<String> ids(List<BookDTO> books) {
+		return books.stream().map(BookDTO::getId).toList();
+	}
+
+	@Test
+	void leaderPublishesTheGenresItRestoredFromASnapshot() {
+		Path path = directory.resolve("book-cache.snapshot");
+		BookCache previous = bookCache();
+		previous.setUpCache(Map.of("fantasy", books(0, 20)));
+		new BookCacheSnapshots(previous, true, path).write();
+
+		SharedDatabase database = new SharedDatabase();
+		BookCache leaderCache = bookCache();
+		new BookCacheSnapshots(leaderCache, true, path).restore();
+		GenreCacheCoordinator leader = database.instance(leaderCache);
+		leader.connect();
+		assertTrue(leader.isLeader());
+
+		BookCache followerCache = bookCache();
+		GenreCacheCoordinator follower = database.instance(followerCache);
+		follower.connect();
+
+		assertFalse(follower.isLeader());
+		assertTrue(follower.isFollowing("fantasy"));
+		assertEquals(ids(books(0, 20)), ids(followerCache, "fantasy"));
+		// cursors handed out by the leader are valid on the follower
+		String cursor = leaderCache.getPage("fantasy", null, 7).nextCursor();
+		assertEquals("id7", followerCache.getPage("fantasy", cursor, 1).books().get(0).getId());
+	}
+
+	@Test
+	void followersDiscardTheGenresOfTheirOwnSnapshot() {
+		Path path = directory.resolve("book-cache.snapshot");
+		BookCache previous = bookCache();
+		previous.setUpCache(Map.of("fantasy", books(500, 3), "horror", books(600, 3)));
+		new BookCacheSnapshots(previous, true, path).write();
+
+		SharedDatabase database = new SharedDatabase();
+		BookCache leaderCache = bookCache();
+		leaderCache.setUpCache(Map.of("fantasy", books(0, 10)));
+		database.instance(leaderCache).connect();
+
+		BookCache followerCache = bookCache();
+		new BookCacheSnapshots(followerCache, true, path).restore();
+		database.instance(followerCache).connect();
+
+		assertTrue(followerCache.getPendingRestores().isEmpty());
+		assertEquals(Map.of("fantasy", 10), followerCache.getCachedCounts());
+	}
+
+	@Test
+	void booksAddedConcurrentlyArePublishedInPositionOrder() throws Exception {
+		SharedDatabase database = new SharedDatabase();
+		BookCache leaderCache = bookCache();
+		leaderCache.setUpCache(Map.of("fantasy", books(0, 5)));
+		ExecutorService publisher = Executors.newSingleThreadExecutor();
+		GenreCacheCoordinator leader = database.instance(leaderCache, publisher);
+		leader.connect();
+
+		ExecutorService appenders = Executors.newFixedThreadPool(4);
+		List<Future<?>> appends = new ArrayList<>();
+		for (int i = 0; i < 40; i++) {
+			int from = 100 + i * 3;
+			appends.add(appenders.submit(() -> leaderCache.updateCachedBooksByGenre("fantasy", books(from, 3))));
+		}
+		for (Future<?> append : appends) {
+			append.get(10, TimeUnit.SECONDS);
+		}
+		appenders.shutdown();
+		publisher.shutdown();
+		assertTrue(publisher.awaitTermination(10, TimeUnit.SECONDS));
+
+		// every page starts where the previous one ended
+		int end = 0;
+		for (SharedDatabase.Page page : database.pages("fantasy")) {
+			assertEquals(end, page.position());
+			end = page.position() + page.count();
+		}
+		assertEquals(125, end);
+
+		BookCache followerCache = bookCache();
+		database.instance(followerCache).connect();
+		assertEquals(ids(leaderCache, "fantasy"), ids(followerCache, "fantasy"));
+	}
+
+	@Test
+	void followersCatchUpWithThePagesTheLeaderPublishes() {
+		SharedDatabase database = new SharedDatabase();
+		BookCache leaderCache = bookCache();
+		leaderCache.setUpCache(Map.of("fantasy", books(0, 10)));
+		GenreCacheCoordinator leader = database.instance(leaderCache);
+		leader.connect();
+		BookCache followerCache = bookCache();
+		GenreCacheCoordinator follower = database.instance(followerCache);
+		follower.connect();
+
+		leaderCache.updateCachedBooksByGenre("fantasy", books(10, 5));
+		leaderCache.updateCachedBooksByGenre("fantasy", books(15, 5));
+		assertEquals(10, followerCache.getCachedCounts().get("fantasy"));
+
+		database.deliver(leader, follower);
+		assertEquals(ids(books(0, 20)), ids(followerCache, "fantasy"));
+
+		// notifications of genres that are not configured, or received by the leader, are ignored
+		follower.handle(GenreCacheCoordinator.PAGES_CHANNEL, "poetry");
+		leader.handle(GenreCacheCoordinator.PAGES_CHANNEL, "fantasy");
+		assertEquals(ids(books(0, 20)), ids(leaderCache, "fantasy"));
+	}
+
+	@Test
+	void leaderRefillsOnlyForFollowersThatCaughtUp() {
+		SharedDatabase database = new SharedDatabase();
+		BookCache leaderCache = bookCache();
+		leaderCache.setUpCache(Map.of("fantasy", books(0, 10)));
+		GenreCacheCoordinator leader = database.instance(leaderCache);
+		List<String> refills = new ArrayList<>();
+		leader.onRefillRequest(refills::add);
+		leader.connect();
+		BookCache followerCache = bookCache();
+		GenreCacheCoordinator follower = database.instance(followerCache);
+		follower.connect();
+
+		follower.requestRefill("fantasy");
+		database.deliver(leader, follower);
+		assertEquals(List.of("fantasy"), refills);
+
+		long generation = leaderCache.getEnd("fantasy").orElseThrow().generation();
+		leader.handle(GenreCacheCoordinator.REQUESTS_CHANNEL, "fantasy|" + generation + "|9");
+		leader.handle(GenreCacheCoordinator.REQUESTS_CHANNEL, "fantasy|" + (generation + 1) + "|10");
+		leader.handle(GenreCacheCoordinator.REQUESTS_CHANNEL, "fantasy|x|10");
+		leader.handle(GenreCacheCoordinator.REQUESTS_CHANNEL, "fantasy");
+		// followers never refill
+		follower.handle(GenreCacheCoordinator.REQUESTS_CHANNEL, "fantasy|" + generation + "|10");
+		assertEquals(List.of("fantasy"), refills);
+	}
+
+	@Test
+	void refillRequestsAreThrottledUntilTheFollowerMoves() {
+		SharedDatabase database = new SharedDatabase();
+		BookCache leaderCache = bookCache();
+		leaderCache.setUpCache(Map.of("fantasy", books(0, 10)));
+		GenreCacheCoordinator leader = database.instance(leaderCache);
+		leader.connect();
+		BookCache followerCache = bookCache();
+		GenreCacheCoordinator follower = database.instance(followerCache);
+		follower.connect();
+
+		follower.requestRefill("fantasy");
+		follower.requestRefill("fantasy");
+		follower.requestRefill("horror");       // not cached
+		assertEquals(1, database.requests());
+
+		leaderCache.updateCachedBooksByGenre("fantasy", books(10, 5));
+		database.deliver(leader, follower);
+		follower.requestRefill("fantasy");
+		assertEquals(2, database.requests());
+	}
+
+	@Test
+	void newLeaderContinuesThePagesOfThePreviousOne() throws SQLException {
+		SharedDatabase database = new SharedDatabase();
+		BookCache firstCache = bookCache();
+		firstCache.setUpCache(Map.of("fantasy", books(0, 10)));
+		GenreCacheCoordinator first = database.instance(firstCache);
+		first.connect();
+		String cursor = firstCache.getPage("fantasy", null, 8).nextCursor();
+
+		BookCache secondCache = bookCache();
+		GenreCacheCoordinator second = database.instance(secondCache);
+		second.connect();
+		second.electLeader();
+		assertFalse(second.isLeader());
+
+		first.stop();
+		second.electLeader();
+		assertTrue(second.isLeader());
+		assertEquals(1, database.pages("fantasy").size());
+
+		secondCache.updateCachedBooksByGenre("fantasy", books(10, 5));
+		BookCache thirdCache = bookCache();
+		GenreCacheCoordinator third = database.instance(thirdCache);
+		third.connect();
+
+		assertFalse(third.isLeader());
+		assertEquals(ids(books(0, 15)), ids(thirdCache, "fantasy"));
+		assertEquals("id8", thirdCache.getPage("fantasy", cursor, 1).books().get(0).getId());
+	}
+
+	@Test
+	void failedPublicationsArePublishedWithTheNextBooks() {
+		SharedDatabase database = new SharedDatabase();
+		BookCache leaderCache = bookCache();
+		leaderCache.setUpCache(Map.of("fantasy", books(0, 10)));
+		database.instance(leaderCache).connect();
+
+		database.available = false;
+		leaderCache.updateCachedBooksByGenre("fantasy", books(10, 5));
+		database.available = true;
+		leaderCache.updateCachedBooksByGenre("fantasy", books(15, 5));
+
+		List<SharedDatabase.Page> pages = database.pages("fantasy");
+		assertEquals(2, pages.size());
+		assertEquals(10, pages.get(1).position());
+		assertEquals(10, pages.get(1).count());
+	}
+
+	/**
+	 * LISTEN/NOTIFY and the advisory lock against a real database, whose {@code genre_cache_pages} table is dropped.
+	 * Run with {@code mvn test -Dtest=GenreCacheCoordinatorTests -Dpostgres.url=jdbc:postgresql://localhost/scratch
+	 * -Dpostgres.user=... -Dpostgres.password=...}.
+	 */
+	@Test
+	@EnabledIfSystemProperty(named = "postgres.url", matches = ".+")
+	void instancesShareTheirGenresThroughPostgres() throws Exception {
+		DataSource dataSource = new DriverManagerDataSource(System.getProperty("postgres.url"),
+				System.getProperty("postgres.user", "postgres"), System.getProperty("postgres.password", ""));
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.execute("DROP TABLE IF EXISTS genre_cache_pages");
+		long lockKey = System.nanoTime();
+
+		BookCache leaderCache = bookCache();
+		leaderCache.setUpCache(Map.of("fantasy", books(0, 10)));
+		GenreCacheCoordinator leader = new GenreCacheCoordinator(leaderCache, jdbcTemplate, dataSource, true, lockKey, 100, Duration.ofSeconds(30));
+		BookCache followerCache = bookCache();
+		GenreCacheCoordinator follower = new GenreCacheCoordinator(followerCache, jdbcTemplate, dataSource, true, lockKey, 100, Duration.ofSeconds(30));
+		List<String> refills = new ArrayList<>();
+		leader.onRefillRequest(refills::add);
+		try {
+			leader.start();
+			follower.start();
+			assertTrue(leader.isLeader());
+			assertFalse(follower.isLeader());
+
+			awaitUntil(() -> followerCache.getCachedCounts().getOrDefault("fantasy", 0) == 10);
+			leaderCache.updateCachedBooksByGenre("fantasy", books(10, 5));
+			awaitUntil(() -> followerCache.getCachedCounts().getOrDefault("fantasy", 0) == 15);
+			assertEquals(ids(leaderCache, "fantasy"), ids(followerCache, "fantasy"));
+
+			follower.requestRefill("fantasy");
+			awaitUntil(() -> refills.contains("fantasy"));
+
+			leader.stop();
+			awaitUntil(follower::isLeader);
+		}
+		finally {
+			leader.stop();
+			follower.stop();
+		}
+	}
+
+	private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (!condition.getAsBoolean()) {
+			assertTrue(System.nanoTime() < deadline, "timed out");
+			Thread.sleep(20);
+		}
+	}
+
+	/**
+	 * The {@code genre_cache_pages} table, the advisory lock and the notifications of a database shared by instances.
+	 */
+	private static class SharedDatabase extends JdbcTemplate {
+
+		record Page(String genre, long generation, int position, int count, int firstOffset, int offset, byte[] books) {
+		}
+
+		private final List<Page> pages = new ArrayList<>();
+		private final List<String[]> notifications = new ArrayList<>();
+		private final AtomicBoolean locked = new AtomicBoolean();
+		private int requests;
+		volatile boolean available = true;
+
+		GenreCacheCoordinator instance(BookCache bookCache) {
+			return instance(bookCache, Runnable::run);
+		}
+
+		GenreCacheCoordinator instance(BookCache bookCache, Executor publisher) {
+			try {
+				return new GenreCacheCoordinator(bookCache, this, dataSource(), true, 1, 5000, Duration.ofSeconds(30), publisher);
+			}
+			catch (SQLException exception) {
+				throw new IllegalStateException(exception);
+			}
+		}
+
+		/**
+		 * A connection per instance, holding the advisory lock until it is released.
+		 */
+		private DataSource dataSource() throws SQLException {
+			AtomicBoolean holding = new AtomicBoolean();
+			Statement statement = mock(Statement.class);
+			when(statement.execute(anyString())).thenAnswer(invocation -> {
+				if (invocation.<String>getArgument(0).contains("pg_advisory_unlock_all") && holding.getAndSet(false)) {
+					locked.set(false);
+				}
+				return true;
+			});
+			ResultSet lock = mock(ResultSet.class);
+			when(lock.next()).thenReturn(true);
+			when(lock.getBoolean(1)).thenAnswer(invocation -> holding.get() || (locked.compareAndSet(false, true) && holding.compareAndSet(false, true)));
+			PreparedStatement tryLock = mock(PreparedStatement.class);
+			when(tryLock.executeQuery()).thenReturn(lock);
+			Connection connection = mock(Connection.class);
+			when(connection.createStatement()).thenReturn(statement);
+			when(connection.prepareStatement(anyString())).thenReturn(tryLock);
+			DataSource dataSource = mock(DataSource.class);
+			when(dataSource.getConnection()).thenReturn(connection);
+			return dataSource;
+		}
+
+		synchronized List<Page> pages(String genre) {
+			return pages.stream()
+					.filter(page -> page.genre().equals(genre))
+					.sorted(Comparator.comparingInt(Page::position))
+					.toList();
+		}
+
+		synchronized int requests() {
+			return requests;
+		}
+
+		/**
+		 * Delivers the notifications sent so far, and the ones they cause, to every instance.
+		 */
+		void deliver(GenreCacheCoordinator... instances) {
+			while (true) {
+				List<String[]> delivered;
+				synchronized (this) {
+					if (notifications.isEmpty()) {
+						return;
+					}
+					delivered = new ArrayList<>(notifications);
+					notifications.clear();
+				}
+				for (String[] notification : delivered) {
+					for (GenreCacheCoordinator instance : instances) {
+						instance.handle(notification[0], notification[1]);
+					}
+				}
+			}
+		}
+
+		private void checkAvailable() {
+			if (!available) {
+				throw new DataAccessResourceFailureException("The database is unavailable.");
+			}
+		}
+
+		@Override
+		public synchronized int update(String sql, Object... args) {
+			checkAvailable();
+			assertTrue(sql.contains("DELETE FROM genre_cache_pages"), sql);
+			int before = pages.size();
+			pages.removeIf(page -> page.genre().equals(args[0])
+					&& (page.generation() != (long) args[1] || page.position() + page.count() <= (int) args[2]));
+			return before - pages.size();
+		}
+
+		@Override
+		public synchronized void query(String sql, RowCallbackHandler handler, Object... args) {
+			checkAvailable();
+			if (sql.contains("INSERT INTO genre_cache_pages")) {
+				Page page = new Page((String) args[0], (long) args[1], (int) args[2], (int) args[3], (int) args[4], (int) args[5], (byte[]) args[6]);
+				boolean conflict = pages.stream().anyMatch(held -> held.genre().equals(page.genre())
+						&& held.generation() == page.generation() && held.position() == page.position());
+				if (!conflict) {
+					pages.add(page);
+					notifications.add(new String[] {GenreCacheCoordinator.PAGES_CHANNEL, page.genre()});
+				}
+			}
+			else {
+				assertTrue(sql.contains("pg_notify"), sql);
+				requests++;
+				notifications.add(new String[] {(String) args[0], (String) args[1]});
+			}
+		}
+
+		@Override
+		public synchronized <T> List<T> query(String sql, RowMapper<T> rowMapper, Object... args) {
+			checkAvailable();
+			String genre = (String) args[0];
+			long generation = (long) args[2];
+			int position = (int) args[3];
+			long latest = pages.stream().filter(page -> page.genre().equals(genre)).mapToLong(Page::generation).max().orElse(-1);
+			List<T> rows = new ArrayList<>();
+			for (Page page : pages(genre)) {
+				if (page.generation() == latest && (page.generation() != generation || page.position() + page.count() > position)) {
+					rows.add(map(page, rowMapper, rows.size()));
+				}
+			}
+			return rows;
+		}
+
+		@Override
+		public synchronized <T> T queryForObject(String sql, Class<T> requiredType, Object... args) {
+			checkAvailable();
+			return requiredType.cast(pages((String) args[0]).stream()
+					.filter(page -> page.generation() == (long) args[1])
+					.map(page -> page.position() + page.count())
+					.max(Integer::compare)
+					.orElse(null));
+		}
+
+		private static <T> T map(Page page, RowMapper<T> rowMapper, int row) {
+			try {
+				ResultSet resultSet = mock(ResultSet.class);
+				when(resultSet.getLong("generation")).thenReturn(page.generation());
+				when(resultSet.getInt("first_position")).thenReturn(page.position());
+				when(resultSet.getInt("book_count")).thenReturn(page.count());
+				when(resultSet.getInt("first_offset")).thenReturn(page.firstOffset());
+				when(resultSet.getInt("next_offset")).thenReturn(page.offset());
+				when(resultSet.getBytes("books")).thenReturn(page.books());
+				return rowMapper.mapRow(resultSet, row);
+			}
+			catch (SQLException exception) {
+				throw new IllegalStateException(exception);
+			}
+		}
+	}
+}
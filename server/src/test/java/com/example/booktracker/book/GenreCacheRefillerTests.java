@@ -0,0 +1,114 @@
+package com.example.booktracker.book;
+
+import com.example.booktracker.book.exception.BookNotFoundException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class GenreCacheRefillerTests {
+
+	private static BookCache bookCache() {
+		return new BookCache(List.of("nonfiction", "fiction", "thriller", "action", "mystery", "history", "horror", "fantasy"), DataSize.ofMegabytes(2));
+	}
+
+	private static List<BookDTO> books(int from, int count) {
+		return IntStream.range(from, from + count)
+				.mapToObj(i -> new BookDTO("id" + i, "Book " + i, List.of(), "", "", 0, List.of(), "", "en"))
+				.toList();
+	}
+
+	private static GenreCacheRefiller refiller(BookCache bookCache, BookApiClient bookApiClient) {
+		return new GenreCacheRefiller(bookCache, bookApiClient, mock(GenreCacheCoordinator.class), Runnable::run, new SimpleMeterRegistry(), true, 5, 9, Duration.ofMinutes(5));
+	}
+
+	@Test
+	void genreIsRefilledFromItsOffsetOnceAUserPagesCloseToItsEnd() {
+		BookCache bookCache = bookCache();
+		bookCache.setUpCache(Map.of("fantasy", books(0, 9)));
+		BookApiClient bookApiClient = mock(BookApiClient.class);
+		when(bookApiClient.fetchBooksByGenre("fantasy", 9, 18)).thenReturn(books(18, 9));
+		GenreCacheRefiller refiller = refiller(bookCache, bookApiClient);
+
+		BookCache.Page first = bookCache.getPage("fantasy", null, 3);
+		refiller.refillIfLow("fantasy", first.remaining());
+		verifyNoInteractions(bookApiClient);
+
+		BookCache.Page second = bookCache.getPage("fantasy", first.nextCursor(), 3);
+		refiller.refillIfLow("fantasy", second.remaining());
+		assertEquals(9 + 9, bookCache.getCachedCounts().get("fantasy"));
+		assertEquals(27, bookCache.getOffsetForGenre("fantasy"));
+	}
+
+	@Test
+	void concurrentRefillsOfAGenreCollapseIntoOne() throws Exception {
+		BookCache bookCache = bookCache();
+		bookCache.setUpCache(Map.of("horror", books(0, 9)));
+		BookApiClient bookApiClient = mock(BookApiClient.class);
+		CountDownLatch fetching = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		when(bookApiClient.fetchBooksByGenre(eq("horror"), anyInt(), anyInt())).thenAnswer(invocation -> {
+			fetching.countDown();
+			release.await();
+			return books(18, 9);
+		});
+		ExecutorService executor = Executors.newCachedThreadPool();
+		GenreCacheRefiller refiller = new GenreCacheRefiller(bookCache, bookApiClient, mock(GenreCacheCoordinator.class), executor, new SimpleMeterRegistry(), true, 5, 9, Duration.ofMinutes(5));
+
+		CompletableFuture<List<BookDTO>> first = refiller.refill("horror", 9);
+		assertTrue(fetching.await(5, TimeUnit.SECONDS));
+		CompletableFuture<List<BookDTO>> second = refiller.refill("horror", 9);
+		release.countDown();
+
+		assertEquals(18, first.get(5, TimeUnit.SECONDS).size());
+		assertEquals(18, second.get(5, TimeUnit.SECONDS).size());
+		verify(bookApiClient, times(1)).fetchBooksByGenre(eq("horror"), anyInt(), anyInt());
+		executor.shutdown();
+	}
+
+	@Test
+	void failedRefillGivesBackItsOffsetAndBacksOff() {
+		BookCache bookCache = bookCache();
+		bookCache.setUpCache(Map.of("history", books(0, 1)));
+		BookApiClient bookApiClient = mock(BookApiClient.class);
+		when(bookApiClient.fetchBooksByGenre(eq("history"), anyInt(), anyInt())).thenThrow(new BookNotFoundException("No books found for genre: history."));
+		GenreCacheRefiller refiller = refiller(bookCache, bookApiClient);
+
+		refiller.refillIfLow("history", 0);
+		refiller.refillIfLow("history", 0);
+		refiller.refillLowGenres();
+
+		verify(bookApiClient, times(1)).fetchBooksByGenre(eq("history"), anyInt(), anyInt());
+		assertEquals(10, bookCache.getOffsetForGenre("history"));
+		assertThrows(BookNotFoundException.class, () -> refiller.refillNow("history", 9));
+	}
+
+	@Test
+	void instanceFollowingTheLeaderAsksItForARefillInsteadOfFetching() {
+		BookCache bookCache = bookCache();
+		bookCache.setUpCache(Map.of("fantasy", books(0, 9)));
+		BookApiClient bookApiClient = mock(BookApiClient.class);
+		GenreCacheCoordinator coordinator = mock(GenreCacheCoordinator.class);
+		when(coordinator.isFollowing("fantasy")).thenReturn(true);
+		GenreCacheRefiller refiller = new GenreCacheRefiller(bookCache, bookApiClient, coordinator, Runnable::run, new SimpleMeterRegistry(), true, 5, 9, Duration.ofMinutes(5));
+
+		refiller.refillIfLow("fantasy", 0);
+
+		verify(coordinator).requestRefill("fantasy");
+		verifyNoInteractions(bookApiClient);
+		assertEquals(9, refiller.refillNow("fantasy", 9).size());
+	}
+}
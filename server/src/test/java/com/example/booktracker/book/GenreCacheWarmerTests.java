@@ -0,0 +1,81 @@
+package com.example.booktracker.book;
+
+import com.example.booktracker.book.exception.ExternalServiceException;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class GenreCacheWarmerTests {
+
+	private static List<BookDTO> books(int from, int count) {
+		return IntStream.range(from, from + count)
+				.mapToObj(i -> new BookDTO("id" + i, "Book " + i, List.of(), "", "", 0, List.of(), "", "en"))
+				.toList();
+	}
+
+	private static GenreCacheCoordinator leader(BookCache bookCache) {
+		return new GenreCacheCoordinator(bookCache, null, null, false, 0, 5000, Duration.ofSeconds(30));
+	}
+
+	@Test
+	void configuredGenresAreLoadedAndReadinessWaitsForEnoughOfThem() {
+		BookCache bookCache = new BookCache(List.of("fantasy", "horror", "history", "poetry"), DataSize.ofMegabytes(2));
+		BookApiClient bookApiClient = mock(BookApiClient.class);
+		when(bookApiClient.fetchBooksByGenre(anyString(), eq(18), eq(9))).thenReturn(books(9, 18));
+		when(bookApiClient.fetchBooksByGenre(eq("poetry"), anyInt(), anyInt())).thenThrow(new ExternalServiceException("Google Books is unavailable."));
+		GenreCacheWarmer warmer = new GenreCacheWarmer(bookCache, bookApiClient, leader(bookCache), Runnable::run, true, 18, 2, 2, 0.75, Duration.ofMinutes(2), Duration.ofSeconds(1));
+
+		assertFalse(warmer.isReady());
+		warmer.warmUp();
+
+		assertTrue(warmer.isReady());
+		assertEquals(Map.of("fantasy", 18, "horror", 18, "history", 18), bookCache.getCachedCounts());
+		verify(bookApiClient, times(2)).fetchBooksByGenre(eq("poetry"), anyInt(), anyInt());
+
+		@SuppressWarnings("unchecked")
+		Map<String, GenreCacheWarmer.GenreProgress> genres = (Map<String, GenreCacheWarmer.GenreProgress>) warmer.getProgress().get("genres");
+		assertEquals(GenreCacheWarmer.State.FAILED, genres.get("poetry").state());
+		assertEquals(3L, warmer.getProgress().get("loaded"));
+	}
+
+	@Test
+	void instanceIsNotReadyBelowTheFractionUntilTheTimeout() {
+		BookCache bookCache = new BookCache(List.of("fantasy", "poetry"), DataSize.ofMegabytes(2));
+		BookApiClient bookApiClient = mock(BookApiClient.class);
+		when(bookApiClient.fetchBooksByGenre(anyString(), anyInt(), anyInt())).thenThrow(new ExternalServiceException("Google Books is unavailable."));
+
+		GenreCacheWarmer waiting = new GenreCacheWarmer(bookCache, bookApiClient, leader(bookCache), Runnable::run, true, 18, 2, 1, 0.5, Duration.ofMinutes(2), Duration.ofSeconds(1));
+		waiting.warmUp();
+		assertFalse(waiting.isReady());
+
+		GenreCacheWarmer timedOut = new GenreCacheWarmer(bookCache, bookApiClient, leader(bookCache), Runnable::run, true, 18, 2, 1, 0.5, Duration.ZERO, Duration.ofSeconds(1));
+		timedOut.warmUp();
+		assertTrue(timedOut.isReady());
+	}
+
+	@Test
+	void instanceFollowingTheLeaderReadsTheGenresItPublished() {
+		BookCache bookCache = new BookCache(List.of("fantasy", "horror"), DataSize.ofMegabytes(2));
+		BookApiClient bookApiClient = mock(BookApiClient.class);
+		GenreCacheCoordinator coordinator = mock(GenreCacheCoordinator.class);
+		when(coordinator.catchUp(anyString())).thenAnswer(invocation -> {
+			String genre = invocation.getArgument(0);
+			return bookCache.applyShared(genre, 42, 0, books(0, 18), 9, 27);
+		});
+		GenreCacheWarmer warmer = new GenreCacheWarmer(bookCache, bookApiClient, coordinator, Runnable::run, true, 18, 2, 1, 1.0, Duration.ofMinutes(2), Duration.ofMillis(10));
+
+		warmer.warmUp();
+
+		assertTrue(warmer.isReady());
+		assertEquals(Map.of("fantasy", 18, "horror", 18), bookCache.getCachedCounts());
+		verifyNoInteractions(bookApiClient);
+	}
+}
@@ -0,0 +1,53 @@
+package com.example.booktracker.book;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class GenrePromoterTests {
+
+	private static List<BookDTO> books(int from, int count) {
+		return IntStream.range(from, from + count)
+				.mapToObj(i -> new BookDTO("id" + i, "Book " + i, List.of(), "", "", 0, List.of(), "", "en"))
+				.toList();
+	}
+
+	@Test
+	void popularGenresArePromotedAndTheColdestIsEvictedToMakeRoom() {
+		BookCache bookCache = new BookCache(List.of("fantasy"), DataSize.ofMegabytes(2));
+		BookApiClient bookApiClient = mock(BookApiClient.class);
+		when(bookApiClient.fetchBooksByGenre(anyString(), eq(9), eq(0))).thenReturn(books(0, 9));
+		GenrePromoter promoter = new GenrePromoter(bookCache, bookApiClient, Runnable::run, new SimpleMeterRegistry(),
+				true, 3, Duration.ofMinutes(10), 2, Duration.ofHours(1), 9);
+
+		for (int i = 0; i < 3; i++) {
+			promoter.recordRequest("fantasy");
+			promoter.recordRequest("poetry");
+		}
+		promoter.recordRequest("cooking");
+
+		// configured genres are cached anyway, and cooking is not popular yet
+		assertEquals(Set.of("poetry"), promoter.getPromotedGenres());
+		assertEquals("id0", bookCache.findBooks("poetry", 0, 9).orElseThrow().books().get(0).getId());
+
+		for (int i = 0; i < 3; i++) {
+			promoter.recordRequest("cooking");
+		}
+		for (int i = 0; i < 3; i++) {
+			promoter.recordRequest("art");
+		}
+
+		assertEquals(Set.of("cooking", "art"), promoter.getPromotedGenres());
+		assertTrue(bookCache.findBooks("poetry", 0, 9).isEmpty());
+		verify(bookApiClient, times(3)).fetchBooksByGenre(anyString(), eq(9), eq(0));
+	}
+}
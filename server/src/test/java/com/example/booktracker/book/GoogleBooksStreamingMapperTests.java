@@ -0,0 +1,159 @@
+package com.example.booktracker.book;
+
+import com.example.booktracker.upstream.RequestHedger;
+import com.example.booktracker.upstream.StaleFallback;
+import com.example.booktracker.upstream.UpstreamExecutor;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.RestClient;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GoogleBooksStreamingMapperTests {
+
+	private static final String RESPONSE = """
+			{
+			  "kind": "books#volumes",
+			  "items": [
+			    {
+			      "id": "abc123",
+			      "volumeInfo": {
+			        "title": "Dune",
+			        "authors": ["Frank Herbert"],
+			        "publisher": "Ace",
+			        "publishedDate": "1990",
+			        "description": "A desert planet.",
+			        "pageCount": 535,
+			        "categories": ["Fiction", "Science Fiction"],
+			        "imageLinks": { "smallThumbnail": "http://small", "thumbnail": "http://thumb" },
+			        "language": "en"
+			      }
+			    },
+			    {
+			      "volumeInfo": { "title": "No Cover", "pageCount": "12", "authors": "not an array" },
+			      "id": "id-after-volume-info"
+			    },
+			    {
+			      "id": "empty-image-links",
+			      "volumeInfo": { "imageLinks": {} }
+			    },
+			    { "id": "no-volume-info" }
+			  ]
+			}
+			""";
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final GoogleBooksStreamingMapper streamingMapper = new GoogleBooksStreamingMapper(objectMapper);
+
+	private BookApiClient treeMapper() {
+		return new BookApiClient(RestClient.builder(), new SimpleClientHttpRequestFactory(), new SimpleClientHttpRequestFactory(),
+				new UpstreamExecutor("test", Executors.newSingleThreadExecutor(), new SimpleMeterRegistry()), streamingMapper, null,
+				new StaleFallback("test", 1, Duration.ofMinutes(1)), new StaleFallback("test", 1, Duration.ofMinutes(1)),
+				new RequestHedger("test", Executors.newSingleThreadExecutor(), false, 0.95, Duration.ZERO, 0, new SimpleMeterRegistry()));
+	}
+
+	@Test
+	void streamingMapperMatchesTreeMapper() throws Exception {
+		BookApiClient treeMapper = treeMapper();
+
+		List<BookDTO> expected = new ArrayList<>();
+		for (JsonNode item : objectMapper.readTree(RESPONSE).get("items")) {
+			expected.add(treeMapper.mapToBookDTO(item));
+		}
+
+		List<BookDTO> actual = streamingMapper.readBooks(new ByteArrayInputStream(RESPONSE.getBytes(StandardCharsets.UTF_8)));
+
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertSameBook(expected.get(i), actual.get(i));
+		}
+		assertEquals(GoogleBooksStreamingMapper.PLACEHOLDER_COVER_URL, actual.get(1).getImageUrl());
+		assertEquals("", actual.get(2).getImageUrl());
+		assertNull(actual.get(3));
+	}
+
+	@Test
+	void responseWithoutItemsIsReportedAsNull() throws Exception {
+		assertNull(streamingMapper.readBooks(new ByteArrayInputStream("{\"kind\":\"books#volumes\",\"totalItems\":0}".getBytes(StandardCharsets.UTF_8))));
+		assertNull(streamingMapper.readBooks(new ByteArrayInputStream(new byte[0])));
+	}
+
+	/**
+	 * Time and allocation per decoded response of both mappers, on a 40-item page with ~2 KB descriptions.
+	 * Run with {@code mvn test -Dtest=GoogleBooksStreamingMapperTests -Dbenchmark=true}.
+	 */
+	@Test
+	@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+	void mapperBenchmark() throws Exception {
+		BookApiClient treeMapper = treeMapper();
+		String description = "A long description of the book. ".repeat(64);
+		StringBuilder page = new StringBuilder("{\"kind\": \"books#volumes\", \"totalItems\": 40, \"items\": [");
+		for (int i = 0; i < 40; i++) {
+			page.append(i == 0 ? "" : ",").append("""
+					{"id": "id%d", "volumeInfo": {"title": "Book %d", "authors": ["Author %d", "Second Author"], "publisher": "Publisher",
+					"publishedDate": "2001-01-01", "description": "%s", "pageCount": 320, "categories": ["Fiction", "Fantasy"],
+					"imageLinks": {"smallThumbnail": "http://books.test/%d/small", "thumbnail": "http://books.test/%d/thumb"}, "language": "en"}}
+					""".formatted(i, i, i, description, i, i));
+		}
+		byte[] body = page.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().threadId();
+		int warmUp = 20_000;
+		int runs = 20_000;
+		for (int round = 0; round < 2; round++) {
+			boolean measured = round == 1;
+			for (String mapper : List.of("tree", "streaming")) {
+				int operations = measured ? runs : warmUp;
+				long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+				long start = System.nanoTime();
+				int books = 0;
+				for (int i = 0; i < operations; i++) {
+					if (mapper.equals("tree")) {
+						for (JsonNode item : objectMapper.readTree(new ByteArrayInputStream(body)).get("items")) {
+							books += (treeMapper.mapToBookDTO(item) != null) ? 1 : 0;
+						}
+					}
+					else {
+						books += streamingMapper.readBooks(new ByteArrayInputStream(body)).size();
+					}
+				}
+				long elapsed = System.nanoTime() - start;
+				long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+				assertEquals(40L * operations, books);
+				if (measured) {
+					System.out.printf("GoogleBooksStreamingMapper: %s mapper, %,d byte response, %,d ns per response, %,d bytes allocated per response%n",
+							mapper, body.length, elapsed / operations, allocated / operations);
+				}
+			}
+		}
+	}
+
+	private static void assertSameBook(BookDTO expected, BookDTO actual) {
+		if (expected == null) {
+			assertNull(actual);
+			return;
+		}
+		assertEquals(expected.getId(), actual.getId());
+		assertEquals(expected.getTitle(), actual.getTitle());
+		assertEquals(expected.getAuthors(), actual.getAuthors());
+		assertEquals(expected.getPublisher(), actual.getPublisher());
+		assertEquals(expected.getDescription(), actual.getDescription());
+		assertEquals(expected.getPageCount(), actual.getPageCount());
+		assertEquals(expected.getCategories(), actual.getCategories());
+		assertEquals(expected.getImageUrl(), actual.getImageUrl());
+		assertEquals(expected.getLanguage(), actual.getLanguage());
+	}
+}
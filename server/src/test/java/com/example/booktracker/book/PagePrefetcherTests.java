@@ -0,0 +1,144 @@
+package com.example.booktracker.book;
+
+import com.example.booktracker.upstream.UpstreamPriority;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class PagePrefetcherTests {
+
+	private static PagePrefetcher prefetcher(SimpleMeterRegistry meterRegistry) {
+		return new PagePrefetcher(Runnable::run, meterRegistry, true, Duration.ofMinutes(1), Duration.ofMillis(50), 100, 3, 0.5, Duration.ofMinutes(30));
+	}
+
+	private static List<BookDTO> page(int offset, int limit) {
+		return IntStream.range(offset, offset + limit)
+				.mapToObj(i -> new BookDTO("id" + i, "Book " + i, List.of(), "", "", 0, List.of(), "", "en"))
+				.toList();
+	}
+
+	@Test
+	void nextPageIsPrefetchedAndServedOnce() {
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		PagePrefetcher prefetcher = prefetcher(meterRegistry);
+		List<Integer> loads = new ArrayList<>();
+
+		prefetcher.getPage("genre", BookView.FULL, "Fantasy", 5, 0, offset -> { loads.add(offset); return page(offset, 5); });
+		assertEquals(List.of(0, 5), loads);
+
+		List<BookDTO> second = prefetcher.getPage("genre", BookView.FULL, "fantasy ", 5, 5, offset -> { loads.add(offset); return page(offset, 5); });
+		assertEquals("id5", second.get(0).getId());
+		// page 2 came from the prefetch, page 3 was prefetched in turn
+		assertEquals(List.of(0, 5, 10), loads);
+		assertEquals(1, meterRegistry.counter("book.prefetch.hits", "kind", "genre").count());
+	}
+
+	@Test
+	void prefetchStillWaitingInTheBackgroundIsNotWaitedFor() {
+		CompletableFuture<Runnable> queued = new CompletableFuture<>();
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		PagePrefetcher prefetcher = new PagePrefetcher(queued::complete, meterRegistry, true, Duration.ofMinutes(1), Duration.ofMillis(50), 100, 3, 0.5, Duration.ofMinutes(30));
+		List<Integer> loads = new ArrayList<>();
+
+		prefetcher.getPage("search", BookView.FULL, "dune", 5, 0, offset -> { loads.add(offset); return page(offset, 5); });
+		assertTrue(queued.isDone(), "the next page was not prefetched");
+
+		// the prefetch never ran, the page is loaded directly
+		long start = System.nanoTime();
+		List<BookDTO> second = prefetcher.getPage("search", BookView.FULL, "dune", 5, 5, offset -> { loads.add(offset); return page(offset, 5); });
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+		assertEquals("id5", second.get(0).getId());
+		assertEquals(List.of(0, 5), loads);
+		assertEquals(0, meterRegistry.counter("book.prefetch.hits", "kind", "search").count());
+	}
+
+	@Test
+	void searchGivingUpOnASlowPrefetchDoesNotWaitForItInTheSearchCache() throws Exception {
+		CountDownLatch upstreamAnswers = new CountDownLatch(1);
+		BookApiClient bookApiClient = mock(BookApiClient.class);
+		when(bookApiClient.fetchBooks(eq("dune"), eq(5), anyInt(), eq(BookView.FULL))).thenAnswer(invocation -> {
+			if (UpstreamPriority.current() == UpstreamPriority.BACKGROUND) {
+				// bounded, so that a request waiting behind the prefetch fails the test instead of hanging it
+				upstreamAnswers.await(3, TimeUnit.SECONDS);
+			}
+			return page(invocation.getArgument(2), 5);
+		});
+		BookSearchCache searchCache = new BookSearchCache(bookApiClient, Runnable::run, new SimpleMeterRegistry(), DataSize.ofMegabytes(1),
+				Duration.ofMinutes(30), Duration.ofMinutes(2), System::nanoTime);
+
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			PagePrefetcher prefetcher = new PagePrefetcher(executor, new SimpleMeterRegistry(), true, Duration.ofMinutes(1), Duration.ofMillis(50), 100, 3, 0.5, Duration.ofMinutes(30));
+			prefetcher.getPage("search", BookView.FULL, "dune", 5, 0,
+					offset -> searchCache.get("dune", 5, offset, BookView.FULL),
+					offset -> searchCache.fetch("dune", 5, offset, BookView.FULL));
+			verify(bookApiClient, timeout(1000)).fetchBooks("dune", 5, 5, BookView.FULL);
+
+			// the prefetch of page 2 hangs upstream, the request for it makes its own call through the cache
+			long start = System.nanoTime();
+			List<BookDTO> second = prefetcher.getPage("search", BookView.FULL, "dune", 5, 5,
+					offset -> searchCache.get("dune", 5, offset, BookView.FULL),
+					offset -> page(offset, 5));
+			assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1), "the request waited for the prefetch");
+			assertEquals("id5", second.get(0).getId());
+			verify(bookApiClient, times(2)).fetchBooks("dune", 5, 5, BookView.FULL);
+
+			upstreamAnswers.countDown();
+		}
+	}
+
+	@Test
+	void pagesOfOtherViewsAreNotServedForEachOther() {
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		PagePrefetcher prefetcher = prefetcher(meterRegistry);
+		List<Integer> loads = new ArrayList<>();
+
+		prefetcher.getPage("genre", BookView.FULL, "fantasy", 5, 0, offset -> { loads.add(offset); return page(offset, 5); });
+		prefetcher.getPage("genre", BookView.SUMMARY, "fantasy", 5, 5, offset -> { loads.add(offset); return page(offset, 5); });
+
+		assertEquals(List.of(0, 5, 5, 10), loads);
+		assertEquals(1, meterRegistry.counter("book.prefetch.issued", "kind", "genre-summary").count());
+		assertThrows(IllegalArgumentException.class, () -> prefetcher.getPage("author", BookView.FULL, "herbert", 5, 0, offset -> page(offset, 5)));
+	}
+
+	@Test
+	void lastPageIsNotFollowedByAPrefetch() {
+		PagePrefetcher prefetcher = prefetcher(new SimpleMeterRegistry());
+		List<Integer> loads = new ArrayList<>();
+
+		prefetcher.getPage("search", BookView.FULL, "dune", 5, 0, offset -> { loads.add(offset); return page(offset, 3); });
+
+		assertEquals(List.of(0), loads);
+	}
+
+	@Test
+	void prefetchingIsSwitchedOffForQueriesWhosePagesAreNotUsed() {
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		PagePrefetcher prefetcher = prefetcher(meterRegistry);
+		List<Integer> loads = new ArrayList<>();
+
+		// the user keeps reloading the first page and never pages on
+		for (int i = 0; i < 5; i++) {
+			prefetcher.getPage("search", BookView.FULL, "dune", 5, 0, offset -> { loads.add(offset); return page(offset, 5); });
+			prefetcher.getPage("search", BookView.FULL, "dune", 5, 20 * (i + 1), offset -> { loads.add(offset); return page(offset, 5); });
+		}
+
+		assertTrue(prefetcher.isDisabled("search", BookView.FULL, "dune", 5));
+		assertFalse(prefetcher.isDisabled("search", BookView.FULL, "dune", 10));
+		assertTrue(meterRegistry.counter("book.prefetch.skipped", "kind", "search").count() > 0);
+		assertEquals(0, meterRegistry.counter("book.prefetch.hits", "kind", "search").count());
+	}
+}
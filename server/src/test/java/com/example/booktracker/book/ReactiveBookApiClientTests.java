@@ -0,0 +1,117 @@
+package com.example.booktracker.book;
+
+import com.example.booktracker.book.exception.BookNotFoundException;
+import com.example.booktracker.book.exception.ExternalServiceException;
+import com.example.booktracker.upstream.CircuitBreaker;
+import com.example.booktracker.upstream.MockUpstream;
+import com.example.booktracker.upstream.StaleFallback;
+import com.example.booktracker.upstream.UpstreamPriority;
+import com.example.booktracker.upstream.UpstreamRateLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ReactiveBookApiClientTests {
+
+	private final MockUpstream upstream = new MockUpstream();
+	private final BookApiClient bookApiClient = mock(BookApiClient.class);
+	private final BookCatalog bookCatalog = mock(BookCatalog.class);
+
+	ReactiveBookApiClientTests() throws Exception {
+		when(bookApiClient.mapToBookDTO(any())).thenAnswer(invocation -> {
+			String id = invocation.<com.fasterxml.jackson.databind.JsonNode>getArgument(0).get("id").asText();
+			return new BookDTO(id, "Book " + id, List.of(), "", "", 0, List.of(), "", "en");
+		});
+	}
+
+	@AfterEach
+	void stop() {
+		upstream.close();
+	}
+
+	private ReactiveBookApiClient client(CircuitBreaker breaker, UpstreamRateLimiter limiter) {
+		return new ReactiveBookApiClient(upstream.webClient(breaker, limiter), bookApiClient, bookCatalog, new StaleFallback("google-books", 10, Duration.ofHours(1)));
+	}
+
+	private static CircuitBreaker breaker(int windowSize) {
+		return new CircuitBreaker("google-books", windowSize, windowSize, 1, Duration.ofMinutes(1), 1, new SimpleMeterRegistry());
+	}
+
+	private static UpstreamRateLimiter limiter() {
+		return new UpstreamRateLimiter("google-books", 1000, 10, 0, Duration.ofMillis(50), Duration.ofMillis(50), new SimpleMeterRegistry());
+	}
+
+	private static Throwable failure(CompletableFuture<?> call) {
+		return assertThrows(ExecutionException.class, () -> call.get(5, TimeUnit.SECONDS)).getCause();
+	}
+
+	@Test
+	void bookIsLookedUpByTitleAndRecorded() throws Exception {
+		ReactiveBookApiClient client = client(breaker(10), limiter());
+		upstream.enqueue(200, "{\"items\": [{\"id\": \"dune\"}]}");
+
+		BookDTO book = client.fetchBookByTitle("Dune").get(5, TimeUnit.SECONDS);
+
+		assertEquals("dune", book.getId());
+		verify(bookCatalog).record(List.of(book));
+		String query = upstream.requests().get(0).getQuery();
+		assertTrue(query.contains("q=intitle:Dune") && query.contains("maxResults=1"), query);
+	}
+
+	@Test
+	void responseWithoutItemsIsNotFound() {
+		ReactiveBookApiClient client = client(breaker(10), limiter());
+		upstream.enqueue(200, "{\"totalItems\": 0}").enqueue(200, "{\"totalItems\": 0}");
+
+		assertInstanceOf(BookNotFoundException.class, failure(client.fetchBookByTitle("Nothing")));
+		assertInstanceOf(BookNotFoundException.class, failure(client.fetchBooksByGenreAsync("nothing", 10, 0)));
+	}
+
+	@Test
+	void lastKnownGoodBookIsServedWhileGoogleBooksFails() throws Exception {
+		ReactiveBookApiClient client = client(breaker(10), limiter());
+		upstream.enqueue(200, "{\"items\": [{\"id\": \"dune\"}]}").enqueue(503, "{}");
+
+		BookDTO fresh = client.fetchBookByTitle("Dune").get(5, TimeUnit.SECONDS);
+		BookDTO stale = client.fetchBookByTitle("Dune").get(5, TimeUnit.SECONDS);
+
+		assertSame(fresh, stale);
+		assertTrue(StaleFallback.isStale(stale));
+		assertEquals(2, upstream.requests().size());
+	}
+
+	@Test
+	void openCircuitFailsWithoutCallingGoogleBooks() {
+		CircuitBreaker breaker = breaker(1);
+		ReactiveBookApiClient client = client(breaker, limiter());
+		upstream.enqueue(500, "{}");
+
+		assertInstanceOf(ExternalServiceException.class, failure(client.fetchBooksByGenreAsync("fantasy", 10, 0)));
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+		assertInstanceOf(ExternalServiceException.class, failure(client.fetchBooksByGenreAsync("fantasy", 10, 0)));
+		assertEquals(1, upstream.requests().size());
+	}
+
+	@Test
+	void callWithoutARateLimitPermitFailsWithoutCallingGoogleBooks() {
+		UpstreamRateLimiter limiter = new UpstreamRateLimiter("google-books", 0.001, 1, 0, Duration.ofMillis(50), Duration.ofMillis(50), new SimpleMeterRegistry());
+		limiter.reserve(UpstreamPriority.INTERACTIVE);
+		CircuitBreaker breaker = breaker(1);
+		ReactiveBookApiClient client = client(breaker, limiter);
+
+		assertInstanceOf(ExternalServiceException.class, failure(client.fetchBooksByGenreAsync("fantasy", 10, 0)));
+		assertTrue(upstream.requests().isEmpty());
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+	}
+}
@@ -0,0 +1,154 @@
+package com.example.booktracker.book;
+
+import com.example.booktracker.book.exception.ExternalServiceException;
+import com.example.booktracker.upstream.UpstreamPriority;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestCoalescerTests {
+
+	@Test
+	void concurrentIdenticalCallsShareOneUpstreamCall() throws Exception {
+		RequestCoalescer coalescer = new RequestCoalescer();
+		AtomicInteger upstreamCalls = new AtomicInteger();
+		CountDownLatch release = new CountDownLatch(1);
+		int callers = 16;
+
+		try (ExecutorService executor = Executors.newFixedThreadPool(callers)) {
+			List<Future<String>> results = new ArrayList<>();
+			for (int i = 0; i < callers; i++) {
+				String query = (i % 2 == 0) ? "Dune" : "  dune ";
+				results.add(executor.submit(() -> coalescer.execute(RequestCoalescer.key("search", query, 5, 0), () -> {
+					upstreamCalls.incrementAndGet();
+					awaitQuietly(release);
+					return "result";
+				})));
+			}
+
+			// give every caller time to join the in-flight call before letting it finish
+			while (coalescer.inFlightCount() == 0) {
+				Thread.onSpinWait();
+			}
+			Thread.sleep(200);
+			release.countDown();
+
+			for (Future<String> result : results) {
+				assertEquals("result", result.get(5, TimeUnit.SECONDS));
+			}
+		}
+
+		assertEquals(1, upstreamCalls.get());
+		assertEquals(0, coalescer.inFlightCount());
+	}
+
+	@Test
+	void failuresArePropagatedAndKeyIsReleased() {
+		RequestCoalescer coalescer = new RequestCoalescer();
+		String key = RequestCoalescer.key("genre", "horror", 9, 0);
+
+		assertThrows(IllegalStateException.class, () -> coalescer.execute(key, () -> {
+			throw new IllegalStateException("upstream failed");
+		}));
+		assertEquals("second", coalescer.execute(key, () -> "second"));
+	}
+
+	@Test
+	void followersAreReleasedWhenTheLeaderThrowsAnError() throws Exception {
+		RequestCoalescer coalescer = new RequestCoalescer();
+		String key = RequestCoalescer.key("search", "dune", 5, 0);
+		CountDownLatch followerJoined = new CountDownLatch(1);
+
+		try (ExecutorService executor = Executors.newFixedThreadPool(2)) {
+			Future<String> leader = executor.submit(() -> coalescer.execute(key, () -> {
+				awaitQuietly(followerJoined);
+				throw new StackOverflowError();
+			}));
+			while (coalescer.inFlightCount() == 0) {
+				Thread.onSpinWait();
+			}
+			Future<String> follower = executor.submit(() -> coalescer.execute(key, () -> "not the leader"));
+			Thread.sleep(100);
+			followerJoined.countDown();
+
+			assertInstanceOf(StackOverflowError.class, assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS)).getCause());
+			assertInstanceOf(StackOverflowError.class, assertThrows(ExecutionException.class, () -> follower.get(5, TimeUnit.SECONDS)).getCause());
+		}
+	}
+
+	@Test
+	void followersGiveUpOnALeaderThatDoesNotReturn() throws Exception {
+		RequestCoalescer coalescer = new RequestCoalescer(Duration.ofMillis(100));
+		String key = RequestCoalescer.key("search", "dune", 5, 0);
+		CountDownLatch release = new CountDownLatch(1);
+
+		try (ExecutorService executor = Executors.newFixedThreadPool(1)) {
+			executor.submit(() -> coalescer.execute(key, () -> {
+				awaitQuietly(release);
+				return "late";
+			}));
+			while (coalescer.inFlightCount() == 0) {
+				Thread.onSpinWait();
+			}
+
+			assertThrows(ExternalServiceException.class, () -> coalescer.execute(key, () -> "not the leader"));
+			release.countDown();
+		}
+	}
+
+	@Test
+	void callsAreOnlySharedWithinTheirLane() throws Exception {
+		RequestCoalescer coalescer = new RequestCoalescer();
+		String key = RequestCoalescer.key("genre-json", "fantasy", 10, 0);
+		CompletableFuture<String> backgroundCall = new CompletableFuture<>();
+		AtomicInteger upstreamCalls = new AtomicInteger();
+
+		CompletableFuture<String> background = UpstreamPriority.BACKGROUND.call(() -> coalescer.executeAsync(key, () -> {
+			upstreamCalls.incrementAndGet();
+			return backgroundCall;
+		}));
+		CompletableFuture<String> otherBackground = UpstreamPriority.BACKGROUND.call(() -> coalescer.executeAsync(key, () -> {
+			upstreamCalls.incrementAndGet();
+			return CompletableFuture.completedFuture("other background");
+		}));
+
+		// a user does not wait behind the background call, but makes its own
+		CompletableFuture<String> interactive = coalescer.executeAsync(key, () -> {
+			upstreamCalls.incrementAndGet();
+			return CompletableFuture.completedFuture("interactive");
+		});
+		assertEquals("interactive", interactive.get(1, TimeUnit.SECONDS));
+
+		backgroundCall.complete("background");
+		assertEquals("background", otherBackground.get(1, TimeUnit.SECONDS));
+		assertEquals("background", background.get(1, TimeUnit.SECONDS));
+		assertEquals(2, upstreamCalls.get());
+	}
+
+	@Test
+	void differentPagesAreNotCoalesced() {
+		assertNotEquals(RequestCoalescer.key("genre", "fiction", 9, 0), RequestCoalescer.key("genre", "fiction", 9, 9));
+		assertEquals(RequestCoalescer.key("search", "The  Hobbit", 5, 0), RequestCoalescer.key("search", "the hobbit ", 5, 0));
+	}
+
+	private static void awaitQuietly(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		}
+		catch (InterruptedException exception) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,132 @@
+package com.example.booktracker.book;
+
+import com.example.booktracker.book.customResponses.SimilarBooksResponse;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class SimilarBooksResolverTests {
+
+	@Test
+	void booksAreStreamedAsTheyResolveAndLateTitlesReportedAsPending() throws Exception {
+		AsyncBookClient bookClient = mock(AsyncBookClient.class);
+		when(bookClient.fetchBookByTitle("Fast")).thenReturn(CompletableFuture.completedFuture(book("fast")));
+		when(bookClient.fetchBookByTitle("Broken")).thenReturn(CompletableFuture.failedFuture(new IllegalStateException("boom")));
+		when(bookClient.fetchBookByTitle("Slow")).thenReturn(new CompletableFuture<>());
+
+		SimilarBooksResolver resolver = new SimilarBooksResolver(bookClient, 2, Duration.ofSeconds(5), Duration.ofMillis(200));
+		List<BookDTO> streamed = new CopyOnWriteArrayList<>();
+
+		SimilarBooksResponse response = resolver.resolveAsync(List.of("Slow", "Fast", "Broken"), streamed::add).get(2, TimeUnit.SECONDS);
+
+		assertEquals(List.of("fast"), streamed.stream().map(BookDTO::getId).toList());
+		assertEquals(List.of("fast"), response.getSimilarBooks().stream().map(BookDTO::getId).toList());
+		assertEquals(List.of("Slow"), response.getPending());
+		assertEquals(1, response.getErrors().size());
+		assertTrue(response.getErrors().get("error 1").contains("Broken"));
+	}
+
+	@Test
+	void resolvedBooksKeepTheOrderOfTheTitles() {
+		AsyncBookClient bookClient = mock(AsyncBookClient.class);
+		CompletableFuture<BookDTO> first = new CompletableFuture<>();
+		when(bookClient.fetchBookByTitle("First")).thenReturn(first);
+		when(bookClient.fetchBookByTitle("Second")).thenReturn(CompletableFuture.completedFuture(book("second")));
+
+		SimilarBooksResolver resolver = new SimilarBooksResolver(bookClient, 2, Duration.ofSeconds(5), Duration.ofSeconds(5));
+		CompletableFuture.delayedExecutor(50, TimeUnit.MILLISECONDS).execute(() -> first.complete(book("first")));
+
+		SimilarBooksResponse response = resolver.resolve(List.of("First", "Second"));
+
+		assertEquals(List.of("first", "second"), response.getSimilarBooks().stream().map(BookDTO::getId).toList());
+		assertTrue(response.getPending().isEmpty());
+	}
+
+	@Test
+	void slowCallbackDoesNotHoldUpTheOtherLookups() throws Exception {
+		AsyncBookClient bookClient = mock(AsyncBookClient.class);
+		CompletableFuture<BookDTO> first = new CompletableFuture<>();
+		CompletableFuture<BookDTO> second = new CompletableFuture<>();
+		when(bookClient.fetchBookByTitle("First")).thenReturn(first);
+		when(bookClient.fetchBookByTitle("Second")).thenReturn(second);
+
+		SimilarBooksResolver resolver = new SimilarBooksResolver(bookClient, 1, Duration.ofSeconds(5), Duration.ofSeconds(5));
+		CountDownLatch sending = new CountDownLatch(1);
+		CountDownLatch clientCaughtUp = new CountDownLatch(1);
+		List<BookDTO> streamed = new CopyOnWriteArrayList<>();
+		CompletableFuture<SimilarBooksResponse> response = resolver.resolveAsync(List.of("First", "Second"), book -> {
+			sending.countDown();
+			try {
+				clientCaughtUp.await();
+			}
+			catch (InterruptedException exception) {
+				Thread.currentThread().interrupt();
+			}
+			streamed.add(book);
+		});
+
+		Thread.ofVirtual().start(() -> first.complete(book("first")));
+		assertTrue(sending.await(2, TimeUnit.SECONDS));
+
+		// the next lookup started before the first book was sent, and its book is queued without waiting for it
+		verify(bookClient, timeout(2_000)).fetchBookByTitle("Second");
+		second.complete(book("second"));
+		assertFalse(response.isDone());
+
+		clientCaughtUp.countDown();
+		assertEquals(List.of("first", "second"), response.get(2, TimeUnit.SECONDS).getSimilarBooks().stream().map(BookDTO::getId).toList());
+		assertEquals(List.of("first", "second"), streamed.stream().map(BookDTO::getId).toList());
+	}
+
+	@Test
+	void timedOutLookupKeepsItsSlotUntilTheCallReturns() throws Exception {
+		AsyncBookClient bookClient = mock(AsyncBookClient.class);
+		CompletableFuture<BookDTO> slow = new CompletableFuture<>();
+		when(bookClient.fetchBookByTitle("Slow")).thenReturn(slow);
+		when(bookClient.fetchBookByTitle("Next")).thenReturn(CompletableFuture.completedFuture(book("next")));
+
+		SimilarBooksResolver resolver = new SimilarBooksResolver(bookClient, 1, Duration.ofMillis(20), Duration.ofSeconds(5));
+		CompletableFuture<SimilarBooksResponse> response = resolver.resolveAsync(List.of("Slow", "Next"), book -> { });
+
+		// the slow title timed out, but its call still holds the only slot
+		Thread.sleep(200);
+		verify(bookClient, never()).fetchBookByTitle("Next");
+
+		slow.complete(book("slow"));
+		SimilarBooksResponse resolved = response.get(2, TimeUnit.SECONDS);
+		assertEquals(List.of("next"), resolved.getSimilarBooks().stream().map(BookDTO::getId).toList());
+		assertEquals(1, resolved.getErrors().size());
+	}
+
+	@Test
+	void interruptedResolveAnswersWithWhatResolvedSoFar() {
+		AsyncBookClient bookClient = mock(AsyncBookClient.class);
+		when(bookClient.fetchBookByTitle("Fast")).thenReturn(CompletableFuture.completedFuture(book("fast")));
+		when(bookClient.fetchBookByTitle("Slow")).thenReturn(new CompletableFuture<>());
+
+		SimilarBooksResolver resolver = new SimilarBooksResolver(bookClient, 2, Duration.ofSeconds(5), Duration.ofSeconds(5));
+		Thread.currentThread().interrupt();
+		try {
+			SimilarBooksResponse response = resolver.resolve(List.of("Fast", "Slow"));
+
+			assertTrue(Thread.currentThread().isInterrupted());
+			assertEquals(List.of("fast"), response.getSimilarBooks().stream().map(BookDTO::getId).toList());
+			assertEquals(List.of("Slow"), response.getPending());
+		}
+		finally {
+			Thread.interrupted();
+		}
+	}
+
+	private static BookDTO book(String id) {
+		return new BookDTO(id, id, List.of(), "", "", 0, List.of(), "", "en");
+	}
+}
@@ -0,0 +1,102 @@
+package com.example.booktracker.book;
+
+import com.example.booktracker.book.exception.ExternalServiceException;
+import com.example.booktracker.upstream.StaleFallback;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class SimilarTitlesCacheTests {
+
+	private final AtomicLong now = new AtomicLong();
+
+	private SimilarTitlesCache cache(BookApiClient bookApiClient, SimilarTitlesRepository repository) {
+		return new SimilarTitlesCache(bookApiClient, repository, Runnable::run, new SimpleMeterRegistry(), 100,
+				Duration.ofDays(7), Duration.ofDays(30), now::get);
+	}
+
+	private void advance(Duration duration) {
+		now.addAndGet(duration.toNanos());
+	}
+
+	@Test
+	void fetchedTitlesArePersistedAndKeptInMemoryForTheTimeToLive() {
+		BookApiClient bookApiClient = mock(BookApiClient.class);
+		when(bookApiClient.fetchSimilarTitles(anyString(), anyString(), anyInt())).thenReturn(List.of("Dune Messiah"));
+		SimilarTitlesRepository repository = mock(SimilarTitlesRepository.class);
+		when(repository.findById(anyString())).thenReturn(Optional.empty());
+		SimilarTitlesCache cache = cache(bookApiClient, repository);
+
+		assertEquals(List.of("Dune Messiah"), cache.get("Dune", "books", 5));
+		advance(Duration.ofDays(6));
+		assertEquals(List.of("Dune Messiah"), cache.get(" dune", "books", 5));
+		verify(bookApiClient, times(1)).fetchSimilarTitles(anyString(), anyString(), anyInt());
+		verify(repository).save(argThat(row -> row.getCacheKey().equals("dune|books|5") && row.getTitles().equals(List.of("Dune Messiah"))));
+
+		advance(Duration.ofDays(2));
+		cache.get("Dune", "books", 5);
+		verify(bookApiClient, times(2)).fetchSimilarTitles(anyString(), anyString(), anyInt());
+	}
+
+	@Test
+	void persistedTitlesStayInMemoryOnlyForTheTimeTheyHaveLeft() {
+		BookApiClient bookApiClient = mock(BookApiClient.class);
+		SimilarTitlesRepository repository = mock(SimilarTitlesRepository.class);
+		when(repository.findById("dune|books|5"))
+				.thenReturn(Optional.of(new SimilarTitles("dune|books|5", List.of("Dune Messiah"), LocalDateTime.now().minusDays(29))));
+		SimilarTitlesCache cache = cache(bookApiClient, repository);
+
+		assertEquals(List.of("Dune Messiah"), cache.get("Dune", "books", 5));
+		advance(Duration.ofHours(23));
+		cache.get("Dune", "books", 5);
+		verify(repository, times(1)).findById(anyString());
+
+		// the row had a day left, not the seven days of a fresh result
+		advance(Duration.ofHours(2));
+		cache.get("Dune", "books", 5);
+		verify(repository, times(2)).findById(anyString());
+		verifyNoInteractions(bookApiClient);
+	}
+
+	@Test
+	void expiredRowsAreFetchedAgain() {
+		BookApiClient bookApiClient = mock(BookApiClient.class);
+		when(bookApiClient.fetchSimilarTitles(anyString(), anyString(), anyInt())).thenReturn(List.of("Children of Dune"));
+		SimilarTitlesRepository repository = mock(SimilarTitlesRepository.class);
+		when(repository.findById("dune|books|5"))
+				.thenReturn(Optional.of(new SimilarTitles("dune|books|5", List.of("Dune Messiah"), LocalDateTime.now().minusDays(31))));
+		SimilarTitlesCache cache = cache(bookApiClient, repository);
+
+		assertEquals(List.of("Children of Dune"), cache.get("Dune", "books", 5));
+		verify(repository).save(any());
+	}
+
+	@Test
+	void staleResultsAreNeitherPersistedNorKept() {
+		StaleFallback fallback = new StaleFallback("test", 10, Duration.ofHours(1));
+		fallback.call("key", () -> List.of("Dune Messiah"));
+		List<String> stale = fallback.call("key", () -> {
+			throw new ExternalServiceException("down");
+		});
+		BookApiClient bookApiClient = mock(BookApiClient.class);
+		when(bookApiClient.fetchSimilarTitles(anyString(), anyString(), anyInt())).thenReturn(stale);
+		SimilarTitlesRepository repository = mock(SimilarTitlesRepository.class);
+		when(repository.findById(anyString())).thenReturn(Optional.empty());
+		SimilarTitlesCache cache = cache(bookApiClient, repository);
+
+		assertEquals(List.of("Dune Messiah"), cache.get("Dune", "books", 5));
+		assertEquals(List.of("Dune Messiah"), cache.get("Dune", "books", 5));
+
+		verify(bookApiClient, times(2)).fetchSimilarTitles("Dune", "books", 5);
+		verify(repository, never()).save(any());
+	}
+}
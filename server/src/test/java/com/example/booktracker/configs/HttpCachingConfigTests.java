@@ -0,0 +1,73 @@
+package com.example.booktracker.configs;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.filter.ShallowEtagHeaderFilter;
+import org.springframework.web.servlet.mvc.WebContentInterceptor;
+import org.springframework.web.util.ServletRequestPathUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpCachingConfigTests {
+
+	private static HttpCachingConfig config() {
+		HttpCachingConfig config = new HttpCachingConfig();
+		ReflectionTestUtils.setField(config, "bookListsMaxAge", Duration.ofSeconds(60));
+		ReflectionTestUtils.setField(config, "volumesMaxAge", Duration.ofHours(1));
+		ReflectionTestUtils.setField(config, "authorsMaxAge", Duration.ofDays(1));
+		ReflectionTestUtils.setField(config, "suggestMaxAge", Duration.ofMinutes(5));
+		return config;
+	}
+
+	private static String cacheControl(WebContentInterceptor interceptor, String path) throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+		ServletRequestPathUtils.parseAndCache(request);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		interceptor.preHandle(request, response, new Object());
+		return response.getHeader("Cache-Control");
+	}
+
+	@Test
+	void theMostSpecificCacheControlApplies() throws Exception {
+		WebContentInterceptor interceptor = config().cacheControlInterceptor();
+
+		assertEquals("max-age=60", cacheControl(interceptor, "/api/books"));
+		assertEquals("max-age=60", cacheControl(interceptor, "/api/books/fantasy"));
+		assertEquals("max-age=3600", cacheControl(interceptor, "/api/books/volumes/abc"));
+		assertEquals("max-age=300", cacheControl(interceptor, "/api/books/suggest"));
+		assertEquals("no-cache", cacheControl(interceptor, "/api/books/cache/fantasy"));
+		assertEquals("no-store", cacheControl(interceptor, "/api/books/cache/fantasy/update"));
+		assertEquals("no-store", cacheControl(interceptor, "/api/books/similar/stream"));
+		assertEquals("max-age=86400", cacheControl(interceptor, "/api/authors"));
+	}
+
+	@Test
+	void matchingWeakEtagIsAnsweredWithNotModified() throws Exception {
+		ShallowEtagHeaderFilter filter = config().etagFilter().getFilter();
+		byte[] body = "{\"books\":[]}".getBytes(StandardCharsets.UTF_8);
+
+		MockHttpServletRequest first = new MockHttpServletRequest("GET", "/api/books/fantasy");
+		MockHttpServletResponse firstResponse = new MockHttpServletResponse();
+		filter.doFilter(first, firstResponse, (request, response) -> response.getOutputStream().write(body));
+		String etag = firstResponse.getHeader("ETag");
+		assertNotNull(etag);
+		assertTrue(etag.startsWith("W/"));
+
+		MockHttpServletRequest second = new MockHttpServletRequest("GET", "/api/books/fantasy");
+		second.addHeader("If-None-Match", etag);
+		MockHttpServletResponse secondResponse = new MockHttpServletResponse();
+		filter.doFilter(second, secondResponse, (request, response) -> response.getOutputStream().write(body));
+		assertEquals(304, secondResponse.getStatus());
+		assertEquals(0, secondResponse.getContentAsByteArray().length);
+
+		MockHttpServletRequest stream = new MockHttpServletRequest("GET", "/api/books/similar/stream");
+		MockHttpServletResponse streamResponse = new MockHttpServletResponse();
+		filter.doFilter(stream, streamResponse, (request, response) -> response.getOutputStream().write(body));
+		assertNull(streamResponse.getHeader("ETag"));
+	}
+}
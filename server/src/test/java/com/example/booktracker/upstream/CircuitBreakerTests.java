@@ -0,0 +1,145 @@
+package com.example.booktracker.upstream;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CircuitBreakerTests {
+
+	@Test
+	void opensOnceTheFailureRateOfTheWindowReachesTheThreshold() {
+		CircuitBreaker breaker = new CircuitBreaker("test", 4, 4, 0.5, Duration.ofMinutes(1), 1, new SimpleMeterRegistry());
+
+		record(breaker, true);
+		record(breaker, false);
+		record(breaker, true);
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(), "opened before the minimum number of calls");
+
+		record(breaker, false);
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+		assertFalse(breaker.tryAcquire());
+	}
+
+	@Test
+	void oldOutcomesLeaveTheWindow() {
+		CircuitBreaker breaker = new CircuitBreaker("test", 4, 4, 0.75, Duration.ofMinutes(1), 1, new SimpleMeterRegistry());
+
+		record(breaker, true);
+		record(breaker, true);
+		for (int i = 0; i < 4; i++) {
+			record(breaker, false);
+		}
+		record(breaker, true);
+		record(breaker, true);
+
+		// the first two failures slid out of the window, so only 2 of the last 4 calls failed
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+	}
+
+	@Test
+	void halfOpenTrialCallsCloseOrReopenTheCircuit() throws Exception {
+		CircuitBreaker breaker = new CircuitBreaker("test", 2, 2, 0.5, Duration.ofMillis(20), 2, new SimpleMeterRegistry());
+		record(breaker, true);
+		record(breaker, true);
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+		Thread.sleep(30);
+		assertTrue(breaker.tryAcquire());
+		assertTrue(breaker.tryAcquire());
+		assertFalse(breaker.tryAcquire(), "more trial calls than allowed while half-open");
+		breaker.onFailure();
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+		Thread.sleep(30);
+		assertTrue(breaker.tryAcquire());
+		breaker.onSuccess();
+		assertTrue(breaker.tryAcquire());
+		breaker.onSuccess();
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+	}
+
+	@Test
+	void interceptorCountsABodyThatTimesOutAsAFailure() throws Exception {
+		CircuitBreaker breaker = new CircuitBreaker("test", 1, 1, 1, Duration.ofMinutes(1), 1, new SimpleMeterRegistry());
+		CircuitBreakerInterceptor interceptor = new CircuitBreakerInterceptor(breaker);
+		InputStream timingOut = new InputStream() {
+			@Override
+			public int read() throws IOException {
+				throw new SocketTimeoutException("Read timed out");
+			}
+		};
+
+		try (ClientHttpResponse response = interceptor.intercept(mock(HttpRequest.class), new byte[0], respondingWith(HttpStatus.OK, timingOut))) {
+			// the headers arrived, the outcome is not known yet
+			assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+			assertThrows(SocketTimeoutException.class, () -> response.getBody().readAllBytes());
+		}
+
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+	}
+
+	@Test
+	void interceptorCountsAResponseReadInFullAsASuccess() throws Exception {
+		CircuitBreaker breaker = new CircuitBreaker("test", 1, 1, 1, Duration.ofMinutes(1), 1, new SimpleMeterRegistry());
+		CircuitBreakerInterceptor interceptor = new CircuitBreakerInterceptor(breaker);
+
+		try (ClientHttpResponse response = interceptor.intercept(mock(HttpRequest.class), new byte[0],
+				respondingWith(HttpStatus.OK, new ByteArrayInputStream("{}".getBytes())))) {
+			assertEquals("{}", new String(response.getBody().readAllBytes()));
+		}
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+		// 5xx responses are failures as soon as their headers arrive
+		interceptor.intercept(mock(HttpRequest.class), new byte[0], respondingWith(HttpStatus.BAD_GATEWAY, InputStream.nullInputStream()));
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+	}
+
+	@Test
+	void interceptorIgnoresBodiesCancelledByTheCaller() throws Exception {
+		CircuitBreaker breaker = new CircuitBreaker("test", 1, 1, 1, Duration.ofMinutes(1), 1, new SimpleMeterRegistry());
+		CircuitBreakerInterceptor interceptor = new CircuitBreakerInterceptor(breaker);
+		InputStream interrupted = new InputStream() {
+			@Override
+			public int read() throws IOException {
+				throw new InterruptedIOException("cancelled");
+			}
+		};
+
+		try (ClientHttpResponse response = interceptor.intercept(mock(HttpRequest.class), new byte[0], respondingWith(HttpStatus.OK, interrupted))) {
+			assertThrows(InterruptedIOException.class, () -> response.getBody().read());
+		}
+
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+		assertTrue(breaker.tryAcquire());
+	}
+
+	private static ClientHttpRequestExecution respondingWith(HttpStatus status, InputStream body) throws IOException {
+		ClientHttpResponse response = mock(ClientHttpResponse.class);
+		when(response.getStatusCode()).thenReturn(status);
+		when(response.getBody()).thenReturn(body);
+		return (request, requestBody) -> response;
+	}
+
+	private static void record(CircuitBreaker breaker, boolean failure) {
+		assertTrue(breaker.tryAcquire());
+		if (failure) {
+			breaker.onFailure();
+		}
+		else {
+			breaker.onSuccess();
+		}
+	}
+}
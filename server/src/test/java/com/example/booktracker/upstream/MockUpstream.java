@@ -0,0 +1,111 @@
+package com.example.booktracker.upstream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Local HTTP server answering with queued responses, standing in for an upstream in WebClient tests.
+ */
+public class MockUpstream implements AutoCloseable {
+
+	private record Response(int status, String body, String retryAfter, boolean truncated) {
+	}
+
+	private final HttpServer server;
+	private final Queue<Response> responses = new ConcurrentLinkedQueue<>();
+	private final List<URI> requests = new CopyOnWriteArrayList<>();
+
+	public MockUpstream() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/", this::answer);
+		server.start();
+	}
+
+	public MockUpstream enqueue(int status, String body) {
+		responses.add(new Response(status, body, null, false));
+		return this;
+	}
+
+	public MockUpstream enqueueTooManyRequests(int retryAfterSeconds) {
+		responses.add(new Response(429, "", String.valueOf(retryAfterSeconds), false));
+		return this;
+	}
+
+	/**
+	 * Queues a response whose connection is dropped after the given part of the body was sent.
+	 */
+	public MockUpstream enqueueTruncated(String body) {
+		responses.add(new Response(200, body, null, true));
+		return this;
+	}
+
+	public List<URI> requests() {
+		return requests;
+	}
+
+	/**
+	 * @return A WebClient sending every request, whatever its host, to this server through an {@link UpstreamExchangeFilter}.
+	 */
+	public WebClient webClient(CircuitBreaker circuitBreaker, UpstreamRateLimiter rateLimiter) {
+		int port = server.getAddress().getPort();
+		return WebClient.builder()
+				.filter((request, next) -> next.exchange(ClientRequest.from(request)
+						.url(UriComponentsBuilder.fromUri(request.url()).scheme("http").host("localhost").port(port).build(true).toUri())
+						.build()))
+				.filter(new UpstreamExchangeFilter(circuitBreaker, rateLimiter))
+				.build();
+	}
+
+	/**
+	 * @return A request factory for RestClients, sending every request, whatever its host, to this server.
+	 */
+	public ClientHttpRequestFactory requestFactory() {
+		int port = server.getAddress().getPort();
+		SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+		return (uri, method) -> requestFactory.createRequest(
+				UriComponentsBuilder.fromUri(uri).scheme("http").host("localhost").port(port).build(true).toUri(), method);
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+	}
+
+	private void answer(HttpExchange exchange) throws IOException {
+		requests.add(exchange.getRequestURI());
+		Response response = responses.poll();
+		if (response == null) {
+			response = new Response(500, "no response queued", null, false);
+		}
+
+		byte[] body = response.body().getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().add("Content-Type", "application/json");
+		if (response.retryAfter() != null) {
+			exchange.getResponseHeaders().add("Retry-After", response.retryAfter());
+		}
+		exchange.sendResponseHeaders(response.status(), response.truncated() ? 0 : (body.length == 0 ? -1 : body.length));
+		OutputStream output = exchange.getResponseBody();
+		output.write(body);
+		output.flush();
+		if (response.truncated()) {
+			// the server drops the connection of a failed exchange, before the last chunk of the body was sent
+			throw new IOException("body cut off");
+		}
+		exchange.close();
+	}
+}
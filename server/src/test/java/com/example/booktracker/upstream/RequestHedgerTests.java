@@ -0,0 +1,134 @@
+package com.example.booktracker.upstream;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestHedgerTests {
+
+	@Test
+	void slowCallIsHedgedAndTheLoserCancelled() throws Exception {
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			RequestHedger hedger = new RequestHedger("test", executor, true, 0.95, Duration.ofMillis(20), 1, new SimpleMeterRegistry());
+			warmUp(hedger);
+
+			AtomicInteger attempts = new AtomicInteger();
+			CountDownLatch loserInterrupted = new CountDownLatch(1);
+			long start = System.nanoTime();
+
+			String result = hedger.call(() -> {
+				if (attempts.incrementAndGet() == 1) {
+					try {
+						Thread.sleep(5_000);
+					}
+					catch (InterruptedException exception) {
+						loserInterrupted.countDown();
+					}
+					return "slow";
+				}
+				return "hedge";
+			});
+
+			assertEquals("hedge", result);
+			assertEquals(2, attempts.get());
+			assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+			assertTrue(loserInterrupted.await(1, TimeUnit.SECONDS), "the losing attempt was not cancelled");
+		}
+	}
+
+	@Test
+	void hedgesAreCappedAsAFractionOfCalls() throws Exception {
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			RequestHedger hedger = new RequestHedger("test", executor, true, 0.95, Duration.ofMillis(5), 0.01, new SimpleMeterRegistry());
+			warmUp(hedger);
+
+			// 32 calls earned a third of a hedge, not a whole one
+			AtomicInteger attempts = new AtomicInteger();
+			String result = hedger.call(() -> {
+				attempts.incrementAndGet();
+				sleep(100);
+				return "only";
+			});
+
+			assertEquals("only", result);
+			assertEquals(1, attempts.get());
+		}
+	}
+
+	@Test
+	void failedAttemptDoesNotWinWhileTheOtherIsRunning() throws Exception {
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			RequestHedger hedger = new RequestHedger("test", executor, true, 0.95, Duration.ofMillis(20), 1, new SimpleMeterRegistry());
+			warmUp(hedger);
+
+			AtomicInteger attempts = new AtomicInteger();
+			String result = hedger.call(() -> {
+				if (attempts.incrementAndGet() == 1) {
+					sleep(200);
+					return "first";
+				}
+				throw new IllegalStateException("hedge failed");
+			});
+
+			assertEquals("first", result);
+		}
+	}
+
+	@Test
+	void callersOnAFullFixedPoolAreNotBlockedByTheirAttempts() throws Exception {
+		ExecutorService callers = Executors.newFixedThreadPool(2);
+		try (ExecutorService attempts = Executors.newVirtualThreadPerTaskExecutor()) {
+			RequestHedger hedger = new RequestHedger("test", attempts, true, 0.95, Duration.ofMillis(5), 1, new SimpleMeterRegistry());
+			warmUp(hedger);
+
+			// every thread of the pool waits on a hedged call, whose attempts run elsewhere
+			List<Future<String>> calls = new ArrayList<>();
+			for (int i = 0; i < 2; i++) {
+				calls.add(callers.submit(() -> hedger.call(() -> {
+					sleep(50);
+					return "done";
+				})));
+			}
+			for (Future<String> call : calls) {
+				assertEquals("done", call.get(5, TimeUnit.SECONDS));
+			}
+		}
+		finally {
+			callers.shutdownNow();
+		}
+	}
+
+	@Test
+	void disabledHedgerRunsTheCallOnTheCallingThread() {
+		RequestHedger hedger = new RequestHedger("test", Executors.newSingleThreadExecutor(), false, 0.95, Duration.ZERO, 1, new SimpleMeterRegistry());
+		Thread caller = Thread.currentThread();
+
+		assertSame(caller, hedger.call(Thread::currentThread));
+	}
+
+	private static void warmUp(RequestHedger hedger) {
+		for (int i = 0; i < 32; i++) {
+			hedger.call(() -> "warm-up");
+		}
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		}
+		catch (InterruptedException exception) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
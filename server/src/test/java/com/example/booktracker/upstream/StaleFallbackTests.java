@@ -0,0 +1,82 @@
+package com.example.booktracker.upstream;
+
+import com.example.booktracker.book.exception.ExternalServiceException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StaleFallbackTests {
+
+	@AfterEach
+	void resetRequest() {
+		RequestContextHolder.resetRequestAttributes();
+	}
+
+	@Test
+	void lastKnownGoodResultIsServedAndMarkedStaleWhenTheUpstreamFails() {
+		StaleFallback fallback = new StaleFallback("test", 10, Duration.ofHours(1));
+		ServletRequestAttributes request = new ServletRequestAttributes(new MockHttpServletRequest());
+		RequestContextHolder.setRequestAttributes(request);
+
+		List<String> fresh = fallback.call("key", () -> List.of("a", "b"));
+		assertFalse(StaleFallback.isStale(fresh));
+		assertTrue(StaleResponses.staleUpstreams(request).isEmpty());
+
+		List<String> stale = fallback.call("key", () -> {
+			throw new ExternalServiceException("down");
+		});
+		assertSame(fresh, stale);
+		assertTrue(StaleFallback.isStale(stale));
+		assertEquals(Set.of("test"), StaleResponses.staleUpstreams(request));
+
+		// a fresh result is never taken for a stale one
+		assertFalse(StaleFallback.isStale(fallback.call("key", () -> List.of("a", "b"))));
+	}
+
+	@Test
+	void asyncCallServesTheLastKnownGoodResultToTheRequestThatMadeIt() throws Exception {
+		StaleFallback fallback = new StaleFallback("test", 10, Duration.ofHours(1));
+		ServletRequestAttributes request = new ServletRequestAttributes(new MockHttpServletRequest());
+		RequestContextHolder.setRequestAttributes(request);
+
+		List<String> fresh = fallback.callAsync("key", () -> CompletableFuture.completedFuture(List.of("a"))).get();
+
+		// the call fails on another thread, without the request bound to it
+		CompletableFuture<List<String>> failing = new CompletableFuture<>();
+		CompletableFuture<List<String>> stale = fallback.callAsync("key", () -> failing);
+		Thread.ofVirtual().start(() -> failing.completeExceptionally(new ExternalServiceException("down"))).join();
+
+		assertSame(fresh, stale.get(1, TimeUnit.SECONDS));
+		assertTrue(StaleFallback.isStale(stale.get()));
+		assertEquals(Set.of("test"), StaleResponses.staleUpstreams(request));
+
+		ExecutionException failure = assertThrows(ExecutionException.class, () -> fallback.callAsync("key", () -> {
+			throw new IllegalStateException("not an upstream failure");
+		}).get());
+		assertInstanceOf(IllegalStateException.class, failure.getCause());
+		assertThrows(ExecutionException.class, () -> fallback.callAsync("other", () -> CompletableFuture.failedFuture(new ExternalServiceException("down"))).get());
+	}
+
+	@Test
+	void failureWithoutALastKnownGoodResultIsThrown() {
+		StaleFallback fallback = new StaleFallback("test", 10, Duration.ofHours(1));
+
+		assertThrows(ExternalServiceException.class, () -> fallback.call("key", () -> {
+			throw new ExternalServiceException("down");
+		}));
+		assertThrows(IllegalStateException.class, () -> fallback.call("other", () -> {
+			throw new IllegalStateException("not an upstream failure");
+		}));
+	}
+}
@@ -0,0 +1,116 @@
+package com.example.booktracker.upstream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpstreamExchangeFilterTests {
+
+	private final MockUpstream upstream = new MockUpstream();
+
+	// a single failure opens the circuit
+	private final CircuitBreaker breaker = new CircuitBreaker("test", 1, 1, 1, Duration.ofMinutes(1), 1, new SimpleMeterRegistry());
+
+	UpstreamExchangeFilterTests() throws Exception {
+	}
+
+	@AfterEach
+	void stop() {
+		upstream.close();
+	}
+
+	private static UpstreamRateLimiter limiter(double permitsPerSecond) {
+		return new UpstreamRateLimiter("test", permitsPerSecond, 1, 0, Duration.ofMillis(500), Duration.ofMillis(500), new SimpleMeterRegistry());
+	}
+
+	private static Mono<JsonNode> get(WebClient client) {
+		return client.get().uri("http://upstream.test/volumes").retrieve().bodyToMono(JsonNode.class);
+	}
+
+	private static Throwable failure(Mono<?> call) {
+		return assertThrows(ExecutionException.class, () -> call.toFuture().get(5, TimeUnit.SECONDS)).getCause();
+	}
+
+	@Test
+	void readResponsesAndClientErrorsAreSuccesses() {
+		WebClient client = upstream.webClient(breaker, limiter(1000));
+		upstream.enqueue(200, "{\"items\": []}").enqueue(404, "{}");
+
+		assertTrue(UpstreamExchangeFilter.decoded(get(client)).block().has("items"));
+		assertThrows(WebClientResponseException.NotFound.class, () -> UpstreamExchangeFilter.decoded(get(client)).block());
+
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+	}
+
+	@Test
+	void serverErrorsOpenTheCircuit() {
+		WebClient client = upstream.webClient(breaker, limiter(1000));
+		upstream.enqueue(503, "{}");
+
+		assertThrows(WebClientResponseException.ServiceUnavailable.class, () -> get(client).block());
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+		// the next call is refused without reaching the upstream
+		assertInstanceOf(UpstreamUnavailableException.class, failure(get(client)));
+		assertEquals(1, upstream.requests().size());
+	}
+
+	@Test
+	void bodyThatCannotBeDecodedIsAFailure() {
+		WebClient client = upstream.webClient(breaker, limiter(1000));
+		upstream.enqueue(200, "{\"items\": [");
+
+		assertThrows(DecodingException.class, () -> UpstreamExchangeFilter.decoded(get(client)).block());
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+	}
+
+	@Test
+	void bodyCutOffHalfwayIsAFailure() {
+		WebClient client = upstream.webClient(breaker, limiter(1000));
+		upstream.enqueueTruncated("{\"items\": [");
+
+		assertThrows(RuntimeException.class, () -> get(client).block(Duration.ofSeconds(5)));
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+	}
+
+	@Test
+	void callsWaitForAPermitOfTheRateLimiter() {
+		WebClient client = upstream.webClient(breaker, limiter(10));
+		upstream.enqueue(200, "{}").enqueue(200, "{}").enqueue(200, "{}");
+		get(client).block();
+
+		// the bucket refilled meanwhile, two calls in a row take 100ms
+		long start = System.nanoTime();
+		get(client).block();
+		get(client).block();
+
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(80), "the second call did not wait for a permit");
+		assertEquals(3, upstream.requests().size());
+	}
+
+	@Test
+	void tooManyRequestsPausesTheRateLimiterWithoutOpeningTheCircuit() {
+		UpstreamRateLimiter limiter = limiter(1000);
+		WebClient client = upstream.webClient(breaker, limiter);
+		upstream.enqueueTooManyRequests(5);
+
+		assertThrows(WebClientResponseException.TooManyRequests.class, () -> get(client).block());
+		assertTrue(limiter.reserve(UpstreamPriority.INTERACTIVE) > TimeUnit.SECONDS.toNanos(4));
+
+		// no permit within the wait of the lane, the call is not made and not held against the upstream
+		assertInstanceOf(UpstreamThrottledException.class, failure(get(client)));
+		assertEquals(1, upstream.requests().size());
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+	}
+}
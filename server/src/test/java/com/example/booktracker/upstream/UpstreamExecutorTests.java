@@ -0,0 +1,42 @@
+package com.example.booktracker.upstream;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpstreamExecutorTests {
+
+	@AfterEach
+	void resetRequest() {
+		RequestContextHolder.resetRequestAttributes();
+	}
+
+	@Test
+	void tasksRunWithTheRequestAndLaneOfTheSubmitterUnlessDetached() throws Exception {
+		UpstreamExecutor executor = new UpstreamExecutor("test", Executors.newVirtualThreadPerTaskExecutor(), new SimpleMeterRegistry());
+		ServletRequestAttributes request = new ServletRequestAttributes(new MockHttpServletRequest());
+		RequestContextHolder.setRequestAttributes(request);
+
+		try {
+			assertSame(request, CompletableFuture.supplyAsync(RequestContextHolder::getRequestAttributes, executor).get(5, TimeUnit.SECONDS));
+			assertEquals(UpstreamPriority.BACKGROUND, UpstreamPriority.BACKGROUND.call(() ->
+					CompletableFuture.supplyAsync(UpstreamPriority::current, executor).join()));
+
+			CompletableFuture<RequestAttributes> detached = CompletableFuture.supplyAsync(RequestContextHolder::getRequestAttributes, executor.detached());
+			assertNull(detached.get(5, TimeUnit.SECONDS));
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package com.example.booktracker.upstream;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpstreamRateLimiterTests {
+
+	@Test
+	void backgroundCallsLeaveTheReserveToInteractiveCalls() {
+		UpstreamRateLimiter limiter = new UpstreamRateLimiter("test", 0.001, 4, 2, Duration.ofMillis(50), Duration.ofMillis(50), new SimpleMeterRegistry());
+
+		assertEquals(0, limiter.reserve(UpstreamPriority.BACKGROUND));
+		assertEquals(0, limiter.reserve(UpstreamPriority.BACKGROUND));
+		assertTrue(limiter.reserve(UpstreamPriority.BACKGROUND) > 0, "background call took a reserved permit");
+
+		assertEquals(0, limiter.reserve(UpstreamPriority.INTERACTIVE));
+		assertEquals(0, limiter.reserve(UpstreamPriority.INTERACTIVE));
+		assertTrue(limiter.reserve(UpstreamPriority.INTERACTIVE) > 0);
+	}
+
+	@Test
+	void interactiveCallGivesUpWhenTheWaitExceedsItsBudget() {
+		UpstreamRateLimiter limiter = new UpstreamRateLimiter("test", 1, 1, 0, Duration.ofMillis(100), Duration.ofSeconds(5), new SimpleMeterRegistry());
+
+		assertDoesNotThrow(() -> limiter.acquire(UpstreamPriority.INTERACTIVE));
+
+		long start = System.nanoTime();
+		assertThrows(UpstreamThrottledException.class, () -> limiter.acquire(UpstreamPriority.INTERACTIVE));
+		assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(100), "interactive call waited although no permit could arrive in time");
+	}
+
+	@Test
+	void waitingInteractiveCallIsServedBeforeBackgroundCalls() throws Exception {
+		UpstreamRateLimiter limiter = new UpstreamRateLimiter("test", 5, 1, 0, Duration.ofSeconds(1), Duration.ofSeconds(1), new SimpleMeterRegistry());
+		limiter.acquire(UpstreamPriority.INTERACTIVE);
+
+		try (ExecutorService executor = Executors.newFixedThreadPool(2)) {
+			CompletableFuture<Long> interactive = CompletableFuture.supplyAsync(() -> acquireAt(limiter, UpstreamPriority.INTERACTIVE), executor);
+			Thread.sleep(20);
+			CompletableFuture<Long> background = CompletableFuture.supplyAsync(() -> acquireAt(limiter, UpstreamPriority.BACKGROUND), executor);
+
+			// the background call was already waiting when the next permit arrived, but it must go to the interactive one
+			assertTrue(interactive.get(2, TimeUnit.SECONDS) < background.get(2, TimeUnit.SECONDS));
+		}
+	}
+
+	@Test
+	void tooManyRequestsResponsePausesTheLimiter() {
+		UpstreamRateLimiter limiter = new UpstreamRateLimiter("test", 1000, 10, 0, Duration.ofMillis(50), Duration.ofMillis(50), new SimpleMeterRegistry());
+
+		limiter.pause(Duration.ofSeconds(1));
+
+		assertTrue(limiter.reserve(UpstreamPriority.INTERACTIVE) > TimeUnit.MILLISECONDS.toNanos(500));
+		assertThrows(UpstreamThrottledException.class, () -> limiter.acquire(UpstreamPriority.INTERACTIVE));
+	}
+
+	@Test
+	void reactiveCallWaitsForAPermitOnATimerUntilItsMaxWait() {
+		UpstreamRateLimiter limiter = new UpstreamRateLimiter("test", 10, 1, 0, Duration.ofSeconds(1), Duration.ofMillis(50), new SimpleMeterRegistry());
+		assertEquals(0, limiter.reserve(UpstreamPriority.INTERACTIVE));
+
+		long start = System.nanoTime();
+		limiter.acquireReactive(UpstreamPriority.INTERACTIVE).block(Duration.ofSeconds(2));
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(80), "the call did not wait for the next permit");
+
+		// the next permit arrives long after the 50ms a background call may wait
+		UpstreamRateLimiter slowLimiter = new UpstreamRateLimiter("test", 1, 1, 0, Duration.ofSeconds(1), Duration.ofMillis(50), new SimpleMeterRegistry());
+		assertEquals(0, slowLimiter.reserve(UpstreamPriority.INTERACTIVE));
+		CompletableFuture<Void> background = slowLimiter.acquireReactive(UpstreamPriority.BACKGROUND).toFuture();
+		ExecutionException failure = assertThrows(ExecutionException.class, () -> background.get(2, TimeUnit.SECONDS));
+		assertInstanceOf(UpstreamThrottledException.class, failure.getCause());
+	}
+
+	private static long acquireAt(UpstreamRateLimiter limiter, UpstreamPriority priority) {
+		try {
+			limiter.acquire(priority);
+			return System.nanoTime();
+		}
+		catch (UpstreamThrottledException exception) {
+			throw new IllegalStateException(exception);
+		}
+	}
+}